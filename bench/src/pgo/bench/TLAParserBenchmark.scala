@@ -0,0 +1,63 @@
+package pgo.bench
+
+import org.openjdk.jmh.annotations._
+import pgo.model.tla.{TLABuiltinModules, TLAExpression}
+import pgo.parser.TLAParser
+
+import java.nio.file.Paths
+import java.util.concurrent.TimeUnit
+
+/**
+ * Measures TLAParser's expression parsing on generated deeply nested expressions and long conjunction lists, whose
+ * size is the nesting depth or the number of conjuncts.
+ *
+ * For each shape, the time should grow roughly in proportion to the size; faster growth means some production is being
+ * re-parsed on backtracking.
+ *
+ * Run with `sbt "bench/Jmh/run pgo.bench.TLAParserBenchmark"`; pass e.g. `-p shape=sets` to pin a parameter.
+ */
+@BenchmarkMode(Array(Mode.AverageTime))
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+class TLAParserBenchmark {
+  import TLAParserBenchmark._
+
+  @Benchmark
+  def expression(input: Input): TLAExpression =
+    TLAParser.readExpression(
+      Paths.get("Benchmark.tla"), input.expression, definitions = TLABuiltinModules.Sequences.members)
+}
+
+object TLAParserBenchmark {
+  val shapes: Map[String, Int => String] = Map(
+    "operatorCalls" -> { n => "Len(" * n + "<<>>" + ")" * n },
+    "tuples" -> { n => "<< " * n + "1" + " >>" * n },
+    "sets" -> { n => "{ " * n + "1" + " }" * n },
+    "setsOfTuples" -> { n => "{ << " * n + "1" + " >> }" * n },
+    "excepts" -> { n => "[ " * n + "<<1>>" + " EXCEPT ![1] = 2 ]" * n },
+    "conjunctionList" -> { n => (0 until n).map(i => s"/\\ $i = $i").mkString("\n") },
+    "disjunctionOfConjunctionLists" -> { n =>
+      (0 until n).map(i => s"\\/ /\\ $i = $i\n   /\\ $i < ${i + 1}").mkString("\n")
+    },
+  )
+
+  @State(Scope.Benchmark)
+  class Input {
+    @Param(Array(
+      "operatorCalls", "tuples", "sets", "setsOfTuples", "excepts", "conjunctionList",
+      "disjunctionOfConjunctionLists"))
+    var shape: String = _
+
+    @Param(Array("8", "32", "128"))
+    var size: Int = _
+
+    var expression: String = _
+
+    @Setup(Level.Trial)
+    def setUp(): Unit = {
+      expression = shapes(shape)(size)
+    }
+  }
+}
@@ -0,0 +1,182 @@
+package pgo.bench
+
+import org.openjdk.jmh.annotations._
+import pgo.errors.TopLevelIssueContext
+import pgo.model.`type`.{Type, TypeSolver}
+import pgo.model.mpcal.{ModularPlusCalBlock, ModularPlusCalUtils}
+import pgo.model.tla.{PlusCalDefaultInitValue, TLAUtils}
+import pgo.scope.UID
+import pgo.trans.intermediate.{DefinitionRegistry, TLABuiltins}
+import pgo.trans.passes.expansion.ModularPlusCalMacroExpansionPass
+import pgo.trans.passes.parse.mpcal.ModularPlusCalParsingPass
+import pgo.trans.passes.parse.pcal.PlusCalParsingPass
+import pgo.trans.passes.parse.tla.TLAParsingPass
+import pgo.trans.passes.`type`.TypeInferencePass
+import pgo.util.SourceLocation
+
+import java.nio.charset.StandardCharsets
+import java.nio.file.{Files, Path, Paths}
+import java.util.concurrent.TimeUnit
+import scala.jdk.CollectionConverters._
+
+/**
+ * Measures TypeInferencePass on the specs under examples/ and on generated specs, whose size is controlled by the
+ * number of archetypes, of record variables per archetype and of uses of polymorphic operators per archetype.
+ *
+ * Everything up to type inference is done once per trial, so that only constraint generation and solving are timed.
+ * Constants are left without a value, as when the configuration does not define them. The solver's statistics are
+ * reported alongside the timings as JMH secondary results.
+ *
+ * Run with `sbt "bench/Jmh/run pgo.bench.TypeInferenceBenchmark"`; pass e.g. `-p archetypes=16` to pin a parameter.
+ */
+@BenchmarkMode(Array(Mode.AverageTime))
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+class TypeInferenceBenchmark {
+  import TypeInferenceBenchmark._
+
+  private def inferTypes(frontEnd: FrontEnd, parallel: Boolean, counters: SolverCounters): java.util.Map[UID, Type] = {
+    val solver = new TypeSolver()
+    val result = TypeInferencePass.perform(
+      new TopLevelIssueContext(), frontEnd.registry, frontEnd.block, solver, parallel)
+    counters.add(solver)
+    result
+  }
+
+  @Benchmark
+  def example(spec: ExampleSpec, counters: SolverCounters): java.util.Map[UID, Type] =
+    inferTypes(spec.frontEnd, spec.parallel, counters)
+
+  @Benchmark
+  def synthetic(spec: SyntheticSpec, counters: SolverCounters): java.util.Map[UID, Type] =
+    inferTypes(spec.frontEnd, parallel = false, counters)
+}
+
+object TypeInferenceBenchmark {
+  /**
+   * A spec that has gone through every pass before type inference.
+   */
+  final class FrontEnd(val registry: DefinitionRegistry, val block: ModularPlusCalBlock)
+
+  def frontEnd(path: Path, contents: String): FrontEnd = {
+    val ctx = new TopLevelIssueContext()
+    val tlaModule = TLAParsingPass.perform(path, contents)
+    val block =
+      if (ModularPlusCalParsingPass.hasModularPlusCalBlock(path, contents)) {
+        ModularPlusCalParsingPass.perform(path, contents, tlaModule)
+      } else {
+        ModularPlusCalBlock.from(PlusCalParsingPass.perform(path, contents, tlaModule))
+      }
+    val expanded = ModularPlusCalMacroExpansionPass.perform(ctx, block)
+    val registry = new DefinitionRegistry()
+    TLABuiltins.fillDefinitionRegistry(registry)
+    TLAUtils.fillDefinitionRegistryFromModule(registry, tlaModule)
+    ModularPlusCalUtils.fillDefinitionRegistryFromModularPlusCalBlock(registry, expanded)
+    registry.getConstants.asScala.foreach { constant =>
+      registry.setConstantValue(constant, new PlusCalDefaultInitValue(SourceLocation.unknown()))
+    }
+    if (ctx.hasErrors) {
+      throw new IllegalStateException(s"$path does not compile:\n${ctx.format()}")
+    }
+    new FrontEnd(registry, expanded)
+  }
+
+  @State(Scope.Benchmark)
+  class ExampleSpec {
+    @Param(Array(
+      "Euclid.tla", "counter.tla", "Queens.tla", "DijkstraMutex.tla", "dqueue.tla",
+      "mpcal/load_balancer.tla", "mpcal/replicated_kv.tla"))
+    var spec: String = _
+
+    @Param(Array("false", "true"))
+    var parallel: Boolean = _
+
+    var frontEnd: FrontEnd = _
+
+    @Setup(Level.Trial)
+    def setUp(): Unit = {
+      val path = Paths.get("examples", spec)
+      frontEnd = TypeInferenceBenchmark.frontEnd(path, new String(Files.readAllBytes(path), StandardCharsets.UTF_8))
+    }
+  }
+
+  @State(Scope.Benchmark)
+  class SyntheticSpec {
+    @Param(Array("1", "4", "16"))
+    var archetypes: Int = _
+
+    @Param(Array("1", "8"))
+    var records: Int = _
+
+    @Param(Array("1", "8", "32"))
+    var polymorphicOperators: Int = _
+
+    var frontEnd: FrontEnd = _
+
+    @Setup(Level.Trial)
+    def setUp(): Unit = {
+      frontEnd = TypeInferenceBenchmark.frontEnd(
+        Paths.get("Synthetic.tla"), syntheticSpec(archetypes, records, polymorphicOperators))
+    }
+  }
+
+  /**
+   * @return an MPCal spec with the given number of archetypes, each with the given number of record variables, and
+   *         with that many labels using tuples, Len, Append and function application, which all give rise to
+   *         polymorphic constraints
+   */
+  def syntheticSpec(archetypes: Int, records: Int, polymorphicOperators: Int): String = {
+    val out = new StringBuilder()
+    out ++= "---- MODULE Synthetic ----\nEXTENDS Naturals, Sequences, TLC\n\n(*\n--mpcal Synthetic {\n"
+    for (a <- 0 until archetypes) {
+      val recordVariables = (0 until records).map(r => s"r$r = [a |-> $r, b |-> ${r + 1}]")
+      out ++= s"  archetype A$a(ref out)\n"
+      out ++= s"  variables ${(recordVariables :+ "s = <<>>" :+ "n = 0").mkString(", ")};\n  {\n"
+      for (op <- 0 until polymorphicOperators) {
+        val r = s"r${op % records}"
+        out ++= s"    l$op:\n"
+        out ++= s"      s := Append(s, <<$r.a, Len(s)>>);\n"
+        out ++= s"      n := s[Len(s)][1] + $r.b;\n"
+      }
+      out ++= "    done:\n      out := n;\n  }\n\n"
+    }
+    out ++= s"  variables ${(0 until archetypes).map(a => s"out$a = 0").mkString(", ")};\n\n"
+    for (a <- 0 until archetypes) {
+      out ++= s"  fair process (P$a = $a) == instance A$a(ref out$a);\n"
+    }
+    out ++= "}\n*)\n====\n"
+    out.toString
+  }
+
+  /**
+   * The statistics of the solvers used in an iteration, summed over its invocations.
+   */
+  @AuxCounters(AuxCounters.Type.EVENTS)
+  @State(Scope.Thread)
+  class SolverCounters {
+    var constraintsProcessed: Long = 0
+    var choicePoints: Long = 0
+    var backtracks: Long = 0
+    var savedStateEntries: Long = 0
+    var simplifyIterations: Long = 0
+
+    @Setup(Level.Iteration)
+    def reset(): Unit = {
+      constraintsProcessed = 0
+      choicePoints = 0
+      backtracks = 0
+      savedStateEntries = 0
+      simplifyIterations = 0
+    }
+
+    def add(solver: TypeSolver): Unit = {
+      constraintsProcessed += solver.getConstraintsProcessed
+      choicePoints += solver.getChoicePoints
+      backtracks += solver.getBacktracks
+      savedStateEntries += solver.getSavedStateEntries
+      simplifyIterations += solver.getSimplifyIterations
+    }
+  }
+}
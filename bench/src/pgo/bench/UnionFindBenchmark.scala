@@ -0,0 +1,143 @@
+package pgo.bench
+
+import org.openjdk.jmh.annotations._
+import pgo.model.`type`.{TypeGenerator, TypeVariable}
+import pgo.util.UnionFind
+
+import java.util.Collections
+import java.util.concurrent.TimeUnit
+import scala.collection.mutable
+import scala.util.Random
+
+/**
+ * Compares [[UnionFind]] against the map-based union-find it replaced, on the kind of work TypeSolver gives it: long
+ * chains of unified type variables, random unions mixed with finds, and backtracking over choice points, which the
+ * old structure could only support by copying itself.
+ *
+ * Run with `sbt "bench/Jmh/run pgo.bench.UnionFindBenchmark"`; pass e.g. `-p workload=choicePoints` to pin a parameter.
+ */
+@BenchmarkMode(Array(Mode.AverageTime))
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+class UnionFindBenchmark {
+  import UnionFindBenchmark._
+
+  @Benchmark
+  def map(input: Input): Any = input.workload match {
+    case "chains" =>
+      val uf = new MapUnionFind[TypeVariable]
+      input.vars.sliding(2).foreach(pair => uf.union(pair(0), pair(1)))
+      input.vars.foreach(uf.find)
+      uf
+    case "randomUnions" =>
+      val random = new Random(42)
+      val uf = new MapUnionFind[TypeVariable]
+      for (_ <- input.vars.indices) {
+        uf.union(input.randomVar(random), input.randomVar(random))
+        uf.find(input.randomVar(random))
+      }
+      uf
+    case "choicePoints" =>
+      // every 16 unions open a choice point; every other choice point is backtracked over
+      val random = new Random(42)
+      var uf = new MapUnionFind[TypeVariable]
+      val stack = mutable.Stack.empty[MapUnionFind[TypeVariable]]
+      for (i <- input.vars.indices) {
+        if (i % 16 == 0) stack.push(uf.copy())
+        uf.union(input.randomVar(random), input.randomVar(random))
+        if (i % 32 == 31) uf = stack.pop()
+      }
+      uf
+  }
+
+  @Benchmark
+  def dense(input: Input): Any = input.workload match {
+    case "chains" =>
+      val uf = new UnionFind[TypeVariable]
+      input.vars.sliding(2).foreach(pair => uf.union(pair(0), pair(1)))
+      input.vars.foreach(uf.find)
+      uf
+    case "randomUnions" =>
+      val random = new Random(42)
+      val uf = new UnionFind[TypeVariable]
+      for (_ <- input.vars.indices) {
+        uf.union(input.randomVar(random), input.randomVar(random))
+        uf.find(input.randomVar(random))
+      }
+      uf
+    case "choicePoints" =>
+      val random = new Random(42)
+      val uf = new UnionFind[TypeVariable]
+      val stack = mutable.Stack.empty[Int]
+      for (i <- input.vars.indices) {
+        if (i % 16 == 0) stack.push(uf.snapshot())
+        uf.union(input.randomVar(random), input.randomVar(random))
+        if (i % 32 == 31) uf.rollback(stack.pop())
+      }
+      uf
+  }
+}
+
+object UnionFindBenchmark {
+  /**
+   * The previous implementation: a predecessor map and a map of boxed ranks, copied wholesale at each choice point.
+   */
+  final class MapUnionFind[T](predecessors: mutable.HashMap[T, T] = mutable.HashMap.empty[T, T],
+                              ranks: mutable.HashMap[T, Int] = mutable.HashMap.empty[T, Int]) {
+    def find(element: T): T = {
+      if (!predecessors.contains(element)) {
+        predecessors(element) = element
+        ranks(element) = 0
+        return element
+      }
+      var e = element
+      while (true) {
+        val parent = predecessors(e)
+        if (parent == e) {
+          return e
+        }
+        predecessors(e) = predecessors(parent)
+        e = parent
+      }
+      e
+    }
+
+    def union(u: T, v: T): Unit = {
+      val uRoot = find(u)
+      val vRoot = find(v)
+      if (uRoot != vRoot) {
+        if (ranks(uRoot) < ranks(vRoot)) {
+          predecessors(uRoot) = vRoot
+        } else if (ranks(uRoot) > ranks(vRoot)) {
+          predecessors(vRoot) = uRoot
+        } else {
+          predecessors(vRoot) = uRoot
+          ranks(uRoot) = ranks(uRoot) + 1
+        }
+      }
+    }
+
+    def copy(): MapUnionFind[T] = new MapUnionFind(predecessors.clone(), ranks.clone())
+  }
+
+  @State(Scope.Benchmark)
+  class Input {
+    @Param(Array("chains", "randomUnions", "choicePoints"))
+    var workload: String = _
+
+    @Param(Array("1000", "10000", "100000"))
+    var size: Int = _
+
+    var vars: IndexedSeq[TypeVariable] = _
+
+    @Setup(Level.Trial)
+    def setUp(): Unit = {
+      val generator = new TypeGenerator("a")
+      vars = IndexedSeq.fill(size)(generator.getTypeVariable(Collections.emptyList))
+    }
+
+    def randomVar(random: Random): TypeVariable = vars(random.nextInt(vars.size))
+  }
+}
@@ -0,0 +1,147 @@
+package pgo;
+
+import pgo.model.type.TypeSchemeCache;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.logging.Logger;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+/**
+ * Compiles many specifications concurrently within a single JVM.
+ *
+ * A batch is either a file containing one set of command line arguments per line (blank lines and lines starting with
+ * # are ignored), or a directory, in which case every .tla file that has a .json configuration file of the same name
+ * next to it is compiled using that configuration.
+ *
+ * Each specification is compiled by its own PGoMain, and hence with its own TopLevelIssueContext and
+ * DefinitionRegistry, on a bounded fork-join pool. The compilations share a TypeSchemeCache, so that type constraints
+ * common to several specifications, such as those of a shared archetype, are solved once.
+ */
+public class PGoBatch {
+	private static final Logger logger = Logger.getLogger("PGoBatch");
+
+	private static final class Result {
+		private final String request;
+		private final boolean success;
+		private final long millis;
+
+		Result(String request, boolean success, long millis) {
+			this.request = request;
+			this.success = success;
+			this.millis = millis;
+		}
+	}
+
+	/**
+	 * The command line arguments of one compilation, and where in the batch they come from.
+	 */
+	public static final class Request {
+		private final String origin;
+		private final String[] args;
+
+		public Request(String origin, String[] args) {
+			this.origin = origin;
+			this.args = args;
+		}
+
+		public String getOrigin() {
+			return origin;
+		}
+
+		public String[] getArgs() {
+			return args;
+		}
+	}
+
+	private PGoBatch() {}
+
+	public static List<Request> readRequests(Path batchPath, List<String> extraArgs) throws IOException {
+		List<Request> requests = new ArrayList<>();
+		if (Files.isDirectory(batchPath)) {
+			List<Path> specs;
+			try (Stream<Path> files = Files.list(batchPath)) {
+				specs = files
+						.filter(p -> p.getFileName().toString().endsWith(".tla"))
+						.sorted()
+						.collect(Collectors.toList());
+			}
+			for (Path spec : specs) {
+				String fileName = spec.getFileName().toString();
+				Path config = spec.resolveSibling(fileName.substring(0, fileName.length() - ".tla".length()) + ".json");
+				if (!Files.isRegularFile(config)) {
+					logger.fine("Skipping " + spec + ", as it has no configuration file");
+					continue;
+				}
+				List<String> args = new ArrayList<>(extraArgs);
+				args.addAll(Arrays.asList("-c", config.toString(), spec.toString()));
+				requests.add(new Request(spec.toString(), args.toArray(new String[0])));
+			}
+		} else {
+			List<String> lines = Files.readAllLines(batchPath, StandardCharsets.UTF_8);
+			for (int i = 0; i < lines.size(); i++) {
+				String line = lines.get(i).trim();
+				if (line.isEmpty() || line.startsWith("#")) {
+					continue;
+				}
+				List<String> args = new ArrayList<>(extraArgs);
+				args.addAll(PGoServer.splitArguments(line));
+				requests.add(new Request(batchPath + ":" + (i + 1), args.toArray(new String[0])));
+			}
+		}
+		return requests;
+	}
+
+	private static Result compile(Request request, TypeSchemeCache typeSchemeCache) {
+		long start = System.nanoTime();
+		String description = request.getOrigin() + ": " + String.join(" ", request.getArgs());
+		boolean success;
+		try {
+			// malformed arguments are reported as option errors of this request, like any other compilation error
+			success = new PGoMain(request.getArgs(), true, typeSchemeCache).run();
+		} catch (RuntimeException e) {
+			// one crashing compilation must not prevent reporting on the others
+			logger.severe("internal error while compiling " + description + ": " + e);
+			e.printStackTrace();
+			success = false;
+		}
+		return new Result(description, success, (System.nanoTime() - start) / 1000000);
+	}
+
+	public static boolean perform(List<Request> requests, int parallelism) {
+		ForkJoinPool pool = new ForkJoinPool(Math.max(1, parallelism));
+		List<Result> results = new ArrayList<>();
+		TypeSchemeCache typeSchemeCache = new TypeSchemeCache();
+		try {
+			List<ForkJoinTask<Result>> tasks = new ArrayList<>();
+			for (Request request : requests) {
+				tasks.add(pool.submit(() -> compile(request, typeSchemeCache)));
+			}
+			for (ForkJoinTask<Result> task : tasks) {
+				results.add(task.join());
+			}
+		} finally {
+			pool.shutdown();
+		}
+
+		int failures = 0;
+		for (Result result : results) {
+			if (result.success) {
+				logger.info("ok     " + result.request + " (" + result.millis + "ms)");
+			} else {
+				failures++;
+				logger.severe("FAILED " + result.request + " (" + result.millis + "ms)");
+			}
+		}
+		logger.info("Compiled " + (results.size() - failures) + " of " + results.size() + " specifications successfully");
+		return failures == 0;
+	}
+}
@@ -0,0 +1,156 @@
+package pgo;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.URISyntaxException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.security.CodeSource;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.TreeMap;
+import java.util.UUID;
+import java.util.logging.Logger;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+/**
+ * An on-disk, content-addressed cache of generated Go code.
+ *
+ * Entries are keyed by a SHA-256 hash of everything that can influence the generated code: the compiler build, the
+ * text of the specification, the constant definitions and the build, networking and formatting options. Since the key
+ * covers all of the compiler's inputs, entries are never invalidated; stale ones are simply never looked up again.
+ *
+ * The compiler build is identified by a hash of the jar or class directory PGo was loaded from, rather than by
+ * {@link PGoOptions#VERSION}, which does not change between releases, so that any change to the compiler misses
+ * the entries of previous builds.
+ */
+public class PGoCompilationCache {
+	private static final Logger logger = Logger.getLogger("PGoCompilationCache");
+
+	private static final class BuildFingerprint {
+		private static final String VALUE = computeBuildFingerprint();
+	}
+
+	private final Path cacheDir;
+	private final String key;
+
+	public PGoCompilationCache(Path cacheDir, PGoOptions opts, boolean isMPCal, CharSequence inputFileContents) {
+		this.cacheDir = cacheDir;
+		this.key = computeKey(opts, isMPCal, inputFileContents);
+	}
+
+	private static void update(MessageDigest digest, String field) {
+		byte[] bytes = field.getBytes(StandardCharsets.UTF_8);
+		// length-prefix every field so that different sequences of fields can never produce the same input
+		digest.update(Integer.toString(bytes.length).getBytes(StandardCharsets.UTF_8));
+		digest.update((byte) ':');
+		digest.update(bytes);
+	}
+
+	private static MessageDigest newDigest() {
+		try {
+			return MessageDigest.getInstance("SHA-256");
+		} catch (NoSuchAlgorithmException e) {
+			throw new InternalCompilerError(e);
+		}
+	}
+
+	private static String toHex(byte[] bytes) {
+		StringBuilder builder = new StringBuilder();
+		for (byte b : bytes) {
+			builder.append(String.format("%02x", b));
+		}
+		return builder.toString();
+	}
+
+	private static void updateWithFile(MessageDigest digest, Path file) throws IOException {
+		byte[] buffer = new byte[1 << 16];
+		try (InputStream in = Files.newInputStream(file)) {
+			int read;
+			while ((read = in.read(buffer)) != -1) {
+				digest.update(buffer, 0, read);
+			}
+		}
+	}
+
+	private static String computeBuildFingerprint() {
+		try {
+			CodeSource codeSource = PGoCompilationCache.class.getProtectionDomain().getCodeSource();
+			if (codeSource == null) {
+				throw new IOException("unknown code source");
+			}
+			Path location = Paths.get(codeSource.getLocation().toURI());
+			MessageDigest digest = newDigest();
+			if (Files.isDirectory(location)) {
+				// an unpackaged build, e.g. sbt's classes directory: hash every file, in a fixed order
+				List<Path> files;
+				try (Stream<Path> walk = Files.walk(location)) {
+					files = walk.filter(Files::isRegularFile).sorted().collect(Collectors.toList());
+				}
+				for (Path file : files) {
+					update(digest, location.relativize(file).toString());
+					updateWithFile(digest, file);
+				}
+			} else {
+				updateWithFile(digest, location);
+			}
+			return toHex(digest.digest());
+		} catch (IOException | URISyntaxException | SecurityException e) {
+			// without a way to identify this build, never reuse entries made by another process
+			logger.warning("Cannot identify the compiler build, compilation cache entries will not be reused " +
+					"across runs: " + e.getMessage());
+			return UUID.randomUUID().toString();
+		}
+	}
+
+	static String computeKey(PGoOptions opts, boolean isMPCal, CharSequence inputFileContents) {
+		MessageDigest digest = newDigest();
+		update(digest, PGoOptions.VERSION);
+		update(digest, BuildFingerprint.VALUE);
+		update(digest, Boolean.toString(isMPCal));
+		// gofmt runs before the generated code is stored
+		update(digest, Boolean.toString(opts.gofmt));
+		update(digest, inputFileContents.toString());
+		update(digest, String.valueOf(opts.buildFile));
+		update(digest, String.valueOf(opts.buildPackage));
+		update(digest, opts.netConfig);
+		// sort the constants so that the key does not depend on the iteration order of the configuration
+		Map<String, PGoConstantDef> constants = new TreeMap<>(opts.constants.getConstants());
+		for (Map.Entry<String, PGoConstantDef> entry : constants.entrySet()) {
+			update(digest, entry.getKey());
+			update(digest, entry.getValue().contents());
+		}
+		return toHex(digest.digest());
+	}
+
+	public String getKey() {
+		return key;
+	}
+
+	private Path getEntryPath() {
+		return cacheDir.resolve(key + ".go");
+	}
+
+	public Optional<String> lookup() throws IOException {
+		Path entry = getEntryPath();
+		if (!Files.isRegularFile(entry)) {
+			return Optional.empty();
+		}
+		return Optional.of(new String(Files.readAllBytes(entry), StandardCharsets.UTF_8));
+	}
+
+	public void store(String goCode) throws IOException {
+		Files.createDirectories(cacheDir);
+		// write to a temporary file first so that concurrent compilations never observe a partial entry
+		Path tempFile = Files.createTempFile(cacheDir, key, ".tmp");
+		Files.write(tempFile, goCode.getBytes(StandardCharsets.UTF_8));
+		Files.move(tempFile, getEntryPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+	}
+}
@@ -14,7 +14,11 @@ import pgo.model.tla.TLAExpression;
 import pgo.model.tla.TLAModule;
 import pgo.model.tla.TLAUtils;
 import pgo.model.type.Type;
+import pgo.model.type.TypeSchemeCache;
+import pgo.model.type.TypeSolver;
 import pgo.parser.PlusCalParser;
+import pgo.parser.TLALexer;
+import pgo.parser.TLATokens;
 import pgo.scope.UID;
 import pgo.trans.PGoTransException;
 import pgo.trans.intermediate.CheckOptionsPass;
@@ -29,6 +33,7 @@ import pgo.trans.passes.constdef.ConstantDefinitionParsingPass;
 import pgo.trans.passes.desugar.mpcal.ModularPlusCalDesugarPass;
 import pgo.trans.passes.expansion.ModularPlusCalMacroExpansionPass;
 import pgo.trans.passes.normalising.CodeNormalisingPass;
+import pgo.trans.passes.normalising.GoStatementCountingVisitor;
 import pgo.trans.passes.parse.mpcal.ModularPlusCalParsingPass;
 import pgo.trans.passes.parse.option.OptionParserIssue;
 import pgo.trans.passes.parse.option.OptionParsingPass;
@@ -37,10 +42,10 @@ import pgo.trans.passes.parse.tla.TLAParsingPass;
 import pgo.trans.passes.type.TypeInferencePass;
 import pgo.trans.passes.validation.ValidationPass;
 import pgo.util.SourceLocation;
+import pgo.util.SourceText;
+import pgo.util.SourceTextRegistry;
 
 import java.io.*;
-import java.nio.CharBuffer;
-import java.nio.MappedByteBuffer;
 import java.nio.channels.FileChannel;
 import java.nio.charset.StandardCharsets;
 import java.nio.file.Files;
@@ -49,19 +54,32 @@ import java.nio.file.Paths;
 import java.nio.file.StandardCopyOption;
 import java.util.HashMap;
 import java.util.Map;
+import java.util.Optional;
 import java.util.logging.Logger;
 import java.util.regex.MatchResult;
-import java.util.regex.Matcher;
-import java.util.regex.Pattern;
 
 public class PGoMain {
 	private final String[] cmdArgs;
-	private static Logger logger;
+	// true when this instance serves a single request on behalf of a PGoServer
+	private final boolean embedded;
+	// shared with the other compilations made by the same PGoServer or PGoBatch, if any
+	private final TypeSchemeCache typeSchemeCache;
+	private final PGoProfiler profiler = new PGoProfiler();
+	private final SourceTextRegistry sourceTexts = new SourceTextRegistry();
+	private static final Logger logger = Logger.getLogger("PGoMain");
 
 	public PGoMain(String[] args) {
+		this(args, false);
+	}
+
+	public PGoMain(String[] args, boolean embedded) {
+		this(args, embedded, null);
+	}
+
+	public PGoMain(String[] args, boolean embedded, TypeSchemeCache typeSchemeCache) {
 		cmdArgs = args;
-		// Get the top Logger instance
-		logger = Logger.getLogger("PGoMain");
+		this.embedded = embedded;
+		this.typeSchemeCache = typeSchemeCache;
 	}
 
 	// Creates a PGoMain instance, and initiates run() below.
@@ -73,16 +91,27 @@ public class PGoMain {
 		}
 	}
 
-	private void validateSemantics(TopLevelIssueContext ctx, ModularPlusCalBlock modularPlusCalBlock) throws PGoTransException {
+	private void validateSemantics(TopLevelIssueContext ctx, ModularPlusCalBlock modularPlusCalBlock, String stageName)
+			throws PGoTransException {
 		logger.info("Validating Modular PlusCal semantics");
-		ValidationPass.perform(ctx, modularPlusCalBlock);
+		PGoProfiler.Stage stage = profiler.stage(stageName);
+		try {
+			ValidationPass.perform(ctx, modularPlusCalBlock);
+		} finally {
+			stage.close();
+		}
 		checkErrors(ctx);
 	}
 
 	private ModularPlusCalBlock expandPlusCalMacros(TopLevelIssueContext ctx, ModularPlusCalBlock modularPlusCalBlock) throws PGoTransException {
 		logger.info("Expanding PlusCal macros");
-		ModularPlusCalBlock macroExpandedModularPlusCalBlock = ModularPlusCalMacroExpansionPass.perform(
-				ctx, modularPlusCalBlock);
+		ModularPlusCalBlock macroExpandedModularPlusCalBlock;
+		PGoProfiler.Stage stage = profiler.stage("macroExpansion");
+		try {
+			macroExpandedModularPlusCalBlock = ModularPlusCalMacroExpansionPass.perform(ctx, modularPlusCalBlock);
+		} finally {
+			stage.close();
+		}
 		checkErrors(ctx);
 
 		return macroExpandedModularPlusCalBlock;
@@ -92,7 +121,12 @@ public class PGoMain {
 	                                          ModularPlusCalBlock modularPlusCalBlock)
 			throws PGoTransException {
 		logger.info("Validating Modular PlusCal semantics post scoping");
-		ValidationPass.performPostScoping(ctx, registry, modularPlusCalBlock);
+		PGoProfiler.Stage stage = profiler.stage("postScopingValidation");
+		try {
+			ValidationPass.performPostScoping(ctx, registry, modularPlusCalBlock);
+		} finally {
+			stage.close();
+		}
 		checkErrors(ctx);
 	}
 
@@ -102,13 +136,13 @@ public class PGoMain {
 			ModularPlusCalBlock modularPlusCalBlock,
 			TLAModule tlaModule)
 			throws PGoTransException {
-		validateSemantics(ctx, modularPlusCalBlock);
+		validateSemantics(ctx, modularPlusCalBlock, "validation");
 		ModularPlusCalBlock macroExpandedModularPlusCalBlock = expandPlusCalMacros(ctx, modularPlusCalBlock);
 
 		ModularPlusCalBlock desugaredModularPlusCalBlock = ModularPlusCalDesugarPass.perform(
 				macroExpandedModularPlusCalBlock);
 
-		validateSemantics(ctx, desugaredModularPlusCalBlock);
+		validateSemantics(ctx, desugaredModularPlusCalBlock, "postDesugaringValidation");
 		DefinitionRegistry registry = new DefinitionRegistry();
 		TLABuiltins.fillDefinitionRegistry(registry);
 		TLAUtils.fillDefinitionRegistryFromModule(registry, tlaModule);
@@ -143,27 +177,22 @@ public class PGoMain {
 		// TODO deal with non-ASCII
 		final int startOffset;
 		final int endOffset;
-		// parse the algorithm block to know where it is
-		try (FileChannel fileChannel = new RandomAccessFile(inputFilePath.toFile(), "r").getChannel()) {
-			MappedByteBuffer buffer = fileChannel.map(FileChannel.MapMode.READ_ONLY, 0, fileChannel.size());
-			// assume UTF-8, though technically TLA+ is ASCII only according to the book
-			CharBuffer inputFileContents = StandardCharsets.UTF_8.decode(buffer);
-			Pattern beginPattern = Pattern.compile(".*?\\\\\\*\\s+BEGIN\\s+PLUSCAL\\s+TRANSLATION", Pattern.DOTALL);
-			Pattern endPattern = Pattern.compile(".*?\\\\(\\*\\s+END\\s+PLUSCAL\\s+TRANSLATION)", Pattern.DOTALL);
-			Matcher beginMatcher = beginPattern.matcher(inputFileContents);
-			if(beginMatcher.lookingAt()) {
-				startOffset = beginMatcher.end() + 1;
-				Matcher endMatcher = endPattern.matcher(inputFileContents);
-				endMatcher.region(beginMatcher.end() + 1, beginMatcher.regionEnd());
-				if(endMatcher.lookingAt()) {
-					endOffset = endMatcher.start(1);
-				} else {
-					endOffset = -1;
-				}
+		// find the translation markers, which are line comments, to know where the algorithm block is
+		SourceText inputText = sourceTexts.get(inputFilePath);
+		TLATokens tokens = TLALexer.lex(inputText);
+		int beginToken = tokens.find(TLATokens.PlusCalTranslationBegin(), 0);
+		if(beginToken != -1) {
+			startOffset = inputText.getText().indexOf("TRANSLATION", tokens.start(beginToken)) + "TRANSLATION".length() + 1;
+			int endToken = tokens.find(TLATokens.PlusCalTranslationEnd(), beginToken);
+			if(endToken != -1) {
+				// the end marker is rewritten from its "*" on
+				endOffset = tokens.start(endToken) + 1;
 			} else {
-				startOffset = -1;
 				endOffset = -1;
 			}
+		} else {
+			startOffset = -1;
+			endOffset = -1;
 		}
 		File tempFile = File.createTempFile("pluscal-", ".tla");
 		tempFile.deleteOnExit();
@@ -193,6 +222,7 @@ public class PGoMain {
 			}
 		}
 		Files.move(tempFile.toPath(), inputFilePath, StandardCopyOption.REPLACE_EXISTING);
+		sourceTexts.invalidate(inputFilePath);
 	}
 
 	void specToGoPipeline(
@@ -215,78 +245,144 @@ public class PGoMain {
 		checkErrors(ctx);
 
 		logger.info("Expanding macros");
-		validateSemantics(ctx, modularPlusCalBlock);
+		validateSemantics(ctx, modularPlusCalBlock, "validation");
 		ModularPlusCalBlock macroExpandedModularPlusCalBlock = expandPlusCalMacros(ctx, modularPlusCalBlock);
 		DefinitionRegistry registry = new DefinitionRegistry();
-		TLABuiltins.fillDefinitionRegistry(registry);
-		TLAUtils.fillDefinitionRegistryFromModule(registry, tlaModule);
-		ModularPlusCalUtils.fillDefinitionRegistryFromModularPlusCalBlock(registry, macroExpandedModularPlusCalBlock);
-		for(UID constant: registry.getConstants()) {
-			String name = registry.getConstantName(constant);
-			TLAExpression value = constantDefinitions.get(name);
-			if(value == null) {
-				//throw new PGoTransException("Constant "+name+" has no specified value");
-				registry.setConstantValue(constant, new PlusCalDefaultInitValue(SourceLocation.unknown()));
-			} else {
-				registry.setConstantValue(constant, value);
-				TLAUtils.fillDefinitionRegistryFromExpression(registry, value);
+		try (PGoProfiler.Stage stage = profiler.stage("registryFill")) {
+			TLABuiltins.fillDefinitionRegistry(registry);
+			TLAUtils.fillDefinitionRegistryFromModule(registry, tlaModule);
+			ModularPlusCalUtils.fillDefinitionRegistryFromModularPlusCalBlock(registry, macroExpandedModularPlusCalBlock);
+			for(UID constant: registry.getConstants()) {
+				String name = registry.getConstantName(constant);
+				TLAExpression value = constantDefinitions.get(name);
+				if(value == null) {
+					//throw new PGoTransException("Constant "+name+" has no specified value");
+					registry.setConstantValue(constant, new PlusCalDefaultInitValue(SourceLocation.unknown()));
+				} else {
+					registry.setConstantValue(constant, value);
+					TLAUtils.fillDefinitionRegistryFromExpression(registry, value);
+				}
 			}
+			stage.count("references", registry.getReferences().size());
+			stage.count("constants", registry.getConstants().size());
+			stage.count("globalVariables", registry.globalVariables().size());
 		}
 		validateSemanticsPostScoping(ctx, registry, macroExpandedModularPlusCalBlock);
 
 		logger.info("Inferring types");
-		Map<UID, Type> typeMap = TypeInferencePass.perform(ctx, registry, macroExpandedModularPlusCalBlock);
+		Map<UID, Type> typeMap;
+		try (PGoProfiler.Stage stage = profiler.stage("typeInference")) {
+			TypeSolver solver = new TypeSolver();
+			typeMap = TypeInferencePass.perform(
+					ctx, registry, macroExpandedModularPlusCalBlock, solver, opts.parallelTypeInference,
+					typeSchemeCache);
+			stage.count("constraintsSolved", solver.getConstraintsProcessed());
+			stage.count("choicePoints", solver.getChoicePoints());
+			stage.count("backtracks", solver.getBacktracks());
+			stage.count("backjumps", solver.getBackjumps());
+			stage.count("maxStateStackDepth", solver.getMaxStateStackDepth());
+			stage.count("savedStateEntries", solver.getSavedStateEntries());
+			stage.count("simplifyIterations", solver.getSimplifyIterations());
+			stage.count("componentsFromCache", solver.getComponentsFromCache());
+			stage.count("typedUIDs", typeMap.size());
+		}
 		checkErrors(ctx);
 
 		logger.info("Inferring atomicity requirements");
-		if (isMPCal) {
-			ModularPlusCalAtomicityInferencePass.perform(registry, macroExpandedModularPlusCalBlock);
-		} else {
-			AtomicityInferencePass.perform(registry, macroExpandedModularPlusCalBlock);
+		try (PGoProfiler.Stage stage = profiler.stage("atomicityInference")) {
+			if (isMPCal) {
+				ModularPlusCalAtomicityInferencePass.perform(registry, macroExpandedModularPlusCalBlock);
+			} else {
+				AtomicityInferencePass.perform(registry, macroExpandedModularPlusCalBlock);
+			}
+			stage.count("lockGroups", registry.getNumberOfLockGroups());
 		}
 
 		// compilation of (M)PCal -> Go
 		logger.info("Initial code generation");
 		GoModule goModule;
-		if (isMPCal) {
-			goModule = ModularPlusCalGoCodeGenPass.perform(registry, typeMap, opts, macroExpandedModularPlusCalBlock);
-		} else {
-			goModule = PlusCalGoCodeGenPass.perform(registry, typeMap, opts, macroExpandedModularPlusCalBlock);
+		try (PGoProfiler.Stage stage = profiler.stage("goCodegen")) {
+			if (isMPCal) {
+				goModule = ModularPlusCalGoCodeGenPass.perform(registry, typeMap, opts, macroExpandedModularPlusCalBlock);
+			} else {
+				goModule = PlusCalGoCodeGenPass.perform(registry, typeMap, opts, macroExpandedModularPlusCalBlock);
+			}
+			stage.count("goDeclarations", goModule.getDeclarations().size());
+			stage.count("goStatements", GoStatementCountingVisitor.countStatements(goModule));
 		}
 
 		logger.info("Normalising generated code");
-		GoModule normalisedGoModule = CodeNormalisingPass.perform(goModule);
+		GoModule normalisedGoModule;
+		try (PGoProfiler.Stage stage = profiler.stage("codeNormalisation")) {
+			normalisedGoModule = CodeNormalisingPass.perform(goModule);
+			stage.count("goStatements", GoStatementCountingVisitor.countStatements(normalisedGoModule));
+		}
 
 		logger.info("Writing Go module to \"" + destFile + "\"");
-		try(
+		PGoProfiler.Stage formattingStage = profiler.stage("formatting");
+		try (
 				BufferedWriter writer = Files.newBufferedWriter(Paths.get(destFile));
-				IndentingWriter out = new IndentingWriter(writer)
+				IndentingWriter out = IndentingWriter.forGo(writer)
 		) {
 			normalisedGoModule.accept(new GoNodeFormattingVisitor(out));
+		} finally {
+			formattingStage.close();
 		}
 
 		logger.info("Copying necessary Go packages to folder \"" + opts.buildDir + "\"");
 		copyPackages(opts.buildDir);
 
-		logger.info("Formatting generated Go code");
-		try {
-			goFmt(destFile);
-		} catch (Exception e) {
-			logger.warning(String.format("Failed to format Go code. Error: %s", e.getMessage()));
+		if (opts.gofmt) {
+			logger.info("Formatting generated Go code");
+			PGoProfiler.Stage gofmtStage = profiler.stage("gofmt");
+			try {
+				goFmt(destFile);
+			} catch (Exception e) {
+				logger.warning(String.format("Failed to format Go code. Error: %s", e.getMessage()));
+			} finally {
+				gofmtStage.close();
+			}
 		}
 	}
 
 	// Top-level workhorse method.
 	public boolean run() {
+		TopLevelIssueContext ctx = new TopLevelIssueContext();
+
+		// Check options, set up logging.
+		PGoOptions opts = OptionParsingPass.perform(ctx, logger, cmdArgs, embedded);
+		if (ctx.hasErrors()) {
+			System.err.println(ctx.format());
+			opts.printHelp();
+			return false;
+		}
+
+		SourceTextRegistry.Binding binding = sourceTexts.bind();
 		try {
-			TopLevelIssueContext ctx = new TopLevelIssueContext();
-
-			// Check options, set up logging.
-			PGoOptions opts = OptionParsingPass.perform(ctx, logger, cmdArgs);
-			if (ctx.hasErrors()) {
-				System.err.println(ctx.format());
-				opts.printHelp();
-				return false;
+			return run(ctx, opts);
+		} finally {
+			binding.close();
+			if (opts.profile != null) {
+				logger.info("Writing profiling report to \"" + opts.profile + "\"");
+				try {
+					profiler.writeReport(Paths.get(opts.profile), opts.inputFilePath);
+				} catch (IOException e) {
+					logger.warning(String.format("Failed to write profiling report. Error: %s", e.getMessage()));
+				}
+			}
+		}
+	}
+
+	private boolean run(TopLevelIssueContext ctx, PGoOptions opts) {
+		try {
+			if (opts.server) {
+				return new PGoServer(System.in, System.out).serve();
+			}
+
+			if (opts.batchPath != null) {
+				int parallelism = opts.batchThreads > 0 ? opts.batchThreads : Runtime.getRuntime().availableProcessors();
+				return PGoBatch.perform(
+						PGoBatch.readRequests(Paths.get(opts.batchPath), opts.getLoggingArgs()), parallelism);
 			}
 
 			logger.info("Opening source file");
@@ -294,17 +390,36 @@ public class PGoMain {
 			final boolean isMPCal;
 			final ModularPlusCalBlock modularPlusCalBlock;
 			final TLAModule tlaModule;
+			String destFile = null;
+			PGoCompilationCache cache = null;
 
-			try (FileChannel fileChannel = new RandomAccessFile(inputFilePath.toFile(), "r").getChannel()) {
-				MappedByteBuffer buffer = fileChannel.map(FileChannel.MapMode.READ_ONLY, 0, fileChannel.size());
-				// assume UTF-8, though technically TLA+ is ASCII only according to the book
-				CharBuffer inputFileContents = StandardCharsets.UTF_8.decode(buffer);
+			String inputFileContents = sourceTexts.get(inputFilePath).getText();
 
-				isMPCal = ModularPlusCalParsingPass.hasModularPlusCalBlock(inputFilePath, inputFileContents);
-				if (opts.mpcalCompile && !isMPCal) {
-					ctx.error(new OptionParserIssue("Specification does not contain a Modular PlusCal block."));
-					checkErrors(ctx);
+			isMPCal = ModularPlusCalParsingPass.hasModularPlusCalBlock(inputFilePath, inputFileContents);
+			if (opts.mpcalCompile && !isMPCal) {
+				ctx.error(new OptionParserIssue("Specification does not contain a Modular PlusCal block."));
+				checkErrors(ctx);
+			}
+
+			if (!opts.mpcalCompile) {
+				destFile = getDestFile(ctx, opts, isMPCal);
+				if (opts.cacheDir != null) {
+					cache = new PGoCompilationCache(Paths.get(opts.cacheDir), opts, isMPCal, inputFileContents);
+					Optional<String> cachedGoCode = cache.lookup();
+					if (cachedGoCode.isPresent()) {
+						logger.info("Compilation cache hit (" + cache.getKey() + "), writing cached Go module to \"" +
+								destFile + "\"");
+						Files.write(Paths.get(destFile), cachedGoCode.get().getBytes(StandardCharsets.UTF_8));
+						logger.info("Copying necessary Go packages to folder \"" + opts.buildDir + "\"");
+						copyPackages(opts.buildDir);
+						return true;
+					}
+					logger.info("Compilation cache miss (" + cache.getKey() + ")");
 				}
+			}
+
+			try (PGoProfiler.Stage stage = profiler.stage("parse")) {
+				long uidsBefore = UID.getCreatedCountOnCurrentThread();
 				logger.info("Parsing TLA+ module");
 				tlaModule = TLAParsingPass.perform(inputFilePath, inputFileContents);
 				checkErrors(ctx);
@@ -319,34 +434,18 @@ public class PGoMain {
 					checkErrors(ctx);
 					modularPlusCalBlock = ModularPlusCalBlock.from(plusCalAlgorithm);
 				}
+				stage.count("characters", inputFileContents.length());
+				stage.count("astNodes", UID.getCreatedCountOnCurrentThread() - uidsBefore);
 			}
 
 			if (opts.mpcalCompile) {
 				mpcalCompilePipeline(inputFilePath, ctx, modularPlusCalBlock, tlaModule);
 			} else {
-				String destFile;
-
-				if (isMPCal) {
-					if (opts.buildPackage == null) {
-						ctx.error(new OptionParserIssue("Modular PlusCal compilation requires a dest_package configuration field"));
-						checkErrors(ctx);
-					}
-
-					String packageDir = opts.buildDir + "/src/" + opts.buildPackage;
-					File packageDirFile = new File(packageDir);
-					packageDirFile.mkdirs();
-					destFile = packageDir + "/" + opts.buildPackage + ".go";
-				} else {
-					if (opts.buildFile == null) {
-						ctx.error(new OptionParserIssue("PlusCal compilation requires a dest_file configuration field"));
-						checkErrors(ctx);
-					}
-
-					destFile = opts.buildDir + "/" + opts.buildFile;
-				}
-
-
 				specToGoPipeline(isMPCal, opts, inputFilePath, destFile, ctx, modularPlusCalBlock, tlaModule);
+				if (cache != null) {
+					logger.info("Storing generated Go module in compilation cache (" + cache.getKey() + ")");
+					cache.store(new String(Files.readAllBytes(Paths.get(destFile)), StandardCharsets.UTF_8));
+				}
 			}
 		} catch (PGoTransException | IOException e) {
 			logger.severe("found issues");
@@ -357,13 +456,36 @@ public class PGoMain {
 		return true;
 	}
 
+	private static String getDestFile(TopLevelIssueContext ctx, PGoOptions opts, boolean isMPCal)
+			throws PGoTransException {
+		if (isMPCal) {
+			if (opts.buildPackage == null) {
+				ctx.error(new OptionParserIssue("Modular PlusCal compilation requires a dest_package configuration field"));
+				checkErrors(ctx);
+			}
+
+			String packageDir = opts.buildDir + "/src/" + opts.buildPackage;
+			File packageDirFile = new File(packageDir);
+			packageDirFile.mkdirs();
+			return packageDir + "/" + opts.buildPackage + ".go";
+		} else {
+			if (opts.buildFile == null) {
+				ctx.error(new OptionParserIssue("PlusCal compilation requires a dest_file configuration field"));
+				checkErrors(ctx);
+			}
+
+			return opts.buildDir + "/" + opts.buildFile;
+		}
+	}
+
 	private static void checkErrors(TopLevelIssueContext ctx) throws PGoTransException {
 		if (ctx.hasErrors()) {
 			throw new PGoTransException(ctx.format());
 		}
 	}
 
-	private static void copyPackages(String buildDir) throws IOException {
+	// synchronized, as concurrent compilations in batch mode may copy into the same build directory
+	private static synchronized void copyPackages(String buildDir) throws IOException {
 		FileUtils.copyDirectory(new File("src/runtime/pgo"), new File(buildDir + "/src/pgo"));
 	}
 
@@ -8,6 +8,8 @@ import plume.Options;
 import java.io.IOException;
 import java.nio.file.Files;
 import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
 
 public class PGoOptions {
 	public static final String VERSION = "0.1.4";
@@ -33,6 +35,29 @@ public class PGoOptions {
 	@Option(value = "-c path to the configuration file, if any")
 	public String configFilePath;
 
+	@Option(value = "-s Run as a persistent compilation server, reading one set of arguments per line on stdin",
+			aliases = { "-server" })
+	public boolean server = false;
+
+	@Option(value = "-b path to a batch file (one set of arguments per line) or a directory of specs to compile, if any",
+			aliases = { "-batch" })
+	public String batchPath;
+
+	@Option(value = "maximum number of specs compiled concurrently in batch mode (0 means one per processor)")
+	public int batchThreads = 0;
+
+	@Option(value = "Solve independent groups of type constraints concurrently")
+	public boolean parallelTypeInference = false;
+
+	@Option(value = "Run the external gofmt tool over generated Go code")
+	public boolean gofmt = true;
+
+	@Option(value = "path to a directory in which to cache generated Go code across compilations, if any")
+	public String cacheDir;
+
+	@Option(value = "path to which a JSON report of time, CPU time and allocation per compilation stage is written, if any")
+	public String profile;
+
 	public String inputFilePath;
 
 	// fields extracted from the JSON configuration file
@@ -41,25 +66,83 @@ public class PGoOptions {
 	public String buildPackage;
 	public PGoNetOptions net;
 	public PGoConstantDefs constants;
+	// the networking section of the JSON configuration file, kept verbatim so that it can be part of
+	// compilation cache keys
+	public String netConfig = "";
 
 	private final Options plumeOptions;
 	private final String[] remainingArgs;
+	// why the arguments could not be parsed, if they could not; reported by parse() rather than exiting, so that
+	// a malformed request only fails that request
+	private final String argError;
+	// true when these options describe a single request to a running compilation server, in which case
+	// we must never exit the JVM
+	private final boolean embedded;
+
+	/**
+	 * @return the logging options given on the command line, so that they can be passed on to the individual
+	 * compilations of a batch
+	 */
+	public List<String> getLoggingArgs() {
+		List<String> result = new ArrayList<>();
+		if (logLvlQuiet) {
+			result.add("-q");
+		}
+		if (logLvlVerbose) {
+			result.add("-v");
+		}
+		return result;
+	}
 
 	public void printHelp() {
 		plumeOptions.print_usage();
 	}
 
 	public PGoOptions(String[] args) {
+		this(args, false);
+	}
+
+	public PGoOptions(String[] args, boolean embedded) {
+		this.embedded = embedded;
 		plumeOptions = new Options("pgo [options] spec", this);
-		remainingArgs = plumeOptions.parse_or_usage(args);
+		String[] remaining;
+		String error;
+		try {
+			remaining = plumeOptions.parse(args);
+			error = null;
+		} catch (Options.ArgException e) {
+			remaining = new String[0];
+			error = e.getMessage();
+		}
+		remainingArgs = remaining;
+		argError = error;
 	}
 
 	public void parse() throws PGoOptionException {
+		if (argError != null) {
+			throw new PGoOptionException(argError);
+		}
+
+		if (embedded) {
+			if (version || help || server || batchPath != null) {
+				throw new PGoOptionException(
+						"--version, --help, --server and --batchPath are not valid server or batch requests");
+			}
+			if (remainingArgs.length != 1) {
+				throw new PGoOptionException("Exactly one spec file is required");
+			}
+		}
+
 		if (version) {
 			System.out.println("PGo version " + VERSION);
 			System.exit(0);
 		}
 
+		if (server || batchPath != null) {
+			// requests, including their spec files, are read later on by PGoServer or PGoBatch
+			return;
+		}
+
 		if (help || remainingArgs.length != 1) {
 			printHelp();
 			System.exit(0);
@@ -101,6 +184,9 @@ public class PGoOptions {
             }
 
 			net = new PGoNetOptions(config);
+			if (config.has(PGoNetOptions.NETWORKING_FIELD)) {
+				netConfig = config.getJSONObject(PGoNetOptions.NETWORKING_FIELD).toString();
+			}
 			constants = new PGoConstantDefs(config, configFilePath);
 		}
 	}
@@ -0,0 +1,133 @@
+package pgo;
+
+import org.json.JSONArray;
+import org.json.JSONObject;
+
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Records wall time, CPU time and allocated bytes for each stage of a compilation, along with stage-specific
+ * counters, and produces a JSON report out of them.
+ *
+ * CPU time and allocation are measured for the current thread only, so stages must begin and end on the same thread.
+ * Measurements that the JVM does not support are reported as -1.
+ */
+public class PGoProfiler {
+	private static final ThreadMXBean threadMXBean = ManagementFactory.getThreadMXBean();
+
+	private final List<Stage> stages = new ArrayList<>();
+
+	public class Stage implements AutoCloseable {
+		private final String name;
+		private final long startWallTime;
+		private final long startCPUTime;
+		private final long startAllocatedBytes;
+		private final Map<String, Long> counters = new LinkedHashMap<>();
+		private long wallTime = -1;
+		private long cpuTime = -1;
+		private long allocatedBytes = -1;
+
+		private Stage(String name) {
+			this.name = name;
+			this.startAllocatedBytes = getCurrentThreadAllocatedBytes();
+			this.startCPUTime = getCurrentThreadCPUTime();
+			this.startWallTime = System.nanoTime();
+		}
+
+		public void count(String counter, long value) {
+			counters.merge(counter, value, Long::sum);
+		}
+
+		@Override
+		public void close() {
+			wallTime = System.nanoTime() - startWallTime;
+			long cpuTime = getCurrentThreadCPUTime();
+			if (cpuTime != -1 && startCPUTime != -1) {
+				this.cpuTime = cpuTime - startCPUTime;
+			}
+			long allocatedBytes = getCurrentThreadAllocatedBytes();
+			if (allocatedBytes != -1 && startAllocatedBytes != -1) {
+				this.allocatedBytes = allocatedBytes - startAllocatedBytes;
+			}
+			stages.add(this);
+		}
+
+		JSONObject toJSON() {
+			JSONObject result = new JSONObject();
+			result.put("name", name);
+			result.put("wallTimeNanos", wallTime);
+			result.put("cpuTimeNanos", cpuTime);
+			result.put("allocatedBytes", allocatedBytes);
+			JSONObject countersJSON = new JSONObject();
+			for (Map.Entry<String, Long> counter : counters.entrySet()) {
+				countersJSON.put(counter.getKey(), counter.getValue().longValue());
+			}
+			result.put("counters", countersJSON);
+			return result;
+		}
+	}
+
+	private static long getCurrentThreadCPUTime() {
+		if (!threadMXBean.isCurrentThreadCpuTimeSupported()) {
+			return -1;
+		}
+		return threadMXBean.getCurrentThreadCpuTime();
+	}
+
+	private static long getCurrentThreadAllocatedBytes() {
+		if (!(threadMXBean instanceof com.sun.management.ThreadMXBean)) {
+			return -1;
+		}
+		com.sun.management.ThreadMXBean bean = (com.sun.management.ThreadMXBean) threadMXBean;
+		if (!bean.isThreadAllocatedMemorySupported() || !bean.isThreadAllocatedMemoryEnabled()) {
+			return -1;
+		}
+		return bean.getThreadAllocatedBytes(Thread.currentThread().getId());
+	}
+
+	/**
+	 * Starts measuring a stage. The stage is recorded when the returned object is closed, so that stages which end by
+	 * throwing an exception are recorded as well. Stages with the same name are reported separately, in the order in
+	 * which they finished.
+	 */
+	public Stage stage(String name) {
+		return new Stage(name);
+	}
+
+	public JSONObject toJSON(String inputFilePath) {
+		JSONObject result = new JSONObject();
+		result.put("version", PGoOptions.VERSION);
+		result.put("spec", inputFilePath);
+		JSONArray stagesJSON = new JSONArray();
+		long totalWallTime = 0;
+		long totalCPUTime = 0;
+		long totalAllocatedBytes = 0;
+		for (Stage stage : stages) {
+			stagesJSON.put(stage.toJSON());
+			totalWallTime += stage.wallTime;
+			totalCPUTime = stage.cpuTime == -1 || totalCPUTime == -1 ? -1 : totalCPUTime + stage.cpuTime;
+			totalAllocatedBytes = stage.allocatedBytes == -1 || totalAllocatedBytes == -1
+					? -1 : totalAllocatedBytes + stage.allocatedBytes;
+		}
+		result.put("stages", stagesJSON);
+		JSONObject totals = new JSONObject();
+		totals.put("wallTimeNanos", totalWallTime);
+		totals.put("cpuTimeNanos", totalCPUTime);
+		totals.put("allocatedBytes", totalAllocatedBytes);
+		result.put("totals", totals);
+		return result;
+	}
+
+	public void writeReport(Path reportPath, String inputFilePath) throws IOException {
+		Files.write(reportPath, toJSON(inputFilePath).toString(2).getBytes(StandardCharsets.UTF_8));
+	}
+}
@@ -0,0 +1,119 @@
+package pgo;
+
+import pgo.errors.Issue;
+import pgo.model.type.TypeSchemeCache;
+import pgo.trans.intermediate.DefinitionRegistry;
+import pgo.trans.intermediate.TLABuiltins;
+import pgo.trans.passes.parse.tla.TLAParsingPass;
+
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.logging.Logger;
+
+/**
+ * A long-lived compilation server. Each line read from the input is treated as the command line arguments of a
+ * single compilation (e.g. {@code -c config.json spec.tla}), which is then run in this JVM as if pgo had been invoked
+ * with these arguments. After each request, a single line of the form {@code ok <millis>} or
+ * {@code error <millis>} is written to the output. The server stops at the end of the input or when it reads the
+ * line {@code quit}.
+ *
+ * Every request gets its own PGoMain, and hence its own TopLevelIssueContext and DefinitionRegistry, while the
+ * parser classes and builtin operator tables stay loaded across requests. Requests share a TypeSchemeCache, so that
+ * recompiling an edited spec only solves the type constraints of the parts that changed.
+ */
+public class PGoServer {
+	private static final Logger logger = Logger.getLogger("PGoServer");
+
+	private final BufferedReader in;
+	private final PrintStream out;
+	private final TypeSchemeCache typeSchemeCache = new TypeSchemeCache();
+
+	public PGoServer(InputStream in, PrintStream out) {
+		this.in = new BufferedReader(new InputStreamReader(in, StandardCharsets.UTF_8));
+		this.out = out;
+	}
+
+	private static void warmUp() {
+		// forces the builtin operator tables to be built
+		TLABuiltins.fillDefinitionRegistry(new DefinitionRegistry());
+		// forces the parser combinators to be loaded and JIT-friendly
+		try {
+			TLAParsingPass.perform(
+					Paths.get("warmup.tla"),
+					"---- MODULE warmup ----\nEXTENDS Integers, Sequences\nf(x) == x + 1 \\in {1, 2}\n====\n");
+		} catch (Issue e) {
+			logger.warning("Failed to warm up the TLA+ parser: " + e.getMessage());
+		}
+	}
+
+	static List<String> splitArguments(String line) {
+		List<String> args = new ArrayList<>();
+		StringBuilder current = null;
+		boolean quoted = false;
+		for (int i = 0; i < line.length(); i++) {
+			char c = line.charAt(i);
+			if (c == '"') {
+				quoted = !quoted;
+				if (current == null) {
+					current = new StringBuilder();
+				}
+			} else if (Character.isWhitespace(c) && !quoted) {
+				if (current != null) {
+					args.add(current.toString());
+					current = null;
+				}
+			} else {
+				if (current == null) {
+					current = new StringBuilder();
+				}
+				current.append(c);
+			}
+		}
+		if (current != null) {
+			args.add(current.toString());
+		}
+		return args;
+	}
+
+	private boolean handle(String[] args) {
+		try {
+			return new PGoMain(args, true, typeSchemeCache).run();
+		} catch (RuntimeException e) {
+			// a crashing compilation must not take the server down with it
+			logger.severe("internal error while compiling: " + e);
+			e.printStackTrace();
+			return false;
+		}
+	}
+
+	public boolean serve() throws IOException {
+		// anything the compiler prints must not be mistaken for a response
+		PrintStream originalOut = System.out;
+		System.setOut(System.err);
+		try {
+			warmUp();
+			logger.info("Compilation server ready");
+			String line;
+			while ((line = in.readLine()) != null) {
+				line = line.trim();
+				if (line.isEmpty()) {
+					continue;
+				}
+				if (line.equals("quit")) {
+					break;
+				}
+				long start = System.nanoTime();
+				boolean success = handle(splitArguments(line).toArray(new String[0]));
+				long elapsed = (System.nanoTime() - start) / 1000000;
+				out.println((success ? "ok " : "error ") + elapsed);
+				out.flush();
+			}
+		} finally {
+			System.setOut(originalOut);
+		}
+		return true;
+	}
+}
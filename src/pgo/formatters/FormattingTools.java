@@ -1,5 +1,7 @@
 package pgo.formatters;
 
+import pgo.model.golang.GoFunctionParameter;
+
 import java.io.IOException;
 import java.io.Writer;
 import java.util.List;
@@ -22,4 +24,22 @@ public class FormattingTools {
 		}
 	}
 
+	/**
+	 * Writes a Go function result list followed by a blank. A single unnamed result is written without parentheses,
+	 * as gofmt would.
+	 */
+	public static void writeResults(IndentingWriter out, List<GoFunctionParameter> results) throws IOException {
+		if (results.isEmpty()) {
+			return;
+		}
+		if (results.size() == 1 && results.get(0).getName() == null) {
+			results.get(0).getType().accept(new GoTypeFormattingVisitor(out));
+			out.write(" ");
+			return;
+		}
+		out.write("(");
+		writeCommaSeparated(out, results, result -> result.accept(new GoNodeFormattingVisitor(out)));
+		out.write(") ");
+	}
+
 }
@@ -12,6 +12,10 @@ public class GoBinopFormattingVisitor extends GoExpressionVisitor<Void, IOExcept
 
 	private final IndentingWriter out;
 	private final int precedence;
+	private final int depth;
+
+	static final int UNARY_PRECEDENCE = 6;
+	static final int HIGHEST_PRECEDENCE = 7;
 
 	private static final Map<GoBinop.Operation, Integer> operatorPrecedence = new HashMap<>();
 	static{
@@ -21,12 +25,12 @@ public class GoBinopFormattingVisitor extends GoExpressionVisitor<Void, IOExcept
 				GoBinop.Operation.MOD, GoBinop.Operation.LSHIFT,
 				GoBinop.Operation.RSHIFT, GoBinop.Operation.BAND,
 				GoBinop.Operation.BCLEAR)){
-			operatorPrecedence.put(op, 6);
+			operatorPrecedence.put(op, 5);
 		}
-		// -
-		operatorPrecedence.put(GoBinop.Operation.MINUS, 5);
-		// + |  ^
-		for(GoBinop.Operation op : Arrays.asList(GoBinop.Operation.PLUS, GoBinop.Operation.BOR, GoBinop.Operation.BXOR)){
+		// +  -  |  ^
+		for(GoBinop.Operation op : Arrays.asList(
+				GoBinop.Operation.PLUS, GoBinop.Operation.MINUS,
+				GoBinop.Operation.BOR, GoBinop.Operation.BXOR)){
 			operatorPrecedence.put(op, 4);
 		}
 		// ==  !=  <  <=  >  >=
@@ -42,98 +46,173 @@ public class GoBinopFormattingVisitor extends GoExpressionVisitor<Void, IOExcept
 	}
 
 	public GoBinopFormattingVisitor(IndentingWriter out, int precedence){
+		this(out, precedence, 1);
+	}
+
+	/**
+	 * @param out the writer to print to
+	 * @param precedence the minimum operator precedence that can be printed without parentheses
+	 * @param depth the nesting depth as tracked by go/printer, used to decide where blanks surround binary
+	 *              operators
+	 */
+	public GoBinopFormattingVisitor(IndentingWriter out, int precedence, int depth){
 		this.out = out;
 		this.precedence = precedence;
+		this.depth = depth;
+	}
+
+	private static int precedenceOf(GoBinop binop) {
+		return operatorPrecedence.get(binop.getOperation());
+	}
+
+	static int reduceDepth(int depth) {
+		return Math.max(depth - 1, 1);
+	}
+
+	private static int diffPrecedence(GoExpression expression, int precedence) {
+		if (expression instanceof GoBinop && precedenceOf((GoBinop) expression) == precedence) {
+			return 0;
+		}
+		return 1;
+	}
+
+	private static final class BinaryWalk {
+		boolean has4;
+		boolean has5;
+		int maxProblem;
+	}
+
+	// mirrors walkBinary in go/printer: operands that will be parenthesised are not descended into
+	private static void walkBinary(GoBinop binop, BinaryWalk walk) {
+		int prec = precedenceOf(binop);
+		walk.has4 |= prec == 4;
+		walk.has5 |= prec == 5;
+		GoExpression lhs = binop.getLHS();
+		if (lhs instanceof GoBinop && precedenceOf((GoBinop) lhs) >= prec) {
+			walkBinary((GoBinop) lhs, walk);
+		}
+		GoExpression rhs = binop.getRHS();
+		if (rhs instanceof GoBinop && precedenceOf((GoBinop) rhs) > prec) {
+			walkBinary((GoBinop) rhs, walk);
+		} else if (rhs instanceof GoUnary) {
+			GoBinop.Operation op = binop.getOperation();
+			GoUnary.Operation unaryOp = ((GoUnary) rhs).getOperation();
+			if ((op == GoBinop.Operation.DIVIDE && unaryOp == GoUnary.Operation.DEREF) ||
+					(op == GoBinop.Operation.BAND && unaryOp == GoUnary.Operation.ADDR) ||
+					(op == GoBinop.Operation.BAND && unaryOp == GoUnary.Operation.COMPLEMENT)) {
+				// "/*", "&&" and "&^" would lex differently without a blank
+				walk.maxProblem = 5;
+			} else if ((op == GoBinop.Operation.PLUS && unaryOp == GoUnary.Operation.POS) ||
+					(op == GoBinop.Operation.MINUS && unaryOp == GoUnary.Operation.NEG)) {
+				walk.maxProblem = Math.max(walk.maxProblem, 4);
+			}
+		}
+	}
+
+	private static int cutoff(GoBinop binop, int depth) {
+		BinaryWalk walk = new BinaryWalk();
+		walkBinary(binop, walk);
+		if (walk.maxProblem > 0) {
+			return walk.maxProblem + 1;
+		}
+		if (walk.has4 && walk.has5) {
+			return depth == 1 ? 5 : 4;
+		}
+		return depth == 1 ? 6 : 4;
 	}
 
 	@Override
 	public Void visit(GoVariableName v) throws IOException {
-		v.accept(new GoExpressionFormattingVisitor(out));
+		v.accept(new GoExpressionFormattingVisitor(out, depth));
 		return null;
 	}
 
 	@Override
 	public Void visit(GoBuiltins.BuiltinConstant v) throws IOException {
-		v.accept(new GoExpressionFormattingVisitor(out));
+		v.accept(new GoExpressionFormattingVisitor(out, depth));
 		return null;
 	}
 
 	@Override
 	public Void visit(GoIntLiteral intLiteral) throws IOException {
-		intLiteral.accept(new GoExpressionFormattingVisitor(out));
+		intLiteral.accept(new GoExpressionFormattingVisitor(out, depth));
 		return null;
 	}
 
 	@Override
 	public Void visit(GoMapLiteral mapConstructor) throws IOException {
-		mapConstructor.accept(new GoExpressionFormattingVisitor(out));
+		mapConstructor.accept(new GoExpressionFormattingVisitor(out, depth));
 		return null;
 	}
 
 	@Override
 	public Void visit(GoStringLiteral stringLiteral) throws IOException {
-		stringLiteral.accept(new GoExpressionFormattingVisitor(out));
+		stringLiteral.accept(new GoExpressionFormattingVisitor(out, depth));
 		return null;
 	}
 
 	@Override
 	public Void visit(GoIndexExpression index) throws IOException {
-		index.accept(new GoExpressionFormattingVisitor(out));
+		index.accept(new GoExpressionFormattingVisitor(out, depth));
 		return null;
 	}
 
 	@Override
 	public Void visit(GoSliceOperator slice) throws IOException {
-		slice.accept(new GoExpressionFormattingVisitor(out));
+		slice.accept(new GoExpressionFormattingVisitor(out, depth));
 		return null;
 	}
 
 	@Override
 	public Void visit(GoSliceLiteral sliceConstructor) throws IOException {
-		sliceConstructor.accept(new GoExpressionFormattingVisitor(out));
+		sliceConstructor.accept(new GoExpressionFormattingVisitor(out, depth));
 		return null;
 	}
 
 	@Override
 	public Void visit(GoTypeAssertion typeAssertion) throws IOException {
-		typeAssertion.accept(new GoExpressionFormattingVisitor(out));
+		typeAssertion.accept(new GoExpressionFormattingVisitor(out, depth));
 		return null;
 	}
 
 	@Override
 	public Void visit(GoAnonymousFunction anonymousFunction) throws IOException {
-		anonymousFunction.accept(new GoExpressionFormattingVisitor(out));
+		anonymousFunction.accept(new GoExpressionFormattingVisitor(out, depth));
 		return null;
 	}
 
 	@Override
 	public Void visit(GoCall call) throws IOException {
-		call.accept(new GoExpressionFormattingVisitor(out));
+		call.accept(new GoExpressionFormattingVisitor(out, depth));
 		return null;
 	}
 
 	@Override
 	public Void visit(GoTypeCast typeCast) throws IOException {
-		typeCast.accept(new GoExpressionFormattingVisitor(out));
+		typeCast.accept(new GoExpressionFormattingVisitor(out, depth));
 		return null;
 	}
 
 	@Override
 	public Void visit(GoStructLiteral structLiteral) throws IOException {
-		structLiteral.accept(new GoExpressionFormattingVisitor(out));
+		structLiteral.accept(new GoExpressionFormattingVisitor(out, depth));
 		return null;
 	}
 
 	@Override
 	public Void visit(GoBinop binop) throws IOException {
-		int newPrecedence = operatorPrecedence.get(binop.getOperation());
-		int nextPrecedence = newPrecedence;
-		if(newPrecedence < precedence){
-			nextPrecedence = 0;
+		int prec = precedenceOf(binop);
+		if(prec < precedence){
 			out.write("(");
+			binop.accept(new GoBinopFormattingVisitor(out, 0, reduceDepth(depth)));
+			out.write(")");
+			return null;
+		}
+		boolean printBlank = prec < cutoff(binop, depth);
+		binop.getLHS().accept(new GoBinopFormattingVisitor(out, prec, depth + diffPrecedence(binop.getLHS(), prec)));
+		if(printBlank){
+			out.write(" ");
 		}
-		binop.getLHS().accept(new GoBinopFormattingVisitor(out, nextPrecedence));
-		out.write(" ");
 		switch(binop.getOperation()) {
 			case AND:
 				out.write("&&");
@@ -195,16 +274,21 @@ public class GoBinopFormattingVisitor extends GoExpressionVisitor<Void, IOExcept
 			default:
 				throw new Unreachable();
 		}
-		out.write(" ");
-		binop.getRHS().accept(new GoBinopFormattingVisitor(out, nextPrecedence));
-		if(newPrecedence < precedence){
-			out.write(")");
+		if(printBlank){
+			out.write(" ");
 		}
+		binop.getRHS().accept(new GoBinopFormattingVisitor(out, prec + 1, depth + 1));
 		return null;
 	}
 
 	@Override
 	public Void visit(GoUnary unary) throws IOException {
+		if(UNARY_PRECEDENCE < precedence){
+			out.write("(");
+			unary.accept(new GoBinopFormattingVisitor(out, 0, reduceDepth(depth)));
+			out.write(")");
+			return null;
+		}
 		switch (unary.getOperation()) {
 			case POS:
 				out.write("+");
@@ -230,19 +314,21 @@ public class GoBinopFormattingVisitor extends GoExpressionVisitor<Void, IOExcept
 			default:
 				throw new Unreachable();
 		}
-		unary.getTarget().accept(new GoBinopFormattingVisitor(out, 6)); // max precedence + 1
+		// go/printer formats the operand of a dereference as a fresh expression
+		int targetDepth = unary.getOperation() == GoUnary.Operation.DEREF ? 1 : depth;
+		unary.getTarget().accept(new GoBinopFormattingVisitor(out, UNARY_PRECEDENCE, targetDepth));
 		return null;
 	}
 
 	@Override
 	public Void visit(GoSelectorExpression dot) throws IOException {
-		dot.accept(new GoExpressionFormattingVisitor(out));
+		dot.accept(new GoExpressionFormattingVisitor(out, depth));
 		return null;
 	}
 
 	@Override
 	public Void visit(GoMakeExpression make) throws IOException {
-		make.accept(new GoExpressionFormattingVisitor(out));
+		make.accept(new GoExpressionFormattingVisitor(out, depth));
 		return null;
 	}
 }
@@ -30,13 +30,7 @@ public class GoDeclarationFormattingVisitor extends GoDeclarationVisitor<Void, I
 			arg.accept(new GoNodeFormattingVisitor(out));
 		});
 		out.write(") ");
-		if(!functionDeclaration.getReturnTypes().isEmpty()) {
-			out.write("(");
-			FormattingTools.writeCommaSeparated(out, functionDeclaration.getReturnTypes(), ret -> {
-				ret.accept(new GoNodeFormattingVisitor(out));
-			});
-			out.write(") ");
-		}
+		FormattingTools.writeResults(out, functionDeclaration.getReturnTypes());
 		functionDeclaration.getBody().accept(new GoStatementFormattingVisitor(out));
 		return null;
 	}
@@ -5,14 +5,33 @@ import pgo.model.golang.GoBuiltins.BuiltinConstant;
 import pgo.model.golang.type.GoMapType;
 
 import java.io.IOException;
+import java.io.StringWriter;
+import java.util.ArrayList;
+import java.util.List;
 import java.util.Map;
 
 public class GoExpressionFormattingVisitor extends GoExpressionVisitor<Void, IOException> {
 
 	private final IndentingWriter out;
+	private final int depth;
 
 	public GoExpressionFormattingVisitor(IndentingWriter out) {
+		this(out, 1);
+	}
+
+	/**
+	 * @param out the writer to print to
+	 * @param depth the nesting depth as tracked by go/printer; deeper binary expressions are printed more compactly
+	 */
+	public GoExpressionFormattingVisitor(IndentingWriter out, int depth) {
 		this.out = out;
+		this.depth = depth;
+	}
+
+	private static String formatSingleLine(GoExpression expression) throws IOException {
+		StringWriter w = new StringWriter();
+		expression.accept(new GoExpressionFormattingVisitor(IndentingWriter.forGo(w)));
+		return w.toString();
 	}
 
 	@Override
@@ -38,13 +57,62 @@ public class GoExpressionFormattingVisitor extends GoExpressionVisitor<Void, IOE
 		(new GoMapType(mapConstructor.getKeyType(), mapConstructor.getValueType()))
 				.accept(new GoTypeFormattingVisitor(out));
 		out.write("{");
+		if (mapConstructor.getPairs().isEmpty()) {
+			out.write("}");
+			return null;
+		}
+		// one element per line; consecutive single-line elements have their values aligned the same way
+		// go/printer's exprList does it, breaking alignment sections when key sizes vary too much
+		List<Map.Entry<GoExpression, GoExpression>> entries = new ArrayList<>(mapConstructor.getPairs().entrySet());
+		int n = entries.size();
+		String[] keys = new String[n];
+		int[] sizes = new int[n];
+		boolean[] sectionStart = new boolean[n];
+		double lnSum = 0;
+		int count = 0;
+		for (int i = 0; i < n; ++i) {
+			keys[i] = formatSingleLine(entries.get(i).getKey());
+			String value = formatSingleLine(entries.get(i).getValue());
+			boolean singleLine = keys[i].indexOf('\n') == -1 && value.indexOf('\n') == -1;
+			sizes[i] = singleLine ? keys[i].length() : 0;
+			boolean useFormFeed = true;
+			if (i > 0 && sizes[i - 1] > 0 && sizes[i] > 0) {
+				if (count == 0 || sizes[i - 1] <= 40 && sizes[i] <= 40) {
+					useFormFeed = false;
+				} else {
+					double ratio = sizes[i] / Math.exp(lnSum / count);
+					useFormFeed = 2.5 * ratio <= 1 || 2.5 <= ratio;
+				}
+			}
+			sectionStart[i] = useFormFeed;
+			if (sizes[i] > 0) {
+				lnSum += Math.log(sizes[i]);
+				++count;
+			}
+		}
 		out.newLine();
-		for (Map.Entry<GoExpression, GoExpression> entry : mapConstructor.getPairs().entrySet()) {
-			entry.getKey().accept(this);
-			out.write(": ");
-			entry.getValue().accept(this);
-			out.write(",");
-			out.newLine();
+		try (IndentingWriter.Indent ignored = out.indent()) {
+			int width = 0;
+			for (int i = 0; i < n; ++i) {
+				if (sectionStart[i]) {
+					width = 0;
+					for (int j = i; j < n && (j == i || !sectionStart[j]); ++j) {
+						if (sizes[j] > 0) {
+							width = Math.max(width, keys[j].length() + 2);
+						}
+					}
+				}
+				Map.Entry<GoExpression, GoExpression> entry = entries.get(i);
+				entry.getKey().accept(new GoExpressionFormattingVisitor(out));
+				out.write(":");
+				int padding = n > 1 && sizes[i] > 0 ? width - keys[i].length() - 1 : 1;
+				for (int j = 0; j < padding; ++j) {
+					out.write(" ");
+				}
+				entry.getValue().accept(new GoExpressionFormattingVisitor(out));
+				out.write(",");
+				out.newLine();
+			}
 		}
 		out.write("}");
 		return null;
@@ -60,27 +128,49 @@ public class GoExpressionFormattingVisitor extends GoExpressionVisitor<Void, IOE
 
 	@Override
 	public Void visit(GoIndexExpression index) throws IOException {
-		index.getTarget().accept(new GoBinopFormattingVisitor(out, 6));
+		index.getTarget().accept(new GoBinopFormattingVisitor(out, GoBinopFormattingVisitor.HIGHEST_PRECEDENCE, 1));
 		out.write("[");
-		index.getIndex().accept(this);
+		index.getIndex().accept(new GoExpressionFormattingVisitor(out, depth + 1));
 		out.write("]");
 		return null;
 	}
 
 	@Override
 	public Void visit(GoSliceOperator slice) throws IOException {
-		slice.getTarget().accept(new GoBinopFormattingVisitor(out, 6));
+		slice.getTarget().accept(new GoBinopFormattingVisitor(out, GoBinopFormattingVisitor.HIGHEST_PRECEDENCE, 1));
 		out.write("[");
-		if (slice.getLow() != null) {
-			slice.getLow().accept(this);
+		List<GoExpression> indices = new ArrayList<>();
+		indices.add(slice.getLow());
+		indices.add(slice.getHigh());
+		if (slice.getMax() != null) {
+			indices.add(slice.getMax());
 		}
-		out.write(":");
-		if (slice.getHigh() != null) {
-			slice.getHigh().accept(this);
+		boolean needsBlanks = false;
+		if (depth <= 1) {
+			int indexCount = 0;
+			boolean hasBinaries = false;
+			for (GoExpression e : indices) {
+				if (e != null) {
+					++indexCount;
+					hasBinaries |= e instanceof GoBinop;
+				}
+			}
+			needsBlanks = indexCount > 1 && hasBinaries;
 		}
-		if (slice.getMax() != null) {
-			out.write(":");
-			slice.getMax().accept(this);
+		for (int i = 0; i < indices.size(); ++i) {
+			GoExpression e = indices.get(i);
+			if (i > 0) {
+				if (indices.get(i - 1) != null && needsBlanks) {
+					out.write(" ");
+				}
+				out.write(":");
+				if (e != null && needsBlanks) {
+					out.write(" ");
+				}
+			}
+			if (e != null) {
+				e.accept(new GoExpressionFormattingVisitor(out, depth + 1));
+			}
 		}
 		out.write("]");
 		return null;
@@ -92,7 +182,7 @@ public class GoExpressionFormattingVisitor extends GoExpressionVisitor<Void, IOE
 		sliceConstructor.getElementType().accept(new GoTypeFormattingVisitor(out));
 		out.write("{");
 		FormattingTools.writeCommaSeparated(out, sliceConstructor.getInitializers(), expr -> {
-			expr.accept(this);
+			expr.accept(new GoExpressionFormattingVisitor(out));
 		});
 		out.write("}");
 		return null;
@@ -100,7 +190,8 @@ public class GoExpressionFormattingVisitor extends GoExpressionVisitor<Void, IOE
 
 	@Override
 	public Void visit(GoTypeAssertion typeAssertion) throws IOException {
-		typeAssertion.getTarget().accept(this);
+		typeAssertion.getTarget().accept(
+				new GoBinopFormattingVisitor(out, GoBinopFormattingVisitor.HIGHEST_PRECEDENCE, depth));
 		out.write(".(");
 		typeAssertion.getType().accept(new GoTypeFormattingVisitor(out));
 		out.write(")");
@@ -109,32 +200,25 @@ public class GoExpressionFormattingVisitor extends GoExpressionVisitor<Void, IOE
 
 	@Override
 	public Void visit(GoAnonymousFunction anonymousFunction) throws IOException {
-		out.write("func (");
+		out.write("func(");
 		FormattingTools.writeCommaSeparated(out, anonymousFunction.getParams(), arg -> {
 			arg.accept(new GoNodeFormattingVisitor(out));
 		});
 		out.write(") ");
-		if(!anonymousFunction.getReturnTypes().isEmpty()) {
-			out.write("(");
-			FormattingTools.writeCommaSeparated(out, anonymousFunction.getReturnTypes(), ret -> {
-				if(ret.getName() != null) {
-					out.write(ret.getName());
-					out.write(" ");
-				}
-				ret.getType().accept(new GoTypeFormattingVisitor(out));
-			});
-			out.write(") ");
-		}
-
+		FormattingTools.writeResults(out, anonymousFunction.getReturnTypes());
 		anonymousFunction.getBody().accept(new GoStatementFormattingVisitor(out));
 		return null;
 	}
 
 	@Override
 	public Void visit(GoCall call) throws IOException {
-		call.getTarget().accept(new GoBinopFormattingVisitor(out, 6));
+		int argumentDepth = call.getArguments().size() > 1 ? depth + 1 : depth;
+		call.getTarget().accept(
+				new GoBinopFormattingVisitor(out, GoBinopFormattingVisitor.HIGHEST_PRECEDENCE, argumentDepth));
 		out.write("(");
-		FormattingTools.writeCommaSeparated(out, call.getArguments(), arg -> arg.accept(this));
+		FormattingTools.writeCommaSeparated(out, call.getArguments(), arg -> {
+			arg.accept(new GoExpressionFormattingVisitor(out, argumentDepth));
+		});
 		if (call.hasEllipsis()) {
 			out.write("...");
 		}
@@ -144,7 +228,7 @@ public class GoExpressionFormattingVisitor extends GoExpressionVisitor<Void, IOE
 
 	@Override
 	public Void visit(GoTypeCast typeCast) throws IOException {
-		typeCast.getTarget().accept(this);
+		typeCast.getTarget().accept(new GoBinopFormattingVisitor(out, GoBinopFormattingVisitor.HIGHEST_PRECEDENCE, depth));
 		out.write(".(");
 		out.write(typeCast.getTypeName().getName());
 		out.write(")");
@@ -161,7 +245,7 @@ public class GoExpressionFormattingVisitor extends GoExpressionVisitor<Void, IOE
 				out.write(field.getName());
 				out.write(": ");
 			}
-			field.getValue().accept(this);
+			field.getValue().accept(new GoExpressionFormattingVisitor(out));
 		});
 		out.write("}");
 		return null;
@@ -169,19 +253,19 @@ public class GoExpressionFormattingVisitor extends GoExpressionVisitor<Void, IOE
 
 	@Override
 	public Void visit(GoBinop binop) throws IOException {
-		binop.accept(new GoBinopFormattingVisitor(out, 0));
+		binop.accept(new GoBinopFormattingVisitor(out, 0, depth));
 		return null;
 	}
 
 	@Override
 	public Void visit(GoUnary unary) throws IOException {
-		unary.accept(new GoBinopFormattingVisitor(out, 0));
+		unary.accept(new GoBinopFormattingVisitor(out, 0, depth));
 		return null;
 	}
 
 	@Override
 	public Void visit(GoSelectorExpression dot) throws IOException {
-		dot.getLHS().accept(new GoBinopFormattingVisitor(out, 6));
+		dot.getLHS().accept(new GoBinopFormattingVisitor(out, GoBinopFormattingVisitor.HIGHEST_PRECEDENCE, depth));
 		out.write(".");
 		out.write(dot.getName());
 		return null;
@@ -189,15 +273,16 @@ public class GoExpressionFormattingVisitor extends GoExpressionVisitor<Void, IOE
 
 	@Override
 	public Void visit(GoMakeExpression make) throws IOException {
+		int argumentDepth = make.getSize() != null ? depth + 1 : depth;
 		out.write("make(");
 		make.getType().accept(new GoTypeFormattingVisitor(out));
 		if(make.getSize() != null) {
 			out.write(", ");
-			make.getSize().accept(this);
+			make.getSize().accept(new GoExpressionFormattingVisitor(out, argumentDepth));
 		}
 		if(make.getCapacity() != null) {
 			out.write(", ");
-			make.getCapacity().accept(this);
+			make.getCapacity().accept(new GoExpressionFormattingVisitor(out, argumentDepth));
 		}
 		out.write(")");
 		return null;
@@ -7,6 +7,9 @@ import pgo.model.golang.type.GoStructTypeField;
 import pgo.model.golang.type.GoType;
 
 import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
 
 public class GoNodeFormattingVisitor extends GoNodeVisitor<Void, IOException> {
 
@@ -21,30 +24,46 @@ public class GoNodeFormattingVisitor extends GoNodeVisitor<Void, IOException> {
 		out.write("package ");
 		module.getPackage().accept(new GoExpressionFormattingVisitor(out));
 		out.newLine();
-		out.newLine();
 		if(!module.getImports().isEmpty()) {
+			// standard library imports come first, followed by a separate group for everything else
+			List<String> standardImports = new ArrayList<>();
+			List<String> otherImports = new ArrayList<>();
+			for(String imp : module.getImports()) {
+				String firstElement = imp.split("/", 2)[0];
+				(firstElement.contains(".") ? otherImports : standardImports).add(imp);
+			}
+			Collections.sort(standardImports);
+			Collections.sort(otherImports);
+			out.newLine();
 			out.write("import (");
 			out.newLine();
 			try(IndentingWriter.Indent i_ = out.indent()){
-				for(String imp : module.getImports()) {
-					out.write("\"");
-					out.write(imp); // TODO: escaping
-					out.write("\"");
+				writeImports(standardImports);
+				if(!standardImports.isEmpty() && !otherImports.isEmpty()) {
 					out.newLine();
 				}
+				writeImports(otherImports);
 			}
 			out.write(")");
 			out.newLine();
 		}
-		out.newLine();
 		for(GoDeclaration decl : module.getDeclarations()) {
-			decl.accept(this);
 			out.newLine();
+			decl.accept(this);
 			out.newLine();
 		}
 		return null;
 	}
 
+	private void writeImports(List<String> imports) throws IOException {
+		for(String imp : imports) {
+			out.write("\"");
+			out.write(imp); // TODO: escaping
+			out.write("\"");
+			out.newLine();
+		}
+	}
+
 	@Override
 	public Void visit(GoStatement statement) throws IOException {
 		statement.accept(new GoStatementFormattingVisitor(out));
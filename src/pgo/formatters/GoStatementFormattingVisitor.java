@@ -25,8 +25,9 @@ public class GoStatementFormattingVisitor extends GoStatementVisitor<Void, IOExc
 
 	@Override
 	public Void visit(GoAssignmentStatement assignment) throws IOException {
+		int depth = assignment.getNames().size() > 1 && assignment.getValues().size() > 1 ? 2 : 1;
 		FormattingTools.writeCommaSeparated(out, assignment.getNames(), name -> {
-			name.accept(new GoExpressionFormattingVisitor(out));
+			name.accept(new GoExpressionFormattingVisitor(out, depth));
 		});
 		if (assignment.isDefinition()) {
 			out.write(" := ");
@@ -34,7 +35,7 @@ public class GoStatementFormattingVisitor extends GoStatementVisitor<Void, IOExc
 			out.write(" = ");
 		}
 		FormattingTools.writeCommaSeparated(out, assignment.getValues(), val -> {
-			val.accept(new GoExpressionFormattingVisitor(out));
+			val.accept(new GoExpressionFormattingVisitor(out, depth));
 		});
 		return null;
 	}
@@ -68,18 +69,22 @@ public class GoStatementFormattingVisitor extends GoStatementVisitor<Void, IOExc
 	@Override
 	public Void visit(GoFor goFor) throws IOException {
 		out.write("for ");
-		if (goFor.getInit() != null) {
-			goFor.getInit().accept(this);
+		if (goFor.getInit() != null || goFor.getIncrement() != null) {
+			if (goFor.getInit() != null) {
+				goFor.getInit().accept(this);
+			}
 			out.write("; ");
-		}
-		if (goFor.getCondition() != null) {
+			if (goFor.getCondition() != null) {
+				goFor.getCondition().accept(new GoExpressionFormattingVisitor(out));
+			}
+			out.write(";");
+			if (goFor.getIncrement() != null) {
+				out.write(" ");
+				goFor.getIncrement().accept(this);
+			}
+			out.write(" ");
+		} else if (goFor.getCondition() != null) {
 			goFor.getCondition().accept(new GoExpressionFormattingVisitor(out));
-		}
-		if (goFor.getIncrement() != null) {
-			out.write("; ");
-			goFor.getIncrement().accept(this);
-		}
-		if (goFor.getCondition() != null) {
 			out.write(" ");
 		}
 		goFor.getBody().accept(this);
@@ -99,6 +104,7 @@ public class GoStatementFormattingVisitor extends GoStatementVisitor<Void, IOExc
 			out.write(" = range ");
 		}
 		forRange.getRangeExpr().accept(new GoExpressionFormattingVisitor(out));
+		out.write(" ");
 		forRange.getBody().accept(this);
 		return null;
 	}
@@ -132,8 +138,9 @@ public class GoStatementFormattingVisitor extends GoStatementVisitor<Void, IOExc
 		out.write("switch ");
 		if (goSwitch.getCondition() != null) {
 			goSwitch.getCondition().accept(new GoExpressionFormattingVisitor(out));
+			out.write(" ");
 		}
-		out.write(" {");
+		out.write("{");
 		out.newLine();
 		for (GoSwitchCase switchCase : goSwitch.getCases()) {
 			out.write("case ");
@@ -144,26 +151,33 @@ public class GoStatementFormattingVisitor extends GoStatementVisitor<Void, IOExc
 			}
 			out.write(":");
 			out.newLine();
-			for (GoStatement statement : switchCase.getBlock()) {
-				statement.accept(this);
-				out.newLine();
-			}
+			writeCaseBody(switchCase.getBlock());
 		}
 		if (goSwitch.getDefaultBlock() != null) {
 			out.write("default:");
-			for (GoStatement statement : goSwitch.getDefaultBlock()) {
+			out.newLine();
+			writeCaseBody(goSwitch.getDefaultBlock());
+		}
+		out.write("}");
+		return null;
+	}
+
+	private void writeCaseBody(List<GoStatement> statements) throws IOException {
+		try (IndentingWriter.Indent ignored = out.indent()) {
+			for (GoStatement statement : statements) {
 				statement.accept(this);
 				out.newLine();
 			}
 		}
-		out.write("}");
-		return null;
 	}
 
 	@Override
 	public Void visit(GoLabel label) throws IOException {
-		out.write(label.getName());
-		out.write(":");
+		// gofmt outdents labels by one level
+		try (IndentingWriter.Indent ignored = out.indent(-out.defaultIndent)) {
+			out.write(label.getName());
+			out.write(":");
+		}
 		return null;
 	}
 
@@ -181,7 +195,7 @@ public class GoStatementFormattingVisitor extends GoStatementVisitor<Void, IOExc
 
 	@Override
 	public Void visit(GoIncDec incDec) throws IOException {
-		incDec.getExpression().accept(new GoExpressionFormattingVisitor(out));
+		incDec.getExpression().accept(new GoExpressionFormattingVisitor(out, 2));
 		if (incDec.isInc()) {
 			out.write("++");
 		} else {
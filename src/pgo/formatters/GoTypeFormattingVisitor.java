@@ -5,8 +5,9 @@ import pgo.model.golang.GoPtrType;
 import pgo.model.golang.type.*;
 
 import java.io.IOException;
+import java.io.StringWriter;
 import java.util.ArrayList;
-import java.util.Map;
+import java.util.List;
 
 public class GoTypeFormattingVisitor extends GoTypeVisitor<Void, IOException> {
 
@@ -48,17 +49,61 @@ public class GoTypeFormattingVisitor extends GoTypeVisitor<Void, IOException> {
 
 	@Override
 	public Void visit(GoStructType structType) throws IOException {
-		out.write("struct{");
-		for(GoStructTypeField field : structType.getFields()){
-			out.write(field.getName());
-			out.write(" ");
-			field.getType().accept(this);
-			out.write("; ");
+		List<GoStructTypeField> fields = structType.getFields();
+		if(fields.isEmpty()){
+			out.write("struct{}");
+			return null;
+		}
+		if(fields.size() == 1){
+			// gofmt keeps a lone field on one line when it is short enough
+			String type = formatSingleLine(fields.get(0).getType());
+			if(type.indexOf('\n') == -1 && 1 + type.length() <= 30){
+				out.write("struct{ ");
+				out.write(fields.get(0).getName());
+				out.write(" ");
+				out.write(type);
+				out.write(" }");
+				return null;
+			}
+		}
+		// field names are aligned in sections, and a field whose type spans several lines ends its section
+		List<Boolean> multiLine = new ArrayList<>();
+		for(GoStructTypeField field : fields){
+			multiLine.add(formatSingleLine(field.getType()).indexOf('\n') != -1);
+		}
+		out.write("struct {");
+		out.newLine();
+		try(IndentingWriter.Indent ignored = out.indent()){
+			int width = 0;
+			for(int i = 0; i < fields.size(); ++i){
+				if(i == 0 || multiLine.get(i - 1)){
+					width = 0;
+					for(int j = i; j < fields.size(); ++j){
+						width = Math.max(width, fields.get(j).getName().length() + 1);
+						if(multiLine.get(j)){
+							break;
+						}
+					}
+				}
+				String name = fields.get(i).getName();
+				out.write(name);
+				for(int j = name.length(); j < width; ++j){
+					out.write(" ");
+				}
+				fields.get(i).getType().accept(this);
+				out.newLine();
+			}
 		}
 		out.write("}");
 		return null;
 	}
 
+	private static String formatSingleLine(GoType type) throws IOException {
+		StringWriter w = new StringWriter();
+		type.accept(new GoTypeFormattingVisitor(IndentingWriter.forGo(w)));
+		return w.toString();
+	}
+
 	@Override
 	public Void visit(GoPtrType ptrType) throws IOException {
 		out.write("*");
@@ -10,6 +10,9 @@ public class IndentingWriter extends Writer {
 	boolean shouldIndent = false;
 	int defaultIndent = 4;
 	int horizontalPosition = 0;
+	String indentUnit = " ";
+	String lineSeparator = System.lineSeparator();
+	boolean indentBlankLines = true;
 	
 	public static class Indent implements AutoCloseable {
 		
@@ -75,6 +78,21 @@ public class IndentingWriter extends Writer {
 		this.defaultIndent = defaultIndent;
 	}
 
+	/**
+	 * Creates a writer following gofmt's layout conventions: one tab per indentation level, '\n' line endings
+	 * and no trailing whitespace on blank lines.
+	 *
+	 * @param out the underlying writer
+	 * @return an IndentingWriter suitable for Go source code
+	 */
+	public static IndentingWriter forGo(Writer out) {
+		IndentingWriter writer = new IndentingWriter(out, 1);
+		writer.indentUnit = "\t";
+		writer.lineSeparator = "\n";
+		writer.indentBlankLines = false;
+		return writer;
+	}
+
 	@Override
 	public void close() throws IOException {
 		out.close();
@@ -86,18 +104,18 @@ public class IndentingWriter extends Writer {
 	}
 	
 	public void newLine() throws IOException {
-		write(System.lineSeparator());
+		write(lineSeparator);
 	}
 
 	@Override
 	public void write(char[] chars, int offset, int len) throws IOException {
-		String lf = System.lineSeparator();
+		String lf = lineSeparator;
 		String data = String.valueOf(chars, offset, len);
 		int start = 0;
 		while(true) {
-			if(shouldIndent) {
+			if(shouldIndent && (indentBlankLines || !data.startsWith(lf, start))) {
 				for(int i = 0; i < indent; ++i) {
-					out.write(" ");
+					out.write(indentUnit);
 				}
 				shouldIndent = false;
 				horizontalPosition = 0;
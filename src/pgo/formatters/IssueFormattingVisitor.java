@@ -17,6 +17,8 @@ import pgo.trans.passes.parse.ParsingIssue;
 import pgo.trans.passes.type.TypeInferenceFailureIssue;
 import pgo.trans.passes.validation.*;
 import pgo.util.Origin;
+import pgo.util.SourceLocation;
+import pgo.util.SourceTextRegistry;
 
 import java.io.IOException;
 import java.util.ArrayList;
@@ -24,9 +26,29 @@ import java.util.List;
 
 public class IssueFormattingVisitor extends IssueVisitor<Void, IOException> {
 	private final IndentingWriter out;
+	private final SourceTextRegistry sourceTexts;
 
 	public IssueFormattingVisitor(IndentingWriter out) {
+		this(out, SourceTextRegistry.current());
+	}
+
+	public IssueFormattingVisitor(IndentingWriter out, SourceTextRegistry sourceTexts) {
 		this.out = out;
+		this.sourceTexts = sourceTexts;
+	}
+
+	private void writeLineColumn(SourceLocation location) throws IOException {
+		out.write("line ");
+		out.write(Integer.toString(location.getStartLine()));
+		out.write(" column ");
+		out.write(Integer.toString(location.getStartColumn()));
+	}
+
+	private void writeSnippet(SourceLocation location) throws IOException {
+		if (!location.isUnknown()) {
+			out.newLine();
+			location.writePretty(out, sourceTexts);
+		}
 	}
 
 	@Override
@@ -101,10 +123,9 @@ public class IssueFormattingVisitor extends IssueVisitor<Void, IOException> {
 	@Override
 	public Void visit(UnresolvableMacroCallIssue unresolvableMacroCallIssue) throws IOException {
 		out.write("could not find macro [" + unresolvableMacroCallIssue.getMacroCall().getTarget() +
-						"] referenced by macro call at line ");
-		out.write(unresolvableMacroCallIssue.getMacroCall().getLocation().getStartLine());
-		out.write(" column ");
-		out.write(unresolvableMacroCallIssue.getMacroCall().getLocation().getStartColumn());
+						"] referenced by macro call at ");
+		writeLineColumn(unresolvableMacroCallIssue.getMacroCall().getLocation());
+		writeSnippet(unresolvableMacroCallIssue.getMacroCall().getLocation());
 		return null;
 	}
 
@@ -113,23 +134,19 @@ public class IssueFormattingVisitor extends IssueVisitor<Void, IOException> {
 		out.write("macro argument mismatch while calling macro ");
 		PlusCalMacro macro = macroArgumentCountMismatchIssue.getMacro();
 		out.write(macro.getName());
-		out.write(" defined at line ");
-		out.write(macro.getLocation().getStartLine());
-		out.write(" column ");
-		out.write(macro.getLocation().getStartColumn());
-		out.write("from line ");
-		out.write(macroArgumentCountMismatchIssue.getMacroCall().getLocation().getStartLine());
-		out.write(" column ");
-		out.write(macroArgumentCountMismatchIssue.getMacroCall().getLocation().getStartColumn());
+		out.write(" defined at ");
+		writeLineColumn(macro.getLocation());
+		out.write(" from ");
+		writeLineColumn(macroArgumentCountMismatchIssue.getMacroCall().getLocation());
+		writeSnippet(macroArgumentCountMismatchIssue.getMacroCall().getLocation());
 		return null;
 	}
 
 	@Override
 	public Void visit(RecursiveMacroCallIssue recursiveMacroCallIssue) throws IOException {
-		out.write("encountered recursive macro call at line ");
-		out.write(recursiveMacroCallIssue.getMacroCall().getLocation().getStartLine());
-		out.write(" column ");
-		out.write(recursiveMacroCallIssue.getMacroCall().getLocation().getStartColumn());
+		out.write("encountered recursive macro call at ");
+		writeLineColumn(recursiveMacroCallIssue.getMacroCall().getLocation());
+		writeSnippet(recursiveMacroCallIssue.getMacroCall().getLocation());
 		return null;
 	}
 
@@ -145,25 +162,21 @@ public class IssueFormattingVisitor extends IssueVisitor<Void, IOException> {
 
 	@Override
 	public Void visit(MacroArgumentInnerScopeConflictIssue macroArgumentInnerScopeConflictIssue) throws IOException {
-		out.write("locally bound identifier at line ");
-		out.write(Integer.toString(macroArgumentInnerScopeConflictIssue.getIdentifier().getLocation().getStartLine()));
-		out.write(" column ");
-		out.write(Integer.toString(macroArgumentInnerScopeConflictIssue.getIdentifier().getLocation().getStartColumn()));
+		out.write("locally bound identifier at ");
+		writeLineColumn(macroArgumentInnerScopeConflictIssue.getIdentifier().getLocation());
 		out.write(" conflicts with PlusCal macro parameter; this will likely not work with the TLC");
+		writeSnippet(macroArgumentInnerScopeConflictIssue.getIdentifier().getLocation());
 		return null;
 	}
 
 	@Override
 	public Void visit(MacroNameConflictIssue macroNameConflictIssue) throws IOException {
-		out.write("the two macro definitions at line ");
-		out.write(macroNameConflictIssue.getFirst().getLocation().getStartLine());
-		out.write(" column ");
-		out.write(macroNameConflictIssue.getFirst().getLocation().getStartColumn());
-		out.write(" and line ");
-		out.write(macroNameConflictIssue.getSecond().getLocation().getStartLine());
-		out.write(" column ");
-		out.write(macroNameConflictIssue.getSecond().getLocation().getStartColumn());
+		out.write("the two macro definitions at ");
+		writeLineColumn(macroNameConflictIssue.getFirst().getLocation());
+		out.write(" and ");
+		writeLineColumn(macroNameConflictIssue.getSecond().getLocation());
 		out.write(" share the same name");
+		writeSnippet(macroNameConflictIssue.getSecond().getLocation());
 		return null;
 	}
 
@@ -19,7 +19,7 @@ public abstract class GoNode {
 	@Override
 	public String toString() {
 		StringWriter w = new StringWriter();
-		IndentingWriter out = new IndentingWriter(w);
+		IndentingWriter out = IndentingWriter.forGo(w);
 		try {
 			accept(new GoNodeFormattingVisitor(out));
 		} catch (IOException e) {
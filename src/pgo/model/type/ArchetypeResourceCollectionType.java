@@ -6,9 +6,10 @@ import java.util.List;
 import java.util.Objects;
 
 public class ArchetypeResourceCollectionType extends Type {
-	private Type keyType;
-	private Type readType;
-	private Type writeType;
+	private final Type keyType;
+	private final Type readType;
+	private final Type writeType;
+	private final int hashCode;
 
 	/**
 	 * @param keyType
@@ -21,11 +22,12 @@ public class ArchetypeResourceCollectionType extends Type {
 		this.keyType = keyType;
 		this.readType = readType;
 		this.writeType = writeType;
+		this.hashCode = Objects.hash(keyType, readType, writeType);
 	}
 
 	@Override
 	public int hashCode() {
-		return Objects.hash(keyType, readType, writeType);
+		return hashCode;
 	}
 
 	@Override
@@ -37,7 +39,8 @@ public class ArchetypeResourceCollectionType extends Type {
 			return false;
 		}
 		ArchetypeResourceCollectionType other = (ArchetypeResourceCollectionType) obj;
-		return keyType.equals(other.keyType) && readType.equals(other.readType) && writeType.equals(other.writeType);
+		return mayBeEqual(this, other) && keyType.equals(other.keyType) && readType.equals(other.readType) &&
+				writeType.equals(other.writeType);
 	}
 
 	@Override
@@ -49,23 +52,11 @@ public class ArchetypeResourceCollectionType extends Type {
 		return keyType;
 	}
 
-	void setKeyType(Type keyType) {
-		this.keyType = keyType;
-	}
-
 	public Type getReadType() {
 		return readType;
 	}
 
-	void setReadType(Type readType) {
-		this.readType = readType;
-	}
-
 	public Type getWriteType() {
 		return writeType;
 	}
-
-	void setWriteType(Type writeType) {
-		this.writeType = writeType;
-	}
 }
@@ -6,8 +6,10 @@ import java.util.List;
 import java.util.Objects;
 
 public class ArchetypeResourceType extends Type {
-	private Type readType;
-	private Type writeType;
+	private final Type readType;
+	private final Type writeType;
+	private final int hashCode;
+
 	/**
 	 * @param readType
 	 * @param writeType
@@ -17,11 +19,12 @@ public class ArchetypeResourceType extends Type {
 		super(origins);
 		this.readType = readType;
 		this.writeType = writeType;
+		this.hashCode = Objects.hash(readType, writeType);
 	}
 
 	@Override
 	public int hashCode() {
-		return Objects.hash(readType, writeType);
+		return hashCode;
 	}
 
 	@Override
@@ -33,7 +36,7 @@ public class ArchetypeResourceType extends Type {
 			return false;
 		}
 		ArchetypeResourceType other = (ArchetypeResourceType) obj;
-		return readType.equals(other.readType) && writeType.equals(other.writeType);
+		return mayBeEqual(this, other) && readType.equals(other.readType) && writeType.equals(other.writeType);
 	}
 
 	@Override
@@ -45,15 +48,7 @@ public class ArchetypeResourceType extends Type {
 		return readType;
 	}
 
-	void setReadType(Type readType) {
-		this.readType = readType;
-	}
-
 	public Type getWriteType() {
 		return writeType;
 	}
-
-	void setWriteType(Type writeType) {
-		this.writeType = writeType;
-	}
 }
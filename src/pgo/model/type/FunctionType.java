@@ -9,43 +9,40 @@ import java.util.List;
  * Represents the function type.
  */
 public class FunctionType extends Type {
-	private List<Type> paramTypes;
-	private Type returnType;
+	private final List<Type> paramTypes;
+	private final Type returnType;
+	private final int hashCode;
 
 	public FunctionType(List<Type> paramTypes, Type returnType, List<Origin> origins) {
 		super(origins);
 		this.paramTypes = paramTypes;
 		this.returnType = returnType;
-	}
-
-	void setParamTypes(List<Type> paramTypes) {
-		this.paramTypes = paramTypes;
+		this.hashCode = paramTypes.hashCode() * 17 + returnType.hashCode() * 19 + 2;
 	}
 
 	public List<Type> getParamTypes() {
 		return Collections.unmodifiableList(paramTypes);
 	}
 
-	void setReturnType(Type returnType) {
-		this.returnType = returnType;
-	}
-
 	public Type getReturnType() {
 		return returnType;
 	}
 
 	@Override
 	public int hashCode() {
-		return paramTypes.hashCode() * 17 + returnType.hashCode() * 19 + 2;
+		return hashCode;
 	}
 
 	@Override
 	public boolean equals(Object obj) {
+		if (this == obj) {
+			return true;
+		}
 		if (!(obj instanceof FunctionType)) {
 			return false;
 		}
 		FunctionType fun = (FunctionType) obj;
-		return paramTypes.equals(fun.paramTypes) && returnType.equals(fun.returnType);
+		return mayBeEqual(this, fun) && paramTypes.equals(fun.paramTypes) && returnType.equals(fun.returnType);
 	}
 
 	@Override
@@ -8,43 +8,40 @@ import java.util.List;
  * Represents a map.
  */
 public class MapType extends Type {
-	private Type keyType;
-	private Type valueType;
+	private final Type keyType;
+	private final Type valueType;
+	private final int hashCode;
 
 	public MapType(Type keyType, Type valueType, List<Origin> origins) {
 		super(origins);
 		this.keyType = keyType;
 		this.valueType = valueType;
-	}
-
-	void setKeyType(Type keyType) {
-		this.keyType = keyType;
+		this.hashCode = keyType.hashCode() * 17 + valueType.hashCode() * 19 + 3;
 	}
 
 	public Type getKeyType() {
 		return keyType;
 	}
 
-	void setValueType(Type valueType) {
-		this.valueType = valueType;
-	}
-
 	public Type getValueType() {
 		return valueType;
 	}
 
 	@Override
 	public int hashCode() {
-		return keyType.hashCode() * 17 + valueType.hashCode() * 19 + 3;
+		return hashCode;
 	}
 
 	@Override
 	public boolean equals(Object p) {
+		if (this == p) {
+			return true;
+		}
 		if (!(p instanceof MapType)) {
 			return false;
 		}
 		MapType other = (MapType) p;
-		return keyType.equals(other.keyType) && valueType.equals(other.valueType);
+		return mayBeEqual(this, other) && keyType.equals(other.keyType) && valueType.equals(other.valueType);
 	}
 
 	@Override
@@ -9,15 +9,13 @@ import java.util.List;
  * Represents a PlusCal procedure.
  */
 public class ProcedureType extends Type {
-	private List<Type> paramTypes;
+	private final List<Type> paramTypes;
+	private final int hashCode;
 
 	public ProcedureType(List<Type> paramTypes, List<Origin> origins) {
 		super(origins);
 		this.paramTypes = paramTypes;
-	}
-
-	void setParamTypes(List<Type> paramTypes) {
-		this.paramTypes = paramTypes;
+		this.hashCode = paramTypes.hashCode() * 17 + 2;
 	}
 
 	public List<Type> getParamTypes() {
@@ -26,15 +24,19 @@ public class ProcedureType extends Type {
 
 	@Override
 	public int hashCode() {
-		return paramTypes.hashCode() * 17 + 2;
+		return hashCode;
 	}
 
 	@Override
 	public boolean equals(Object obj) {
+		if (this == obj) {
+			return true;
+		}
 		if (!(obj instanceof ProcedureType)) {
 			return false;
 		}
-		return paramTypes.equals(((ProcedureType) obj).paramTypes);
+		ProcedureType other = (ProcedureType) obj;
+		return mayBeEqual(this, other) && paramTypes.equals(other.paramTypes);
 	}
 
 	@Override
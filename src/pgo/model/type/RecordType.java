@@ -41,28 +41,45 @@ public class RecordType extends Type {
 		}
 	}
 
-	private List<Field> fields;
+	private final List<Field> fields;
+	private final boolean transmitted;
+	private final int hashCode;
 
 	/**
 	 * @param fields fields this record has
 	 * @param origins track where this type come from
 	 */
 	public RecordType(List<Field> fields, List<Origin> origins) {
+		this(fields, false, origins);
+	}
+
+	/**
+	 * @param fields fields this record has
+	 * @param transmitted whether records of this type are read or written through archetype resources
+	 * @param origins track where this type come from
+	 */
+	public RecordType(List<Field> fields, boolean transmitted, List<Origin> origins) {
 		super(origins);
 		this.fields = fields;
+		this.transmitted = transmitted;
+		this.hashCode = fields.hashCode() * 17 + (transmitted ? 13 : 11);
 	}
 
 	public List<Field> getFields() {
 		return Collections.unmodifiableList(fields);
 	}
 
-	void setFields(List<Field> fields) {
-		this.fields = fields;
+	/**
+	 * @return whether records of this type are read or written through archetype resources, in which case each
+	 *         archetype may know of a different subset of their fields
+	 */
+	public boolean isTransmitted() {
+		return transmitted;
 	}
 
 	@Override
 	public int hashCode() {
-		return fields.hashCode() * 17 + 11;
+		return hashCode;
 	}
 
 	@Override
@@ -73,7 +90,8 @@ public class RecordType extends Type {
 		if (!(obj instanceof RecordType)) {
 			return false;
 		}
-		return fields.equals(((RecordType) obj).fields);
+		RecordType other = (RecordType) obj;
+		return mayBeEqual(this, other) && transmitted == other.transmitted && fields.equals(other.fields);
 	}
 
 	@Override
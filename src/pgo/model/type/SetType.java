@@ -8,13 +8,33 @@ import java.util.List;
  * Represents an enumerable set.
  */
 public class SetType extends SimpleContainerType {
+	private final boolean hashed;
+
 	public SetType(Type elementType, List<Origin> origins) {
+		this(elementType, false, origins);
+	}
+
+	/**
+	 * @param elementType the type of the elements of the set
+	 * @param hashed whether sets of this type are compiled to Go maps rather than to sorted slices
+	 * @param origins track where this type come from
+	 */
+	public SetType(Type elementType, boolean hashed, List<Origin> origins) {
 		super(elementType, origins);
+		this.hashed = hashed;
+	}
+
+	/**
+	 * @return whether sets of this type are compiled to Go maps from their elements to struct{}, which are unordered,
+	 *         rather than to sorted slices
+	 */
+	public boolean isHashed() {
+		return hashed;
 	}
 
 	@Override
 	public int hashCode() {
-		return super.hashCode() * 17 + 5;
+		return super.hashCode() * 17 + (hashed ? 7 : 5);
 	}
 
 	@Override
@@ -22,7 +42,7 @@ public class SetType extends SimpleContainerType {
 		if (!(p instanceof SetType)) {
 			return false;
 		}
-		return super.equals(p);
+		return super.equals(p) && hashed == ((SetType) p).hashed;
 	}
 
 	@Override
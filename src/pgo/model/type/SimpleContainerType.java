@@ -8,17 +8,13 @@ import java.util.List;
  * Contains overloaded methods for a container type with only one element type, for convenience.
  */
 public abstract class SimpleContainerType extends Type {
-	protected Type elementType;
+	protected final Type elementType;
 
 	public SimpleContainerType(Type elementType, List<Origin> origins) {
 		super(origins);
 		this.elementType = elementType;
 	}
 
-	void setElementType(Type elementType) {
-		this.elementType = elementType;
-	}
-
 	public Type getElementType() {
 		return elementType;
 	}
@@ -30,9 +26,13 @@ public abstract class SimpleContainerType extends Type {
 
 	@Override
 	public boolean equals(Object p) {
+		if (this == p) {
+			return true;
+		}
 		if (!(p instanceof SimpleContainerType)) {
 			return false;
 		}
-		return elementType.equals(((SimpleContainerType) p).elementType);
+		SimpleContainerType other = (SimpleContainerType) p;
+		return mayBeEqual(this, other) && elementType.equals(other.elementType);
 	}
 }
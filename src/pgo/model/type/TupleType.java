@@ -9,15 +9,13 @@ import java.util.List;
  * Represents a realized tuple.
  */
 public class TupleType extends Type {
-	private List<Type> elementTypes;
+	private final List<Type> elementTypes;
+	private final int hashCode;
 
 	public TupleType(List<Type> elementTypes, List<Origin> origins) {
 		super(origins);
 		this.elementTypes = Collections.unmodifiableList(elementTypes);
-	}
-
-	void setElementTypes(List<Type> elementTypes) {
-		this.elementTypes = elementTypes;
+		this.hashCode = elementTypes.hashCode() * 17 + 3;
 	}
 
 	public List<Type> getElementTypes() {
@@ -26,15 +24,19 @@ public class TupleType extends Type {
 
 	@Override
 	public int hashCode() {
-		return elementTypes.hashCode() * 17 + 3;
+		return hashCode;
 	}
 
 	@Override
 	public boolean equals(Object p) {
+		if (this == p) {
+			return true;
+		}
 		if (!(p instanceof TupleType)) {
 			return false;
 		}
-		return elementTypes.equals(((TupleType) p).elementTypes);
+		TupleType other = (TupleType) p;
+		return mayBeEqual(this, other) && elementTypes.equals(other.elementTypes);
 	}
 
 	@Override
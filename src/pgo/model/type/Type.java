@@ -11,6 +11,9 @@ import java.io.StringWriter;
 import java.util.List;
 
 public abstract class Type extends Derived {
+	// set on the canonical instances made by TypeInterner
+	private boolean interned = false;
+
 	/**
 	 * @param origins track where this type come from
 	 */
@@ -18,6 +21,22 @@ public abstract class Type extends Derived {
 		origins.forEach(this::addOrigin);
 	}
 
+	boolean isInterned() {
+		return interned;
+	}
+
+	void markInterned() {
+		interned = true;
+	}
+
+	/**
+	 * A fast path for structural equality: distinct canonical instances are never equal, and neither are types with
+	 * different hash codes. Types are immutable, so container types compute their hash codes once.
+	 */
+	static boolean mayBeEqual(Type a, Type b) {
+		return !(a.interned && b.interned) && a.hashCode() == b.hashCode();
+	}
+
 	@Override
 	public abstract int hashCode();
 
@@ -44,7 +44,7 @@ public class TypeCopyVisitor extends TypeVisitor<Type, RuntimeException> {
 
 	@Override
 	public Type visit(SetType setType) throws RuntimeException {
-		return new SetType(setType.getElementType().accept(this), setType.getOrigins());
+		return new SetType(setType.getElementType().accept(this), setType.isHashed(), setType.getOrigins());
 	}
 
 	@Override
@@ -113,6 +113,7 @@ public class TypeCopyVisitor extends TypeVisitor<Type, RuntimeException> {
 						.stream()
 						.map(f -> new RecordType.Field(f.getName(), f.getType()))
 						.collect(Collectors.toList()),
+				recordType.isTransmitted(),
 				recordType.getOrigins());
 	}
 }
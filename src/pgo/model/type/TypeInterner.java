@@ -0,0 +1,162 @@
+package pgo.model.type;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * Hash-conses types: structurally equal types are mapped to one canonical instance, whose components are canonical
+ * too, so that two canonical types are equal exactly when they are the same object.
+ *
+ * Canonical instances are shared between unrelated occurrences of a type, so they carry no origins; origins stay on
+ * the types that constraints are built from. Type variables and abstract records are compared by identity already,
+ * and are their own canonical instances.
+ *
+ * The table is safe to use from several threads, so that the solvers of independent groups of constraints can share
+ * one.
+ */
+public class TypeInterner {
+	private final ConcurrentMap<Type, Type> table = new ConcurrentHashMap<>();
+
+	private final TypeVisitor<Type, RuntimeException> canonicalizer = new TypeVisitor<Type, RuntimeException>() {
+		private List<Type> internAll(List<Type> types) {
+			List<Type> result = new ArrayList<>(types.size());
+			for (Type type : types) {
+				result.add(intern(type));
+			}
+			return result;
+		}
+
+		@Override
+		public Type visit(AbstractRecordType abstractRecordType) throws RuntimeException {
+			return abstractRecordType;
+		}
+
+		@Override
+		public Type visit(ArchetypeResourceType archetypeResourceType) throws RuntimeException {
+			return canonical(new ArchetypeResourceType(
+					intern(archetypeResourceType.getReadType()),
+					intern(archetypeResourceType.getWriteType()),
+					Collections.emptyList()));
+		}
+
+		@Override
+		public Type visit(ArchetypeResourceCollectionType archetypeResourceCollectionType) throws RuntimeException {
+			return canonical(new ArchetypeResourceCollectionType(
+					intern(archetypeResourceCollectionType.getKeyType()),
+					intern(archetypeResourceCollectionType.getReadType()),
+					intern(archetypeResourceCollectionType.getWriteType()),
+					Collections.emptyList()));
+		}
+
+		@Override
+		public Type visit(TypeVariable typeVariable) throws RuntimeException {
+			return typeVariable;
+		}
+
+		@Override
+		public Type visit(TupleType tupleType) throws RuntimeException {
+			return canonical(new TupleType(internAll(tupleType.getElementTypes()), Collections.emptyList()));
+		}
+
+		@Override
+		public Type visit(StringType stringType) throws RuntimeException {
+			return canonical(new StringType(Collections.emptyList()));
+		}
+
+		@Override
+		public Type visit(SetType setType) throws RuntimeException {
+			return canonical(new SetType(
+					intern(setType.getElementType()), setType.isHashed(), Collections.emptyList()));
+		}
+
+		@Override
+		public Type visit(NonEnumerableSetType nonEnumerableSetType) throws RuntimeException {
+			return canonical(new NonEnumerableSetType(
+					intern(nonEnumerableSetType.getElementType()), Collections.emptyList()));
+		}
+
+		@Override
+		public Type visit(BoolType boolType) throws RuntimeException {
+			return canonical(new BoolType(Collections.emptyList()));
+		}
+
+		@Override
+		public Type visit(RealType realType) throws RuntimeException {
+			return canonical(new RealType(Collections.emptyList()));
+		}
+
+		@Override
+		public Type visit(FunctionType functionType) throws RuntimeException {
+			return canonical(new FunctionType(
+					internAll(functionType.getParamTypes()),
+					intern(functionType.getReturnType()),
+					Collections.emptyList()));
+		}
+
+		@Override
+		public Type visit(ChanType chanType) throws RuntimeException {
+			return canonical(new ChanType(intern(chanType.getElementType()), Collections.emptyList()));
+		}
+
+		@Override
+		public Type visit(IntType intType) throws RuntimeException {
+			return canonical(new IntType(Collections.emptyList()));
+		}
+
+		@Override
+		public Type visit(InterfaceType interfaceType) throws RuntimeException {
+			return canonical(new InterfaceType(Collections.emptyList()));
+		}
+
+		@Override
+		public Type visit(MapType mapType) throws RuntimeException {
+			return canonical(new MapType(
+					intern(mapType.getKeyType()), intern(mapType.getValueType()), Collections.emptyList()));
+		}
+
+		@Override
+		public Type visit(SliceType sliceType) throws RuntimeException {
+			return canonical(new SliceType(intern(sliceType.getElementType()), Collections.emptyList()));
+		}
+
+		@Override
+		public Type visit(ProcedureType procedureType) throws RuntimeException {
+			return canonical(new ProcedureType(internAll(procedureType.getParamTypes()), Collections.emptyList()));
+		}
+
+		@Override
+		public Type visit(RecordType recordType) throws RuntimeException {
+			List<RecordType.Field> fields = new ArrayList<>(recordType.getFields().size());
+			for (RecordType.Field field : recordType.getFields()) {
+				fields.add(new RecordType.Field(field.getName(), intern(field.getType())));
+			}
+			return canonical(new RecordType(fields, recordType.isTransmitted(), Collections.emptyList()));
+		}
+	};
+
+	private Type canonical(Type type) {
+		Type existing = table.putIfAbsent(type, type);
+		if (existing != null) {
+			return existing;
+		}
+		type.markInterned();
+		return type;
+	}
+
+	/**
+	 * @return the canonical instance structurally equal to type
+	 */
+	public Type intern(Type type) {
+		if (type.isInterned()) {
+			return type;
+		}
+		return type.accept(canonicalizer);
+	}
+
+	public int size() {
+		return table.size();
+	}
+}
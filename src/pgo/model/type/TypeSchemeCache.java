@@ -0,0 +1,347 @@
+package pgo.model.type;
+
+import pgo.InternalCompilerError;
+import pgo.Unreachable;
+import pgo.model.type.constraint.*;
+import pgo.util.UnionFind;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.*;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Remembers the solutions of groups of constraints, so that a group that comes up again, in a later compilation of an
+ * edited specification or in another specification altogether, is instantiated instead of solved.
+ *
+ * A group is identified by the structure of its constraints: their order, the types they mention and the pattern in
+ * which type variables and abstract records are shared, but neither the identity of those variables nor origins. Its
+ * solution is kept as a type scheme, the solved type of each of its variables in terms of placeholders, which stand
+ * for the group's variables when it is instantiated. Groups that failed to solve are not remembered, so that their
+ * issues are reported against the current specification.
+ *
+ * The cache is safe to use from several threads, and evicts the least recently used schemes once it is full.
+ */
+public class TypeSchemeCache {
+	public static final int DEFAULT_MAX_ENTRIES = 4096;
+
+	private final Map<String, Scheme> schemes;
+	private final TypeGenerator generator = new TypeGenerator("scheme");
+	private final AtomicLong hits = new AtomicLong();
+	private final AtomicLong misses = new AtomicLong();
+
+	public TypeSchemeCache() {
+		this(DEFAULT_MAX_ENTRIES);
+	}
+
+	public TypeSchemeCache(int maxEntries) {
+		this.schemes = Collections.synchronizedMap(new LinkedHashMap<String, Scheme>(16, 0.75f, true) {
+			@Override
+			protected boolean removeEldestEntry(Map.Entry<String, Scheme> eldest) {
+				return size() > maxEntries;
+			}
+		});
+	}
+
+	/**
+	 * The canonical form of a group of constraints: a digest of their structure, and their type variables in order of
+	 * first occurrence, which is the order in which the placeholders of a matching scheme stand for them.
+	 */
+	static final class Key {
+		private final String digest;
+		private final List<TypeVariable> variables;
+
+		private Key(String digest, List<TypeVariable> variables) {
+			this.digest = digest;
+			this.variables = variables;
+		}
+	}
+
+	private static final class Scheme {
+		// placeholders for the variables of the group, followed by placeholders for any variable that solving left
+		// unresolved but that is not one of the group's
+		private final List<TypeVariable> placeholders;
+		// for each variable of the group, its solved type in terms of placeholders, or null if it is unresolved
+		private final List<Type> types;
+
+		Scheme(List<TypeVariable> placeholders, List<Type> types) {
+			this.placeholders = placeholders;
+			this.types = types;
+		}
+	}
+
+	/**
+	 * Writes the structure of types, numbering type variables and abstract records by first occurrence.
+	 */
+	private static final class StructureWriter extends TypeVisitor<Void, RuntimeException> {
+		private final StringBuilder out = new StringBuilder();
+		private final Map<TypeVariable, Integer> variables = new LinkedHashMap<>();
+		private final Map<AbstractRecordType, Integer> abstractRecords = new HashMap<>();
+
+		void name(String name) {
+			// length-prefixed, so that no name can be mistaken for the structure around it
+			out.append(name.length()).append(':').append(name);
+		}
+
+		private void writeAll(List<Type> types) {
+			out.append(types.size()).append('(');
+			for (Type type : types) {
+				type.accept(this);
+			}
+			out.append(')');
+		}
+
+		void write(BasicConstraint basicConstraint) {
+			if (basicConstraint instanceof EqualityConstraint) {
+				out.append('=');
+				((EqualityConstraint) basicConstraint).getLhs().accept(this);
+				((EqualityConstraint) basicConstraint).getRhs().accept(this);
+			} else if (basicConstraint instanceof HasFieldConstraint) {
+				out.append('.');
+				((HasFieldConstraint) basicConstraint).getExpressionType().accept(this);
+				name(((HasFieldConstraint) basicConstraint).getFieldName());
+				((HasFieldConstraint) basicConstraint).getFieldType().accept(this);
+			} else {
+				throw new Unreachable();
+			}
+		}
+
+		@Override
+		public Void visit(AbstractRecordType abstractRecordType) throws RuntimeException {
+			out.append('r').append(abstractRecords.computeIfAbsent(abstractRecordType, k -> abstractRecords.size()));
+			return null;
+		}
+
+		@Override
+		public Void visit(ArchetypeResourceType archetypeResourceType) throws RuntimeException {
+			out.append("AR");
+			archetypeResourceType.getReadType().accept(this);
+			archetypeResourceType.getWriteType().accept(this);
+			return null;
+		}
+
+		@Override
+		public Void visit(ArchetypeResourceCollectionType archetypeResourceCollectionType) throws RuntimeException {
+			out.append("ARC");
+			archetypeResourceCollectionType.getKeyType().accept(this);
+			archetypeResourceCollectionType.getReadType().accept(this);
+			archetypeResourceCollectionType.getWriteType().accept(this);
+			return null;
+		}
+
+		@Override
+		public Void visit(BoolType boolType) throws RuntimeException {
+			out.append('B');
+			return null;
+		}
+
+		@Override
+		public Void visit(ChanType chanType) throws RuntimeException {
+			out.append('C');
+			chanType.getElementType().accept(this);
+			return null;
+		}
+
+		@Override
+		public Void visit(FunctionType functionType) throws RuntimeException {
+			out.append('F');
+			writeAll(functionType.getParamTypes());
+			functionType.getReturnType().accept(this);
+			return null;
+		}
+
+		@Override
+		public Void visit(InterfaceType interfaceType) throws RuntimeException {
+			out.append('?');
+			return null;
+		}
+
+		@Override
+		public Void visit(IntType intType) throws RuntimeException {
+			out.append('I');
+			return null;
+		}
+
+		@Override
+		public Void visit(MapType mapType) throws RuntimeException {
+			out.append('M');
+			mapType.getKeyType().accept(this);
+			mapType.getValueType().accept(this);
+			return null;
+		}
+
+		@Override
+		public Void visit(NonEnumerableSetType nonEnumerableSetType) throws RuntimeException {
+			out.append('N');
+			nonEnumerableSetType.getElementType().accept(this);
+			return null;
+		}
+
+		@Override
+		public Void visit(ProcedureType procedureType) throws RuntimeException {
+			out.append('P');
+			writeAll(procedureType.getParamTypes());
+			return null;
+		}
+
+		@Override
+		public Void visit(RealType realType) throws RuntimeException {
+			out.append('R');
+			return null;
+		}
+
+		@Override
+		public Void visit(RecordType recordType) throws RuntimeException {
+			out.append('{').append(recordType.getFields().size());
+			for (RecordType.Field field : recordType.getFields()) {
+				name(field.getName());
+				field.getType().accept(this);
+			}
+			out.append('}');
+			return null;
+		}
+
+		@Override
+		public Void visit(SetType setType) throws RuntimeException {
+			out.append('S');
+			setType.getElementType().accept(this);
+			return null;
+		}
+
+		@Override
+		public Void visit(SliceType sliceType) throws RuntimeException {
+			out.append('L');
+			sliceType.getElementType().accept(this);
+			return null;
+		}
+
+		@Override
+		public Void visit(StringType stringType) throws RuntimeException {
+			out.append('"');
+			return null;
+		}
+
+		@Override
+		public Void visit(TupleType tupleType) throws RuntimeException {
+			out.append('T');
+			writeAll(tupleType.getElementTypes());
+			return null;
+		}
+
+		@Override
+		public Void visit(TypeVariable typeVariable) throws RuntimeException {
+			out.append('v').append(variables.computeIfAbsent(typeVariable, k -> variables.size()));
+			return null;
+		}
+	}
+
+	static Key keyOf(List<Constraint> constraints) {
+		StructureWriter writer = new StructureWriter();
+		for (Constraint constraint : constraints) {
+			if (constraint instanceof MonomorphicConstraint) {
+				writer.out.append('m');
+				writer.write(((MonomorphicConstraint) constraint).getBasicConstraint());
+			} else if (constraint instanceof PolymorphicConstraint) {
+				writer.out.append('p');
+				for (List<BasicConstraint> alternative : (PolymorphicConstraint) constraint) {
+					writer.out.append('|').append(alternative.size());
+					for (BasicConstraint basicConstraint : alternative) {
+						writer.write(basicConstraint);
+					}
+				}
+				writer.out.append(';');
+			} else {
+				throw new Unreachable();
+			}
+		}
+		MessageDigest digest;
+		try {
+			digest = MessageDigest.getInstance("SHA-256");
+		} catch (NoSuchAlgorithmException e) {
+			throw new InternalCompilerError(e);
+		}
+		StringBuilder hex = new StringBuilder();
+		for (byte b : digest.digest(writer.out.toString().getBytes(StandardCharsets.UTF_8))) {
+			hex.append(String.format("%02x", b));
+		}
+		return new Key(hex.toString(), new ArrayList<>(writer.variables.keySet()));
+	}
+
+	/**
+	 * @return the solved types of the key's variables, if a scheme for its constraints is known, mapping each
+	 *         variable that the scheme resolves
+	 */
+	Optional<Map<TypeVariable, Type>> lookup(Key key) {
+		Scheme scheme = schemes.get(key.digest);
+		if (scheme == null) {
+			misses.incrementAndGet();
+			return Optional.empty();
+		}
+		hits.incrementAndGet();
+		Map<TypeVariable, Type> instantiation = new HashMap<>();
+		for (int i = 0; i < scheme.placeholders.size(); i++) {
+			instantiation.put(scheme.placeholders.get(i), i < key.variables.size() ?
+					key.variables.get(i) :
+					generator.getTypeVariable(Collections.emptyList()));
+		}
+		TypeVariableSubstitutionVisitor instantiate =
+				new TypeVariableSubstitutionVisitor(new TypeSubstitution(new UnionFind<>(), instantiation));
+		Map<TypeVariable, Type> result = new HashMap<>();
+		for (int i = 0; i < key.variables.size(); i++) {
+			Type type = scheme.types.get(i);
+			if (type != null) {
+				result.put(key.variables.get(i), type.accept(instantiate));
+			}
+		}
+		return Optional.of(result);
+	}
+
+	/**
+	 * Remembers the solution of the constraints the key was made from.
+	 */
+	void store(Key key, TypeSubstitution solution) {
+		Map<TypeVariable, TypeVariable> generalization = new HashMap<>();
+		List<TypeVariable> placeholders = new ArrayList<>();
+		for (TypeVariable variable : key.variables) {
+			TypeVariable placeholder = generator.getTypeVariable(Collections.emptyList());
+			generalization.put(variable, placeholder);
+			placeholders.add(placeholder);
+		}
+		Set<TypeVariable> mentioned = new HashSet<>();
+		TypeVariableCollectionVisitor collector = new TypeVariableCollectionVisitor(mentioned);
+		TypeVariableSubstitutionVisitor generalize = new TypeVariableSubstitutionVisitor(
+				new TypeSubstitution(new UnionFind<>(), Collections.unmodifiableMap(generalization)));
+		List<Type> types = new ArrayList<>();
+		for (TypeVariable variable : key.variables) {
+			if (!solution.containsKey(variable)) {
+				types.add(null);
+				continue;
+			}
+			Type type = solution.get(variable);
+			type.accept(collector);
+			for (TypeVariable unresolved : mentioned) {
+				if (!generalization.containsKey(unresolved)) {
+					TypeVariable placeholder = generator.getTypeVariable(Collections.emptyList());
+					generalization.put(unresolved, placeholder);
+					placeholders.add(placeholder);
+				}
+			}
+			mentioned.clear();
+			types.add(type.accept(generalize));
+		}
+		schemes.put(key.digest, new Scheme(placeholders, types));
+	}
+
+	public long getHits() {
+		return hits.get();
+	}
+
+	public long getMisses() {
+		return misses.get();
+	}
+
+	public int size() {
+		return schemes.size();
+	}
+}
@@ -5,6 +5,9 @@ import pgo.Unreachable;
 import pgo.errors.Issue;
 import pgo.errors.IssueContext;
 import pgo.model.type.constraint.*;
+import pgo.util.ConsList;
+import pgo.util.Origin;
+import pgo.util.Trail;
 import pgo.util.UnionFind;
 
 import java.util.*;
@@ -14,114 +17,582 @@ import java.util.stream.Collectors;
  * A constraint solver for PGo's type system. It does not support recursive types.
  */
 public class TypeSolver {
-	private Deque<Constraint> constraints = new ArrayDeque<>();
-	private Map<TypeVariable, Type> mapping = new HashMap<>();
-	private UnionFind<TypeVariable> variableGroups = new UnionFind<>();
-	private UnionFind<AbstractRecordType> abstractRecordGroups = new UnionFind<>();
-	private Map<AbstractRecordType, RecordTypeEntry> abstractRecordsToEntries = new HashMap<>();
-	private Deque<TypeSolver> stateStack = new ArrayDeque<>();
+	private static final BitSet NO_REASONS = new BitSet();
+
+	// constraints only ever get pushed and popped at the front while solving, so a persistent list lets a choice point
+	// remember the remaining constraints without copying them
+	private ConsList<Goal> constraints = new ConsList<>();
+	// polymorphic constraints, put off until no monomorphic constraint is left
+	private ConsList<Goal> deferred = new ConsList<>();
+	// a polymorphic constraint to try the next alternative of, after backtracking to its choice point
+	private Goal resumed = null;
+	// the reasons of the constraint being solved, which the constraints and bindings it gives rise to inherit
+	private BitSet currentReasons = NO_REASONS;
+	private final List<Constraint> pendingConstraints = new ArrayList<>();
+	private final Trail trail = new Trail();
+	private final Map<TypeVariable, Type> mapping = new HashMap<>();
+	private final UnionFind<TypeVariable> variableGroups = new UnionFind<>();
+	private final UnionFind<AbstractRecordType> abstractRecordGroups = new UnionFind<>();
+	private final Map<AbstractRecordType, RecordTypeEntry> abstractRecordsToEntries = new HashMap<>();
+	// for representatives of variable groups and abstract record groups, the reasons of their bindings, when not empty
+	private final Map<Type, BitSet> bindingReasons = new HashMap<>();
+	private final Deque<ChoicePoint> stateStack = new ArrayDeque<>();
+	private final TypeInterner interner;
+	// bumped whenever the substitution may change, which invalidates the results memoized by subs
+	private long generation = 0;
+	// for solvers made by partition(), the type variables appearing in their constraints
+	private final Set<TypeVariable> componentVariables = new HashSet<>();
 	private int lastConstraintsSize = Integer.MAX_VALUE;
 	private Issue typeInferenceIssue = null;
+	// statistics, which survive backtracking
+	private long constraintsProcessed = 0;
+	private long choicePoints = 0;
+	private long backtracks = 0;
+	private long backjumps = 0;
+	private int maxStateStackDepth = 0;
+	// undo entries of solvers merged in by unifyComponents; this solver's own are counted by its trail and logs
+	private long savedStateEntries = 0;
+	private long simplifyIterations = 0;
+	private long componentsFromCache = 0;
+	// for solvers made by partition(), the solution instantiated from a TypeSchemeCache instead of solving, if any
+	private Map<TypeVariable, Type> cachedSolution = null;
+
+	private final TypeVariableSubstitutionVisitor subs = new TypeVariableSubstitutionVisitor(
+			new TypeSubstitution(variableGroups, mapping), () -> generation);
+
+	public TypeSolver() {
+		this(new TypeInterner());
+	}
+
+	private TypeSolver(TypeInterner interner) {
+		this.interner = interner;
+	}
 
-	private TypeVariableSubstitutionVisitor subs = new TypeVariableSubstitutionVisitor(
-			new TypeSubstitution(variableGroups, mapping));
+	/**
+	 * A constraint to solve, along with its reasons: the choice points it depends on, given as their positions from the
+	 * bottom of the state stack. A constraint made while solving another inherits that constraint's reasons, together
+	 * with the reasons of the bindings that were looked at.
+	 *
+	 * When solving a constraint fails, the union of those reasons is the set of choice points that could be to blame,
+	 * so backtracking can jump straight to the latest of them, past choice points that had nothing to do with the
+	 * failure.
+	 */
+	private static final class Goal {
+		private final Constraint constraint;
+		private final BitSet reasons;
+
+		Goal(Constraint constraint, BitSet reasons) {
+			this.constraint = constraint;
+			this.reasons = reasons;
+		}
+	}
+
+	/**
+	 * The state to return to when backtracking: the polymorphic constraint whose next alternative should be tried, the
+	 * constraints left to solve after it, and the positions in the trail and union-find logs at which the choice was
+	 * made.
+	 */
+	private static final class ChoicePoint {
+		private final Goal polymorphicConstraint;
+		private final ConsList<Goal> constraints;
+		private final ConsList<Goal> deferred;
+		private final int trailMark;
+		private final int variableGroupsSnapshot;
+		private final int abstractRecordGroupsSnapshot;
+
+		ChoicePoint(Goal polymorphicConstraint, ConsList<Goal> constraints, ConsList<Goal> deferred, int trailMark,
+		            int variableGroupsSnapshot, int abstractRecordGroupsSnapshot) {
+			this.polymorphicConstraint = polymorphicConstraint;
+			this.constraints = constraints;
+			this.deferred = deferred;
+			this.trailMark = trailMark;
+			this.variableGroupsSnapshot = variableGroupsSnapshot;
+			this.abstractRecordGroupsSnapshot = abstractRecordGroupsSnapshot;
+		}
+	}
 
 	public TypeSubstitution getSubstitution() {
 		return new TypeSubstitution(variableGroups, mapping);
 	}
 
+	public long getConstraintsProcessed() {
+		return constraintsProcessed;
+	}
+
+	public long getChoicePoints() {
+		return choicePoints;
+	}
+
+	public long getBacktracks() {
+		return backtracks;
+	}
+
+	/**
+	 * @return the number of choice points skipped over when backtracking, because they did not contribute to a failure
+	 */
+	public long getBackjumps() {
+		return backjumps;
+	}
+
+	/**
+	 * @return the largest number of choice points that were open at once
+	 */
+	public int getMaxStateStackDepth() {
+		return maxStateStackDepth;
+	}
+
+	/**
+	 * @return the number of undo entries recorded so that choice points can be backtracked to, which is what saving
+	 *         state for backtracking costs now that choice points no longer copy the solver
+	 */
+	public long getSavedStateEntries() {
+		return savedStateEntries + trail.getRecorded() + variableGroups.getLogged() + abstractRecordGroups.getLogged();
+	}
+
+	/**
+	 * @return the number of type variables resolved by simplifying the solution
+	 */
+	public long getSimplifyIterations() {
+		return simplifyIterations;
+	}
+
+	/**
+	 * @return the number of components whose solution was found in a {@link TypeSchemeCache}
+	 */
+	public long getComponentsFromCache() {
+		return componentsFromCache;
+	}
+
 	public void addConstraint(Constraint constraint) {
-		constraints.addLast(constraint);
+		pendingConstraints.add(constraint);
 	}
 
 	void addFirst(Constraint constraint) {
-		constraints.addFirst(constraint);
+		constraints = constraints.cons(new Goal(constraint, currentReasons));
+	}
+
+	private <K, V> void put(Map<K, V> map, K key, V value) {
+		generation++;
+		V old = map.put(key, value);
+		if (trail.isRecording()) {
+			if (old == null) {
+				trail.record(() -> map.remove(key));
+			} else {
+				trail.record(() -> map.put(key, old));
+			}
+		}
+	}
+
+	private <K, V> void remove(Map<K, V> map, K key) {
+		generation++;
+		V old = map.remove(key);
+		if (old != null && trail.isRecording()) {
+			trail.record(() -> map.put(key, old));
+		}
+	}
+
+	private void addOrigins(Type type, List<Origin> origins) {
+		if (origins.isEmpty()) {
+			return;
+		}
+		int size = type.getOrigins().size();
+		origins.forEach(type::addOrigin);
+		trail.record(() -> type.getOrigins().subList(size, type.getOrigins().size()).clear());
+	}
+
+	private static BitSet union(BitSet a, BitSet b) {
+		if (b.isEmpty()) {
+			return a;
+		}
+		if (a.isEmpty()) {
+			return b;
+		}
+		BitSet result = (BitSet) a.clone();
+		result.or(b);
+		return result;
+	}
+
+	/**
+	 * @return initial, together with the reasons of the bindings of the variable groups and abstract records in types,
+	 *         and of everything their bindings mention in turn: the bindings that substituting types looks at
+	 */
+	private BitSet reasonsOf(BitSet initial, Type... types) {
+		if (stateStack.isEmpty()) {
+			// with no choice points, there are no reasons to find
+			return initial;
+		}
+		BitSet result = (BitSet) initial.clone();
+		Set<Type> visited = new HashSet<>();
+		TypeVariableCollectionVisitor collector = new TypeVariableCollectionVisitor(new HashSet<>()) {
+			@Override
+			public Void visit(TypeVariable typeVariable) throws RuntimeException {
+				TypeVariable representative = variableGroups.find(typeVariable);
+				if (visited.add(representative)) {
+					result.or(bindingReasons.getOrDefault(representative, NO_REASONS));
+					if (mapping.containsKey(representative)) {
+						mapping.get(representative).accept(this);
+					}
+				}
+				return null;
+			}
+
+			@Override
+			public Void visit(AbstractRecordType abstractRecordType) throws RuntimeException {
+				AbstractRecordType representative = abstractRecordGroups.find(abstractRecordType);
+				if (visited.add(representative)) {
+					result.or(bindingReasons.getOrDefault(representative, NO_REASONS));
+					if (abstractRecordsToEntries.containsKey(representative)) {
+						abstractRecordsToEntries.get(representative).toConcreteRecord().accept(this);
+					}
+				}
+				return null;
+			}
+		};
+		for (Type type : types) {
+			type.accept(collector);
+		}
+		return result;
+	}
+
+	/**
+	 * Records that the binding of representative, which was just made or changed, depends on the current reasons.
+	 */
+	private void bindWithCurrentReasons(Type representative) {
+		if (!currentReasons.isEmpty() || bindingReasons.containsKey(representative)) {
+			put(bindingReasons, representative, currentReasons);
+		}
+	}
+
+	private void restore(ChoicePoint choicePoint) {
+		generation++;
+		trail.undo(choicePoint.trailMark);
+		variableGroups.rollback(choicePoint.variableGroupsSnapshot);
+		abstractRecordGroups.rollback(choicePoint.abstractRecordGroupsSnapshot);
+		constraints = choicePoint.constraints;
+		deferred = choicePoint.deferred;
 	}
 
 	private Optional<Issue> backtrack(Issue issue) {
-		if (lastConstraintsSize > constraints.size()) {
-			lastConstraintsSize = constraints.size();
+		return backtrack(issue, currentReasons);
+	}
+
+	/**
+	 * Backtracks to the latest choice point among conflict, the reasons of a failure, undoing the choice points made
+	 * after it along the way.
+	 */
+	private Optional<Issue> backtrack(Issue issue, BitSet conflict) {
+		if (lastConstraintsSize > constraints.size() + deferred.size()) {
+			lastConstraintsSize = constraints.size() + deferred.size();
 			typeInferenceIssue = issue;
 		}
-		if (stateStack.size() <= 0) {
-			// unsuccessful
+		if (conflict.isEmpty()) {
+			// the failure does not depend on any choice, so no alternative can avoid it
 			return Optional.of(typeInferenceIssue);
 		}
-		TypeSolver old = stateStack.pop();
-		constraints = old.constraints;
-		mapping = old.mapping;
-		variableGroups = old.variableGroups;
-		abstractRecordGroups = old.abstractRecordGroups;
-		abstractRecordsToEntries = old.abstractRecordsToEntries;
-		stateStack = old.stateStack;
-		subs = new TypeVariableSubstitutionVisitor(
-				new TypeSubstitution(variableGroups, mapping));
+		int target = conflict.length() - 1;
+		while (stateStack.size() > target + 1) {
+			backjumps++;
+			restore(stateStack.pop());
+		}
+		backtracks++;
+		ChoicePoint choicePoint = stateStack.pop();
+		restore(choicePoint);
+		// the next alternative is tried because of whatever refuted this one
+		BitSet reasons = union(choicePoint.polymorphicConstraint.reasons, conflict);
+		reasons = (BitSet) reasons.clone();
+		reasons.clear(target);
+		resumed = new Goal(choicePoint.polymorphicConstraint.constraint, reasons);
 		return Optional.empty();
 	}
 
-	private TypeSolver copy() {
-		TypeSolver copy = new TypeSolver();
-		copy.stateStack = new ArrayDeque<>(stateStack);
-		copy.constraints = constraints.stream()
-				.map(Constraint::copy)
-				.collect(Collectors.toCollection(ArrayDeque::new));
-		copy.mapping = new HashMap<>();
-		copy.variableGroups = variableGroups.copy();
-		copy.abstractRecordGroups = abstractRecordGroups.copy();
-		copy.abstractRecordsToEntries = new HashMap<>(abstractRecordsToEntries);
-		TypeCopyVisitor visitor = new TypeCopyVisitor();
-		mapping.forEach((k, v) -> copy.mapping.put(k, v.accept(visitor)));
-		copy.subs = null;
-		return copy;
+	/**
+	 * @return whether a and b, as substituted so far, could possibly be unified: false only when unifying them is
+	 *         bound to fail regardless of how the remaining variables are bound
+	 */
+	private boolean mayUnify(Type a, Type b) {
+		if (a instanceof TypeVariable || b instanceof TypeVariable) {
+			return true;
+		}
+		if (a instanceof AbstractRecordType || b instanceof AbstractRecordType) {
+			Type other = a instanceof AbstractRecordType ? b : a;
+			return other instanceof AbstractRecordType || other instanceof RecordType;
+		}
+		if (!a.getClass().equals(b.getClass())) {
+			return false;
+		}
+		if (a instanceof SimpleContainerType) {
+			return mayUnify(((SimpleContainerType) a).getElementType(), ((SimpleContainerType) b).getElementType());
+		}
+		if (a instanceof MapType) {
+			return mayUnify(((MapType) a).getKeyType(), ((MapType) b).getKeyType()) &&
+					mayUnify(((MapType) a).getValueType(), ((MapType) b).getValueType());
+		}
+		if (a instanceof TupleType) {
+			return mayUnifyAll(((TupleType) a).getElementTypes(), ((TupleType) b).getElementTypes());
+		}
+		if (a instanceof FunctionType) {
+			return mayUnifyAll(((FunctionType) a).getParamTypes(), ((FunctionType) b).getParamTypes()) &&
+					mayUnify(((FunctionType) a).getReturnType(), ((FunctionType) b).getReturnType());
+		}
+		if (a instanceof ProcedureType) {
+			return mayUnifyAll(((ProcedureType) a).getParamTypes(), ((ProcedureType) b).getParamTypes());
+		}
+		if (a instanceof RecordType) {
+			List<RecordType.Field> fields = ((RecordType) a).getFields();
+			List<RecordType.Field> otherFields = ((RecordType) b).getFields();
+			if (fields.size() != otherFields.size()) {
+				return false;
+			}
+			for (int i = 0; i < fields.size(); i++) {
+				if (!fields.get(i).getName().equals(otherFields.get(i).getName()) ||
+						!mayUnify(fields.get(i).getType(), otherFields.get(i).getType())) {
+					return false;
+				}
+			}
+			return true;
+		}
+		if (a instanceof ArchetypeResourceType) {
+			return mayUnify(((ArchetypeResourceType) a).getReadType(), ((ArchetypeResourceType) b).getReadType()) &&
+					mayUnify(((ArchetypeResourceType) a).getWriteType(), ((ArchetypeResourceType) b).getWriteType());
+		}
+		if (a instanceof ArchetypeResourceCollectionType) {
+			ArchetypeResourceCollectionType ca = (ArchetypeResourceCollectionType) a;
+			ArchetypeResourceCollectionType cb = (ArchetypeResourceCollectionType) b;
+			return mayUnify(ca.getKeyType(), cb.getKeyType()) && mayUnify(ca.getReadType(), cb.getReadType()) &&
+					mayUnify(ca.getWriteType(), cb.getWriteType());
+		}
+		// the remaining types have no components
+		return true;
+	}
+
+	private boolean mayUnifyAll(List<Type> as, List<Type> bs) {
+		if (as.size() != bs.size()) {
+			return false;
+		}
+		for (int i = 0; i < as.size(); i++) {
+			if (!mayUnify(as.get(i), bs.get(i))) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	private boolean isViable(List<BasicConstraint> alternative) {
+		for (BasicConstraint basicConstraint : alternative) {
+			if (basicConstraint instanceof EqualityConstraint) {
+				EqualityConstraint equalityConstraint = (EqualityConstraint) basicConstraint;
+				if (!mayUnify(equalityConstraint.getLhs().accept(subs), equalityConstraint.getRhs().accept(subs))) {
+					return false;
+				}
+			}
+		}
+		return true;
+	}
+
+	private Type[] typesOf(List<BasicConstraint> alternative) {
+		List<Type> types = new ArrayList<>();
+		for (BasicConstraint basicConstraint : alternative) {
+			if (basicConstraint instanceof EqualityConstraint) {
+				types.add(((EqualityConstraint) basicConstraint).getLhs());
+				types.add(((EqualityConstraint) basicConstraint).getRhs());
+			} else if (basicConstraint instanceof HasFieldConstraint) {
+				types.add(((HasFieldConstraint) basicConstraint).getExpressionType());
+				types.add(((HasFieldConstraint) basicConstraint).getFieldType());
+			}
+		}
+		return types.toArray(new Type[0]);
+	}
+
+	/**
+	 * Removes and returns the deferred polymorphic constraint with the fewest alternatives that are still viable, the
+	 * earliest one among equals, so that forced and impossible choices are made before open ones.
+	 */
+	private Goal takeMostConstrained() {
+		List<Goal> goals = deferred.toList();
+		int best = -1;
+		int bestCount = Integer.MAX_VALUE;
+		// deferred lists the latest constraint first
+		for (int i = goals.size() - 1; i >= 0 && bestCount > 1; i--) {
+			PolymorphicConstraint polymorphicConstraint = (PolymorphicConstraint) goals.get(i).constraint;
+			int count = 0;
+			for (List<BasicConstraint> alternative : polymorphicConstraint) {
+				if (isViable(alternative) && ++count >= bestCount) {
+					break;
+				}
+			}
+			if (count < bestCount) {
+				best = i;
+				bestCount = count;
+			}
+		}
+		deferred = new ConsList<>();
+		for (int i = goals.size() - 1; i >= 0; i--) {
+			if (i != best) {
+				deferred = deferred.cons(goals.get(i));
+			}
+		}
+		return goals.get(best);
+	}
+
+	/**
+	 * Commits to the next viable alternative of a polymorphic constraint, leaving a choice point if there are others.
+	 */
+	private Optional<Issue> choose(Goal goal) {
+		constraintsProcessed++;
+		PolymorphicConstraint polymorphicConstraint = (PolymorphicConstraint) goal.constraint;
+		int index = polymorphicConstraint.getCurrentIndex();
+		trail.record(() -> polymorphicConstraint.setCurrentIndex(index));
+		// alternatives that cannot hold are skipped, and what refuted them becomes a reason for the choice
+		BitSet reasons = goal.reasons;
+		List<BasicConstraint> basicConstraints = null;
+		while (polymorphicConstraint.hasNext()) {
+			List<BasicConstraint> alternative = polymorphicConstraint.next();
+			if (isViable(alternative)) {
+				basicConstraints = alternative;
+				break;
+			}
+			reasons = reasonsOf(reasons, typesOf(alternative));
+		}
+		if (basicConstraints == null) {
+			return backtrack(new BacktrackingFailureIssue(polymorphicConstraint), reasons);
+		}
+		currentReasons = reasons;
+		// remember a choice point if there are any alternatives left
+		if (polymorphicConstraint.hasNext()) {
+			choicePoints++;
+			int level = stateStack.size();
+			stateStack.push(new ChoicePoint(
+					new Goal(polymorphicConstraint, reasons), constraints, deferred, trail.mark(),
+					variableGroups.snapshot(), abstractRecordGroups.snapshot()));
+			maxStateStackDepth = Math.max(maxStateStackDepth, stateStack.size());
+			currentReasons = (BitSet) reasons.clone();
+			currentReasons.set(level);
+		}
+		// add the alternative's constraints
+		for (BasicConstraint basicConstraint : basicConstraints) {
+			addFirst(new MonomorphicConstraint(polymorphicConstraint.getOrigins(), basicConstraint));
+		}
+		return Optional.empty();
 	}
 
+	/**
+	 * Resolves the type each variable maps to, so that it mentions no variable that is itself mapped and no abstract
+	 * record. The variables are resolved in dependency order: a variable is resolved once every mapped variable its
+	 * type mentions has been, so that each type is substituted once, against types that are already resolved.
+	 */
 	private void simplify() {
-		TypeVariableAbstractRecordSubstitutionVisitor tvarSubs =
+		// for each mapped variable, the mapped variables whose types mention it
+		Map<TypeVariable, List<TypeVariable>> dependents = new HashMap<>();
+		Map<TypeVariable, Integer> unresolvedDependencies = new HashMap<>();
+		Deque<TypeVariable> worklist = new ArrayDeque<>();
+		Set<TypeVariable> mentioned = new HashSet<>();
+		Set<AbstractRecordType> visitedRecords = new HashSet<>();
+		TypeVariableCollectionVisitor collector = new TypeVariableCollectionVisitor(mentioned) {
+			@Override
+			public Void visit(AbstractRecordType abstractRecordType) throws RuntimeException {
+				AbstractRecordType representative = abstractRecordGroups.find(abstractRecordType);
+				if (visitedRecords.add(representative) && abstractRecordsToEntries.containsKey(representative)) {
+					abstractRecordsToEntries.get(representative).toConcreteRecord().accept(this);
+				}
+				return null;
+			}
+		};
+		for (Map.Entry<TypeVariable, Type> entry : mapping.entrySet()) {
+			TypeVariable variable = entry.getKey();
+			entry.getValue().accept(collector);
+			Set<TypeVariable> dependencies = new HashSet<>();
+			for (TypeVariable v : mentioned) {
+				TypeVariable representative = variableGroups.find(v);
+				if (mapping.containsKey(representative)) {
+					dependencies.add(representative);
+				}
+			}
+			mentioned.clear();
+			visitedRecords.clear();
+			for (TypeVariable dependency : dependencies) {
+				dependents.computeIfAbsent(dependency, ignored -> new ArrayList<>()).add(variable);
+			}
+			unresolvedDependencies.put(variable, dependencies.size());
+			if (dependencies.isEmpty()) {
+				worklist.add(variable);
+			}
+		}
+
+		Map<TypeVariable, Type> resolved = new HashMap<>();
+		// a type is only substituted once everything it mentions is resolved, and resolved types never change, so
+		// substitutions can be memoized for the whole pass
+		TypeVariableAbstractRecordSubstitutionVisitor resolver =
 				new TypeVariableAbstractRecordSubstitutionVisitor(
-						getSubstitution(), abstractRecordGroups, abstractRecordsToEntries);
-		boolean changed = true;
-		while (changed) {
-			changed = false;
-			for (Map.Entry<TypeVariable, Type> entry : mapping.entrySet()) {
-				TypeVariable k = entry.getKey();
-				Type v = entry.getValue();
-				Type newV = v.accept(tvarSubs);
-				if (!newV.equals(v)) {
-					changed = true;
-					mapping.put(k, newV);
+						new TypeSubstitution(variableGroups, resolved), abstractRecordGroups,
+						abstractRecordsToEntries, () -> 0);
+		while (!worklist.isEmpty()) {
+			TypeVariable variable = worklist.remove();
+			simplifyIterations++;
+			// resolved types are hash-consed, so that identical ones share an instance and compare by reference
+			resolved.put(variable, interner.intern(mapping.get(variable).accept(resolver)));
+			for (TypeVariable dependent : dependents.getOrDefault(variable, Collections.emptyList())) {
+				if (unresolvedDependencies.merge(dependent, -1, Integer::sum) == 0) {
+					worklist.add(dependent);
 				}
 			}
 		}
+		if (resolved.size() != mapping.size()) {
+			// the types left over depend on each other, which the occurs check should have ruled out
+			throw new InternalCompilerError();
+		}
+		for (Map.Entry<TypeVariable, Type> entry : resolved.entrySet()) {
+			if (mapping.get(entry.getKey()) != entry.getValue()) {
+				put(mapping, entry.getKey(), entry.getValue());
+			}
+		}
 	}
 
 	private Optional<Issue> unify() {
-		lastConstraintsSize = constraints.size();
-		while (constraints.size() != 0) {
-			Constraint constraint = constraints.removeFirst();
+		// constraints added since the last call go after the ones still left over from it
+		List<Goal> remaining = constraints.toList();
+		for (Constraint constraint : pendingConstraints) {
+			remaining.add(new Goal(constraint, NO_REASONS));
+		}
+		pendingConstraints.clear();
+		constraints = new ConsList<>();
+		for (int i = remaining.size() - 1; i >= 0; i--) {
+			constraints = constraints.cons(remaining.get(i));
+		}
+		lastConstraintsSize = constraints.size() + deferred.size();
+		while (true) {
+			if (resumed != null) {
+				Goal goal = resumed;
+				resumed = null;
+				Optional<Issue> optionalIssue = choose(goal);
+				if (optionalIssue.isPresent()) {
+					return optionalIssue;
+				}
+				continue;
+			}
+			if (constraints.isEmpty()) {
+				if (deferred.isEmpty()) {
+					break;
+				}
+				// all monomorphic constraints have been propagated, so make the most constrained choice
+				Optional<Issue> optionalIssue = choose(takeMostConstrained());
+				if (optionalIssue.isPresent()) {
+					return optionalIssue;
+				}
+				continue;
+			}
+			Goal goal = constraints.first();
+			constraints = constraints.rest();
+			Constraint constraint = goal.constraint;
 			if (constraint instanceof PolymorphicConstraint) {
-				if (!((PolymorphicConstraint) constraint).hasNext()) {
-					return Optional.of(new BacktrackingFailureIssue((PolymorphicConstraint) constraint));
-				}
-				// extract first constraints
-				List<BasicConstraint> basicConstraints = ((PolymorphicConstraint) constraint).next();
-				// snapshot state if there are any constraints left
-				if (((PolymorphicConstraint) constraint).hasNext()) {
-					// push copy with current constraint added at front
-					TypeSolver copy = copy();
-					copy.constraints.addFirst(constraint.copy());
-					stateStack.push(copy);
-				}
-				// add the first constraints
-				for (BasicConstraint basicConstraint : basicConstraints) {
-					constraints.addFirst(new MonomorphicConstraint(constraint.getOrigins(), basicConstraint));
-				}
-				// solve the newly added constraints
+				deferred = deferred.cons(goal);
 				continue;
 			}
 			if (!(constraint instanceof MonomorphicConstraint)) {
 				throw new Unreachable();
 			}
+			constraintsProcessed++;
 			BasicConstraint basicConstraint = ((MonomorphicConstraint) constraint).getBasicConstraint();
+			currentReasons = reasonsOf(goal.reasons, typesOf(Collections.singletonList(basicConstraint)));
 			if (basicConstraint instanceof HasFieldConstraint) {
 				HasFieldConstraint hasFieldConstraint = (HasFieldConstraint) basicConstraint;
 				Type expressionType = hasFieldConstraint.getExpressionType();
@@ -149,13 +620,14 @@ public class TypeSolver {
 							abstractRecordGroups.find((AbstractRecordType) expressionType);
 					if (abstractRecordsToEntries.containsKey(abstractRecord)) {
 						try {
-							abstractRecordsToEntries.put(
+							put(abstractRecordsToEntries,
 									abstractRecord,
 									abstractRecordsToEntries.get(abstractRecord)
 											.unify(
 													this,
 													new RecordTypeEntry.Abstract(
 															Collections.singletonMap(fieldName, fieldType))));
+							bindWithCurrentReasons(abstractRecord);
 						} catch (UnificationException e) {
 							Optional<Issue> optionalIssue = backtrack(e.getIssue());
 							if (optionalIssue.isPresent()) {
@@ -164,9 +636,10 @@ public class TypeSolver {
 							continue;
 						}
 					} else {
-						abstractRecordsToEntries.put(
+						put(abstractRecordsToEntries,
 								abstractRecord,
 								new RecordTypeEntry.Abstract(Collections.singletonMap(fieldName, fieldType)));
+						bindWithCurrentReasons(abstractRecord);
 					}
 					continue;
 				}
@@ -186,16 +659,18 @@ public class TypeSolver {
 				Type subbedB = b.accept(subs);
 				// union the two groups to which a and b belong
 				variableGroups.union((TypeVariable) a, (TypeVariable) b);
+				generation++;
 				// add constraints for the group representative
 				TypeVariable groupRepresentative = variableGroups.find((TypeVariable) a);
+				bindWithCurrentReasons(groupRepresentative);
 				if (!a.equals(groupRepresentative)) {
-					mapping.remove(a);
-					constraints.addFirst(new MonomorphicConstraint(
+					remove(mapping, (TypeVariable) a);
+					addFirst(new MonomorphicConstraint(
 							Collections.emptyList(), new EqualityConstraint(groupRepresentative, subbedA)));
 				}
 				if (!b.equals(groupRepresentative)) {
-					mapping.remove(b);
-					constraints.addFirst(new MonomorphicConstraint(
+					remove(mapping, (TypeVariable) b);
+					addFirst(new MonomorphicConstraint(
 							Collections.emptyList(), new EqualityConstraint(groupRepresentative, subbedB)));
 				}
 				continue;
@@ -228,18 +703,20 @@ public class TypeSolver {
 						b, RecordTypeEntry.Abstract.EMPTY_ABSTRACT_RECORD);
 				// union the two groups to which a and b belong
 				abstractRecordGroups.union((AbstractRecordType) a, (AbstractRecordType) b);
+				generation++;
 				// add constraints for the group representative
 				try {
 					AbstractRecordType rep = abstractRecordGroups.find((AbstractRecordType) a);
+					bindWithCurrentReasons(rep);
 					if (!a.equals(rep)) {
-						abstractRecordsToEntries.remove(a);
+						remove(abstractRecordsToEntries, (AbstractRecordType) a);
 						entryA = entryA.unify(this, abstractRecordsToEntries.get(rep));
 					}
 					if (!b.equals(rep)) {
-						abstractRecordsToEntries.remove(b);
+						remove(abstractRecordsToEntries, (AbstractRecordType) b);
 						entryB = entryB.unify(this, abstractRecordsToEntries.get(rep));
 					}
-					abstractRecordsToEntries.put(rep, entryA.unify(this, entryB));
+					put(abstractRecordsToEntries, rep, entryA.unify(this, entryB));
 				} catch (UnificationException e) {
 					Optional<Issue> optionalIssue = backtrack(e.getIssue());
 					if (optionalIssue.isPresent()) {
@@ -288,17 +765,19 @@ public class TypeSolver {
 				// the constraint is of the form "a = some type"
 				// first, unify the type to which a maps with b
 				if (mapping.containsKey(a)) {
-					constraints.addFirst(new MonomorphicConstraint(constraint, mapping.get(a), b));
+					addFirst(new MonomorphicConstraint(constraint, mapping.get(a), b));
 				}
 				// then, assign a to that type
-				mapping.put(((TypeVariable) a), b);
-				constraint.getOrigins().forEach(a::addOrigin);
+				put(mapping, (TypeVariable) a, b);
+				bindWithCurrentReasons(a);
+				addOrigins(a, constraint.getOrigins());
 			} else if (a instanceof RecordType && b instanceof AbstractRecordType) {
 				try {
-					abstractRecordsToEntries.put(
+					put(abstractRecordsToEntries,
 							(AbstractRecordType) b,
 							abstractRecordsToEntries.getOrDefault(b, RecordTypeEntry.Abstract.EMPTY_ABSTRACT_RECORD)
 									.unify(this, new RecordTypeEntry.Concrete((RecordType) a)));
+					bindWithCurrentReasons(b);
 				} catch (UnificationException e) {
 					Optional<Issue> optionalIssue = backtrack(e.getIssue());
 					if (optionalIssue.isPresent()) {
@@ -318,24 +797,24 @@ public class TypeSolver {
 					continue;
 				}
 			} else if (a instanceof ArchetypeResourceType && b instanceof ArchetypeResourceType) {
-				constraints.addFirst(new MonomorphicConstraint(
+				addFirst(new MonomorphicConstraint(
 						constraint,
 						((ArchetypeResourceType) a).getReadType(),
 						((ArchetypeResourceType) b).getReadType()));
-				constraints.addFirst(new MonomorphicConstraint(
+				addFirst(new MonomorphicConstraint(
 						constraint,
 						((ArchetypeResourceType) a).getWriteType(),
 						((ArchetypeResourceType) b).getWriteType()));
 			} else if (a instanceof ArchetypeResourceCollectionType && b instanceof ArchetypeResourceCollectionType) {
-				constraints.addFirst(new MonomorphicConstraint(
+				addFirst(new MonomorphicConstraint(
 						constraint,
 						((ArchetypeResourceCollectionType) a).getKeyType(),
 						((ArchetypeResourceCollectionType) b).getKeyType()));
-				constraints.addFirst(new MonomorphicConstraint(
+				addFirst(new MonomorphicConstraint(
 						constraint,
 						((ArchetypeResourceCollectionType) a).getReadType(),
 						((ArchetypeResourceCollectionType) b).getReadType()));
-				constraints.addFirst(new MonomorphicConstraint(
+				addFirst(new MonomorphicConstraint(
 						constraint,
 						((ArchetypeResourceCollectionType) a).getWriteType(),
 						((ArchetypeResourceCollectionType) b).getWriteType()));
@@ -351,19 +830,19 @@ public class TypeSolver {
 					continue;
 				}
 				//   (2) the element types must be the same
-				constraints.addFirst(new MonomorphicConstraint(
+				addFirst(new MonomorphicConstraint(
 						constraint,
 						((SimpleContainerType) a).getElementType(),
 						((SimpleContainerType) b).getElementType()));
 			} else if (a instanceof MapType && b instanceof MapType) {
 				// for two map types to be the same,
 				//   (1) the key types must be the same, and
-				constraints.addFirst(new MonomorphicConstraint(
+				addFirst(new MonomorphicConstraint(
 						constraint,
 						((MapType) a).getKeyType(),
 						((MapType) b).getKeyType()));
 				//   (2) the value types must be the same
-				constraints.addFirst(new MonomorphicConstraint(
+				addFirst(new MonomorphicConstraint(
 						constraint,
 						((MapType) a).getValueType(),
 						((MapType) b).getValueType()));
@@ -381,7 +860,7 @@ public class TypeSolver {
 				}
 				//   (2) each pair of corresponding element types must be the same
 				for (int i = 0; i < ta.getElementTypes().size(); i++) {
-					constraints.addFirst(new MonomorphicConstraint(
+					addFirst(new MonomorphicConstraint(
 							constraint,
 							ta.getElementTypes().get(i),
 							tb.getElementTypes().get(i)));
@@ -400,13 +879,13 @@ public class TypeSolver {
 				}
 				//   (2) each pair of corresponding parameter types must be the same, and
 				for (int i = 0; i < fa.getParamTypes().size(); i++) {
-					constraints.addFirst(new MonomorphicConstraint(
+					addFirst(new MonomorphicConstraint(
 							constraint,
 							fa.getParamTypes().get(i),
 							fb.getParamTypes().get(i)));
 				}
 				//   (3) the return types must be the same
-				constraints.addFirst(new MonomorphicConstraint(
+				addFirst(new MonomorphicConstraint(
 						constraint,
 						fa.getReturnType(),
 						fb.getReturnType()));
@@ -424,7 +903,7 @@ public class TypeSolver {
 				}
 				//   (2) each pair of corresponding parameter types must be the same
 				for (int i = 0; i < pa.getParamTypes().size(); i++) {
-					constraints.addFirst(new MonomorphicConstraint(
+					addFirst(new MonomorphicConstraint(
 							constraint,
 							pa.getParamTypes().get(i),
 							pb.getParamTypes().get(i)));
@@ -441,11 +920,160 @@ public class TypeSolver {
 	}
 
 	public void unify(IssueContext ctx) {
+		Optional<Issue> issue = solve();
+		issue.ifPresent(ctx::error);
+	}
+
+	private Optional<Issue> solve() {
 		Optional<Issue> issue = unify();
-		if (issue.isPresent()) {
-			ctx.error(issue.get());
-			return;
+		if (!issue.isPresent()) {
+			simplify();
+		}
+		return issue;
+	}
+
+	/**
+	 * Splits the constraints added so far into components that share no type variables or abstract records, and so
+	 * can be solved independently. Constraints mentioning neither form a component of their own. Within a component,
+	 * constraints keep the order in which they were added.
+	 *
+	 * This must be called before solving, and leaves this solver without constraints.
+	 *
+	 * @return a solver for each component, holding that component's constraints
+	 */
+	public List<TypeSolver> partition() {
+		if (!constraints.isEmpty() || !deferred.isEmpty() || !mapping.isEmpty() ||
+				!abstractRecordsToEntries.isEmpty()) {
+			throw new InternalCompilerError();
+		}
+		UnionFind<Type> groups = new UnionFind<>();
+		List<Type> representatives = new ArrayList<>();
+		List<List<TypeVariable>> constraintVariables = new ArrayList<>();
+		Set<TypeVariable> variables = new HashSet<>();
+		List<Type> atoms = new ArrayList<>();
+		TypeVariableCollectionVisitor collector = new TypeVariableCollectionVisitor(variables) {
+			@Override
+			public Void visit(AbstractRecordType abstractRecordType) throws RuntimeException {
+				atoms.add(abstractRecordType);
+				return null;
+			}
+		};
+		for (Constraint constraint : pendingConstraints) {
+			List<BasicConstraint> basicConstraints = new ArrayList<>();
+			if (constraint instanceof MonomorphicConstraint) {
+				basicConstraints.add(((MonomorphicConstraint) constraint).getBasicConstraint());
+			} else if (constraint instanceof PolymorphicConstraint) {
+				for (List<BasicConstraint> alternative : (PolymorphicConstraint) constraint) {
+					basicConstraints.addAll(alternative);
+				}
+			} else {
+				throw new Unreachable();
+			}
+			for (BasicConstraint basicConstraint : basicConstraints) {
+				if (basicConstraint instanceof EqualityConstraint) {
+					((EqualityConstraint) basicConstraint).getLhs().accept(collector);
+					((EqualityConstraint) basicConstraint).getRhs().accept(collector);
+				} else if (basicConstraint instanceof HasFieldConstraint) {
+					((HasFieldConstraint) basicConstraint).getExpressionType().accept(collector);
+					((HasFieldConstraint) basicConstraint).getFieldType().accept(collector);
+				} else {
+					throw new InternalCompilerError();
+				}
+			}
+			atoms.addAll(variables);
+			constraintVariables.add(new ArrayList<>(variables));
+			variables.clear();
+			Type representative = atoms.isEmpty() ? null : atoms.get(0);
+			for (Type atom : atoms) {
+				groups.union(representative, atom);
+			}
+			atoms.clear();
+			representatives.add(representative);
+		}
+
+		Map<Type, TypeSolver> components = new LinkedHashMap<>();
+		TypeSolver ground = new TypeSolver(interner);
+		for (int i = 0; i < pendingConstraints.size(); i++) {
+			Type representative = representatives.get(i);
+			TypeSolver component = representative == null ?
+					ground :
+					components.computeIfAbsent(groups.find(representative), ignored -> new TypeSolver(interner));
+			component.addConstraint(pendingConstraints.get(i));
+			component.componentVariables.addAll(constraintVariables.get(i));
+		}
+		pendingConstraints.clear();
+		List<TypeSolver> result = new ArrayList<>(components.values());
+		if (!ground.pendingConstraints.isEmpty()) {
+			result.add(ground);
+		}
+		return result;
+	}
+
+	private Optional<Issue> solve(TypeSchemeCache cache) {
+		if (cache == null) {
+			return solve();
+		}
+		TypeSchemeCache.Key key = TypeSchemeCache.keyOf(pendingConstraints);
+		Optional<Map<TypeVariable, Type>> cached = cache.lookup(key);
+		if (cached.isPresent()) {
+			pendingConstraints.clear();
+			cachedSolution = cached.get();
+			cachedSolution.replaceAll((variable, type) -> interner.intern(type));
+			componentsFromCache++;
+			return Optional.empty();
+		}
+		Optional<Issue> issue = solve();
+		if (!issue.isPresent()) {
+			cache.store(key, getSubstitution());
+		}
+		return issue;
+	}
+
+	public TypeSubstitution unifyComponents(IssueContext ctx, boolean parallel) {
+		return unifyComponents(ctx, parallel, null);
+	}
+
+	/**
+	 * Like {@link #unify(IssueContext)}, but solves each component found by {@link #partition()} separately, so that
+	 * backtracking within one component never revisits the constraints of another. The statistics of the component
+	 * solvers are added to this solver's, except for the maximum state stack depth, which is the largest of theirs.
+	 *
+	 * Given a cache, components that were solved before are instantiated from it rather than solved again, and the
+	 * solutions of the others are added to it. Since components share no type variables, a component is only solved
+	 * again when its own constraints, or those of a definition it is tied to, have changed.
+	 *
+	 * @param parallel whether to solve components concurrently
+	 * @param cache where to look up and remember solutions, or null
+	 * @return a substitution for every type variable that the constraints resolve
+	 */
+	public TypeSubstitution unifyComponents(IssueContext ctx, boolean parallel, TypeSchemeCache cache) {
+		List<TypeSolver> components = partition();
+		List<Optional<Issue>> issues = (parallel ? components.parallelStream() : components.stream())
+				.map(component -> component.solve(cache))
+				.collect(Collectors.toList());
+		Map<TypeVariable, Type> merged = new HashMap<>();
+		for (int i = 0; i < components.size(); i++) {
+			TypeSolver component = components.get(i);
+			issues.get(i).ifPresent(ctx::error);
+			constraintsProcessed += component.constraintsProcessed;
+			choicePoints += component.choicePoints;
+			backtracks += component.backtracks;
+			backjumps += component.backjumps;
+			maxStateStackDepth = Math.max(maxStateStackDepth, component.maxStateStackDepth);
+			savedStateEntries += component.getSavedStateEntries();
+			simplifyIterations += component.simplifyIterations;
+			componentsFromCache += component.componentsFromCache;
+			if (component.cachedSolution != null) {
+				merged.putAll(component.cachedSolution);
+				continue;
+			}
+			TypeSubstitution substitution = component.getSubstitution();
+			for (TypeVariable variable : component.componentVariables) {
+				if (substitution.containsKey(variable)) {
+					merged.put(variable, substitution.get(variable));
+				}
+			}
 		}
-		simplify();
+		return new TypeSubstitution(new UnionFind<>(), merged);
 	}
 }
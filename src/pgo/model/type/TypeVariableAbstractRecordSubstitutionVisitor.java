@@ -3,6 +3,7 @@ package pgo.model.type;
 import pgo.util.UnionFind;
 
 import java.util.Map;
+import java.util.function.LongSupplier;
 
 class TypeVariableAbstractRecordSubstitutionVisitor extends TypeVariableSubstitutionVisitor {
 	private final UnionFind<AbstractRecordType> abstractRecordGroups;
@@ -10,8 +11,8 @@ class TypeVariableAbstractRecordSubstitutionVisitor extends TypeVariableSubstitu
 
 	TypeVariableAbstractRecordSubstitutionVisitor(
 			TypeSubstitution substitution, UnionFind<AbstractRecordType> abstractRecordGroups,
-			Map<AbstractRecordType, RecordTypeEntry> abstractRecordsToEntries) {
-		super(substitution);
+			Map<AbstractRecordType, RecordTypeEntry> abstractRecordsToEntries, LongSupplier generation) {
+		super(substitution, generation);
 		this.abstractRecordGroups = abstractRecordGroups;
 		this.abstractRecordsToEntries = abstractRecordsToEntries;
 	}
@@ -1,12 +1,83 @@
 package pgo.model.type;
 
-import java.util.stream.Collectors;
-
+import java.util.ArrayList;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.LongSupplier;
+
+/**
+ * Applies a substitution to a type, without modifying it: types are shared between constraints, the solver's
+ * mapping and its choice points, so a container type is rebuilt whenever one of its components changes, and returned
+ * as is otherwise.
+ *
+ * Given a generation counter, which must change whenever the substitution does, the results for type variables and
+ * for canonical types from a {@link TypeInterner} are memoized until the generation changes. Those are the types that
+ * are shared, so this saves re-walking them.
+ */
 public class TypeVariableSubstitutionVisitor extends TypeVisitor<Type, RuntimeException> {
 	protected final TypeSubstitution substitution;
+	private final LongSupplier generation;
+	private final Map<Type, Type> memo = new IdentityHashMap<>();
+	private long memoGeneration;
 
 	public TypeVariableSubstitutionVisitor(TypeSubstitution substitution) {
+		this(substitution, null);
+	}
+
+	public TypeVariableSubstitutionVisitor(TypeSubstitution substitution, LongSupplier generation) {
 		this.substitution = substitution;
+		this.generation = generation;
+		this.memoGeneration = generation == null ? 0 : generation.getAsLong();
+	}
+
+	/**
+	 * @return the memoized substitution of type, or null if there is none
+	 */
+	private Type lookup(Type type) {
+		if (generation == null || !(type instanceof TypeVariable || type.isInterned())) {
+			return null;
+		}
+		long current = generation.getAsLong();
+		if (current != memoGeneration) {
+			memo.clear();
+			memoGeneration = current;
+			return null;
+		}
+		return memo.get(type);
+	}
+
+	private Type remember(Type type, Type result) {
+		if (generation != null && (type instanceof TypeVariable || type.isInterned())) {
+			memo.put(type, result);
+		}
+		return result;
+	}
+
+	private Type substitute(Type type) {
+		Type result = lookup(type);
+		if (result == null) {
+			result = remember(type, type.accept(this));
+		}
+		return result;
+	}
+
+	/**
+	 * @return the substituted types, or null if none of them changed
+	 */
+	private List<Type> substituteAll(List<Type> types) {
+		List<Type> result = null;
+		for (int i = 0; i < types.size(); i++) {
+			Type type = types.get(i);
+			Type newType = substitute(type);
+			if (result == null && newType != type) {
+				result = new ArrayList<>(types.subList(0, i));
+			}
+			if (result != null) {
+				result.add(newType);
+			}
+		}
+		return result;
 	}
 
 	@Override
@@ -16,35 +87,50 @@ public class TypeVariableSubstitutionVisitor extends TypeVisitor<Type, RuntimeEx
 
 	@Override
 	public Type visit(ArchetypeResourceType archetypeResourceType) throws RuntimeException {
-		archetypeResourceType.setReadType(archetypeResourceType.getReadType().accept(this));
-		archetypeResourceType.setWriteType(archetypeResourceType.getWriteType().accept(this));
-		return archetypeResourceType;
+		Type readType = substitute(archetypeResourceType.getReadType());
+		Type writeType = substitute(archetypeResourceType.getWriteType());
+		if (readType == archetypeResourceType.getReadType() && writeType == archetypeResourceType.getWriteType()) {
+			return archetypeResourceType;
+		}
+		return new ArchetypeResourceType(readType, writeType, archetypeResourceType.getOrigins());
 	}
 
 	@Override
 	public Type visit(ArchetypeResourceCollectionType archetypeResourceCollectionType) throws RuntimeException {
-		archetypeResourceCollectionType.setKeyType(archetypeResourceCollectionType.getKeyType().accept(this));
-		archetypeResourceCollectionType.setReadType(archetypeResourceCollectionType.getReadType().accept(this));
-		archetypeResourceCollectionType.setWriteType(archetypeResourceCollectionType.getWriteType().accept(this));
-		return archetypeResourceCollectionType;
+		Type keyType = substitute(archetypeResourceCollectionType.getKeyType());
+		Type readType = substitute(archetypeResourceCollectionType.getReadType());
+		Type writeType = substitute(archetypeResourceCollectionType.getWriteType());
+		if (keyType == archetypeResourceCollectionType.getKeyType() &&
+				readType == archetypeResourceCollectionType.getReadType() &&
+				writeType == archetypeResourceCollectionType.getWriteType()) {
+			return archetypeResourceCollectionType;
+		}
+		return new ArchetypeResourceCollectionType(
+				keyType, readType, writeType, archetypeResourceCollectionType.getOrigins());
 	}
 
 	@Override
 	public Type visit(TypeVariable typeVariable) throws RuntimeException {
+		Type memoized = lookup(typeVariable);
+		if (memoized != null) {
+			return memoized;
+		}
 		Type old = typeVariable;
 		Type sub = substitution.getOrDefault(typeVariable, typeVariable);
 		while (!sub.equals(old)) {
 			old = sub;
 			sub = sub.accept(this);
 		}
-		return sub;
+		return remember(typeVariable, sub);
 	}
 
 	@Override
 	public Type visit(TupleType tupleType) throws RuntimeException {
-		tupleType.setElementTypes(
-				tupleType.getElementTypes().stream().map(t -> t.accept(this)).collect(Collectors.toList()));
-		return tupleType;
+		List<Type> elementTypes = substituteAll(tupleType.getElementTypes());
+		if (elementTypes == null) {
+			return tupleType;
+		}
+		return new TupleType(elementTypes, tupleType.getOrigins());
 	}
 
 	@Override
@@ -54,14 +140,20 @@ public class TypeVariableSubstitutionVisitor extends TypeVisitor<Type, RuntimeEx
 
 	@Override
 	public Type visit(SetType setType) throws RuntimeException {
-		setType.setElementType(setType.getElementType().accept(this));
-		return setType;
+		Type elementType = substitute(setType.getElementType());
+		if (elementType == setType.getElementType()) {
+			return setType;
+		}
+		return new SetType(elementType, setType.isHashed(), setType.getOrigins());
 	}
 
 	@Override
 	public Type visit(NonEnumerableSetType nonEnumerableSetType) throws RuntimeException {
-		nonEnumerableSetType.setElementType(nonEnumerableSetType.getElementType().accept(this));
-		return nonEnumerableSetType;
+		Type elementType = substitute(nonEnumerableSetType.getElementType());
+		if (elementType == nonEnumerableSetType.getElementType()) {
+			return nonEnumerableSetType;
+		}
+		return new NonEnumerableSetType(elementType, nonEnumerableSetType.getOrigins());
 	}
 
 	@Override
@@ -76,16 +168,22 @@ public class TypeVariableSubstitutionVisitor extends TypeVisitor<Type, RuntimeEx
 
 	@Override
 	public Type visit(FunctionType functionType) throws RuntimeException {
-		functionType.setParamTypes(
-				functionType.getParamTypes().stream().map(t -> t.accept(this)).collect(Collectors.toList()));
-		functionType.setReturnType(functionType.getReturnType().accept(this));
-		return functionType;
+		List<Type> paramTypes = substituteAll(functionType.getParamTypes());
+		Type returnType = substitute(functionType.getReturnType());
+		if (paramTypes == null && returnType == functionType.getReturnType()) {
+			return functionType;
+		}
+		return new FunctionType(
+				paramTypes == null ? functionType.getParamTypes() : paramTypes, returnType, functionType.getOrigins());
 	}
 
 	@Override
 	public Type visit(ChanType chanType) throws RuntimeException {
-		chanType.setElementType(chanType.getElementType().accept(this));
-		return chanType;
+		Type elementType = substitute(chanType.getElementType());
+		if (elementType == chanType.getElementType()) {
+			return chanType;
+		}
+		return new ChanType(elementType, chanType.getOrigins());
 	}
 
 	@Override
@@ -100,31 +198,44 @@ public class TypeVariableSubstitutionVisitor extends TypeVisitor<Type, RuntimeEx
 
 	@Override
 	public Type visit(MapType mapType) throws RuntimeException {
-		mapType.setKeyType(mapType.getKeyType().accept(this));
-		mapType.setValueType(mapType.getValueType().accept(this));
-		return mapType;
+		Type keyType = substitute(mapType.getKeyType());
+		Type valueType = substitute(mapType.getValueType());
+		if (keyType == mapType.getKeyType() && valueType == mapType.getValueType()) {
+			return mapType;
+		}
+		return new MapType(keyType, valueType, mapType.getOrigins());
 	}
 
 	@Override
 	public Type visit(SliceType sliceType) throws RuntimeException {
-		sliceType.setElementType(sliceType.getElementType().accept(this));
-		return sliceType;
+		Type elementType = substitute(sliceType.getElementType());
+		if (elementType == sliceType.getElementType()) {
+			return sliceType;
+		}
+		return new SliceType(elementType, sliceType.getOrigins());
 	}
 
 	@Override
 	public Type visit(ProcedureType procedureType) throws RuntimeException {
-		procedureType.setParamTypes(
-				procedureType.getParamTypes().stream().map(t -> t.accept(this)).collect(Collectors.toList()));
-		return procedureType;
+		List<Type> paramTypes = substituteAll(procedureType.getParamTypes());
+		if (paramTypes == null) {
+			return procedureType;
+		}
+		return new ProcedureType(paramTypes, procedureType.getOrigins());
 	}
 
 	@Override
 	public Type visit(RecordType recordType) throws RuntimeException {
-		recordType.setFields(
-				recordType.getFields()
-						.stream()
-						.map(f -> new RecordType.Field(f.getName(), f.getType().accept(this)))
-						.collect(Collectors.toList()));
-		return recordType;
+		List<RecordType.Field> fields = new ArrayList<>();
+		boolean changed = false;
+		for (RecordType.Field field : recordType.getFields()) {
+			Type fieldType = substitute(field.getType());
+			changed |= fieldType != field.getType();
+			fields.add(new RecordType.Field(field.getName(), fieldType));
+		}
+		if (!changed) {
+			return recordType;
+		}
+		return new RecordType(fields, recordType.isTransmitted(), recordType.getOrigins());
 	}
 }
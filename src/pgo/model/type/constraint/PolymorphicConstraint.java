@@ -26,6 +26,20 @@ public class PolymorphicConstraint extends Constraint
 		return v.visit(this);
 	}
 
+	/**
+	 * @return the index of the alternative that {@link #next()} will return
+	 */
+	public int getCurrentIndex() {
+		return currentIndex;
+	}
+
+	/**
+	 * Makes {@link #next()} return the alternative at index again, so that backtracking can undo calls to next.
+	 */
+	public void setCurrentIndex(int index) {
+		currentIndex = index;
+	}
+
 	@Override
 	public boolean hasNext() {
 		return currentIndex < constraints.size();
@@ -1,40 +1,57 @@
 package pgo.parser
 
-import pgo.util.SourceLocation
+import pgo.util.{SourceLocation, SourceText}
 
-import scala.util.parsing.input.{Position, Reader}
+import scala.util.parsing.input.{CharSequenceReader, Position, Reader}
 
 /**
- * A generic Char reader wrapper, which counts line and column numbers within some input as it reads.
+ * A Char reader over a whole source text, which knows the line and column number of its position.
  *
- * TLA+ parsing assumes this wrapper is available, because parsing of /\ and \/ relies on knowing indentation.
+ * TLA+ parsing assumes this reader is available, because parsing of /\ and \/ relies on knowing indentation.
  *
- * @param underlying the underlying Reader to wrap
- * @param line the current line. Either leave at its default of 0, or set this to the line
- *             from which you want to start counting.
- * @param column the current column. See above.
+ * All readers over the same input share one [[SourceText]]: each reader is only an offset into it, and line and column
+ * numbers are looked up in the text's line start table when asked for, rather than counted as characters are read.
+ *
+ * @param text the text being read
+ * @param offset the offset of the current character within text
+ * @param tokens the tokens of text, shared by all readers over it
+ * @param memoTable parsing results memoized for this text, shared by all readers over it
  */
-final class LineColumnAwareCharReader(val underlying : Reader[Char], val path: java.nio.file.Path,
-                                      val line : Int = 0, val column : Int = 0) extends Reader[Char] {
-  override def first: Char = underlying.first
-
-  def sourceLocation: SourceLocation = new SourceLocation(path, offset, offset, line, line, column, column)
-
-  override def toString: String = underlying.toString
-
-  override lazy val rest: LineColumnAwareCharReader =
-    if (atEnd) {
-      this
-    } else {
-      if (first == '\n') {
-        new LineColumnAwareCharReader(underlying.rest, path, line + 1, 0)
-      } else {
-        new LineColumnAwareCharReader(underlying.rest, path, line, column + 1)
-      }
+final class LineColumnAwareCharReader(val text: SourceText, override val offset: Int, val tokens: TLATokens,
+                                      val memoTable: ParseMemoTable) extends Reader[Char] {
+  def path: java.nio.file.Path = text.getFile
+
+  def line: Int = text.getLineOf(offset)
+
+  def column: Int = text.getColumnOf(offset)
+
+  def sourceLocation: SourceLocation = {
+    val l = line
+    val c = column
+    new SourceLocation(path, offset, offset, l, l, c, c)
+  }
+
+  override def first: Char = if (atEnd) CharSequenceReader.EofCh else text.charAt(offset)
+
+  override def rest: LineColumnAwareCharReader =
+    if (atEnd) this else new LineColumnAwareCharReader(text, offset + 1, tokens, memoTable)
+
+  override def drop(n: Int): LineColumnAwareCharReader =
+    new LineColumnAwareCharReader(text, math.min(offset + n, text.length), tokens, memoTable)
+
+  override def pos: Position = {
+    val l = line
+    val c = column
+    new Position {
+      override def line: Int = l + 1
+      override def column: Int = c + 1
+      override protected def lineContents: String = text.getText.substring(text.getLineStart(l), text.getLineEnd(l))
     }
+  }
+
+  override def atEnd: Boolean = offset >= text.length
+  override def source: CharSequence = text.getText
 
-  override def pos: Position = underlying.pos
-  override def atEnd: Boolean = underlying.atEnd
-  override def source: CharSequence = underlying.source
-  override def offset: Int = underlying.offset
+  override def toString: String =
+    s"LineColumnAwareCharReader(${if (atEnd) "" else s"'$first', ..."})"
 }
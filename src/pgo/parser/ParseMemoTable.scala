@@ -0,0 +1,45 @@
+package pgo.parser
+
+import scala.collection.mutable
+
+/**
+ * A packrat-style memo table, remembering the result of parsing a given production at a given offset so that
+ * backtracking over alternatives sharing a prefix does not re-parse that prefix.
+ *
+ * One table is shared by all readers over the same input (see [[LineColumnAwareCharReader]]). Entries are keyed by
+ * offset, production name, an integer argument of the production (e.g. a minimum precedence) and the parser context.
+ * Contexts are compared by identity: a context determines scoping and indentation rules, so a result is only reused
+ * under the exact context it was parsed in.
+ */
+final class ParseMemoTable {
+  import ParseMemoTable.Key
+
+  private val table = mutable.HashMap.empty[Key, AnyRef]
+
+  def getOrParse[T <: AnyRef](offset: Int, production: String, argument: Int, context: AnyRef)(parse: => T): T = {
+    val key = new Key(offset, production, argument, context)
+    table.get(key) match {
+      case Some(result) => result.asInstanceOf[T]
+      case None =>
+        // parse may add entries of its own, so look up and update separately
+        val result = parse
+        table.update(key, result)
+        result
+    }
+  }
+}
+
+object ParseMemoTable {
+  private final class Key(val offset: Int, val production: String, val argument: Int, val context: AnyRef) {
+    override def equals(obj: Any): Boolean =
+      obj match {
+        case other: Key =>
+          offset == other.offset && argument == other.argument && (context eq other.context) &&
+            production == other.production
+        case _ => false
+      }
+
+    override def hashCode(): Int =
+      ((offset * 31 + argument) * 31 + System.identityHashCode(context)) * 31 + production.hashCode
+  }
+}
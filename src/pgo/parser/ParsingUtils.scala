@@ -1,13 +1,16 @@
 package pgo.parser
 
+import pgo.util.SourceTextRegistry
+
 import scala.util.parsing.combinator.Parsers
-import scala.util.parsing.input.CharSequenceReader
 
 trait ParsingUtils extends Parsers {
   def buildReader(path: java.nio.file.Path, seq: CharSequence): LineColumnAwareCharReader = {
-    val reader = new CharSequenceReader(seq)
-    val lcReader = new LineColumnAwareCharReader(reader, path)
-    lcReader
+    // the compilation's registry usually decoded this file already, e.g. to detect a Modular PlusCal block
+    val text = SourceTextRegistry.current().get(path, seq)
+    // each text is lexed once, however many parsers read it. Memo tables are not shared: their entries are AST
+    // nodes, which must not be aliased between the trees of separate parses
+    new LineColumnAwareCharReader(text, 0, text.getTokens[TLATokens](TLALexer.lex(_)), new ParseMemoTable)
   }
 
   def checkResult[T](result: =>ParseResult[T]): T =
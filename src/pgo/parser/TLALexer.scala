@@ -0,0 +1,180 @@
+package pgo.parser
+
+import pgo.util.SourceText
+
+import scala.collection.mutable
+
+/**
+ * Splits a TLA+ source text into [[TLATokens]] in one pass.
+ *
+ * The token boundaries agree with the character-level productions of [[TLAParser]]: a whitespace token is a maximal
+ * run matching \s, a line comment runs up to but excluding the next newline, an identifier is exactly what
+ * [[TLAParser.tlaIdentifier]] accepts, and so on. This lets the parsers skip whole tokens whenever they are positioned
+ * at the start of one, and fall back to reading characters when they are not.
+ */
+object TLALexer {
+  import TLATokens._
+
+  /**
+   * Operator spellings grouped by first character, longest first so that the first match is the longest one.
+   */
+  private val operatorsByFirstChar: Map[Char,Array[String]] = {
+    val symbols = (TLAMeta.prefixOperators.keySet ++ TLAMeta.infixOperators.keySet ++ TLAMeta.postfixOperators.keySet)
+      .filter(op => op != "-_" && !op.forall(_.isLetter)) ++
+      Set("==", "<<", ">>", ">>_", "|->", "->", "<-", "::", "-.")
+    symbols.toArray.groupBy(_.charAt(0)).view.mapValues(_.sortWith(_.length > _.length)).toMap
+  }
+
+  private def isWhitespace(c: Char): Boolean =
+    c == ' ' || c == '\t' || c == '\n' || c == '\u000B' || c == '\f' || c == '\r'
+
+  private def isWordChar(c: Char): Boolean =
+    (c >= 'a' && c <= 'z') || (c >= 'A' && c <= 'Z') || (c >= '0' && c <= '9') || c == '_'
+
+  def lex(text: SourceText): TLATokens = {
+    val str = text.getText
+    val length = str.length
+    val kinds = mutable.ArrayBuilder.make[Byte]
+    val starts = mutable.ArrayBuilder.make[Int]
+    val lines = mutable.ArrayBuilder.make[Int]
+    val columns = mutable.ArrayBuilder.make[Int]
+    val commentEnds = mutable.HashMap.empty[Int,Int]
+
+    var line = 0
+    def emit(kind: Byte, start: Int): Unit = {
+      while (line + 1 < text.getLineCount && text.getLineStart(line + 1) <= start) {
+        line += 1
+      }
+      kinds += kind
+      starts += start
+      lines += line
+      columns += start - text.getLineStart(line)
+    }
+
+    def lineEnd(from: Int): Int = {
+      val idx = str.indexOf('\n', from)
+      if (idx == -1) length else idx
+    }
+
+    // mirrors TLAParser.tlaMultilineComment: comments nest, and a line comment inside a comment hides any "*)" on the
+    // rest of its line
+    def findCommentEnd(open: Int): Int =
+      commentEnds.getOrElse(open, {
+        var i = open + 2
+        var result = -2
+        while (result == -2) {
+          if (i >= length) {
+            result = -1
+          } else if (str.startsWith("(*", i)) {
+            i = findCommentEnd(i)
+            if (i == -1) result = -1
+          } else if (str.startsWith("*)", i)) {
+            result = i + 2
+          } else if (str.startsWith("\\*", i)) {
+            i = lineEnd(i)
+          } else {
+            i += 1
+          }
+        }
+        commentEnds.update(open, result)
+        result
+      })
+
+    def lineCommentKind(start: Int, end: Int): Byte = {
+      // \* *** BEGIN TRANSLATION, as matched by TLAParser.tlaModuleBeforeTranslation
+      var i = start + 2
+      while (i < end && str.charAt(i) == '*') i += 1
+      while (i < end && str.charAt(i) == ' ') i += 1
+      if (str.startsWith("BEGIN", i)) {
+        i += 5
+        while (i < end && str.charAt(i) == ' ') i += 1
+        if (str.startsWith("TRANSLATION", i) && i + 11 <= end) {
+          return TranslationBegin
+        }
+      }
+      // \* BEGIN PLUSCAL TRANSLATION and \* END PLUSCAL TRANSLATION, as written by PGoMain
+      val words = str.substring(start + 2, end).split("\\s+", -1)
+      if (words.length >= 4 && words(0).isEmpty && words(2) == "PLUSCAL" && words(3).startsWith("TRANSLATION")) {
+        if (words(1) == "BEGIN") return PlusCalTranslationBegin
+        if (words(1) == "END") return PlusCalTranslationEnd
+      }
+      LineComment
+    }
+
+    def stringEnd(open: Int): Int = {
+      var i = open + 1
+      while (i < length) {
+        str.charAt(i) match {
+          case '"' => return i + 1
+          case '\\' =>
+            if (i + 1 < length && "\"\\tnfr".indexOf(str.charAt(i + 1)) != -1) {
+              i += 2
+            } else {
+              return -1
+            }
+          case _ => i += 1
+        }
+      }
+      -1
+    }
+
+    var pos = 0
+    while (pos < length) {
+      val start = pos
+      val c = str.charAt(pos)
+      if (isWhitespace(c)) {
+        while (pos < length && isWhitespace(str.charAt(pos))) pos += 1
+        emit(Whitespace, start)
+      } else if (str.startsWith("\\*", pos)) {
+        pos = lineEnd(pos)
+        emit(lineCommentKind(start, pos), start)
+      } else if (str.startsWith("(*", pos)) {
+        findCommentEnd(pos)
+        pos += 2
+        emit(CommentOpen, start)
+      } else if (str.startsWith("*)", pos)) {
+        pos += 2
+        emit(CommentClose, start)
+      } else if (isWordChar(c)) {
+        var hasLetter = false
+        var allDigits = true
+        while (pos < length && isWordChar(str.charAt(pos))) {
+          val d = str.charAt(pos)
+          hasLetter ||= d.isLetter
+          allDigits &&= d >= '0' && d <= '9'
+          pos += 1
+        }
+        val word = str.substring(start, pos)
+        emit(if (allDigits) {
+          Number
+        } else if (!hasLetter) {
+          Other
+        } else if (TLAMeta.reservedWords.contains(word) || word.startsWith("WF_") || word.startsWith("SF_")) {
+          Keyword
+        } else {
+          Identifier
+        }, start)
+      } else if (c == '"') {
+        val end = stringEnd(pos)
+        if (end == -1) {
+          pos += 1
+          emit(Other, start)
+        } else {
+          pos = end
+          emit(String, start)
+        }
+      } else {
+        operatorsByFirstChar.getOrElse(c, Array.empty[String]).find(str.startsWith(_, pos)) match {
+          case Some(op) =>
+            pos += op.length
+            emit(Operator, start)
+          case None =>
+            pos += 1
+            emit(Other, start)
+        }
+      }
+    }
+
+    new TLATokens(text, kinds.result(), starts.result(), lines.result(), columns.result(), commentEnds)
+  }
+}
@@ -96,6 +96,17 @@ trait TLAParser extends RegexParsers {
     }
   }
 
+  /**
+   * Memoizes p, so that it is parsed at most once per offset under any given context; see [[ParseMemoTable]].
+   */
+  def memo[T](production: String, argument: Int = 0)(p: =>Parser[T])(implicit ctx: TLAParserContext): Parser[T] = {
+    lazy val pp = p // ensure p is evaluated at-most-once
+    (in: Reader[Char]) => {
+      val lcIn = in.asInstanceOf[LineColumnAwareCharReader]
+      lcIn.memoTable.getOrParse(lcIn.offset, production, argument, ctx)(pp(in))
+    }
+  }
+
   val tlaLineComment : Parser[Unit] =
     ("\\*" ~ rep(acceptIf(_ != '\n')(c => s"'$c' was a new line"))) ^^^ ()
 
@@ -106,27 +117,81 @@ trait TLAParser extends RegexParsers {
     } ~ "*)") ^^^ ()
   }
 
-  val tlaWhitespace : Parser[Unit] = rep(regex(raw"\s+".r) | tlaMultilineComment | tlaLineComment).map(_ => ())
+  /**
+   * Reads the token of the given kind starting at the current position, computing its value from the token table.
+   * When the reader is not at the start of such a token, fallback reads the same thing character by character, which
+   * also gives a proper error message on failure.
+   */
+  def token[T](kind: Byte, fallback: =>Parser[T])(value: (TLATokens, Int) => T): Parser[T] = {
+    lazy val fb = fallback // ensure fallback is evaluated at-most-once
+    (in: Reader[Char]) => {
+      val lcIn = in.asInstanceOf[LineColumnAwareCharReader]
+      val tokens = lcIn.tokens
+      val idx = tokens.indexAt(lcIn.offset)
+      if (idx != -1 && tokens.kind(idx) == kind) {
+        Success(value(tokens, idx), lcIn.drop(tokens.end(idx) - lcIn.offset))
+      } else {
+        fb(in)
+      }
+    }
+  }
+
+  /**
+   * Skips whitespace and comments a token at a time, stopping at a \* BEGIN TRANSLATION comment if stopAtTranslation
+   * is set. Should skipping reach a position that is not the start of a token, fallback continues from there.
+   */
+  def tokenWhitespace(stopAtTranslation: Boolean, fallback: =>Parser[Unit]): Parser[Unit] = {
+    lazy val fb = fallback // ensure fallback is evaluated at-most-once
+    (in: Reader[Char]) => {
+      val lcIn = in.asInstanceOf[LineColumnAwareCharReader]
+      val tokens = lcIn.tokens
+      var offset = lcIn.offset
+      var idx = tokens.indexAt(offset)
+      var skipping = true
+      while (idx != -1 && skipping) {
+        tokens.kind(idx) match {
+          case TLATokens.Whitespace | TLATokens.LineComment |
+               TLATokens.PlusCalTranslationBegin | TLATokens.PlusCalTranslationEnd =>
+            offset = tokens.end(idx)
+          case TLATokens.TranslationBegin if !stopAtTranslation =>
+            offset = tokens.end(idx)
+          case TLATokens.CommentOpen if tokens.commentEnd(idx) != -1 =>
+            offset = tokens.commentEnd(idx)
+          case _ =>
+            skipping = false
+        }
+        if (skipping) {
+          idx = tokens.indexAt(offset)
+        }
+      }
+      val next = lcIn.drop(offset - lcIn.offset)
+      if (skipping && !next.atEnd) fb(next) else Success((), next)
+    }
+  }
+
+  val tlaWhitespace : Parser[Unit] =
+    tokenWhitespace(stopAtTranslation = false, rep(regex(raw"\s+".r) | tlaMultilineComment | tlaLineComment) ^^^ ())
 
   def wsChk(implicit ctx: TLAParserContext): Parser[Unit] = tlaWhitespace ~ checkMinColumn ^^^ ()
 
   val tlaIdentifier : Parser[String] = {
     val identRegex = raw"(?!WF_)(?!SF_)[a-z0-9_A-Z]*[a-zA-Z][a-z0-9_A-Z]*".r
 
-    regex(identRegex) ^? ({
+    token(TLATokens.Identifier, regex(identRegex) ^? ({
       case candidate if !TLAMeta.reservedWords.contains(candidate) &&
         !candidate.startsWith("WF_") &&
         !candidate.startsWith("SF_") => candidate
-    }, candidate => s"expected identifier: $candidate is reserved word, or starts with WF_ or SF_")
+    }, candidate => s"expected identifier: $candidate is reserved word, or starts with WF_ or SF_"))(_.tokenText(_))
   }
 
-  val tlaString : Parser[String] =
+  val tlaString : Parser[String] = token(TLATokens.String, {
     elem('\"') ~> (rep[Char] {
       (elem('\\') ~>! {
         elem('\"') | elem('\\') | ("t" ^^^ '\t') | ("n" ^^^ '\n') | ("f" ^^^ '\f') | ("r" ^^^ '\r')
       }.withFailureMessage("expected valid string escape: one of \\\", \\t, \\n, \\f, or \\r")) |
         acceptMatch("string contents", { case c if c != '\"' => c })
     } ^^ { parts => parts.mkString("") }) <~ elem('\"')
+  })(_.stringValue(_))
 
   val tlaIdentifierExpr: Parser[TLAIdentifier] =
     withSourceLocation(tlaIdentifier) ^^ {
@@ -140,11 +205,13 @@ trait TLAParser extends RegexParsers {
 
   val tlaNumberExpr: Parser[TLANumber] =
     withSourceLocation {
-      regex(raw"\d+".r) ^^ ((_, TLANumber.Base.DECIMAL)) |
-        regex(raw"\d*\.\d+".r) ^^ ((_, TLANumber.Base.DECIMAL)) |
-        regex(raw"\\[bB][01]+".r) ^^ ((_, TLANumber.Base.BINARY)) |
-        regex(raw"\\[oO][0-7]+".r) ^^ ((_, TLANumber.Base.OCTAL)) |
-        regex(raw"\\[hH][0-9a-fA-F]+".r) ^^ ((_, TLANumber.Base.HEXADECIMAL))
+      token(TLATokens.Number, {
+        regex(raw"\d+".r) ^^ ((_, TLANumber.Base.DECIMAL)) |
+          regex(raw"\d*\.\d+".r) ^^ ((_, TLANumber.Base.DECIMAL)) |
+          regex(raw"\\[bB][01]+".r) ^^ ((_, TLANumber.Base.BINARY)) |
+          regex(raw"\\[oO][0-7]+".r) ^^ ((_, TLANumber.Base.OCTAL)) |
+          regex(raw"\\[hH][0-9a-fA-F]+".r) ^^ ((_, TLANumber.Base.HEXADECIMAL))
+      })((tokens, idx) => (tokens.tokenText(idx), TLANumber.Base.DECIMAL))
     } ^^ {
       case (loc, (str, base)) => new TLANumber(loc, str, base)
     }
@@ -434,6 +501,47 @@ trait TLAParser extends RegexParsers {
     }
   }
 
+  /**
+   * Succeeds, without consuming input, unless the reader is at a "{" whose matching "}" follows with no ":" between
+   * them outside of nested brackets, in which case the braces can only hold a set constructor.
+   *
+   * Set refinements and comprehensions must otherwise be tried first, and a comprehension parses its first element in
+   * a fresh late-binding context, which no memoized parse can be shared with. Without this check, each level of nested
+   * set constructors would be parsed twice over, once under each context, taking time exponential in the nesting depth.
+   */
+  val tlaMaybeSetBinding: Parser[Unit] = (in: Reader[Char]) => {
+    val lcIn = in.asInstanceOf[LineColumnAwareCharReader]
+    val tokens = lcIn.tokens
+    var idx = tokens.indexAt(lcIn.offset)
+    if (idx == -1 || tokens.tokenText(idx) != "{") {
+      Success((), in)
+    } else {
+      var depth = 0
+      var result: Option[Boolean] = None
+      idx += 1
+      while (result.isEmpty && idx != -1 && idx < tokens.size) {
+        tokens.kind(idx) match {
+          case TLATokens.CommentOpen if tokens.commentEnd(idx) != -1 =>
+            idx = tokens.indexAt(tokens.commentEnd(idx))
+          case TLATokens.Other | TLATokens.Operator =>
+            tokens.tokenText(idx) match {
+              case "(" | "[" | "{" | "<<" => depth += 1
+              case ")" | "]" | ">>" | ">>_" => depth -= 1
+              case "}" if depth == 0 => result = Some(false)
+              case "}" => depth -= 1
+              case ":" if depth == 0 => result = Some(true)
+              case _ =>
+            }
+            idx += 1
+          case _ =>
+            idx += 1
+        }
+      }
+      // when in doubt, e.g. because the braces are never closed, let the set refinement and comprehension be tried
+      if (result.getOrElse(true)) Success((), in) else Failure("expected a set refinement or comprehension", in)
+    }
+  }
+
   def tlaSetConstructorExpr(implicit ctx: TLAParserContext): Parser[TLASetConstructor] =
     withSourceLocation {
       "{" ~> wsChk ~> tlaCommaSep(tlaExpression) <~ wsChk <~ "}"
@@ -657,7 +765,11 @@ trait TLAParser extends RegexParsers {
           }
       }
 
-    withSourceLocation(lhsWithPrefix).flatMap { case (loc, lhs) => withPartOpt(loc, lhs, 18) }
+    // the operator-precedence alternatives and the many productions sharing a prefix (e.g. "[", "{" and "<<") would
+    // otherwise re-parse the same sub-expressions repeatedly, exponentially so when nested
+    memo("expression", minPrecedence) {
+      withSourceLocation(lhsWithPrefix).flatMap { case (loc, lhs) => withPartOpt(loc, lhs, 18) }
+    }
   }
 
   def tlaExpressionNoOperators(implicit ctx: TLAParserContext): Parser[TLAExpression] =
@@ -665,8 +777,8 @@ trait TLAParser extends RegexParsers {
       tlaStringExpr |
       withSourceLocation("TRUE" | "FALSE") ^^ { case (loc, str) => new TLABool(loc, str == "TRUE") } |
       ("(" ~>! wsChk ~> tlaExpression <~ wsChk <~ ")") |
-      tlaTupleExpr |
-      tlaRequiredActionExpr |
+      memo("tuple")(tlaTupleExpr) |
+      memo("requiredAction")(tlaRequiredActionExpr) |
       tlaOperatorCallOrGeneralIdentifier |
       tlaFairnessConstraintExpr |
       tlaConjunctExpr | tlaDisjunctExpr |
@@ -680,7 +792,8 @@ trait TLAParser extends RegexParsers {
       tlaQuantifiedExistentialExpr | tlaQuantifiedUniversalExpr |
       tlaUnquantifiedExistentialExpr | tlaUnquantifiedUniversalExpr |
       // starting with {
-      tlaSetRefinementExpr | tlaSetComprehensionExpr | tlaSetConstructorExpr
+      (tlaMaybeSetBinding ~> (tlaSetRefinementExpr | tlaSetComprehensionExpr)) |
+      memo("setConstructor")(tlaSetConstructorExpr)
 
   def tlaExpression(implicit ctx: TLAParserContext): Parser[TLAExpression] =
     tlaExpressionMinPrecedence(0)
@@ -833,19 +946,21 @@ trait TLAParser extends RegexParsers {
       "THEOREM" ~>! wsChk ~> tlaExpression
     } ^^ { case (loc, expr) => new TLATheorem(loc, expr) }
 
-    ("LOCAL" ~>! wsChk ~> {
-        tlaInstance(true) | tlaModuleDefinition(true) | tlaFunctionDefinition(true) |
-          tlaOperatorDefinition(true)
-      }) |
-      tlaInstance(false) |
-      tlaModuleDefinition(false) |
-      tlaFunctionDefinition(false) |
-      tlaOperatorDefinition(false) |
-      variableDeclaration |
-      constantDeclaration |
-      assumption |
-      theorem |
-      tlaModule
+    memo("unit") {
+      ("LOCAL" ~>! wsChk ~> {
+          tlaInstance(true) | tlaModuleDefinition(true) | tlaFunctionDefinition(true) |
+            tlaOperatorDefinition(true)
+        }) |
+        tlaInstance(false) |
+        tlaModuleDefinition(false) |
+        tlaFunctionDefinition(false) |
+        tlaOperatorDefinition(false) |
+        variableDeclaration |
+        constantDeclaration |
+        assumption |
+        theorem |
+        tlaModule
+    }
   }
 
   val findTLAModule: Parser[Unit] =
@@ -854,8 +969,8 @@ trait TLAParser extends RegexParsers {
   def tlaModuleBeforeTranslation(implicit ctx: TLAParserContext): Parser[TLAModule] =
     withSourceLocation {
       val translationTag = "\\*" <~ rep("*") <~ rep(" ") <~ "BEGIN" <~ rep(" ") <~ "TRANSLATION"
-      val wsWithoutTranslationTag =
-        rep(regex("""\s+""".r) | tlaMultilineComment | not(translationTag) ~> tlaLineComment)
+      val wsWithoutTranslationTag = tokenWhitespace(stopAtTranslation = true,
+        rep(regex("""\s+""".r) | tlaMultilineComment | not(translationTag) ~> tlaLineComment) ^^^ ())
 
       val origCtx = ctx
       ("----" ~> rep(elem('-')) ~> wsChk ~> "MODULE" ~>! wsChk ~> tlaIdentifierExpr <~ wsChk <~ "----" <~ rep(elem('-'))) ~
@@ -0,0 +1,101 @@
+package pgo.parser
+
+import pgo.util.SourceText
+
+/**
+ * The tokens of a TLA+ source text, as produced by [[TLALexer]].
+ *
+ * Tokens are stored as parallel arrays rather than as objects: a kind, a start offset, and the line and column of that
+ * offset. Tokens are contiguous and cover the whole text, so each token ends where the next one starts.
+ *
+ * Comments are not lexed as single tokens, because PlusCal algorithms live inside comments; instead a "(*" token
+ * records where the comment it opens ends, so that whitespace can skip over a whole comment at once.
+ */
+final class TLATokens(val text: SourceText, kinds: Array[Byte], starts: Array[Int], lines: Array[Int],
+                      columns: Array[Int], commentEnds: collection.Map[Int,Int]) {
+  def size: Int = kinds.length
+
+  def kind(idx: Int): Byte = kinds(idx)
+
+  def start(idx: Int): Int = starts(idx)
+
+  def end(idx: Int): Int = if (idx + 1 < starts.length) starts(idx + 1) else text.length
+
+  def line(idx: Int): Int = lines(idx)
+
+  def column(idx: Int): Int = columns(idx)
+
+  def tokenText(idx: Int): String = text.getText.substring(start(idx), end(idx))
+
+  /**
+   * @return the index of the token starting at offset, or -1 if offset is not the start of a token
+   */
+  def indexAt(offset: Int): Int = {
+    val idx = java.util.Arrays.binarySearch(starts, offset)
+    if (idx >= 0) idx else -1
+  }
+
+  /**
+   * @return the index of the first token of the given kind at or after token index from, or -1 if there is none
+   */
+  def find(kind: Byte, from: Int): Int = {
+    var idx = from
+    while (idx < kinds.length && kinds(idx) != kind) {
+      idx += 1
+    }
+    if (idx < kinds.length) idx else -1
+  }
+
+  /**
+   * @return for a [[TLATokens.CommentOpen]] token, the offset just past the "*)" closing its comment, or -1 if the
+   *         comment is never closed
+   */
+  def commentEnd(idx: Int): Int = commentEnds.getOrElse(starts(idx), -1)
+
+  /**
+   * @return the contents of a [[TLATokens.String]] token, without its quotes and with escapes replaced
+   */
+  def stringValue(idx: Int): String = {
+    val builder = new StringBuilder
+    var i = start(idx) + 1
+    val last = end(idx) - 1
+    while (i < last) {
+      text.charAt(i) match {
+        case '\\' =>
+          builder += (text.charAt(i + 1) match {
+            case 't' => '\t'
+            case 'n' => '\n'
+            case 'f' => '\f'
+            case 'r' => '\r'
+            case c => c
+          })
+          i += 2
+        case c =>
+          builder += c
+          i += 1
+      }
+    }
+    builder.result()
+  }
+}
+
+object TLATokens {
+  final val Whitespace: Byte = 0
+  final val LineComment: Byte = 1
+  /** a line comment of the form \* BEGIN TRANSLATION, which ends the part of a module PGo reads */
+  final val TranslationBegin: Byte = 2
+  /** a line comment of the form \* BEGIN PLUSCAL TRANSLATION */
+  final val PlusCalTranslationBegin: Byte = 3
+  /** a line comment of the form \* END PLUSCAL TRANSLATION */
+  final val PlusCalTranslationEnd: Byte = 4
+  final val CommentOpen: Byte = 5
+  final val CommentClose: Byte = 6
+  final val Identifier: Byte = 7
+  /** a reserved word, or a word with the reserved prefix WF_ or SF_ */
+  final val Keyword: Byte = 8
+  final val Number: Byte = 9
+  final val String: Byte = 10
+  final val Operator: Byte = 11
+  /** any other character, including the opening quote of a malformed string */
+  final val Other: Byte = 12
+}
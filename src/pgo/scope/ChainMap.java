@@ -1,26 +1,34 @@
 package pgo.scope;
 
-import java.util.Collection;
-import java.util.HashMap;
-import java.util.Map;
-import java.util.Set;
-import java.util.stream.Collectors;
+import pgo.util.PersistentHashMap;
+
+import java.util.*;
 
 /**
  *
- * A map that extends another map. It is exactly like a normal map, but modifications only affect
- * the local map, not the parent.
+ * A map that extends another map. It starts out with the entries the parent has when it is created, and is otherwise
+ * exactly like a normal map: modifications only affect the local map, not the parent.
+ *
+ * The entries are kept in a persistent hash trie, so extending another ChainMap shares its trie instead of copying
+ * it, and lookups, size and iteration cost the same however many maps are chained.
  *
  * @param <K> The key used type
  * @param <V> The the value type
  */
-public class ChainMap<K, V> implements Map<K, V> {
+public class ChainMap<K, V> extends AbstractMap<K, V> {
 	private final Map<K, V> parent;
-	private final Map<K, V> members;
+	private PersistentHashMap<K, V> members;
 
 	public ChainMap(Map<K, V> parent) {
 		this.parent = parent;
-		this.members = new HashMap<>();
+		if (parent instanceof ChainMap) {
+			this.members = ((ChainMap<K, V>) parent).members;
+		} else {
+			this.members = new PersistentHashMap<>();
+			for (Entry<K, V> e : parent.entrySet()) {
+				members = members.plus(e.getKey(), e.getValue());
+			}
+		}
 	}
 
 	public Map<K, V> getParent(){
@@ -29,76 +37,84 @@ public class ChainMap<K, V> implements Map<K, V> {
 
 	@Override
 	public void clear() {
-		members.clear();
+		members = new PersistentHashMap<>();
 	}
 
 	@Override
 	public boolean containsKey(Object k) {
-		return members.containsKey(k) || parent.containsKey(k);
-	}
-
-	@Override
-	public boolean containsValue(Object v) {
-		return members.containsValue(v) || parent.containsValue(v);
+		return members.containsKey(k);
 	}
 
 	@Override
 	public Set<Entry<K, V>> entrySet() {
-		// do not overwrite members
-		Map<K, V> result = new HashMap<>(members);
-		Set<Entry<K, V>> parentSet = parent.entrySet();
-		for(Entry<K, V> e : parentSet) {
-			result.putIfAbsent(e.getKey(), e.getValue());
-		}
-		return result.entrySet();
+		return new AbstractSet<Entry<K, V>>() {
+			@Override
+			public Iterator<Entry<K, V>> iterator() {
+				// iterates over the trie as of the call, which later modifications leave intact
+				Iterator<Entry<K, V>> entries = members.iterator();
+				return new Iterator<Entry<K, V>>() {
+					private Entry<K, V> last;
+
+					@Override
+					public boolean hasNext() {
+						return entries.hasNext();
+					}
+
+					@Override
+					public Entry<K, V> next() {
+						last = entries.next();
+						return last;
+					}
+
+					@Override
+					public void remove() {
+						if (last == null) {
+							throw new IllegalStateException();
+						}
+						members = members.minus(last.getKey());
+						last = null;
+					}
+				};
+			}
+
+			@Override
+			public int size() {
+				return members.size();
+			}
+		};
 	}
 
 	@Override
 	public V get(Object k) {
-		V result = members.get(k);
-		if(result == null) {
-			return parent.get(k);
-		}
-		return result;
+		return members.get(k);
 	}
 
 	@Override
-	public boolean isEmpty() {
-		return members.isEmpty() && parent.isEmpty();
+	public V getOrDefault(Object k, V defaultValue) {
+		return members.getOrDefault(k, defaultValue);
 	}
 
 	@Override
-	public Set<K> keySet() {
-		Set<K> result = members.keySet();
-
-		result.addAll(parent.keySet());
-		return result;
+	public boolean isEmpty() {
+		return members.isEmpty();
 	}
 
 	@Override
 	public V put(K k, V v) {
-		return members.put(k, v);
-	}
-
-	@Override
-	public void putAll(Map<? extends K, ? extends V> arg) {
-		members.putAll(arg);
+		V old = members.get(k);
+		members = members.plus(k, v);
+		return old;
 	}
 
 	@Override
 	public V remove(Object k) {
-		return members.remove(k);
+		V old = members.get(k);
+		members = members.minus(k);
+		return old;
 	}
 
 	@Override
 	public int size() {
-		return keySet().size();
+		return members.size();
 	}
-
-	@Override
-	public Collection<V> values() {
-		return entrySet().stream().map(Entry::getValue).collect(Collectors.toList());
-	}
-
-
 }
@@ -1,70 +1,91 @@
 package pgo.scope;
 
-import java.util.Collection;
-import java.util.HashSet;
+import pgo.util.PersistentHashMap;
+
+import java.util.AbstractSet;
 import java.util.Iterator;
+import java.util.Map;
 import java.util.Set;
 
-public class ChainSet<T> implements Set<T> {
-	
-	private final Set<T> union;
-	
+/**
+ * A set that extends another set. It starts out with the elements the parent has when it is created, and is otherwise
+ * exactly like a normal set: modifications only affect the local set, not the parent.
+ *
+ * The elements are kept in a persistent hash trie, so extending another ChainSet shares its trie instead of copying
+ * it, which keeps nested scopes cheap to open however deep they are. Elements must not be null.
+ *
+ * @param <T> The element type
+ */
+public class ChainSet<T> extends AbstractSet<T> {
+
+	private PersistentHashMap<T, Boolean> members;
+
 	public ChainSet(Set<T> parent) {
-		this.union = new HashSet<>(parent);
+		if (parent instanceof ChainSet) {
+			this.members = ((ChainSet<T>) parent).members;
+		} else {
+			this.members = new PersistentHashMap<>();
+			for (T e : parent) {
+				members = members.plus(e, Boolean.TRUE);
+			}
+		}
 	}
-	
+
 	@Override
 	public boolean add(T e) {
-		return union.add(e);
-	}
-	@Override
-	public boolean addAll(Collection<? extends T> c) {
-		return union.addAll(c);
+		int oldSize = members.size();
+		members = members.plus(e, Boolean.TRUE);
+		return members.size() != oldSize;
 	}
 	@Override
 	public void clear() {
-		union.clear();
+		members = new PersistentHashMap<>();
 	}
 	@Override
 	public boolean contains(Object o) {
-		return union.contains(o);
-	}
-	@Override
-	public boolean containsAll(Collection<?> c) {
-		return union.containsAll(c);
+		return members.containsKey(o);
 	}
 	@Override
 	public boolean isEmpty() {
-		return union.isEmpty();
+		return members.isEmpty();
 	}
 	@Override
 	public Iterator<T> iterator() {
-		return union.iterator();
+		// iterates over the trie as of the call, which later modifications leave intact
+		Iterator<Map.Entry<T, Boolean>> entries = members.iterator();
+		return new Iterator<T>() {
+			private T last;
+
+			@Override
+			public boolean hasNext() {
+				return entries.hasNext();
+			}
+
+			@Override
+			public T next() {
+				last = entries.next().getKey();
+				return last;
+			}
+
+			@Override
+			public void remove() {
+				if (last == null) {
+					throw new IllegalStateException();
+				}
+				members = members.minus(last);
+				last = null;
+			}
+		};
 	}
 	@Override
 	public boolean remove(Object o) {
-		return union.remove(o);
-	}
-	@Override
-	public boolean removeAll(Collection<?> c) {
-		return union.removeAll(c);
-	}
-	@Override
-	public boolean retainAll(Collection<?> c) {
-		return union.retainAll(c);
+		int oldSize = members.size();
+		members = members.minus(o);
+		return members.size() != oldSize;
 	}
 	@Override
 	public int size() {
-		return union.size();
-	}
-	@Override
-	public Object[] toArray() {
-		return union.toArray();
-	}
-	@Override
-	public <V> V[] toArray(V[] a) {
-		return union.toArray(a);
+		return members.size();
 	}
 
-	
 }
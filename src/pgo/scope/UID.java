@@ -4,7 +4,36 @@ import pgo.util.Derived;
 import pgo.util.DerivedVisitor;
 import pgo.util.Origin;
 
+import java.util.concurrent.atomic.AtomicInteger;
+
 public class UID extends Derived {
+	private static final AtomicInteger nextId = new AtomicInteger();
+	// every AST node has a UID, and a compilation runs on a single thread, so counting the UIDs each thread creates
+	// counts the AST nodes of a compilation even while other compilations run alongside it
+	private static final ThreadLocal<long[]> createdOnThread = ThreadLocal.withInitial(() -> new long[1]);
+
+	private final int id;
+
+	public UID() {
+		id = nextId.getAndIncrement();
+		createdOnThread.get()[0]++;
+	}
+
+	/**
+	 * @return a dense, sequential id, for use by tables keyed by UIDs such as {@link UIDMap}. Ids wrap around after
+	 *         2^32 UIDs, so such tables must still compare UIDs by identity
+	 */
+	public int getId() {
+		return id;
+	}
+
+	/**
+	 * @return the number of UIDs the current thread has created so far
+	 */
+	public static long getCreatedCountOnCurrentThread() {
+		return createdOnThread.get()[0];
+	}
+
 	@Override
 	public <T, E extends Throwable> T accept(DerivedVisitor<T, E> v) throws E {
 		return v.visit(this);
@@ -0,0 +1,251 @@
+package pgo.scope;
+
+import java.util.*;
+
+/**
+ * A map keyed by UIDs, stored as parallel key and value arrays with open addressing on {@link UID#getId()}.
+ *
+ * Compared to a HashMap, lookups neither call {@link System#identityHashCode(Object)} nor chase entry objects, and an
+ * entry costs two array slots instead of an entry object. Keys are compared by identity, as UIDs are, so ids that
+ * collide after the id counter wraps around are only a matter of speed.
+ *
+ * Iteration follows the table, so it depends on the ids of the keys rather than on their identity hash codes.
+ * Removing an entry shifts later entries back into its slot, so an iterator that removes an entry goes on iterating
+ * over a copy of the table taken just before its first removal.
+ */
+public final class UIDMap<V> extends AbstractMap<UID, V> {
+	private static final int MIN_CAPACITY = 16;
+
+	private UID[] keys;
+	private Object[] values;
+	// capacity is 1 << (32 - shift)
+	private int shift;
+	private int size;
+
+	public UIDMap() {
+		keys = new UID[MIN_CAPACITY];
+		values = new Object[MIN_CAPACITY];
+		shift = 32 - Integer.numberOfTrailingZeros(MIN_CAPACITY);
+		size = 0;
+	}
+
+	private int slot(UID key) {
+		// Fibonacci hashing spreads consecutive ids over the whole table
+		return (key.getId() * 0x9E3779B9) >>> shift;
+	}
+
+	private int find(Object key) {
+		if (!(key instanceof UID)) {
+			return -1;
+		}
+		int mask = keys.length - 1;
+		for (int i = slot((UID) key); keys[i] != null; i = (i + 1) & mask) {
+			if (keys[i] == key) {
+				return i;
+			}
+		}
+		return -1;
+	}
+
+	private void grow() {
+		UID[] oldKeys = keys;
+		Object[] oldValues = values;
+		keys = new UID[oldKeys.length * 2];
+		values = new Object[oldKeys.length * 2];
+		shift--;
+		int mask = keys.length - 1;
+		for (int i = 0; i < oldKeys.length; i++) {
+			if (oldKeys[i] != null) {
+				int j = slot(oldKeys[i]);
+				while (keys[j] != null) {
+					j = (j + 1) & mask;
+				}
+				keys[j] = oldKeys[i];
+				values[j] = oldValues[i];
+			}
+		}
+	}
+
+	@Override
+	public int size() {
+		return size;
+	}
+
+	@Override
+	public boolean containsKey(Object key) {
+		return find(key) != -1;
+	}
+
+	@Override
+	@SuppressWarnings("unchecked")
+	public V get(Object key) {
+		int i = find(key);
+		return i == -1 ? null : (V) values[i];
+	}
+
+	@Override
+	@SuppressWarnings("unchecked")
+	public V getOrDefault(Object key, V defaultValue) {
+		int i = find(key);
+		return i == -1 ? defaultValue : (V) values[i];
+	}
+
+	@Override
+	@SuppressWarnings("unchecked")
+	public V put(UID key, V value) {
+		Objects.requireNonNull(key);
+		int mask = keys.length - 1;
+		int i = slot(key);
+		while (keys[i] != null) {
+			if (keys[i] == key) {
+				V old = (V) values[i];
+				values[i] = value;
+				return old;
+			}
+			i = (i + 1) & mask;
+		}
+		keys[i] = key;
+		values[i] = value;
+		size++;
+		// keep the load factor at most 1/2, so that probe sequences stay short
+		if (size * 2 > keys.length) {
+			grow();
+		}
+		return null;
+	}
+
+	@Override
+	@SuppressWarnings("unchecked")
+	public V remove(Object key) {
+		int i = find(key);
+		if (i == -1) {
+			return null;
+		}
+		V old = (V) values[i];
+		int mask = keys.length - 1;
+		// shift later entries of the probe sequence back, so that lookups never stop at the hole
+		int hole = i;
+		for (int j = (i + 1) & mask; keys[j] != null; j = (j + 1) & mask) {
+			int home = slot(keys[j]);
+			if (((j - home) & mask) >= ((j - hole) & mask)) {
+				keys[hole] = keys[j];
+				values[hole] = values[j];
+				hole = j;
+			}
+		}
+		keys[hole] = null;
+		values[hole] = null;
+		size--;
+		return old;
+	}
+
+	@Override
+	public void clear() {
+		Arrays.fill(keys, null);
+		Arrays.fill(values, null);
+		size = 0;
+	}
+
+	@Override
+	public Set<UID> keySet() {
+		return new AbstractSet<UID>() {
+			@Override
+			public int size() {
+				return size;
+			}
+
+			@Override
+			public boolean contains(Object o) {
+				return containsKey(o);
+			}
+
+			@Override
+			public boolean remove(Object o) {
+				if (!containsKey(o)) {
+					return false;
+				}
+				UIDMap.this.remove(o);
+				return true;
+			}
+
+			@Override
+			public Iterator<UID> iterator() {
+				Iterator<Entry<UID, V>> entries = entrySet().iterator();
+				return new Iterator<UID>() {
+					@Override
+					public boolean hasNext() {
+						return entries.hasNext();
+					}
+
+					@Override
+					public UID next() {
+						return entries.next().getKey();
+					}
+
+					@Override
+					public void remove() {
+						entries.remove();
+					}
+				};
+			}
+		};
+	}
+
+	@Override
+	public Set<Entry<UID, V>> entrySet() {
+		return new AbstractSet<Entry<UID, V>>() {
+			@Override
+			public int size() {
+				return size;
+			}
+
+			@Override
+			public Iterator<Entry<UID, V>> iterator() {
+				return new Iterator<Entry<UID, V>>() {
+					// the table being iterated over, which stops being the map's own at the first removal
+					private UID[] tableKeys = keys;
+					private Object[] tableValues = values;
+					private int next = advance(0);
+					private int last = -1;
+
+					private int advance(int from) {
+						while (from < tableKeys.length && tableKeys[from] == null) {
+							from++;
+						}
+						return from;
+					}
+
+					@Override
+					public boolean hasNext() {
+						return next < tableKeys.length;
+					}
+
+					@Override
+					@SuppressWarnings("unchecked")
+					public Entry<UID, V> next() {
+						if (!hasNext()) {
+							throw new NoSuchElementException();
+						}
+						last = next;
+						Entry<UID, V> entry = new SimpleImmutableEntry<>(tableKeys[next], (V) tableValues[next]);
+						next = advance(next + 1);
+						return entry;
+					}
+
+					@Override
+					public void remove() {
+						if (last == -1) {
+							throw new IllegalStateException();
+						}
+						if (tableKeys == keys) {
+							tableKeys = keys.clone();
+							tableValues = values.clone();
+						}
+						UIDMap.this.remove(tableKeys[last]);
+						last = -1;
+					}
+				};
+			}
+		};
+	}
+}
@@ -32,6 +32,10 @@ public class CompiledOperatorAccessor extends OperatorAccessor {
 		this.implementations = new HashMap<>();
 	}
 
+	public TLAOperatorDefinition getDefinition() {
+		return def;
+	}
+
 	@Override
 	public Type constrainTypes(Origin origin, DefinitionRegistry registry, List<Type> args, TypeSolver solver, TypeGenerator generator,
 	                           Map<UID, TypeVariable> mapping) {
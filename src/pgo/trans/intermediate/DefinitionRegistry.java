@@ -7,6 +7,7 @@ import pgo.model.mpcal.ModularPlusCalMappingMacro;
 import pgo.model.pcal.PlusCalProcedure;
 import pgo.model.tla.*;
 import pgo.scope.UID;
+import pgo.scope.UIDMap;
 
 import java.util.*;
 
@@ -33,24 +34,24 @@ public class DefinitionRegistry {
 
 	public DefinitionRegistry() {
 		this.modules = new HashMap<>();
-		this.definitions = new HashMap<>();
-		this.operators = new HashMap<>();
-		this.references = new HashMap<>();
+		this.definitions = new UIDMap<>();
+		this.operators = new UIDMap<>();
+		this.references = new UIDMap<>();
 		this.procedures = new HashMap<>();
 		this.archetypes = new HashMap<>();
 		this.mappingMacros = new HashMap<>();
-		this.globalVariableTypes = new HashMap<>();
-		this.localVariables = new HashSet<>();
-		this.constants = new HashMap<>();
-		this.constantValues = new HashMap<>();
-		this.labelsToLockGroups = new HashMap<>();
+		this.globalVariableTypes = new UIDMap<>();
+		this.localVariables = Collections.newSetFromMap(new UIDMap<>());
+		this.constants = new UIDMap<>();
+		this.constantValues = new UIDMap<>();
+		this.labelsToLockGroups = new UIDMap<>();
 		this.lockGroupsToVariableReads = new HashMap<>();
 		this.lockGroupsToVariableWrites = new HashMap<>();
 		this.lockGroupsToResourceReads = new HashMap<>();
 		this.lockGroupsToResourceWrites = new HashMap<>();
-		this.protectedGlobalVariables = new HashSet<>();
-		this.signatures = new HashMap<>();
-		this.labelToLocals = new HashMap<>();
+		this.protectedGlobalVariables = Collections.newSetFromMap(new UIDMap<>());
+		this.signatures = new UIDMap<>();
+		this.labelToLocals = new UIDMap<>();
 	}
 
 	public Map<UID, UID> getReferences() {
@@ -112,17 +113,20 @@ public class DefinitionRegistry {
 	}
 
 	public UID followReference(UID from) {
-		if (!references.containsKey(from)) {
+		// called for nearly every identifier by every pass, so look up once; references are never null
+		UID to = references.get(from);
+		if (to == null) {
 			throw new InternalCompilerError();
 		}
-		return references.get(from);
+		return to;
 	}
 
 	public OperatorAccessor findOperator(UID id) {
-		if (!operators.containsKey(id)) {
+		OperatorAccessor operator = operators.get(id);
+		if (operator == null) {
 			throw new InternalCompilerError();
 		}
-		return operators.get(id);
+		return operator;
 	}
 
 	public TLAModule findModule(String name) {
@@ -257,11 +261,10 @@ public class DefinitionRegistry {
 	}
 
 	public void addLocalToLabel(UID labelUID, UID ref) {
-		labelToLocals.putIfAbsent(labelUID, new HashSet<>());
-		labelToLocals.get(labelUID).add(ref);
+		labelToLocals.computeIfAbsent(labelUID, ignored -> Collections.newSetFromMap(new UIDMap<>())).add(ref);
 	}
 
 	public Set<UID> getLocalsInLabel(UID labelUID) {
-		return labelToLocals.getOrDefault(labelUID, new HashSet<>());
+		return labelToLocals.getOrDefault(labelUID, Collections.emptySet());
 	}
 }
@@ -7,7 +7,9 @@ import pgo.model.golang.builder.GoAnonymousFunctionBuilder;
 import pgo.model.golang.builder.GoBlockBuilder;
 import pgo.model.golang.builder.GoForRangeBuilder;
 import pgo.model.golang.builder.GoForStatementClauseBuilder;
+import pgo.model.golang.type.GoMapType;
 import pgo.model.golang.type.GoSliceType;
+import pgo.model.golang.type.GoStructType;
 import pgo.model.golang.type.GoType;
 import pgo.model.tla.TLABuiltinModules;
 import pgo.model.tla.TLAExpression;
@@ -20,6 +22,7 @@ import pgo.trans.passes.codegen.go.*;
 import pgo.util.Origin;
 
 import java.util.*;
+import java.util.function.Function;
 
 public class TLABuiltins {
 	private TLABuiltins() {}
@@ -29,9 +32,39 @@ public class TLABuiltins {
 		return elementType.accept(new TypeConversionVisitor());
 	}
 
-	private static GoVariableName getIndexInSet(GoBlockBuilder builder, GoType elementType, GoExpression set, GoExpression val) {
-		builder.addImport("sort");
+	/**
+	 * Emits a binary search for the first position in [low, high) whose element is not less than val, leaving it in
+	 * low. Unlike sort.Search, the comparison is generated inline, so no closure is called per step.
+	 */
+	public static void binarySearch(GoBlockBuilder builder, GoType elementType, GoVariableName low,
+	                                GoVariableName high, Function<GoExpression, GoExpression> elementAt,
+	                                GoExpression val) {
+		// for low < high {
+		// 	mid := (low + high) / 2
+		// 	if elementAt(mid) < val {
+		// 		low = mid + 1
+		// 	} else {
+		// 		high = mid
+		// 	}
+		// }
+		try (GoBlockBuilder loopBody = builder.forLoop(new GoBinop(GoBinop.Operation.LT, low, high))) {
+			GoVariableName mid = loopBody.varDecl("mid", new GoBinop(
+					GoBinop.Operation.DIVIDE,
+					new GoBinop(GoBinop.Operation.PLUS, low, high),
+					new GoIntLiteral(2)));
+			try (GoIfBuilder less = loopBody.ifStmt(elementType.accept(
+					new LessThanCodeGenVisitor(loopBody, elementAt.apply(mid), val)))) {
+				try (GoBlockBuilder yes = less.whenTrue()) {
+					yes.assign(low, new GoBinop(GoBinop.Operation.PLUS, mid, new GoIntLiteral(1)));
+				}
+				try (GoBlockBuilder no = less.whenFalse()) {
+					no.assign(high, mid);
+				}
+			}
+		}
+	}
 
+	private static GoVariableName getIndexInSet(GoBlockBuilder builder, GoType elementType, GoExpression set, GoExpression val) {
 		String searchFunction;
 		if (elementType.equals(GoBuiltins.Int)) {
 			searchFunction = "SearchInts";
@@ -43,39 +76,23 @@ public class TLABuiltins {
 			searchFunction = "Search";
 		}
 
-		GoVariableName index;
 		if (searchFunction.equals("Search")) {
-			GoAnonymousFunctionBuilder checkBuilder = builder.anonymousFunction();
-			GoVariableName j = checkBuilder.addArgument("j", GoBuiltins.Int);
-			checkBuilder.addReturn(GoBuiltins.Bool);
-			try (GoBlockBuilder checkBody = checkBuilder.getBlockBuilder()) {
-				checkBody.addStatement(
-						new GoReturn(
-								Collections.singletonList(
-										new GoUnary(
-												GoUnary.Operation.NOT,
-												elementType.accept(new LessThanCodeGenVisitor(
-														checkBody,
-														new GoIndexExpression(set, j),
-														val))))));
-			}
-			index = builder.varDecl(
-					"index",
-					new GoCall(
-							new GoSelectorExpression(
-									new GoVariableName("sort"), "Search"),
-							Arrays.asList(
-									new GoCall(new GoVariableName("len"), Collections.singletonList(set)),
-									checkBuilder.getFunction())));
-		} else {
-			index = builder.varDecl(
-					"index",
-					new GoCall(
-							new GoSelectorExpression(new GoVariableName("sort"), searchFunction),
-							Arrays.asList(set, val)));
+			// index := 0
+			// high := len(set)
+			// <binary search>
+			GoVariableName index = builder.varDecl("index", new GoIntLiteral(0));
+			GoVariableName high = builder.varDecl(
+					"high", new GoCall(new GoVariableName("len"), Collections.singletonList(set)));
+			binarySearch(builder, elementType, index, high, mid -> new GoIndexExpression(set, mid), val);
+			return index;
 		}
 
-		return index;
+		builder.addImport("sort");
+		return builder.varDecl(
+				"index",
+				new GoCall(
+						new GoSelectorExpression(new GoVariableName("sort"), searchFunction),
+						Arrays.asList(set, val)));
 	}
 
 	public static TypeVariable getPolymorphicNumberType(Origin origin, TypeSolver solver,
@@ -185,6 +202,441 @@ public class TLABuiltins {
 		}
 	}
 
+	/**
+	 * Which elements of its two operands a merge of sets keeps.
+	 */
+	private enum SetMerge {
+		UNION(true, true, true),
+		INTERSECTION(false, true, false),
+		DIFFERENCE(true, false, false);
+
+		private final boolean keepLhsOnly;
+		private final boolean keepBoth;
+		private final boolean keepRhsOnly;
+
+		SetMerge(boolean keepLhsOnly, boolean keepBoth, boolean keepRhsOnly) {
+			this.keepLhsOnly = keepLhsOnly;
+			this.keepBoth = keepBoth;
+			this.keepRhsOnly = keepRhsOnly;
+		}
+	}
+
+	private static GoExpression bindSet(GoBlockBuilder builder, String nameHint, GoExpression set) {
+		// sets are indexed repeatedly by the kernels below, so evaluate anything but a variable once
+		return set instanceof GoVariableName ? set : builder.varDecl(nameHint, set);
+	}
+
+	private static void appendTo(GoBlockBuilder builder, GoVariableName tmpSet, GoExpression element) {
+		builder.assign(tmpSet, new GoCall(new GoVariableName("append"), Arrays.asList(tmpSet, element)));
+	}
+
+	/**
+	 * Combines two sets, each a sorted slice without duplicates, in a single pass over both of them. The result is again
+	 * sorted and without duplicates.
+	 */
+	private static GoVariableName mergeSortedSets(GoBlockBuilder builder, GoType elementType, GoExpression lhs,
+	                                              GoExpression rhs, SetMerge merge) {
+		// tmpSet := make([]type, 0, len(lhs) + len(rhs))
+		// i := 0
+		// j := 0
+		// for i < len(lhs) && j < len(rhs) {
+		// 	if lhs[i] < rhs[j] {
+		// 		tmpSet = append(tmpSet, lhs[i]) // if keepLhsOnly
+		// 		i++
+		// 	} else {
+		// 		if rhs[j] < lhs[i] {
+		// 			tmpSet = append(tmpSet, rhs[j]) // if keepRhsOnly
+		// 			j++
+		// 		} else {
+		// 			tmpSet = append(tmpSet, lhs[i]) // if keepBoth
+		// 			i++
+		// 			j++
+		// 		}
+		// 	}
+		// }
+		// tmpSet = append(tmpSet, lhs[i:]...) // if keepLhsOnly
+		// tmpSet = append(tmpSet, rhs[j:]...) // if keepRhsOnly
+		lhs = bindSet(builder, "lhs", lhs);
+		rhs = bindSet(builder, "rhs", rhs);
+		GoExpression lenLhs = new GoCall(new GoVariableName("len"), Collections.singletonList(lhs));
+		GoExpression lenRhs = new GoCall(new GoVariableName("len"), Collections.singletonList(rhs));
+		GoVariableName tmpSet = builder.varDecl(
+				"tmpSet",
+				new GoMakeExpression(
+						new GoSliceType(elementType),
+						new GoIntLiteral(0),
+						merge.keepRhsOnly ? new GoBinop(GoBinop.Operation.PLUS, lenLhs, lenRhs) : lenLhs));
+		GoVariableName i = builder.varDecl("i", new GoIntLiteral(0));
+		GoVariableName j = builder.varDecl("j", new GoIntLiteral(0));
+		GoExpression lhsElement = new GoIndexExpression(lhs, i);
+		GoExpression rhsElement = new GoIndexExpression(rhs, j);
+		try (GoBlockBuilder loopBody = builder.forLoop(new GoBinop(
+				GoBinop.Operation.AND,
+				new GoBinop(GoBinop.Operation.LT, i, lenLhs),
+				new GoBinop(GoBinop.Operation.LT, j, lenRhs)))) {
+			try (GoIfBuilder lhsLess = loopBody.ifStmt(elementType.accept(
+					new LessThanCodeGenVisitor(loopBody, lhsElement, rhsElement)))) {
+				try (GoBlockBuilder yes = lhsLess.whenTrue()) {
+					if (merge.keepLhsOnly) {
+						appendTo(yes, tmpSet, lhsElement);
+					}
+					yes.addStatement(new GoIncDec(true, i));
+				}
+				try (GoBlockBuilder no = lhsLess.whenFalse()) {
+					try (GoIfBuilder rhsLess = no.ifStmt(elementType.accept(
+							new LessThanCodeGenVisitor(no, rhsElement, lhsElement)))) {
+						try (GoBlockBuilder yes = rhsLess.whenTrue()) {
+							if (merge.keepRhsOnly) {
+								appendTo(yes, tmpSet, rhsElement);
+							}
+							yes.addStatement(new GoIncDec(true, j));
+						}
+						try (GoBlockBuilder equal = rhsLess.whenFalse()) {
+							if (merge.keepBoth) {
+								appendTo(equal, tmpSet, lhsElement);
+							}
+							equal.addStatement(new GoIncDec(true, i));
+							equal.addStatement(new GoIncDec(true, j));
+						}
+					}
+				}
+			}
+		}
+		if (merge.keepLhsOnly) {
+			builder.assign(tmpSet, new GoCall(
+					new GoVariableName("append"),
+					Arrays.asList(tmpSet, new GoSliceOperator(lhs, i, null, null)),
+					true));
+		}
+		if (merge.keepRhsOnly) {
+			builder.assign(tmpSet, new GoCall(
+					new GoVariableName("append"),
+					Arrays.asList(tmpSet, new GoSliceOperator(rhs, j, null, null)),
+					true));
+		}
+		return tmpSet;
+	}
+
+	private static GoExpression getSingleElement(GoExpression set) {
+		if (set instanceof GoSliceLiteral && ((GoSliceLiteral) set).getInitializers().size() == 1) {
+			return ((GoSliceLiteral) set).getInitializers().get(0);
+		}
+		if (set instanceof GoMapLiteral && ((GoMapLiteral) set).getPairs().size() == 1) {
+			return ((GoMapLiteral) set).getPairs().keySet().iterator().next();
+		}
+		return null;
+	}
+
+	/**
+	 * Adds one element to a set, finding its place by binary search, so that a set grown one element at a time costs
+	 * O(log n) comparisons per step instead of a pass over the whole set. The result is the set itself if it already
+	 * contains the element.
+	 */
+	private static GoVariableName insertIntoSortedSet(GoBlockBuilder builder, GoType elementType, GoExpression set,
+	                                                  GoExpression element) {
+		// index := sort.SearchType(set, element)
+		// tmpSet := set
+		// isNew := index == len(set)
+		// if !isNew {
+		// 	isNew = set[index] != element
+		// }
+		// if isNew {
+		// 	tmpSet = make([]type, len(set) + 1)
+		// 	copy(tmpSet, set[:index])
+		// 	tmpSet[index] = element
+		// 	copy(tmpSet[index+1:], set[index:])
+		// }
+		set = bindSet(builder, "set", set);
+		if (!(element instanceof GoVariableName)) {
+			element = builder.varDecl("element", element);
+		}
+		GoExpression lenSet = new GoCall(new GoVariableName("len"), Collections.singletonList(set));
+		GoVariableName index = getIndexInSet(builder, elementType, set, element);
+		GoVariableName tmpSet = builder.varDecl("tmpSet", set);
+		GoVariableName isNew = builder.varDecl("isNew", new GoBinop(GoBinop.Operation.EQ, index, lenSet));
+		try (GoIfBuilder present = builder.ifStmt(new GoUnary(GoUnary.Operation.NOT, isNew))) {
+			try (GoBlockBuilder yes = present.whenTrue()) {
+				yes.assign(isNew, elementType.accept(
+						new EqCodeGenVisitor(yes, new GoIndexExpression(set, index), element, true)));
+			}
+		}
+		try (GoIfBuilder insert = builder.ifStmt(isNew)) {
+			try (GoBlockBuilder yes = insert.whenTrue()) {
+				yes.assign(tmpSet, new GoMakeExpression(
+						new GoSliceType(elementType),
+						new GoBinop(GoBinop.Operation.PLUS, lenSet, new GoIntLiteral(1))));
+				yes.addStatement(new GoCall(new GoVariableName("copy"), Arrays.asList(
+						tmpSet, new GoSliceOperator(set, null, index, null))));
+				yes.assign(new GoIndexExpression(tmpSet, index), element);
+				yes.addStatement(new GoCall(new GoVariableName("copy"), Arrays.asList(
+						new GoSliceOperator(
+								tmpSet, new GoBinop(GoBinop.Operation.PLUS, index, new GoIntLiteral(1)), null, null),
+						new GoSliceOperator(set, index, null, null))));
+			}
+		}
+		return tmpSet;
+	}
+
+	/**
+	 * Removes one element from a set, finding it by binary search. The result is the set itself if it does not
+	 * contain the element.
+	 */
+	private static GoVariableName removeFromSortedSet(GoBlockBuilder builder, GoType elementType, GoExpression set,
+	                                                  GoExpression element) {
+		// index := sort.SearchType(set, element)
+		// tmpSet := set
+		// if index < len(set) {
+		// 	if set[index] == element {
+		// 		tmpSet = make([]type, len(set) - 1)
+		// 		copy(tmpSet, set[:index])
+		// 		copy(tmpSet[index:], set[index+1:])
+		// 	}
+		// }
+		set = bindSet(builder, "set", set);
+		if (!(element instanceof GoVariableName)) {
+			element = builder.varDecl("element", element);
+		}
+		GoExpression lenSet = new GoCall(new GoVariableName("len"), Collections.singletonList(set));
+		GoVariableName index = getIndexInSet(builder, elementType, set, element);
+		GoVariableName tmpSet = builder.varDecl("tmpSet", set);
+		try (GoIfBuilder withinBounds = builder.ifStmt(new GoBinop(GoBinop.Operation.LT, index, lenSet))) {
+			try (GoBlockBuilder yes = withinBounds.whenTrue()) {
+				try (GoIfBuilder found = yes.ifStmt(elementType.accept(
+						new EqCodeGenVisitor(yes, new GoIndexExpression(set, index), element, false)))) {
+					try (GoBlockBuilder remove = found.whenTrue()) {
+						remove.assign(tmpSet, new GoMakeExpression(
+								new GoSliceType(elementType),
+								new GoBinop(GoBinop.Operation.MINUS, lenSet, new GoIntLiteral(1))));
+						remove.addStatement(new GoCall(new GoVariableName("copy"), Arrays.asList(
+								tmpSet, new GoSliceOperator(set, null, index, null))));
+						remove.addStatement(new GoCall(new GoVariableName("copy"), Arrays.asList(
+								new GoSliceOperator(tmpSet, index, null, null),
+								new GoSliceOperator(
+										set, new GoBinop(GoBinop.Operation.PLUS, index, new GoIntLiteral(1)), null,
+										null))));
+					}
+				}
+			}
+		}
+		return tmpSet;
+	}
+
+	/**
+	 * Checks whether every element of lhs is in rhs, with a single pass over both sets, each a sorted slice without
+	 * duplicates.
+	 */
+	private static GoVariableName isSortedSubset(GoBlockBuilder builder, GoType elementType, GoExpression lhs,
+	                                             GoExpression rhs) {
+		// isSubset := true
+		// j := 0
+		// for _, v := range lhs {
+		// 	for j < len(rhs) {
+		// 		if !(rhs[j] < v) {
+		// 			break
+		// 		}
+		// 		j++
+		// 	}
+		// 	if j == len(rhs) {
+		// 		isSubset = false
+		// 		break
+		// 	}
+		// 	if rhs[j] != v {
+		// 		isSubset = false
+		// 		break
+		// 	}
+		// 	j++
+		// }
+		rhs = bindSet(builder, "rhs", rhs);
+		GoExpression lenRhs = new GoCall(new GoVariableName("len"), Collections.singletonList(rhs));
+		GoVariableName isSubset = builder.varDecl("isSubset", GoBuiltins.True);
+		GoVariableName j = builder.varDecl("j", new GoIntLiteral(0));
+		GoExpression rhsElement = new GoIndexExpression(rhs, j);
+		GoForRangeBuilder forRangeBuilder = builder.forRange(lhs);
+		GoVariableName v = forRangeBuilder.initVariables(Arrays.asList("_", "v")).get(1);
+		try (GoBlockBuilder forBody = forRangeBuilder.getBlockBuilder()) {
+			try (GoBlockBuilder skip = forBody.forLoop(new GoBinop(GoBinop.Operation.LT, j, lenRhs))) {
+				try (GoIfBuilder notLess = skip.ifStmt(new GoUnary(GoUnary.Operation.NOT, elementType.accept(
+						new LessThanCodeGenVisitor(skip, rhsElement, v))))) {
+					try (GoBlockBuilder yes = notLess.whenTrue()) {
+						yes.addStatement(new GoBreak());
+					}
+				}
+				skip.addStatement(new GoIncDec(true, j));
+			}
+			try (GoIfBuilder exhausted = forBody.ifStmt(new GoBinop(GoBinop.Operation.EQ, j, lenRhs))) {
+				try (GoBlockBuilder yes = exhausted.whenTrue()) {
+					yes.assign(isSubset, GoBuiltins.False);
+					yes.addStatement(new GoBreak());
+				}
+			}
+			try (GoIfBuilder missing = forBody.ifStmt(elementType.accept(
+					new EqCodeGenVisitor(forBody, rhsElement, v, true)))) {
+				try (GoBlockBuilder yes = missing.whenTrue()) {
+					yes.assign(isSubset, GoBuiltins.False);
+					yes.addStatement(new GoBreak());
+				}
+			}
+			forBody.addStatement(new GoIncDec(true, j));
+		}
+		return isSubset;
+	}
+
+	/**
+	 * @return whether sets of the given type are Go maps, see {@link SetType#isHashed()}
+	 */
+	public static boolean isHashedSet(Type type) {
+		return type instanceof SetType && ((SetType) type).isHashed();
+	}
+
+	// struct{}{}, the value a hashed set maps each of its elements to
+	private static GoExpression hashedSetValue() {
+		GoType emptyStruct = new GoStructType(Collections.emptyList());
+		return new GoStructLiteral(emptyStruct, Collections.emptyList());
+	}
+
+	private static GoVariableName makeHashedSet(GoBlockBuilder builder, GoType elementType, GoExpression capacity) {
+		// tmpSet := make(map[type]struct{}, capacity)
+		return builder.varDecl("tmpSet", new GoMakeExpression(
+				new GoMapType(elementType, new GoStructType(Collections.emptyList())), capacity));
+	}
+
+	private static void addToHashedSet(GoBlockBuilder builder, GoExpression set, GoExpression element) {
+		builder.assign(new GoIndexExpression(set, element), hashedSetValue());
+	}
+
+	/**
+	 * Copies a hashed set, so that the copy can be updated in place without affecting the original.
+	 */
+	public static GoVariableName copyHashedSet(GoBlockBuilder builder, GoType elementType, GoExpression set) {
+		// tmpSet := make(map[type]struct{}, len(set))
+		// for v := range set {
+		// 	tmpSet[v] = struct{}{}
+		// }
+		set = bindSet(builder, "set", set);
+		GoVariableName tmpSet = makeHashedSet(
+				builder, elementType, new GoCall(new GoVariableName("len"), Collections.singletonList(set)));
+		GoForRangeBuilder forRangeBuilder = builder.forRange(set);
+		GoVariableName v = forRangeBuilder.initVariables(Collections.singletonList("v")).get(0);
+		try (GoBlockBuilder forBody = forRangeBuilder.getBlockBuilder()) {
+			addToHashedSet(forBody, tmpSet, v);
+		}
+		return tmpSet;
+	}
+
+	/**
+	 * Adds the elements of a hashed set to the map another hashed set is, in place.
+	 */
+	public static void addAllToHashedSet(GoBlockBuilder builder, GoExpression set, GoExpression elements) {
+		GoExpression element = getSingleElement(elements);
+		if (element != null) {
+			addToHashedSet(builder, set, element);
+			return;
+		}
+		GoForRangeBuilder forRangeBuilder = builder.forRange(elements);
+		GoVariableName v = forRangeBuilder.initVariables(Collections.singletonList("v")).get(0);
+		try (GoBlockBuilder forBody = forRangeBuilder.getBlockBuilder()) {
+			addToHashedSet(forBody, set, v);
+		}
+	}
+
+	/**
+	 * Removes the elements of a hashed set from the map another hashed set is, in place.
+	 */
+	public static void removeAllFromHashedSet(GoBlockBuilder builder, GoExpression set, GoExpression elements) {
+		GoExpression element = getSingleElement(elements);
+		if (element != null) {
+			builder.addStatement(new GoCall(new GoVariableName("delete"), Arrays.asList(set, element)));
+			return;
+		}
+		GoForRangeBuilder forRangeBuilder = builder.forRange(elements);
+		GoVariableName v = forRangeBuilder.initVariables(Collections.singletonList("v")).get(0);
+		try (GoBlockBuilder forBody = forRangeBuilder.getBlockBuilder()) {
+			forBody.addStatement(new GoCall(new GoVariableName("delete"), Arrays.asList(set, v)));
+		}
+	}
+
+	private static GoVariableName isInHashedSet(GoBlockBuilder builder, GoExpression set, GoExpression element) {
+		// _, isMember := set[element]
+		return builder.varDecl(Arrays.asList("_", "isMember"), new GoIndexExpression(set, element)).get(1);
+	}
+
+	/**
+	 * Combines two hashed sets into a new one, looking each element of lhs up in rhs where it matters.
+	 */
+	private static GoVariableName mergeHashedSets(GoBlockBuilder builder, GoType elementType, GoExpression lhs,
+	                                              GoExpression rhs, SetMerge merge) {
+		// tmpSet := make(map[type]struct{}, len(lhs) + len(rhs))
+		// for v := range lhs {
+		// 	if _, isMember := rhs[v]; isMember { // if keepBoth != keepLhsOnly
+		// 		tmpSet[v] = struct{}{}
+		// 	}
+		// }
+		// for v := range rhs { // if keepRhsOnly
+		// 	tmpSet[v] = struct{}{}
+		// }
+		lhs = bindSet(builder, "lhs", lhs);
+		rhs = bindSet(builder, "rhs", rhs);
+		GoExpression lenLhs = new GoCall(new GoVariableName("len"), Collections.singletonList(lhs));
+		GoExpression lenRhs = new GoCall(new GoVariableName("len"), Collections.singletonList(rhs));
+		GoVariableName tmpSet = makeHashedSet(
+				builder,
+				elementType,
+				merge.keepRhsOnly ? new GoBinop(GoBinop.Operation.PLUS, lenLhs, lenRhs) : lenLhs);
+		GoForRangeBuilder lhsRange = builder.forRange(lhs);
+		GoVariableName v = lhsRange.initVariables(Collections.singletonList("v")).get(0);
+		try (GoBlockBuilder forBody = lhsRange.getBlockBuilder()) {
+			if (merge.keepBoth == merge.keepLhsOnly) {
+				addToHashedSet(forBody, tmpSet, v);
+			} else {
+				try (GoIfBuilder member = forBody.ifStmt(null)) {
+					GoVariableName isMember = member.initialAssignment(
+							Arrays.asList("_", "isMember"), new GoIndexExpression(rhs, v)).get(1);
+					member.setCondition(merge.keepBoth ? isMember : new GoUnary(GoUnary.Operation.NOT, isMember));
+					try (GoBlockBuilder yes = member.whenTrue()) {
+						addToHashedSet(yes, tmpSet, v);
+					}
+				}
+			}
+		}
+		if (merge.keepRhsOnly) {
+			GoForRangeBuilder rhsRange = builder.forRange(rhs);
+			GoVariableName w = rhsRange.initVariables(Collections.singletonList("v")).get(0);
+			try (GoBlockBuilder forBody = rhsRange.getBlockBuilder()) {
+				addToHashedSet(forBody, tmpSet, w);
+			}
+		}
+		return tmpSet;
+	}
+
+	/**
+	 * Checks whether every element of lhs is in rhs, both hashed sets, with a lookup in rhs per element of lhs.
+	 */
+	private static GoVariableName isHashedSubset(GoBlockBuilder builder, GoExpression lhs, GoExpression rhs) {
+		// isSubset := true
+		// for v := range lhs {
+		// 	if _, isMember := rhs[v]; !isMember {
+		// 		isSubset = false
+		// 		break
+		// 	}
+		// }
+		rhs = bindSet(builder, "rhs", rhs);
+		GoVariableName isSubset = builder.varDecl("isSubset", GoBuiltins.True);
+		GoForRangeBuilder forRangeBuilder = builder.forRange(lhs);
+		GoVariableName v = forRangeBuilder.initVariables(Collections.singletonList("v")).get(0);
+		try (GoBlockBuilder forBody = forRangeBuilder.getBlockBuilder()) {
+			try (GoIfBuilder missing = forBody.ifStmt(null)) {
+				GoVariableName isMember = missing.initialAssignment(
+						Arrays.asList("_", "isMember"), new GoIndexExpression(rhs, v)).get(1);
+				missing.setCondition(new GoUnary(GoUnary.Operation.NOT, isMember));
+				try (GoBlockBuilder yes = missing.whenTrue()) {
+					yes.assign(isSubset, GoBuiltins.False);
+					yes.addStatement(new GoBreak());
+				}
+			}
+		}
+		return isSubset;
+	}
+
 	private static final BuiltinModule universalBuiltIns = new BuiltinModule();
 	static {
 		universalBuiltIns.addOperator("=", new BuiltinOperator(
@@ -237,6 +689,9 @@ public class TLABuiltins {
 							new TLAExpressionCodeGenVisitor(builder, registry, typeMap, localStrategy, globalStrategy));
 					GoExpression set = arguments.get(1).accept(
 							new TLAExpressionCodeGenVisitor(builder, registry, typeMap, localStrategy, globalStrategy));
+					if (isHashedSet(typeMap.get(arguments.get(1).getUID()))) {
+						return isInHashedSet(builder, set, val);
+					}
 
 					GoType elementType = getSetElementType(typeMap.get(arguments.get(1).getUID()));
 					GoVariableName index = getIndexInSet(builder, elementType, set, val);
@@ -263,7 +718,7 @@ public class TLABuiltins {
 					throw new TODO();
 				}
 		));
-		universalBuiltIns.addOperator("\\", new BuiltinOperator(
+		universalBuiltIns.addOperator("\\", new TypelessBuiltinOperator(
 				2,
 				(origin, args, solver, generator) -> {
 					Type fresh = new SetType(
@@ -273,83 +728,49 @@ public class TLABuiltins {
 					solver.addConstraint(new MonomorphicConstraint(origin, args.get(1), fresh));
 					return fresh;
 				},
-				(builder, origin, registry, arguments, typeMap, localStrategy, globalStrategy) -> {
-					// lenLhs = len(lhs)
-					// tmpSet := make([]type, 0, lenLhs)
-					// for _, v := range lhs {
-					// 	index := sort.SearchType(rhs, v)
-					// 	if index < len(rhs) {
-					//		if rhs[index] == v {
-					//			continue
-					//		}
-					// 	}
-					//  // keep the element
-					//  tmpSet = append(tmpSet, v)
-					// }
+				(builder, origin, registry, arguments, typeMap) -> {
 					GoType elementType = getSetElementType(typeMap.get(origin.getUID()));
-					GoExpression lhs = arguments.get(0).accept(
-							new TLAExpressionCodeGenVisitor(builder, registry, typeMap, localStrategy, globalStrategy));
-					GoExpression rhs = arguments.get(1).accept(
-							new TLAExpressionCodeGenVisitor(builder, registry, typeMap, localStrategy, globalStrategy));
-
+					GoExpression lhs = arguments.get(0);
+					GoExpression rhs = arguments.get(1);
+					if (isHashedSet(typeMap.get(origin.getUID()))) {
+						// the result is always a new map, see CodeGenUtil.storedValue
+						if (getSingleElement(rhs) != null) {
+							GoVariableName tmpSet = copyHashedSet(builder, elementType, lhs);
+							removeAllFromHashedSet(builder, tmpSet, rhs);
+							return tmpSet;
+						}
+						return mergeHashedSets(builder, elementType, lhs, rhs, SetMerge.DIFFERENCE);
+					}
 					// special case: rhs is an empty literal, compiles to noop
 					if (rhs instanceof GoSliceLiteral && ((GoSliceLiteral)rhs).getInitializers().size() == 0){
 						return lhs;
 					}
-
-					GoExpression lenLhs = new GoCall(new GoVariableName("len"), Collections.singletonList(lhs));
-					GoExpression lenRhs = new GoCall(new GoVariableName("len"), Collections.singletonList(rhs));
-					GoVariableName tmpSet = builder.varDecl(
-							"tmpSet",
-							new GoMakeExpression(
-									new GoSliceType(elementType),
-									new GoIntLiteral(0),
-									lenLhs));
-					GoForRangeBuilder forBuilder = builder.forRange(lhs);
-					GoVariableName v = forBuilder.initVariables(Arrays.asList("_", "v")).get(1);
-					try (GoBlockBuilder forBody = forBuilder.getBlockBuilder()) {
-						// special case where rhs is a slice literal, we just unroll the entire literal instead
-						// of searching through it
-						if (rhs instanceof GoSliceLiteral){
-							GoSliceLiteral rhsLiteral = (GoSliceLiteral)rhs;
-							GoExpression condition = null;
-							for(GoExpression option : rhsLiteral.getInitializers()){
-								GoExpression part = elementType.accept(new EqCodeGenVisitor(
-										forBody, v, option, true));
-								if(condition == null){
-									condition = part;
-								}else{
-									condition = new GoBinop(GoBinop.Operation.AND, condition, part);
-								}
-							}
-							try (GoIfBuilder shouldIncludeBuilder = forBody.ifStmt(condition)){
-								try(GoBlockBuilder shouldIncludeBody = shouldIncludeBuilder.whenTrue()){
-									shouldIncludeBody.assign(
-											tmpSet, new GoCall(new GoVariableName("append"), Arrays.asList(tmpSet, v)));
-								}
-							}
-							return tmpSet;
-						}
-
-						GoVariableName index = getIndexInSet(forBody, elementType, rhs, v);
-						try (GoIfBuilder ifBuilder = forBody.ifStmt(
-								new GoBinop(GoBinop.Operation.LT, index, lenRhs))) {
-							try (GoBlockBuilder yes = ifBuilder.whenTrue()) {
-								try (GoIfBuilder isEqBuilder = yes.ifStmt(elementType.accept(
-												new EqCodeGenVisitor(
-														yes,
-														new GoIndexExpression(rhs, index),
-														v,
-														false)))) {
-									try (GoBlockBuilder yes2 = isEqBuilder.whenTrue()) {
-										yes2.addStatement(new GoContinue());
-									}
-								}
-							}
-						}
-						forBody.assign(tmpSet, new GoCall(new GoVariableName("append"), Arrays.asList(tmpSet, v)));
+					GoExpression element = getSingleElement(rhs);
+					if (element != null) {
+						return removeFromSortedSet(builder, elementType, lhs, element);
+					}
+					return mergeSortedSets(builder, elementType, lhs, rhs, SetMerge.DIFFERENCE);
+				}));
+		universalBuiltIns.addOperator("\\subseteq", new BuiltinOperator(
+				2,
+				(origin, args, solver, generator) -> {
+					Type fresh = new SetType(
+							generator.getTypeVariable(Collections.singletonList(origin)),
+							Collections.singletonList(origin));
+					solver.addConstraint(new MonomorphicConstraint(origin, args.get(0), fresh));
+					solver.addConstraint(new MonomorphicConstraint(origin, args.get(1), fresh));
+					return new BoolType(Collections.singletonList(origin));
+				},
+				(builder, origin, registry, arguments, typeMap, localStrategy, globalStrategy) -> {
+					GoType elementType = getSetElementType(typeMap.get(arguments.get(0).getUID()));
+					GoExpression lhs = arguments.get(0).accept(
+							new TLAExpressionCodeGenVisitor(builder, registry, typeMap, localStrategy, globalStrategy));
+					GoExpression rhs = arguments.get(1).accept(
+							new TLAExpressionCodeGenVisitor(builder, registry, typeMap, localStrategy, globalStrategy));
+					if (isHashedSet(typeMap.get(arguments.get(0).getUID()))) {
+						return isHashedSubset(builder, lhs, rhs);
 					}
-					return tmpSet;
+					return isSortedSubset(builder, elementType, lhs, rhs);
 				}));
 		universalBuiltIns.addOperators(Arrays.asList("~", "\\lnot", "\\neg"), new TypelessBuiltinOperator(
 				1,
@@ -397,20 +818,43 @@ public class TLABuiltins {
 					GoType elementType = getSetElementType(typeMap.get(origin.getUID()));
 					GoExpression lhs = arguments.get(0);
 					GoExpression rhs = arguments.get(1);
-					GoExpression lhsLen = new GoCall(new GoVariableName("len"), Collections.singletonList(lhs));
-					GoExpression combinedLen = new GoBinop(
-							GoBinop.Operation.PLUS,
-							lhsLen,
-							new GoCall(new GoVariableName("len"), Collections.singletonList(rhs)));
-					GoVariableName tmpSet = builder.varDecl(
-							"tmpSet",
-							new GoMakeExpression(new GoSliceType(elementType), lhsLen, combinedLen));
-					// since append may re-use the same memory, we have to copy lhs in order to be sure
-					// that we are not going to overwrite the original slice when we sort
-					builder.addStatement(new GoCall(new GoVariableName("copy"), Arrays.asList(tmpSet, lhs)));
-					builder.assign(tmpSet, new GoCall(new GoVariableName("append"), Arrays.asList(tmpSet, rhs), true));
-					ensureUniqueSorted(builder, elementType, tmpSet);
-					return tmpSet;
+					if (isHashedSet(typeMap.get(origin.getUID()))) {
+						// the result is always a new map, see CodeGenUtil.storedValue
+						if (getSingleElement(rhs) != null || getSingleElement(lhs) != null) {
+							boolean singleRhs = getSingleElement(rhs) != null;
+							GoVariableName tmpSet = copyHashedSet(builder, elementType, singleRhs ? lhs : rhs);
+							addAllToHashedSet(builder, tmpSet, singleRhs ? rhs : lhs);
+							return tmpSet;
+						}
+						return mergeHashedSets(builder, elementType, lhs, rhs, SetMerge.UNION);
+					}
+					// special case: one side is a singleton literal, as when a set is grown one element at a time
+					if (getSingleElement(rhs) != null) {
+						return insertIntoSortedSet(builder, elementType, lhs, getSingleElement(rhs));
+					}
+					if (getSingleElement(lhs) != null) {
+						return insertIntoSortedSet(builder, elementType, rhs, getSingleElement(lhs));
+					}
+					return mergeSortedSets(builder, elementType, lhs, rhs, SetMerge.UNION);
+				}));
+		universalBuiltIns.addOperators(Arrays.asList("\\cap", "\\intersect"), new TypelessBuiltinOperator(
+				2,
+				(origin, args, solver, generator) -> {
+					Type fresh = new SetType(
+							generator.getTypeVariable(Collections.singletonList(origin)),
+							Collections.singletonList(origin));
+					solver.addConstraint(new MonomorphicConstraint(origin, args.get(0), fresh));
+					solver.addConstraint(new MonomorphicConstraint(origin, args.get(1), fresh));
+					return fresh;
+				},
+				(builder, origin, registry, arguments, typeMap) -> {
+					GoType elementType = getSetElementType(typeMap.get(origin.getUID()));
+					if (isHashedSet(typeMap.get(origin.getUID()))) {
+						return mergeHashedSets(
+								builder, elementType, arguments.get(0), arguments.get(1), SetMerge.INTERSECTION);
+					}
+					return mergeSortedSets(
+							builder, elementType, arguments.get(0), arguments.get(1), SetMerge.INTERSECTION);
 				}));
 	}
 
@@ -654,6 +1098,21 @@ public class TLABuiltins {
 				(builder, origin, registry, arguments, typeMap) -> {
 					GoExpression from = arguments.get(0);
 					GoExpression to = arguments.get(1);
+					if (isHashedSet(typeMap.get(origin.getUID()))) {
+						// tmpSet := make(map[int]struct{})
+						// for i := from; i <= to; i++ {
+						// 	tmpSet[i] = struct{}{}
+						// }
+						GoVariableName tmpSet = makeHashedSet(builder, GoBuiltins.Int, null);
+						GoForStatementClauseBuilder clauseBuilder = builder.forLoopWithClauses();
+						GoVariableName acc = clauseBuilder.initVariable("i", from);
+						clauseBuilder.setCondition(new GoBinop(GoBinop.Operation.LEQ, acc, to));
+						clauseBuilder.setInc(new GoIncDec(true, acc));
+						try (GoBlockBuilder body = clauseBuilder.getBlockBuilder()) {
+							addToHashedSet(body, tmpSet, acc);
+						}
+						return tmpSet;
+					}
 					GoExpression tmpRange = builder.varDecl("tmpRange", new GoMakeExpression(
 							new GoSliceType(GoBuiltins.Int),
 							new GoBinop(
@@ -738,7 +1197,47 @@ public class TLABuiltins {
 		builtinModules.put("Reals", Reals);
 	}
 
-	private static void fillDefinitionRegistryFromBuiltinModule(DefinitionRegistry registry, BuiltinModule module, TLABuiltinModules.TLABuiltinModule tlaModule) {
+	// the operators that take or give hashed sets, see SetType#isHashed
+	private static final Set<OperatorAccessor> hashedSetOperators = new HashSet<>();
+	// the operators whose hashed set results are new maps, which no variable holds yet
+	private static final Set<OperatorAccessor> hashedSetConstructors = new HashSet<>();
+	static {
+		for (String name : Arrays.asList("\\union", "\\", "\\cap")) {
+			hashedSetConstructors.add(universalBuiltIns.getOperators().get(name));
+		}
+		hashedSetConstructors.add(builtinModules.get("Naturals").getOperators().get(".."));
+		hashedSetOperators.addAll(hashedSetConstructors);
+		for (String name : Arrays.asList("=", "#", "\\in", "\\subseteq")) {
+			hashedSetOperators.add(universalBuiltIns.getOperators().get(name));
+		}
+		hashedSetOperators.add(builtinModules.get("FiniteSets").getOperators().get("Cardinality"));
+	}
+
+	/**
+	 * @return whether the Go code op generates supports hashed sets, see {@link SetType#isHashed()}, as its operands
+	 *         and result
+	 */
+	public static boolean supportsHashedSets(OperatorAccessor op) {
+		return hashedSetOperators.contains(op);
+	}
+
+	/**
+	 * @return whether op, given hashed sets, gives a new map, which no variable holds yet
+	 */
+	public static boolean constructsHashedSets(OperatorAccessor op) {
+		return hashedSetConstructors.contains(op);
+	}
+
+	/**
+	 * @return whether op is the builtin operator of the given name, or one of its aliases
+	 */
+	public static boolean isBuiltinOperator(OperatorAccessor op, String name) {
+		return universalBuiltIns.getOperators().get(name) == op;
+	}
+
+	private static void fillBuiltinOperatorsFromBuiltinModule(Map<UID, OperatorAccessor> builtinOperators,
+	                                                           BuiltinModule module,
+	                                                           TLABuiltinModules.TLABuiltinModule tlaModule) {
 		tlaModule.members().foreach(defn -> {
 			OperatorAccessor accessor = module.getOperators().get(defn.identifier().getId());
 			if(accessor == null) {
@@ -749,7 +1248,7 @@ public class TLABuiltins {
 					unsupportedMsg = "unsupported TLA+ operator "+tlaModule.identifier().getId()+"!"+defn.identifier().getId();
 				}
 				// add a dummy operator that throws "unsupported!" if we ever try to meaningfully use it
-				registry.addOperator(defn.getUID(), new OperatorAccessor() {
+				builtinOperators.put(defn.getUID(), new OperatorAccessor() {
 					@Override
 					public Type constrainTypes(Origin origin, DefinitionRegistry registry, List<Type> args, TypeSolver solver, TypeGenerator generator, Map<UID, TypeVariable> mapping) {
 						throw new UnsupportedFeatureIssue(unsupportedMsg);
@@ -771,20 +1270,32 @@ public class TLABuiltins {
 					}
 				});
 			} else {
-				registry.addOperator(defn.getUID(), accessor);
+				builtinOperators.put(defn.getUID(), accessor);
 			}
 			return null;
 		});
 	}
 
-	public static void fillDefinitionRegistry(DefinitionRegistry registry) {
-		fillDefinitionRegistryFromBuiltinModule(registry, universalBuiltIns, TLABuiltinModules.Intrinsics$.MODULE$);
+	// the builtin TLA+ definitions and their UIDs never change, so the mapping from builtin UIDs to operator
+	// accessors is computed once and shared (read-only) by every DefinitionRegistry
+	private static final Map<UID, OperatorAccessor> builtinOperators;
+	static {
+		Map<UID, OperatorAccessor> operators = new LinkedHashMap<>();
+		fillBuiltinOperatorsFromBuiltinModule(operators, universalBuiltIns, TLABuiltinModules.Intrinsics$.MODULE$);
 		TLABuiltinModules.builtinModules().foreach(pair -> {
 			String name = pair._1().getId();
 			TLABuiltinModules.TLABuiltinModule tlaModule = pair._2();
-			fillDefinitionRegistryFromBuiltinModule(registry, Objects.requireNonNull(builtinModules.get(name)), tlaModule);
+			fillBuiltinOperatorsFromBuiltinModule(
+					operators, Objects.requireNonNull(builtinModules.get(name)), tlaModule);
 			return null;
 		});
+		builtinOperators = Collections.unmodifiableMap(operators);
+	}
+
+	public static void fillDefinitionRegistry(DefinitionRegistry registry) {
+		for (Map.Entry<UID, OperatorAccessor> entry : builtinOperators.entrySet()) {
+			registry.addOperator(entry.getKey(), entry.getValue());
+		}
 	}
 
 	public static BuiltinModule getUniversalBuiltIns() {
@@ -2,33 +2,55 @@ package pgo.trans.passes.codegen;
 
 import pgo.InternalCompilerError;
 import pgo.scope.ChainSet;
+import pgo.util.PersistentHashMap;
 
 import java.util.HashSet;
 import java.util.Set;
 
+/**
+ * Hands out names that do not clash with any name of this scope or of the scopes enclosing it. Each scope keeps its
+ * names in a {@link ChainSet}, so opening a child scope shares the parent's names instead of copying them.
+ *
+ * Names are derived from a hint by trying the hint itself and then the hint followed by 0, 1, 2 and so on. For each
+ * hint, the scope remembers how many of these candidates are known to be taken, so that asking for the same hint
+ * again does not retry them. Names are never released, so a candidate that was taken stays taken, and a child scope
+ * can start from the counts of its parent because it starts out with all of its parent's names.
+ */
 public class NameCleaner {
 
-	private final Set<String> existingNames;
+	private final ChainSet<String> existingNames;
+	// for each hint, the number of candidates, in the order they are tried, that are known to be taken
+	private PersistentHashMap<String, Integer> candidatesTaken;
 
 	public NameCleaner() {
 		this(new HashSet<>());
 	}
 
 	public NameCleaner(Set<String> existingNames) {
+		this(new ChainSet<>(existingNames), new PersistentHashMap<>());
+	}
+
+	private NameCleaner(ChainSet<String> existingNames, PersistentHashMap<String, Integer> candidatesTaken) {
 		this.existingNames = existingNames;
+		this.candidatesTaken = candidatesTaken;
+	}
+
+	private static String candidate(String nameHint, int index) {
+		return index == 0 ? nameHint : nameHint + (index - 1);
 	}
 
 	public String cleanName(String nameHint) {
 		if (nameHint.equals("_")) {
 			return nameHint;
 		}
-		String actualName = nameHint;
-		int count = 0;
+		int index = candidatesTaken.getOrDefault(nameHint, 0);
+		String actualName = candidate(nameHint, index);
 		while(existingNames.contains(actualName)) {
-			actualName = nameHint + count;
-			++count;
+			++index;
+			actualName = candidate(nameHint, index);
 		}
 		existingNames.add(actualName);
+		candidatesTaken = candidatesTaken.plus(nameHint, index + 1);
 		return actualName;
 	}
 
@@ -40,7 +62,7 @@ public class NameCleaner {
 	}
 
 	public NameCleaner child() {
-		return new NameCleaner(new ChainSet<>(existingNames));
+		return new NameCleaner(new ChainSet<>(existingNames), candidatesTaken);
 	}
 
 }
@@ -2,10 +2,12 @@ package pgo.trans.passes.codegen.go;
 
 import pgo.model.golang.*;
 import pgo.model.golang.builder.GoBlockBuilder;
-import pgo.model.tla.TLAExpression;
+import pgo.model.tla.*;
+import pgo.model.type.SetType;
 import pgo.model.type.Type;
 import pgo.scope.UID;
 import pgo.trans.intermediate.DefinitionRegistry;
+import pgo.trans.intermediate.TLABuiltins;
 
 import java.util.Arrays;
 import java.util.Collections;
@@ -23,6 +25,31 @@ public class CodeGenUtil {
 		return new GoUnary(GoUnary.Operation.NOT, condition.accept(new TLAExpressionCodeGenVisitor(builder, registry, typeMap, localStrategy, globalStrategy)));
 	}
 
+	/**
+	 * Hashed sets, see {@link SetType#isHashed()}, are Go maps, which assignments like s := s \cup {e} update in
+	 * place, so each variable must be the only one to hold its map. A hashed set that expression does not build
+	 * afresh may be held by some variable already, and is copied before it is stored in another one.
+	 */
+	static GoExpression storedValue(GoBlockBuilder builder, DefinitionRegistry registry, Map<UID, Type> typeMap,
+	                                TLAExpression expression, GoExpression value) {
+		Type type = typeMap.get(expression.getUID());
+		if (!TLABuiltins.isHashedSet(type) || isNewSet(registry, expression)) {
+			return value;
+		}
+		return TLABuiltins.copyHashedSet(builder, TLABuiltins.getSetElementType(type), value);
+	}
+
+	private static boolean isNewSet(DefinitionRegistry registry, TLAExpression expression) {
+		if (expression instanceof TLASetConstructor || expression instanceof TLASetComprehension ||
+				expression instanceof TLASetRefinement || expression instanceof PlusCalDefaultInitValue) {
+			return true;
+		}
+		if (expression instanceof TLABinOp || expression instanceof TLAOperatorCall) {
+			return TLABuiltins.constructsHashedSets(registry.findOperator(registry.followReference(expression.getUID())));
+		}
+		return false;
+	}
+
 	public static GoExpression staticallySortSlice(GoSliceLiteral slice){
 		return new GoSliceLiteral(
 				slice.getElementType(),
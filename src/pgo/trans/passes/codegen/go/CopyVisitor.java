@@ -99,6 +99,15 @@ public class CopyVisitor extends GoTypeVisitor<GoVariableName, RuntimeException>
         GoVariableName copy = createCopy(make);
 
         GoForRangeBuilder rangeBuilder = builder.forRange(source);
+        GoType valueType = mapType.getValueType();
+        if (valueType instanceof GoStructType && ((GoStructType) valueType).getFields().isEmpty()) {
+            // a hashed set: only the keys matter, and an unused value variable would not compile
+            GoVariableName k = rangeBuilder.initVariables(Collections.singletonList("k")).get(0);
+            try (GoBlockBuilder rangeBody = rangeBuilder.getBlockBuilder()) {
+                rangeBody.assign(new GoIndexExpression(copy, k), new GoStructLiteral(valueType, Collections.emptyList()));
+            }
+            return copy;
+        }
         List<GoVariableName> initVars = rangeBuilder.initVariables(Arrays.asList("k", "v"));
         GoVariableName k = initVars.get(0);
         GoVariableName v = initVars.get(1);
@@ -0,0 +1,137 @@
+package pgo.trans.passes.codegen.go;
+
+import pgo.model.mpcal.ModularPlusCalArchetype;
+import pgo.model.mpcal.ModularPlusCalBlock;
+import pgo.model.mpcal.ModularPlusCalInstance;
+import pgo.model.pcal.*;
+import pgo.model.type.*;
+import pgo.scope.UID;
+import pgo.trans.intermediate.DefinitionRegistry;
+
+import java.util.*;
+
+/**
+ * Marks the sets of integers and of strings that can be compiled to Go maps as hashed, see {@link SetType#isHashed()}.
+ *
+ * Sets are otherwise sorted, deduplicated slices, so that adding an element to one costs a copy of the whole set. A
+ * map is only usable where the Go code does not need the elements in order: a set type is left alone if a set of
+ * that type is nested in another value, printed, picked an element of by a \in declaration, or given to an operator
+ * that only supports slices, see {@link TLAExpressionHashedSetUsageVisitor}. Set types are marked by structure, so
+ * that a set type has the same Go representation everywhere in a module.
+ */
+public class HashedSetTypeVisitor extends TypeCopyVisitor {
+	private final Set<Type> hashedElementTypes;
+
+	private HashedSetTypeVisitor(Set<Type> hashedElementTypes) {
+		this.hashedElementTypes = hashedElementTypes;
+	}
+
+	@Override
+	public Type visit(SetType setType) throws RuntimeException {
+		return new SetType(
+				setType.getElementType().accept(this),
+				setType.isHashed() || hashedElementTypes.contains(setType.getElementType()),
+				setType.getOrigins());
+	}
+
+	private static boolean isCandidate(Type elementType) {
+		return elementType instanceof IntType || elementType instanceof StringType;
+	}
+
+	// the element types of all sets found in type are excluded, as Go code compares and sorts the values they are in
+	private static void excludeNestedSets(Type type, Set<Type> excluded) {
+		type.accept(new TypeCopyVisitor() {
+			@Override
+			public Type visit(SetType setType) throws RuntimeException {
+				excluded.add(setType.getElementType());
+				return super.visit(setType);
+			}
+
+			@Override
+			public Type visit(RecordType recordType) throws RuntimeException {
+				recordType.getFields().forEach(f -> f.getType().accept(this));
+				return recordType;
+			}
+		});
+	}
+
+	private static void collectSets(Type type, Set<Type> candidates, Set<Type> excluded) {
+		if (type instanceof SetType) {
+			Type elementType = ((SetType) type).getElementType();
+			if (isCandidate(elementType)) {
+				candidates.add(elementType);
+			}
+			excludeNestedSets(elementType, excluded);
+		} else if (type instanceof ProcedureType) {
+			// procedure parameters are variables of their own
+			((ProcedureType) type).getParamTypes().forEach(p -> collectSets(p, candidates, excluded));
+		} else {
+			excludeNestedSets(type, excluded);
+		}
+	}
+
+	/**
+	 * @param constantsExported whether the constants of modularPlusCalBlock are set by Go code that is not generated,
+	 *                          which sets their values as slices
+	 * @return a copy of typeMap in which the sets of integers and of strings that modularPlusCalBlock only uses in
+	 *         ways that Go maps support are marked as hashed
+	 */
+	public static Map<UID, Type> markHashedSets(DefinitionRegistry registry, Map<UID, Type> typeMap,
+	                                            ModularPlusCalBlock modularPlusCalBlock, boolean constantsExported) {
+		Set<Type> candidates = new HashSet<>();
+		Set<Type> excluded = new HashSet<>();
+		typeMap.values().stream().filter(Objects::nonNull).forEach(type -> collectSets(type, candidates, excluded));
+
+		TLAExpressionHashedSetUsageVisitor expressions =
+				new TLAExpressionHashedSetUsageVisitor(registry, typeMap, excluded, new HashSet<>());
+		PlusCalStatementHashedSetUsageVisitor statements = new PlusCalStatementHashedSetUsageVisitor(expressions);
+
+		for (UID id : registry.getConstants()) {
+			if (constantsExported) {
+				expressions.exclude(typeMap.get(id));
+			}
+			registry.getConstantValue(id).ifPresent(value -> value.accept(expressions));
+		}
+		modularPlusCalBlock.getVariables().forEach(statements::declaration);
+		for (PlusCalProcedure procedure : modularPlusCalBlock.getProcedures()) {
+			procedure.getParams().forEach(statements::declaration);
+			procedure.getVariables().forEach(statements::declaration);
+			procedure.getBody().forEach(s -> s.accept(statements));
+		}
+		for (ModularPlusCalArchetype archetype : modularPlusCalBlock.getInstantiatedArchetypes()) {
+			archetype.getVariables().forEach(statements::declaration);
+			archetype.getBody().forEach(s -> s.accept(statements));
+		}
+		for (ModularPlusCalInstance instance : modularPlusCalBlock.getInstances()) {
+			statements.declaration(instance.getName());
+			instance.getArguments().forEach(expressions::forbid);
+		}
+		modularPlusCalBlock.getProcesses().accept(new PlusCalProcessesVisitor<Void, RuntimeException>() {
+			@Override
+			public Void visit(PlusCalSingleProcess singleProcess) throws RuntimeException {
+				singleProcess.getBody().forEach(s -> s.accept(statements));
+				return null;
+			}
+
+			@Override
+			public Void visit(PlusCalMultiProcess multiProcess) throws RuntimeException {
+				for (PlusCalProcess process : multiProcess.getProcesses()) {
+					// a process is started for each element of its set, in no particular order
+					process.getName().getValue().accept(expressions);
+					process.getVariables().forEach(statements::declaration);
+					process.getBody().forEach(s -> s.accept(statements));
+				}
+				return null;
+			}
+		});
+
+		candidates.removeAll(excluded);
+		if (candidates.isEmpty()) {
+			return typeMap;
+		}
+		HashedSetTypeVisitor visitor = new HashedSetTypeVisitor(candidates);
+		Map<UID, Type> result = new HashMap<>();
+		typeMap.forEach((uid, type) -> result.put(uid, type == null ? null : type.accept(visitor)));
+		return result;
+	}
+}
@@ -131,11 +131,81 @@ public class LessThanCodeGenVisitor extends GoTypeVisitor<GoExpression, RuntimeE
 		throw new TODO();
 	}
 
+	private GoVariableName sortedKeys(String nameHint, GoMapType mapType, GoExpression map) {
+		GoVariableName keys = builder.varDecl(nameHint, new GoMakeExpression(
+				new GoSliceType(mapType.getKeyType()),
+				new GoIntLiteral(0),
+				new GoCall(new GoVariableName("len"), Collections.singletonList(map))));
+		GoForRangeBuilder rangeBuilder = builder.forRange(map);
+		GoVariableName k = rangeBuilder.initVariables(Collections.singletonList("k")).get(0);
+		try (GoBlockBuilder body = rangeBuilder.getBlockBuilder()) {
+			body.assign(keys, new GoCall(new GoVariableName("append"), Arrays.asList(keys, k)));
+		}
+		TLABuiltins.ensureSorted(builder, mapType.getKeyType(), keys);
+		return keys;
+	}
+
+	private static void decideIfDifferent(GoBlockBuilder loopBody, GoVariableName less, GoType type, GoExpression l,
+	                                      GoExpression r) {
+		try (GoIfBuilder notEq = loopBody.ifStmt(type.accept(new EqCodeGenVisitor(loopBody, l, r, true)))) {
+			try (GoBlockBuilder different = notEq.whenTrue()) {
+				different.assign(less, type.accept(new LessThanCodeGenVisitor(different, l, r)));
+				different.addStatement(new GoBreak());
+			}
+		}
+	}
+
+	private GoExpression functionComparison(GoMapType mapType) {
+		// functions with hashable keys are Go maps, which are ordered as if they were the slices of key-value pairs
+		// sorted by key that represent the other functions
+		//
+		// less := len(lhs) < len(rhs)
+		// if len(lhs) == len(rhs) {
+		//     lhsKeys := <sorted keys of lhs>
+		//     rhsKeys := <sorted keys of rhs>
+		//     for i := 0; i < len(lhsKeys); i++ {
+		//         if lhsKeys[i] != rhsKeys[i] {
+		//             less = lhsKeys[i] < rhsKeys[i]
+		//             break
+		//         }
+		//         if lhs[lhsKeys[i]] != rhs[rhsKeys[i]] {
+		//             less = lhs[lhsKeys[i]] < rhs[rhsKeys[i]]
+		//             break
+		//         }
+		//     }
+		// }
+		GoExpression lhsLen = new GoCall(new GoVariableName("len"), Collections.singletonList(lhs));
+		GoExpression rhsLen = new GoCall(new GoVariableName("len"), Collections.singletonList(rhs));
+		GoVariableName less = builder.varDecl("less", new GoBinop(GoBinop.Operation.LT, lhsLen, rhsLen));
+		try (GoIfBuilder lengthEQ = builder.ifStmt(new GoBinop(GoBinop.Operation.EQ, lhsLen, rhsLen))) {
+			try (GoBlockBuilder yes = lengthEQ.whenTrue()) {
+				LessThanCodeGenVisitor inner = new LessThanCodeGenVisitor(yes, lhs, rhs);
+				GoVariableName lhsKeys = inner.sortedKeys("lhsKeys", mapType, lhs);
+				GoVariableName rhsKeys = inner.sortedKeys("rhsKeys", mapType, rhs);
+				GoForStatementClauseBuilder loopBuilder = yes.forLoopWithClauses();
+				GoVariableName i = loopBuilder.initVariable("i", new GoIntLiteral(0));
+				loopBuilder.setCondition(new GoBinop(
+						GoBinop.Operation.LT,
+						i,
+						new GoCall(new GoVariableName("len"), Collections.singletonList(lhsKeys))));
+				loopBuilder.setInc(new GoIncDec(true, i));
+				try (GoBlockBuilder loopBody = loopBuilder.getBlockBuilder()) {
+					GoExpression lhsKey = new GoIndexExpression(lhsKeys, i);
+					GoExpression rhsKey = new GoIndexExpression(rhsKeys, i);
+					GoExpression lhsValue = new GoIndexExpression(lhs, lhsKey);
+					GoExpression rhsValue = new GoIndexExpression(rhs, rhsKey);
+					decideIfDifferent(loopBody, less, mapType.getKeyType(), lhsKey, rhsKey);
+					decideIfDifferent(loopBody, less, mapType.getValueType(), lhsValue, rhsValue);
+				}
+			}
+		}
+		return less;
+	}
+
 	@Override
 	public GoExpression visit(GoMapType mapType) throws RuntimeException {
-		// only comparison of record types are supported
 		if (!mapType.isRecord()) {
-			throw new TODO();
+			return functionComparison(mapType);
 		}
 
 		// Go pseudo-code:
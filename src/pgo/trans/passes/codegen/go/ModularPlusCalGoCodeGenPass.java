@@ -19,6 +19,7 @@ import pgo.model.tla.TLAExpression;
 import pgo.model.type.*;
 import pgo.scope.UID;
 import pgo.trans.intermediate.DefinitionRegistry;
+import pgo.trans.intermediate.TLABuiltins;
 
 import java.util.*;
 import java.util.function.Function;
@@ -32,18 +33,26 @@ public class ModularPlusCalGoCodeGenPass {
                                                          List<PlusCalVariableDeclaration> variableDeclarations) {
         for (PlusCalVariableDeclaration variableDeclaration : variableDeclarations) {
             GoVariableName name;
-            GoType varType;
 
             if (variableDeclaration.getValue() instanceof PlusCalDefaultInitValue) {
                 Type inferredType = typeMap.get(variableDeclaration.getUID());
 
-                varType = inferredType.accept(new TypeConversionVisitor());
-                name = processBody.varDecl(variableDeclaration.getName().getId(), varType);
+                if (TLABuiltins.isHashedSet(inferredType)) {
+                    // a nil map could not be added to, and would not be reflect.DeepEqual to an empty one
+                    name = processBody.varDecl(
+                            variableDeclaration.getName().getId(), inferredType.accept(new TypeDefaultValueVisitor()));
+                } else {
+                    GoType varType = inferredType.accept(new TypeConversionVisitor());
+                    name = processBody.varDecl(variableDeclaration.getName().getId(), varType);
+                }
             } else {
                 GoExpression value = variableDeclaration.getValue().accept(
                         new TLAExpressionCodeGenVisitor(processBody, registry, typeMap, localStrategy, globalStrategy));
                 if (variableDeclaration.isSet()) {
                     value = new GoIndexExpression(value, new GoIntLiteral(0));
+                } else {
+                    value = CodeGenUtil.storedValue(
+                            processBody, registry, typeMap, variableDeclaration.getValue(), value);
                 }
 
                 name = processBody.varDecl(variableDeclaration.getName().getId(), value);
@@ -218,6 +227,8 @@ public class ModularPlusCalGoCodeGenPass {
 
     public static GoModule perform(DefinitionRegistry registry, Map<UID, Type> typeMap, PGoOptions opts,
                                    ModularPlusCalBlock modularPlusCalBlock) {
+        typeMap = TransmittedRecordTypeVisitor.markTransmittedRecords(modularPlusCalBlock, typeMap);
+        typeMap = HashedSetTypeVisitor.markHashedSets(registry, typeMap, modularPlusCalBlock, true);
         GoModuleBuilder module = new GoModuleBuilder(modularPlusCalBlock.getName().getId(), opts.buildPackage);
         SnapshottingLocalVariableStrategy localStrategy = new SnapshottingLocalVariableStrategy(registry, typeMap);
         GlobalVariableStrategy globalStrategy = new ArchetypeResourcesGlobalVariableStrategy(registry, typeMap, localStrategy, null);
@@ -14,6 +14,7 @@ import pgo.model.pcal.PlusCalProcess;
 import pgo.model.type.Type;
 import pgo.scope.UID;
 import pgo.trans.intermediate.DefinitionRegistry;
+import pgo.trans.intermediate.TLABuiltins;
 
 import java.util.Arrays;
 import java.util.Collections;
@@ -78,7 +79,13 @@ public class MultithreadedProcessGlobalVariableStrategy extends GlobalVariableSt
 					new TLAExpressionCodeGenVisitor(builder, registry, typeMap, localStrategy, this));
 			if (process.getName().isSet()) {
 				GoForRangeBuilder forRangeBuilder = builder.forRange(value);
-				GoVariableName v = forRangeBuilder.initVariables(Arrays.asList("_", "v")).get(1);
+				GoVariableName v;
+				if (TLABuiltins.isHashedSet(typeMap.get(process.getName().getValue().getUID()))) {
+					// the process identifiers are the keys of a hashed set
+					v = forRangeBuilder.initVariables(Collections.singletonList("v")).get(0);
+				} else {
+					v = forRangeBuilder.initVariables(Arrays.asList("_", "v")).get(1);
+				}
 				try (GoBlockBuilder forBody = forRangeBuilder.getBlockBuilder()) {
 					forBody.addStatement(new GoCall(
 							new GoSelectorExpression(findVariable(pGoWaitUID), "Add"),
@@ -19,6 +19,10 @@ public class PlusCalGoCodeGenPass {
 
 	public static GoModule perform(DefinitionRegistry registry, Map<UID, Type> typeMap, PGoOptions opts,
 	                               ModularPlusCalBlock modularPlusCalBlock) {
+		if (!opts.net.isEnabled()) {
+			// the network strategies exchange the values of global variables, which they expect to be slices
+			typeMap = HashedSetTypeVisitor.markHashedSets(registry, typeMap, modularPlusCalBlock, false);
+		}
 		GoModuleBuilder moduleBuilder = new GoModuleBuilder(modularPlusCalBlock.getName().getId(), "main");
 		PlusCalProcesses processes = modularPlusCalBlock.getProcesses();
 		LocalVariableStrategy localStrategy = new DefaultLocalVariableStrategy();
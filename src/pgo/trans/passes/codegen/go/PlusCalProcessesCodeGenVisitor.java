@@ -104,6 +104,8 @@ public class PlusCalProcessesCodeGenVisitor extends PlusCalProcessesVisitor<Void
 					new TLAExpressionCodeGenVisitor(processBody, registry, typeMap, localStrategy, globalStrategy));
 			if (variableDeclaration.isSet()) {
 				value = new GoIndexExpression(value, new GoIntLiteral(0));
+			} else {
+				value = CodeGenUtil.storedValue(processBody, registry, typeMap, variableDeclaration.getValue(), value);
 			}
 			GoVariableName name = processBody.varDecl(variableDeclaration.getName().getId(), value);
 			processBody.linkUID(variableDeclaration.getUID(), name);
@@ -144,8 +146,9 @@ public class PlusCalProcessesCodeGenVisitor extends PlusCalProcessesVisitor<Void
 				} else {
 					initBuilder.assign(
 							name,
-							value.accept(new TLAExpressionCodeGenVisitor(
-									initBuilder, registry, typeMap, localStrategy, globalStrategy)));
+							CodeGenUtil.storedValue(initBuilder, registry, typeMap, value, value.accept(
+									new TLAExpressionCodeGenVisitor(
+											initBuilder, registry, typeMap, localStrategy, globalStrategy))));
 				}
 			}
 		});
@@ -6,11 +6,14 @@ import pgo.model.golang.*;
 import pgo.model.golang.builder.GoBlockBuilder;
 import pgo.model.mpcal.ModularPlusCalYield;
 import pgo.model.pcal.*;
+import pgo.model.tla.TLABinOp;
 import pgo.model.tla.TLAExpression;
 import pgo.model.tla.TLAGeneralIdentifier;
 import pgo.model.type.Type;
 import pgo.scope.UID;
 import pgo.trans.intermediate.DefinitionRegistry;
+import pgo.trans.intermediate.OperatorAccessor;
+import pgo.trans.intermediate.TLABuiltins;
 import pgo.trans.passes.atomicity.PlusCalStatementAtomicityInferenceVisitor;
 
 import java.util.*;
@@ -277,6 +280,9 @@ public class PlusCalStatementCodeGenVisitor extends PlusCalStatementVisitor<Void
 
 	@Override
 	public Void visit(PlusCalAssignment plusCalAssignment) throws RuntimeException {
+		if (plusCalAssignment.getPairs().size() == 1 && updateSetInPlace(plusCalAssignment.getPairs().get(0))) {
+			return null;
+		}
 		List<GoExpression> lhs = new ArrayList<>();
 		List<GoExpression> rhs = new ArrayList<>();
 		List<GlobalVariableStrategy.GlobalVariableWrite> lhsWrites = new ArrayList<>();
@@ -285,8 +291,9 @@ public class PlusCalStatementCodeGenVisitor extends PlusCalStatementVisitor<Void
 					new TLAExpressionAssignmentLHSCodeGenVisitor(builder, registry, typeMap, localStrategy, globalStrategy));
 			lhsWrites.add(lhsWrite);
 			lhs.add(lhsWrite.getValueSink(builder));
-			rhs.add(pair.getRhs().accept(
-					new TLAExpressionCodeGenVisitor(builder, registry, typeMap, localStrategy, globalStrategy)));
+			GoExpression value = pair.getRhs().accept(
+					new TLAExpressionCodeGenVisitor(builder, registry, typeMap, localStrategy, globalStrategy));
+			rhs.add(CodeGenUtil.storedValue(builder, registry, typeMap, pair.getRhs(), value));
 		}
 		builder.assign(lhs, rhs);
 		for (GlobalVariableStrategy.GlobalVariableWrite lhsWrite : lhsWrites) {
@@ -295,6 +302,62 @@ public class PlusCalStatementCodeGenVisitor extends PlusCalStatementVisitor<Void
 		return null;
 	}
 
+	private boolean refersTo(TLAExpression expression, UID definition) {
+		return expression instanceof TLAGeneralIdentifier &&
+				registry.followReference(expression.getUID()).equals(definition);
+	}
+
+	/**
+	 * Compiles s := s \cup T and s := s \ T, where s is a hashed set, to adding the elements of T to or removing
+	 * them from the map s holds, which no other variable holds, see CodeGenUtil.storedValue. A set grown or shrunk
+	 * one element at a time then costs O(1) per step rather than a copy of the whole set.
+	 *
+	 * @return whether pair was compiled this way
+	 */
+	private boolean updateSetInPlace(PlusCalAssignmentPair pair) {
+		if (!(pair.getLhs() instanceof TLAGeneralIdentifier) || !(pair.getRhs() instanceof TLABinOp) ||
+				!TLABuiltins.isHashedSet(typeMap.get(pair.getLhs().getUID()))) {
+			return false;
+		}
+		TLABinOp rhs = (TLABinOp) pair.getRhs();
+		OperatorAccessor op = registry.findOperator(registry.followReference(rhs.getUID()));
+		boolean union = TLABuiltins.isBuiltinOperator(op, "\\union");
+		if (!union && !TLABuiltins.isBuiltinOperator(op, "\\")) {
+			return false;
+		}
+		UID variable = registry.followReference(pair.getLhs().getUID());
+		TLAExpression updated;
+		TLAExpression elements;
+		if (refersTo(rhs.getLHS(), variable)) {
+			updated = rhs.getLHS();
+			elements = rhs.getRHS();
+		} else if (union && refersTo(rhs.getRHS(), variable)) {
+			updated = rhs.getRHS();
+			elements = rhs.getLHS();
+		} else {
+			return false;
+		}
+
+		TLAExpressionCodeGenVisitor codeGen = new TLAExpressionCodeGenVisitor(
+				builder, registry, typeMap, localStrategy, globalStrategy);
+		GoExpression set = updated.accept(codeGen);
+		GoExpression elementsSet = elements.accept(codeGen);
+		if (union) {
+			TLABuiltins.addAllToHashedSet(builder, set, elementsSet);
+		} else {
+			TLABuiltins.removeAllFromHashedSet(builder, set, elementsSet);
+		}
+		GlobalVariableStrategy.GlobalVariableWrite lhsWrite = pair.getLhs().accept(
+				new TLAExpressionAssignmentLHSCodeGenVisitor(builder, registry, typeMap, localStrategy, globalStrategy));
+		GoExpression sink = lhsWrite.getValueSink(builder);
+		// the map is updated in place, so only write it back if s is read from somewhere else than it is written to
+		if (!sink.equals(set)) {
+			builder.assign(sink, set);
+		}
+		lhsWrite.writeAfter(builder);
+		return true;
+	}
+
 	@Override
 	public Void visit(PlusCalReturn plusCalReturn) throws RuntimeException {
 		builder.addStatement(new GoReturn(Collections.emptyList()));
@@ -314,7 +377,7 @@ public class PlusCalStatementCodeGenVisitor extends PlusCalStatementVisitor<Void
 		for (int i = 0; i < args.size(); i++) {
 			TLAExpression arg = args.get(i);
 			GoExpression e = arg.accept(new TLAExpressionCodeGenVisitor(builder, registry, typeMap, localStrategy, globalStrategy));
-			arguments.add(builder.varDecl("arg" + (i + 1), e));
+			arguments.add(builder.varDecl("arg" + (i + 1), CodeGenUtil.storedValue(builder, registry, typeMap, arg, e)));
 		}
 		// the critical section ends here because the procedure has to have a label on the first line of its body
 		criticalSectionTracker.end(builder);
@@ -336,6 +399,8 @@ public class PlusCalStatementCodeGenVisitor extends PlusCalStatementVisitor<Void
 					new TLAExpressionCodeGenVisitor(builder, registry, typeMap, localStrategy, globalStrategy));
 			if (decl.isSet()) {
 				value = new GoIndexExpression(value, new GoIntLiteral(0));
+			} else {
+				value = CodeGenUtil.storedValue(builder, registry, typeMap, decl.getValue(), value);
 			}
 			builder.linkUID(decl.getUID(), builder.varDecl(decl.getName().getId(), value));
 		}
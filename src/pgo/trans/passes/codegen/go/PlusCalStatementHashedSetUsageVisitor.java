@@ -0,0 +1,124 @@
+package pgo.trans.passes.codegen.go;
+
+import pgo.Unreachable;
+import pgo.model.mpcal.ModularPlusCalYield;
+import pgo.model.pcal.*;
+
+import java.util.List;
+
+/**
+ * Finds the sets whose Go code needs them to be slices in PlusCal statements, see
+ * {@link TLAExpressionHashedSetUsageVisitor}. Printed sets are excluded, since their elements are printed in order,
+ * and so are the sets that \in declarations pick an element of.
+ */
+public class PlusCalStatementHashedSetUsageVisitor extends PlusCalStatementVisitor<Void, RuntimeException> {
+	private final TLAExpressionHashedSetUsageVisitor expressions;
+
+	public PlusCalStatementHashedSetUsageVisitor(TLAExpressionHashedSetUsageVisitor expressions) {
+		this.expressions = expressions;
+	}
+
+	void declaration(PlusCalVariableDeclaration declaration) {
+		if (declaration.isSet()) {
+			expressions.forbid(declaration.getValue());
+		} else {
+			declaration.getValue().accept(expressions);
+		}
+	}
+
+	private void statements(List<PlusCalStatement> statements) {
+		statements.forEach(s -> s.accept(this));
+	}
+
+	@Override
+	public Void visit(PlusCalLabeledStatements plusCalLabeledStatements) throws RuntimeException {
+		statements(plusCalLabeledStatements.getStatements());
+		return null;
+	}
+
+	@Override
+	public Void visit(PlusCalWhile plusCalWhile) throws RuntimeException {
+		plusCalWhile.getCondition().accept(expressions);
+		statements(plusCalWhile.getBody());
+		return null;
+	}
+
+	@Override
+	public Void visit(PlusCalIf plusCalIf) throws RuntimeException {
+		plusCalIf.getCondition().accept(expressions);
+		statements(plusCalIf.getYes());
+		statements(plusCalIf.getNo());
+		return null;
+	}
+
+	@Override
+	public Void visit(PlusCalEither plusCalEither) throws RuntimeException {
+		plusCalEither.getCases().forEach(this::statements);
+		return null;
+	}
+
+	@Override
+	public Void visit(PlusCalAssignment plusCalAssignment) throws RuntimeException {
+		for (PlusCalAssignmentPair pair : plusCalAssignment.getPairs()) {
+			pair.getLhs().accept(expressions);
+			pair.getRhs().accept(expressions);
+		}
+		return null;
+	}
+
+	@Override
+	public Void visit(PlusCalReturn plusCalReturn) throws RuntimeException {
+		return null;
+	}
+
+	@Override
+	public Void visit(PlusCalSkip plusCalSkip) throws RuntimeException {
+		return null;
+	}
+
+	@Override
+	public Void visit(PlusCalCall plusCalCall) throws RuntimeException {
+		plusCalCall.getArguments().forEach(a -> a.accept(expressions));
+		return null;
+	}
+
+	@Override
+	public Void visit(PlusCalMacroCall macroCall) throws RuntimeException {
+		throw new Unreachable();
+	}
+
+	@Override
+	public Void visit(PlusCalWith plusCalWith) throws RuntimeException {
+		plusCalWith.getVariables().forEach(this::declaration);
+		statements(plusCalWith.getBody());
+		return null;
+	}
+
+	@Override
+	public Void visit(PlusCalPrint plusCalPrint) throws RuntimeException {
+		expressions.forbid(plusCalPrint.getValue());
+		return null;
+	}
+
+	@Override
+	public Void visit(PlusCalAssert plusCalAssert) throws RuntimeException {
+		plusCalAssert.getCondition().accept(expressions);
+		return null;
+	}
+
+	@Override
+	public Void visit(PlusCalAwait plusCalAwait) throws RuntimeException {
+		plusCalAwait.getCondition().accept(expressions);
+		return null;
+	}
+
+	@Override
+	public Void visit(PlusCalGoto plusCalGoto) throws RuntimeException {
+		return null;
+	}
+
+	@Override
+	public Void visit(ModularPlusCalYield modularPlusCalYield) throws RuntimeException {
+		throw new Unreachable();
+	}
+}
@@ -3,9 +3,9 @@ package pgo.trans.passes.codegen.go;
 import pgo.InternalCompilerError;
 import pgo.TODO;
 import pgo.model.golang.*;
-import pgo.model.golang.builder.GoAnonymousFunctionBuilder;
 import pgo.model.golang.builder.GoBlockBuilder;
 import pgo.model.golang.builder.GoForRangeBuilder;
+import pgo.model.golang.type.GoMapType;
 import pgo.model.golang.type.GoSliceType;
 import pgo.model.golang.type.GoStructType;
 import pgo.model.golang.type.GoType;
@@ -44,10 +44,21 @@ public class TLAExpressionCodeGenVisitor extends TLAExpressionVisitor<GoExpressi
 	}
 
 	private static GoType getFunctionKeyType(GoType fnType) {
+		if (fnType instanceof GoMapType) {
+			return ((GoMapType) fnType).getKeyType();
+		}
 		GoType keyValuePairType = ((GoSliceType)fnType).getElementType();
 		return ((GoStructType)keyValuePairType).getFields().get(0).getType();
 	}
 
+	// the elements of a hashed set are the keys of its map, and those of other sets are the values of their slices
+	private GoVariableName rangeOverElements(GoForRangeBuilder forRangeBuilder, TLAExpression set, String nameHint) {
+		if (TLABuiltins.isHashedSet(typeMap.get(set.getUID()))) {
+			return forRangeBuilder.initVariables(Collections.singletonList(nameHint)).get(0);
+		}
+		return forRangeBuilder.initVariables(Arrays.asList("_", nameHint)).get(1);
+	}
+
 	private void unfoldQuantifierBounds(List<TLAQuantifierBound> bounds, Consumer<GoBlockBuilder> action) {
 		unfoldQuantifierBounds(bounds, evaluateQuantifierBoundSets(bounds), action);
 	}
@@ -78,7 +89,7 @@ public class TLAExpressionCodeGenVisitor extends TLAExpressionVisitor<GoExpressi
 				}
 
 				TLAIdentifier id = bound.getIds().get(0);
-				GoVariableName name = forRangeBuilder.initVariables(Arrays.asList("_", id.getId())).get(1);
+				GoVariableName name = rangeOverElements(forRangeBuilder, bound.getSet(), id.getId());
 				currentBuilder.linkUID(id.getUID(), name);
 				// useful for some internal codegen, not needed by user code
 				currentBuilder.linkUID(bound.getUID(), name);
@@ -101,14 +112,14 @@ public class TLAExpressionCodeGenVisitor extends TLAExpressionVisitor<GoExpressi
 
 		Type type = typeMap.get(tlaFunctionCall.getFunction().getUID());
 		if (type instanceof MapType) {
-			builder.addImport("sort");
 			GoExpression function = tlaFunctionCall.getFunction().accept(this);
 			List<GoExpression> params = new ArrayList<>();
 			for(TLAExpression param : tlaFunctionCall.getParams()) {
 				params.add(param.accept(this));
 			}
 
-			GoType keyType = getFunctionKeyType(type.accept(new TypeConversionVisitor()));
+			GoType functionType = type.accept(new TypeConversionVisitor());
+			GoType keyType = getFunctionKeyType(functionType);
 			GoVariableName key;
 			if (tlaFunctionCall.getParams().size() == 1) {
 				key = builder.varDecl("key", params.get(0));
@@ -127,25 +138,53 @@ public class TLAExpressionCodeGenVisitor extends TLAExpressionVisitor<GoExpressi
 				}
 			}
 
-			GoAnonymousFunctionBuilder comparatorBuilder = builder.anonymousFunction();
-			GoVariableName i = comparatorBuilder.addArgument("i", GoBuiltins.Int);
-			comparatorBuilder.addReturn(GoBuiltins.Bool);
-			try (GoBlockBuilder comparatorBody = comparatorBuilder.getBlockBuilder()) {
-				comparatorBody.addStatement(
-						new GoReturn(Collections.singletonList(
-								new GoUnary(
-										GoUnary.Operation.NOT,
-										keyType.accept(new LessThanCodeGenVisitor(
-												comparatorBody,
-												new GoSelectorExpression(new GoIndexExpression(function, i), "key"),
-												key))))));
+			if (functionType instanceof GoMapType) {
+				return new GoIndexExpression(function, key);
 			}
-			GoVariableName index = builder.varDecl("index", new GoCall(
-					new GoSelectorExpression(new GoVariableName("sort"), "Search"),
-					Arrays.asList(
-							new GoCall(new GoVariableName("len"), Collections.singletonList(function)),
-							comparatorBuilder.getFunction())));
-			return new GoSelectorExpression(new GoIndexExpression(function, index), "value");
+
+			// fn := function
+			// index := 0
+			// high := len(fn)
+			// if high > 0 && fn[high-1].key-fn[0].key == high-1 {
+			// 	// the keys are consecutive integers, as for [i \in lo..hi |-> ...], so index by offset
+			// 	index = key - fn[0].key
+			// } else {
+			// 	<binary search for key>
+			// }
+			// bind the function once, as it is indexed several times below
+			GoVariableName fn = builder.varDecl("fn", function);
+			GoVariableName index = builder.varDecl("index", new GoIntLiteral(0));
+			GoVariableName high = builder.varDecl(
+					"high", new GoCall(new GoVariableName("len"), Collections.singletonList(fn)));
+			if (keyType.equals(GoBuiltins.Int)) {
+				// keys are sorted and unique, so they are consecutive exactly when the first and last are len-1 apart
+				GoExpression firstKey = new GoSelectorExpression(
+						new GoIndexExpression(fn, new GoIntLiteral(0)), "key");
+				GoExpression last = new GoBinop(GoBinop.Operation.MINUS, high, new GoIntLiteral(1));
+				GoExpression isDense = new GoBinop(
+						GoBinop.Operation.AND,
+						new GoBinop(GoBinop.Operation.GT, high, new GoIntLiteral(0)),
+						new GoBinop(
+								GoBinop.Operation.EQ,
+								new GoBinop(
+										GoBinop.Operation.MINUS,
+										new GoSelectorExpression(new GoIndexExpression(fn, last), "key"),
+										firstKey),
+								last));
+				try (GoIfBuilder ifBuilder = builder.ifStmt(isDense)) {
+					try (GoBlockBuilder yes = ifBuilder.whenTrue()) {
+						yes.assign(index, new GoBinop(GoBinop.Operation.MINUS, key, firstKey));
+					}
+					try (GoBlockBuilder no = ifBuilder.whenFalse()) {
+						TLABuiltins.binarySearch(no, keyType, index, high,
+								mid -> new GoSelectorExpression(new GoIndexExpression(fn, mid), "key"), key);
+					}
+				}
+			} else {
+				TLABuiltins.binarySearch(builder, keyType, index, high,
+						mid -> new GoSelectorExpression(new GoIndexExpression(fn, mid), "key"), key);
+			}
+			return new GoSelectorExpression(new GoIndexExpression(fn, index), "value");
 		} else if (type instanceof SliceType) {
 			if (tlaFunctionCall.getParams().size() != 1) {
 				throw new InternalCompilerError(); // slices fundamentally cannot be indexed by multiple parameters
@@ -212,33 +251,36 @@ public class TLAExpressionCodeGenVisitor extends TLAExpressionVisitor<GoExpressi
 		if (!(expressionType instanceof RecordType)) {
 			throw new TODO();
 		}
+		RecordType recordType = (RecordType) expressionType;
+
+		if (recordType.isTransmitted()) {
+			Optional<RecordType.Field> field = recordType
+					.getFields()
+					.stream()
+					.filter(f -> f.getName().equals(tlaDot.getField()))
+					.findFirst();
+			if (!field.isPresent()) {
+				throw new InternalCompilerError();
+			}
 
-		RecordType mapType = (RecordType) expressionType;
-		Type fieldType;
-
-		Optional<RecordType.Field> field = mapType
-				.getFields()
-				.stream()
-				.filter(f -> f.getName().equals(tlaDot.getField()))
-				.findFirst();
+			GoType castType = field.get().getType().accept(new TypeConversionVisitor());
+			GoExpression mapGet = new GoIndexExpression(
+					tlaDot.getExpression().accept(this),
+					new GoStringLiteral(tlaDot.getField())
+			);
 
-		if (field.isPresent()) {
-			fieldType = field.get().getType();
-		} else {
-			throw new InternalCompilerError();
+			if (castType.equals(GoBuiltins.Interface)) {
+				return mapGet;
+			} else {
+				return new GoTypeCast(new GoTypeName(castType.toString()), mapGet);
+			}
 		}
 
-		GoType castType = fieldType.accept(new TypeConversionVisitor());
-		GoExpression mapGet = new GoIndexExpression(
-				tlaDot.getExpression().accept(this),
-				new GoStringLiteral(tlaDot.getField())
-		);
-
-		if (castType.equals(GoBuiltins.Interface)) {
-			return mapGet;
-		} else {
-			return new GoTypeCast(new GoTypeName(castType.toString()), mapGet);
+		String fieldName = TypeConversionVisitor.recordFieldNames(recordType).get(tlaDot.getField());
+		if (fieldName == null) {
+			throw new InternalCompilerError();
 		}
+		return new GoSelectorExpression(tlaDot.getExpression().accept(this), fieldName);
 	}
 
 	@Override
@@ -261,14 +303,15 @@ public class TLAExpressionCodeGenVisitor extends TLAExpressionVisitor<GoExpressi
 				capacity = new GoBinop(GoBinop.Operation.TIMES, capacity, currentTerm);
 			}
 		}
-		GoVariableName function = builder.varDecl("function", new GoMakeExpression(mapType, new GoIntLiteral(0), capacity));
+		GoVariableName function = builder.varDecl("function", mapType instanceof GoMapType ?
+				new GoMakeExpression(mapType, capacity) :
+				new GoMakeExpression(mapType, new GoIntLiteral(0), capacity));
 		unfoldQuantifierBounds(tlaFunction.getArguments(), domains, innerBuilder -> {
-			GoType keyValuePairType = ((GoSliceType)mapType).getElementType();
 			GoExpression key;
 			if (args.size() == 1) {
 				key = innerBuilder.findUID(args.get(0).getUID());
 			} else{
-				GoType keyType = ((GoStructType)keyValuePairType).getFields().get(0).getType();
+				GoType keyType = getFunctionKeyType(mapType);
 				List<GoStructLiteralField> keyFields = new ArrayList<>();
 				for(TLAQuantifierBound qb : args) {
 					keyFields.add(new GoStructLiteralField(null, innerBuilder.findUID(qb.getUID())));
@@ -277,6 +320,11 @@ public class TLAExpressionCodeGenVisitor extends TLAExpressionVisitor<GoExpressi
 			}
 			GoExpression value = tlaFunction.getBody().accept(
 					new TLAExpressionCodeGenVisitor(innerBuilder, registry, typeMap, localStrategy, globalStrategy));
+			if (mapType instanceof GoMapType) {
+				innerBuilder.assign(new GoIndexExpression(function, key), value);
+				return;
+			}
+			GoType keyValuePairType = ((GoSliceType)mapType).getElementType();
 			GoExpression keyValuePair = new GoStructLiteral(keyValuePairType, Arrays.asList(
 					new GoStructLiteralField("key", key),
 					new GoStructLiteralField("value", value)
@@ -417,11 +465,21 @@ public class TLAExpressionCodeGenVisitor extends TLAExpressionVisitor<GoExpressi
 
 	@Override
 	public GoExpression visit(TLARecordConstructor tlaRecordConstructor) throws RuntimeException {
-		Map<GoExpression, GoExpression> kv = new HashMap<>();
-		tlaRecordConstructor.getFields().forEach(f ->
-				kv.put(new GoStringLiteral(f.getName().getId()), f.getValue().accept(this)));
+		RecordType recordType = (RecordType) typeMap.get(tlaRecordConstructor.getUID());
+		if (recordType.isTransmitted()) {
+			Map<GoExpression, GoExpression> kv = new HashMap<>();
+			tlaRecordConstructor.getFields().forEach(f ->
+					kv.put(new GoStringLiteral(f.getName().getId()), f.getValue().accept(this)));
 
-		return new GoMapLiteral(GoBuiltins.String, GoBuiltins.Interface, kv);
+			return new GoMapLiteral(GoBuiltins.String, GoBuiltins.Interface, kv);
+		}
+
+		Map<String, String> fieldNames = TypeConversionVisitor.recordFieldNames(recordType);
+		List<GoStructLiteralField> fields = new ArrayList<>();
+		for (TLARecordConstructor.Field field : tlaRecordConstructor.getFields()) {
+			fields.add(new GoStructLiteralField(fieldNames.get(field.getName().getId()), field.getValue().accept(this)));
+		}
+		return new GoStructLiteral(recordType.accept(new TypeConversionVisitor()), fields);
 	}
 
 	@Override
@@ -437,6 +495,28 @@ public class TLAExpressionCodeGenVisitor extends TLAExpressionVisitor<GoExpressi
 	@Override
 	public GoExpression visit(TLASetConstructor tlaSetConstructor) throws RuntimeException {
 		GoType elementType = TLABuiltins.getSetElementType(typeMap.get(tlaSetConstructor.getUID()));
+		if (TLABuiltins.isHashedSet(typeMap.get(tlaSetConstructor.getUID()))) {
+			List<GoExpression> elements = tlaSetConstructor.getContents().stream()
+					.map(e -> e.accept(this))
+					.collect(Collectors.toList());
+			GoType valueType = new GoStructType(Collections.emptyList());
+			if (elements.size() <= 1) {
+				// a literal of at most one element cannot repeat a key
+				Map<GoExpression, GoExpression> pairs = new HashMap<>();
+				elements.forEach(e -> pairs.put(e, new GoStructLiteral(valueType, Collections.emptyList())));
+				return new GoMapLiteral(elementType, valueType, pairs);
+			}
+			// tmpSet := make(map[type]struct{}, len(elements))
+			// tmpSet[e] = struct{}{} for each e in elements
+			GoVariableName tmpSet = builder.varDecl("tmpSet", new GoMakeExpression(
+					new GoMapType(elementType, valueType), new GoIntLiteral(elements.size())));
+			for (GoExpression element : elements) {
+				builder.assign(
+						new GoIndexExpression(tmpSet, element),
+						new GoStructLiteral(valueType, Collections.emptyList()));
+			}
+			return tmpSet;
+		}
 		GoSliceLiteral result = new GoSliceLiteral(
 				elementType,
 				tlaSetConstructor.getContents().stream()
@@ -458,6 +538,20 @@ public class TLAExpressionCodeGenVisitor extends TLAExpressionVisitor<GoExpressi
 	@Override
 	public GoExpression visit(TLASetComprehension tlaSetComprehension) throws RuntimeException {
 		GoType elementType = TLABuiltins.getSetElementType(typeMap.get(tlaSetComprehension.getUID()));
+		if (TLABuiltins.isHashedSet(typeMap.get(tlaSetComprehension.getUID()))) {
+			// tmpSet := make(map[type]struct{})
+			// <for each combination of bound values> tmpSet[body] = struct{}{}
+			GoType valueType = new GoStructType(Collections.emptyList());
+			GoVariableName tmpSet = builder.varDecl(
+					"tmpSet", new GoMakeExpression(new GoMapType(elementType, valueType), null));
+			unfoldQuantifierBounds(tlaSetComprehension.getBounds(), innerBuilder -> {
+				GoExpression body = tlaSetComprehension.getBody().accept(new TLAExpressionCodeGenVisitor(
+						innerBuilder, registry, typeMap, localStrategy, globalStrategy));
+				innerBuilder.assign(
+						new GoIndexExpression(tmpSet, body), new GoStructLiteral(valueType, Collections.emptyList()));
+			});
+			return tmpSet;
+		}
 		GoVariableName accumulator = builder.varDecl(
 				"tmpSet", new GoMakeExpression(new GoSliceType(elementType), new GoIntLiteral(0), null));
 		unfoldQuantifierBounds(tlaSetComprehension.getBounds(), innerBuilder -> {
@@ -479,8 +573,12 @@ public class TLAExpressionCodeGenVisitor extends TLAExpressionVisitor<GoExpressi
 		// 		tmpSet = append(tmpSet, v)
 		// 	}
 		// }
-		GoVariableName tmpSet = builder.varDecl(
-				"tmpSet", new GoMakeExpression(new GoSliceType(elementType), new GoIntLiteral(0), null));
+		// a hashed set is refined into a new map instead, see TLABuiltins.isHashedSet
+		boolean hashed = TLABuiltins.isHashedSet(typeMap.get(tlaSetRefinement.getUID()));
+		GoType valueType = new GoStructType(Collections.emptyList());
+		GoVariableName tmpSet = builder.varDecl("tmpSet", hashed ?
+				new GoMakeExpression(new GoMapType(elementType, valueType), null) :
+				new GoMakeExpression(new GoSliceType(elementType), new GoIntLiteral(0), null));
 		GoForRangeBuilder forRangeBuilder = builder.forRange(tlaSetRefinement.getFrom().accept(this));
 
 		GoVariableName v;
@@ -488,7 +586,7 @@ public class TLAExpressionCodeGenVisitor extends TLAExpressionVisitor<GoExpressi
 			v = forRangeBuilder.initVariables(Arrays.asList("_", "v")).get(1);
 		} else {
 			TLAIdentifier id = tlaSetRefinement.getIdent().getId();
-			GoVariableName name = forRangeBuilder.initVariables(Arrays.asList("_", id.getId())).get(1);
+			GoVariableName name = rangeOverElements(forRangeBuilder, tlaSetRefinement.getFrom(), id.getId());
 			v = name;
 			builder.linkUID(id.getUID(), name);
 		}
@@ -505,7 +603,12 @@ public class TLAExpressionCodeGenVisitor extends TLAExpressionVisitor<GoExpressi
 			try (GoIfBuilder ifBuilder = forBody.ifStmt(tlaSetRefinement.getWhen().accept(
 					new TLAExpressionCodeGenVisitor(forBody, registry, typeMap, localStrategy, globalStrategy)))) {
 				try (GoBlockBuilder yes = ifBuilder.whenTrue()) {
-					yes.assign(tmpSet, new GoCall(new GoVariableName("append"), Arrays.asList(tmpSet, v)));
+					if (hashed) {
+						yes.assign(
+								new GoIndexExpression(tmpSet, v), new GoStructLiteral(valueType, Collections.emptyList()));
+					} else {
+						yes.assign(tmpSet, new GoCall(new GoVariableName("append"), Arrays.asList(tmpSet, v)));
+					}
 				}
 			}
 		}
@@ -0,0 +1,267 @@
+package pgo.trans.passes.codegen.go;
+
+import pgo.model.tla.*;
+import pgo.model.type.ArchetypeResourceCollectionType;
+import pgo.model.type.ArchetypeResourceType;
+import pgo.model.type.SetType;
+import pgo.model.type.Type;
+import pgo.scope.UID;
+import pgo.trans.intermediate.CompiledOperatorAccessor;
+import pgo.trans.intermediate.DefinitionRegistry;
+import pgo.trans.intermediate.OperatorAccessor;
+import pgo.trans.intermediate.TLABuiltins;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Finds the sets whose Go code needs them to be slices, see {@link HashedSetTypeVisitor}: the element types of the
+ * sets that reach an expression whose code generation only supports slices, e.g. a tuple or an operator that does not
+ * support hashed sets, are excluded.
+ */
+public class TLAExpressionHashedSetUsageVisitor extends TLAExpressionVisitor<Void, RuntimeException> {
+	private final DefinitionRegistry registry;
+	private final Map<UID, Type> typeMap;
+	private final Set<Type> excluded;
+	private final Set<UID> visitedDefinitions;
+
+	public TLAExpressionHashedSetUsageVisitor(DefinitionRegistry registry, Map<UID, Type> typeMap, Set<Type> excluded,
+	                                          Set<UID> visitedDefinitions) {
+		this.registry = registry;
+		this.typeMap = typeMap;
+		this.excluded = excluded;
+		this.visitedDefinitions = visitedDefinitions;
+	}
+
+	void exclude(Type type) {
+		if (type instanceof SetType) {
+			excluded.add(((SetType) type).getElementType());
+		}
+	}
+
+	void forbid(TLAExpression expression) {
+		exclude(typeMap.get(expression.getUID()));
+		expression.accept(this);
+	}
+
+	private Void unsupported(TLAExpression expression, List<TLAExpression> children) {
+		exclude(typeMap.get(expression.getUID()));
+		children.forEach(this::forbid);
+		return null;
+	}
+
+	private Void operatorUsage(TLAExpression origin, List<TLAExpression> args) {
+		OperatorAccessor op = registry.findOperator(registry.followReference(origin.getUID()));
+		if (op instanceof CompiledOperatorAccessor) {
+			// a compiled operator is a Go function, which takes and returns hashed sets as they are
+			args.forEach(a -> a.accept(this));
+			TLAOperatorDefinition def = ((CompiledOperatorAccessor) op).getDefinition();
+			if (visitedDefinitions.add(def.getUID())) {
+				def.getBody().accept(this);
+			}
+			return null;
+		}
+		if (TLABuiltins.supportsHashedSets(op)) {
+			args.forEach(a -> a.accept(this));
+			return null;
+		}
+		return unsupported(origin, args);
+	}
+
+	@Override
+	public Void visit(TLAFunctionCall tlaFunctionCall) throws RuntimeException {
+		forbid(tlaFunctionCall.getFunction());
+		return unsupported(tlaFunctionCall, tlaFunctionCall.getParams());
+	}
+
+	@Override
+	public Void visit(TLABinOp tlaBinOp) throws RuntimeException {
+		return operatorUsage(tlaBinOp, Arrays.asList(tlaBinOp.getLHS(), tlaBinOp.getRHS()));
+	}
+
+	@Override
+	public Void visit(TLABool tlaBool) throws RuntimeException {
+		return null;
+	}
+
+	@Override
+	public Void visit(TLACase tlaCase) throws RuntimeException {
+		for (TLACaseArm arm : tlaCase.getArms()) {
+			arm.getCondition().accept(this);
+			arm.getResult().accept(this);
+		}
+		if (tlaCase.getOther() != null) {
+			tlaCase.getOther().accept(this);
+		}
+		return null;
+	}
+
+	@Override
+	public Void visit(TLADot tlaDot) throws RuntimeException {
+		return unsupported(tlaDot, Collections.singletonList(tlaDot.getExpression()));
+	}
+
+	@Override
+	public Void visit(TLAExistential tlaExistential) throws RuntimeException {
+		return unsupported(tlaExistential, Collections.singletonList(tlaExistential.getBody()));
+	}
+
+	@Override
+	public Void visit(TLAFairness tlaFairness) throws RuntimeException {
+		return unsupported(tlaFairness, Collections.emptyList());
+	}
+
+	@Override
+	public Void visit(TLAFunction tlaFunction) throws RuntimeException {
+		tlaFunction.getArguments().forEach(a -> forbid(a.getSet()));
+		return unsupported(tlaFunction, Collections.singletonList(tlaFunction.getBody()));
+	}
+
+	@Override
+	public Void visit(TLAFunctionSet tlaFunctionSet) throws RuntimeException {
+		return unsupported(tlaFunctionSet, Arrays.asList(tlaFunctionSet.getFrom(), tlaFunctionSet.getTo()));
+	}
+
+	@Override
+	public Void visit(TLAFunctionSubstitution tlaFunctionSubstitution) throws RuntimeException {
+		for (TLAFunctionSubstitutionPair pair : tlaFunctionSubstitution.getSubstitutions()) {
+			pair.getKeys().forEach(k -> k.getIndices().forEach(this::forbid));
+			forbid(pair.getValue());
+		}
+		return unsupported(tlaFunctionSubstitution, Collections.singletonList(tlaFunctionSubstitution.getSource()));
+	}
+
+	@Override
+	public Void visit(TLAIf tlaIf) throws RuntimeException {
+		tlaIf.getCond().accept(this);
+		tlaIf.getTval().accept(this);
+		tlaIf.getFval().accept(this);
+		return null;
+	}
+
+	@Override
+	public Void visit(TLALet tlaLet) throws RuntimeException {
+		return unsupported(tlaLet, Collections.singletonList(tlaLet.getBody()));
+	}
+
+	@Override
+	public Void visit(TLAGeneralIdentifier tlaGeneralIdentifier) throws RuntimeException {
+		UID ref = registry.followReference(tlaGeneralIdentifier.getUID());
+		if (registry.isGlobalVariable(ref) || typeMap.get(ref) instanceof ArchetypeResourceType ||
+				typeMap.get(ref) instanceof ArchetypeResourceCollectionType || registry.isLocalVariable(ref) ||
+				registry.isConstant(ref)) {
+			return null;
+		}
+		return operatorUsage(tlaGeneralIdentifier, Collections.emptyList());
+	}
+
+	@Override
+	public Void visit(TLATuple tlaTuple) throws RuntimeException {
+		return unsupported(tlaTuple, tlaTuple.getElements());
+	}
+
+	@Override
+	public Void visit(TLAMaybeAction tlaMaybeAction) throws RuntimeException {
+		return unsupported(tlaMaybeAction, Collections.singletonList(tlaMaybeAction.getBody()));
+	}
+
+	@Override
+	public Void visit(TLANumber tlaNumber) throws RuntimeException {
+		return null;
+	}
+
+	@Override
+	public Void visit(TLAOperatorCall tlaOperatorCall) throws RuntimeException {
+		return operatorUsage(tlaOperatorCall, tlaOperatorCall.getArgs());
+	}
+
+	@Override
+	public Void visit(TLAQuantifiedExistential tlaQuantifiedExistential) throws RuntimeException {
+		tlaQuantifiedExistential.getIds().forEach(b -> b.getSet().accept(this));
+		tlaQuantifiedExistential.getBody().accept(this);
+		return null;
+	}
+
+	@Override
+	public Void visit(TLAQuantifiedUniversal tlaQuantifiedUniversal) throws RuntimeException {
+		tlaQuantifiedUniversal.getIds().forEach(b -> b.getSet().accept(this));
+		tlaQuantifiedUniversal.getBody().accept(this);
+		return null;
+	}
+
+	@Override
+	public Void visit(TLARecordConstructor tlaRecordConstructor) throws RuntimeException {
+		tlaRecordConstructor.getFields().forEach(f -> forbid(f.getValue()));
+		return null;
+	}
+
+	@Override
+	public Void visit(TLARecordSet tlaRecordSet) throws RuntimeException {
+		tlaRecordSet.getFields().forEach(f -> forbid(f.getSet()));
+		exclude(typeMap.get(tlaRecordSet.getUID()));
+		return null;
+	}
+
+	@Override
+	public Void visit(TLARef tlaRef) throws RuntimeException {
+		return unsupported(tlaRef, Collections.emptyList());
+	}
+
+	@Override
+	public Void visit(TLARequiredAction tlaRequiredAction) throws RuntimeException {
+		return unsupported(tlaRequiredAction, Collections.singletonList(tlaRequiredAction.getBody()));
+	}
+
+	@Override
+	public Void visit(TLASetConstructor tlaSetConstructor) throws RuntimeException {
+		tlaSetConstructor.getContents().forEach(this::forbid);
+		return null;
+	}
+
+	@Override
+	public Void visit(TLASetComprehension tlaSetComprehension) throws RuntimeException {
+		tlaSetComprehension.getBounds().forEach(b -> b.getSet().accept(this));
+		forbid(tlaSetComprehension.getBody());
+		return null;
+	}
+
+	@Override
+	public Void visit(TLASetRefinement tlaSetRefinement) throws RuntimeException {
+		tlaSetRefinement.getFrom().accept(this);
+		tlaSetRefinement.getWhen().accept(this);
+		return null;
+	}
+
+	@Override
+	public Void visit(TLASpecialVariableVariable tlaSpecialVariableVariable) throws RuntimeException {
+		return unsupported(tlaSpecialVariableVariable, Collections.emptyList());
+	}
+
+	@Override
+	public Void visit(TLASpecialVariableValue tlaSpecialVariableValue) throws RuntimeException {
+		return unsupported(tlaSpecialVariableValue, Collections.emptyList());
+	}
+
+	@Override
+	public Void visit(TLAString tlaString) throws RuntimeException {
+		return null;
+	}
+
+	@Override
+	public Void visit(TLAUnary tlaUnary) throws RuntimeException {
+		return operatorUsage(tlaUnary, Collections.singletonList(tlaUnary.getOperand()));
+	}
+
+	@Override
+	public Void visit(TLAUniversal tlaUniversal) throws RuntimeException {
+		return unsupported(tlaUniversal, Collections.singletonList(tlaUniversal.getBody()));
+	}
+
+	@Override
+	public Void visit(PlusCalDefaultInitValue plusCalDefaultInitValue) throws RuntimeException {
+		return null;
+	}
+}
@@ -0,0 +1,74 @@
+package pgo.trans.passes.codegen.go;
+
+import pgo.model.mpcal.ModularPlusCalArchetype;
+import pgo.model.mpcal.ModularPlusCalBlock;
+import pgo.model.pcal.PlusCalVariableDeclaration;
+import pgo.model.type.*;
+import pgo.scope.UID;
+
+import java.util.*;
+import java.util.stream.Collectors;
+
+/**
+ * Marks the record types that are read or written through archetype resources as transmitted, along with the record
+ * types nested in them.
+ *
+ * Each archetype infers its own types for the values it exchanges: one that only reads some fields of a record sees a
+ * record type with only those fields. The Go structs of the two ends would then differ, so transmitted records are
+ * compiled to maps instead, which each archetype reads whatever fields it knows of from. Record types are marked by
+ * structure, so that a record type has the same Go representation everywhere in a module.
+ */
+public class TransmittedRecordTypeVisitor extends TypeCopyVisitor {
+	private final Set<RecordType> transmitted;
+
+	private TransmittedRecordTypeVisitor(Set<RecordType> transmitted) {
+		this.transmitted = transmitted;
+	}
+
+	@Override
+	public Type visit(RecordType recordType) throws RuntimeException {
+		return new RecordType(
+				recordType.getFields()
+						.stream()
+						.map(f -> new RecordType.Field(f.getName(), f.getType().accept(this)))
+						.collect(Collectors.toList()),
+				recordType.isTransmitted() || transmitted.contains(recordType),
+				recordType.getOrigins());
+	}
+
+	private static void collectRecordTypes(Type type, Set<RecordType> records) {
+		type.accept(new TypeCopyVisitor() {
+			@Override
+			public Type visit(RecordType recordType) throws RuntimeException {
+				if (records.add(recordType)) {
+					recordType.getFields().forEach(f -> f.getType().accept(this));
+				}
+				return recordType;
+			}
+		});
+	}
+
+	/**
+	 * @return a copy of typeMap in which the record types that the archetypes of modularPlusCalBlock read or write
+	 *         through their archetype resources are marked as transmitted
+	 */
+	public static Map<UID, Type> markTransmittedRecords(ModularPlusCalBlock modularPlusCalBlock,
+														Map<UID, Type> typeMap) {
+		Set<RecordType> records = new HashSet<>();
+		for (ModularPlusCalArchetype archetype : modularPlusCalBlock.getInstantiatedArchetypes()) {
+			for (PlusCalVariableDeclaration param : archetype.getParams()) {
+				Type type = typeMap.get(param.getUID());
+				if (type instanceof ArchetypeResourceType || type instanceof ArchetypeResourceCollectionType) {
+					collectRecordTypes(type, records);
+				}
+			}
+		}
+		if (records.isEmpty()) {
+			return typeMap;
+		}
+		TransmittedRecordTypeVisitor visitor = new TransmittedRecordTypeVisitor(records);
+		Map<UID, Type> result = new HashMap<>();
+		typeMap.forEach((uid, type) -> result.put(uid, type.accept(visitor)));
+		return result;
+	}
+}
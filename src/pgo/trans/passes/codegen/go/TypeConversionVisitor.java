@@ -9,6 +9,31 @@ import pgo.model.type.*;
 import java.util.*;
 
 public class TypeConversionVisitor extends TypeVisitor<GoType, RuntimeException> {
+	// whether values of the type can be Go map keys, and be sorted to order the maps they key
+	private static boolean isHashable(GoType type) {
+		if (type.equals(GoBuiltins.Int) || type.equals(GoBuiltins.String)) {
+			return true;
+		}
+		if (type instanceof GoStructType) {
+			return ((GoStructType) type).getFields().stream().allMatch(f -> isHashable(f.getType()));
+		}
+		return false;
+	}
+
+	/**
+	 * Functions are key-value slices sorted by key, unless Go can hash their keys, in which case they are Go maps, so
+	 * that applying them does not need a search. Functions keyed by plain ints stay slices: their domains are nearly
+	 * always intervals, which application indexes by offset, and a slice keeps them in order for printing.
+	 */
+	private static GoType functionType(GoType keyType, GoType valueType) {
+		if (!keyType.equals(GoBuiltins.Int) && isHashable(keyType)) {
+			return new GoMapType(keyType, valueType);
+		}
+		return new GoSliceType(new GoStructType(Arrays.asList(
+				new GoStructTypeField("key", keyType),
+				new GoStructTypeField("value", valueType))));
+	}
+
 	@Override
 	public GoType visit(AbstractRecordType abstractRecordType) throws RuntimeException {
 		throw new InternalCompilerError();
@@ -49,8 +74,15 @@ public class TypeConversionVisitor extends TypeVisitor<GoType, RuntimeException>
 		return GoBuiltins.String;
 	}
 
+	/**
+	 * Sets are slices sorted by element, unless they are hashed, see {@link SetType#isHashed()}, in which case they are
+	 * Go maps from their elements to struct{}.
+	 */
 	@Override
 	public GoType visit(SetType setType) throws RuntimeException {
+		if (setType.isHashed()) {
+			return new GoMapType(setType.getElementType().accept(this), new GoStructType(Collections.emptyList()));
+		}
 		return new GoSliceType(setType.getElementType().accept(this));
 	}
 
@@ -78,9 +110,7 @@ public class TypeConversionVisitor extends TypeVisitor<GoType, RuntimeException>
 		}else {
 			keyType = new TupleType(pTypes, functionType.getOrigins()).accept(this);
 		}
-		return new GoSliceType(new GoStructType(Arrays.asList(
-				new GoStructTypeField("key", keyType),
-				new GoStructTypeField("value", functionType.getReturnType().accept(this)))));
+		return functionType(keyType, functionType.getReturnType().accept(this));
 	}
 
 	@Override
@@ -100,9 +130,7 @@ public class TypeConversionVisitor extends TypeVisitor<GoType, RuntimeException>
 
 	@Override
 	public GoType visit(MapType mapType) throws RuntimeException {
-		return new GoSliceType(new GoStructType(Arrays.asList(
-				new GoStructTypeField("key", mapType.getKeyType().accept(this)),
-				new GoStructTypeField("value", mapType.getValueType().accept(this)))));
+		return functionType(mapType.getKeyType().accept(this), mapType.getValueType().accept(this));
 	}
 
 	@Override
@@ -115,20 +143,50 @@ public class TypeConversionVisitor extends TypeVisitor<GoType, RuntimeException>
 		throw new TODO();
 	}
 
+	/**
+	 * @return the name of the Go struct field holding each field of records of the given type, keyed and ordered by
+	 *         record field name
+	 */
+	public static Map<String, String> recordFieldNames(RecordType recordType) {
+		Map<String, String> names = new TreeMap<>();
+		for (RecordType.Field field : recordType.getFields()) {
+			names.put(field.getName(), null);
+		}
+		Set<String> taken = new HashSet<>();
+		for (Map.Entry<String, String> entry : names.entrySet()) {
+			// struct fields must be exported for gob to transmit them
+			String name = entry.getKey();
+			String exported = Character.isLetter(name.charAt(0)) ?
+					Character.toUpperCase(name.charAt(0)) + name.substring(1) :
+					"F" + name;
+			String goName = exported;
+			for (int i = 0; !taken.add(goName); ++i) {
+				goName = exported + i;
+			}
+			entry.setValue(goName);
+		}
+		return names;
+	}
+
 	@Override
 	public GoType visit(RecordType recordType) throws RuntimeException {
-		// if the type of a variable is inferred to be a TLA+ record, use a map[string]interface{}
-		// to represent it. This avoids issues around sending and receiving of these variables
-		// through different archetype resources (e.g., RPC-based) and wrong casts
-		// when we cannot infer the correct type of the message on the receiving end
-
-		// keep track of inferred types in case they are needed later when performing
-		// type-dependent operations
-		Map<String, GoType> inferredTypes = new TreeMap<>();
-		recordType
-				.getFields()
-				.forEach(f -> inferredTypes.put(f.getName(), f.getType().accept(new TypeConversionVisitor())));
-
-		return new GoMapType(GoBuiltins.String, GoBuiltins.Interface, inferredTypes);
+		if (recordType.isTransmitted()) {
+			// archetypes may disagree on the fields of a record they exchange, so such a record is represented by a
+			// map[string]interface{}, which each reads the fields it knows of from
+			//
+			// keep track of inferred types in case they are needed later when performing type-dependent operations
+			Map<String, GoType> inferredTypes = new TreeMap<>();
+			recordType.getFields().forEach(f -> inferredTypes.put(f.getName(), f.getType().accept(this)));
+			return new GoMapType(GoBuiltins.String, GoBuiltins.Interface, inferredTypes);
+		}
+
+		// other records are anonymous structs with fields in a fixed order, so that records with the same fields
+		// have the same Go type wherever they appear
+		Map<String, String> names = recordFieldNames(recordType);
+		Map<String, GoType> types = new HashMap<>();
+		recordType.getFields().forEach(f -> types.put(f.getName(), f.getType().accept(this)));
+		List<GoStructTypeField> fields = new ArrayList<>();
+		names.forEach((name, goName) -> fields.add(new GoStructTypeField(goName, types.get(name))));
+		return new GoStructType(fields);
 	}
 }
@@ -3,6 +3,7 @@ package pgo.trans.passes.codegen.go;
 import pgo.InternalCompilerError;
 import pgo.TODO;
 import pgo.model.golang.*;
+import pgo.model.golang.type.GoStructType;
 import pgo.model.type.*;
 
 import java.util.Collections;
@@ -40,6 +41,12 @@ public class TypeDefaultValueVisitor extends TypeVisitor<GoExpression, RuntimeEx
 
 	@Override
 	public GoExpression visit(SetType setType) throws RuntimeException {
+		if (setType.isHashed()) {
+			return new GoMapLiteral(
+					setType.getElementType().accept(new TypeConversionVisitor()),
+					new GoStructType(Collections.emptyList()),
+					Collections.emptyMap());
+		}
 		return new GoSliceLiteral(
 				setType.getElementType().accept(new TypeConversionVisitor()),
 				Collections.emptyList());
@@ -97,6 +104,9 @@ public class TypeDefaultValueVisitor extends TypeVisitor<GoExpression, RuntimeEx
 
 	@Override
 	public GoExpression visit(RecordType recordType) throws RuntimeException {
-		throw new TODO();
+		if (recordType.isTransmitted()) {
+			return new GoMapLiteral(GoBuiltins.String, GoBuiltins.Interface, Collections.emptyMap());
+		}
+		return new GoStructLiteral(recordType.accept(new TypeConversionVisitor()), Collections.emptyList());
 	}
 }
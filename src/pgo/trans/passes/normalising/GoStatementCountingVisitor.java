@@ -0,0 +1,133 @@
+package pgo.trans.passes.normalising;
+
+import pgo.model.golang.*;
+
+/**
+ * Counts the statements in a piece of Go code, including the statements nested inside of other statements.
+ */
+public class GoStatementCountingVisitor extends GoStatementVisitor<Integer, RuntimeException> {
+
+	public static int countStatements(GoModule module) {
+		GoStatementCountingVisitor visitor = new GoStatementCountingVisitor();
+		int count = 0;
+		for (GoDeclaration declaration : module.getDeclarations()) {
+			if (declaration instanceof GoFunctionDeclaration) {
+				count += ((GoFunctionDeclaration) declaration).getBody().accept(visitor);
+			}
+		}
+		return count;
+	}
+
+	private int countStatements(Iterable<GoStatement> statements) {
+		int count = 0;
+		for (GoStatement statement : statements) {
+			count += statement.accept(this);
+		}
+		return count;
+	}
+
+	@Override
+	public Integer visit(GoComment comment) throws RuntimeException {
+		return 0;
+	}
+
+	@Override
+	public Integer visit(GoAssignmentStatement assignment) throws RuntimeException {
+		return 1;
+	}
+
+	@Override
+	public Integer visit(GoReturn goReturn) throws RuntimeException {
+		return 1;
+	}
+
+	@Override
+	public Integer visit(GoBlock block) throws RuntimeException {
+		return countStatements(block.getStatements());
+	}
+
+	@Override
+	public Integer visit(GoFor goFor) throws RuntimeException {
+		return 1 + goFor.getBody().accept(this);
+	}
+
+	@Override
+	public Integer visit(GoForRange forRange) throws RuntimeException {
+		return 1 + forRange.getBody().accept(this);
+	}
+
+	@Override
+	public Integer visit(GoIf goIf) throws RuntimeException {
+		int count = 1 + goIf.getThen().accept(this);
+		if (goIf.getElse() != null) {
+			count += goIf.getElse().accept(this);
+		}
+		return count;
+	}
+
+	@Override
+	public Integer visit(GoSwitch goSwitch) throws RuntimeException {
+		int count = 1;
+		for (GoSwitchCase c : goSwitch.getCases()) {
+			count += countStatements(c.getBlock());
+		}
+		if (goSwitch.getDefaultBlock() != null) {
+			count += countStatements(goSwitch.getDefaultBlock());
+		}
+		return count;
+	}
+
+	@Override
+	public Integer visit(GoLabel label) throws RuntimeException {
+		return 1;
+	}
+
+	@Override
+	public Integer visit(GoSelect select) throws RuntimeException {
+		int count = 1;
+		for (GoSelectCase c : select.getCases()) {
+			count += countStatements(c.getBlock());
+		}
+		return count;
+	}
+
+	@Override
+	public Integer visit(GoTo goTo) throws RuntimeException {
+		return 1;
+	}
+
+	@Override
+	public Integer visit(GoIncDec incDec) throws RuntimeException {
+		return 1;
+	}
+
+	@Override
+	public Integer visit(GoExpressionStatement expressionStatement) throws RuntimeException {
+		return 1;
+	}
+
+	@Override
+	public Integer visit(GoBreak break1) throws RuntimeException {
+		return 1;
+	}
+
+	@Override
+	public Integer visit(GoContinue continue1) throws RuntimeException {
+		return 1;
+	}
+
+	@Override
+	public Integer visit(GoDefer defer) throws RuntimeException {
+		return 1;
+	}
+
+	@Override
+	public Integer visit(GoRoutineStatement go) throws RuntimeException {
+		return 1;
+	}
+
+	@Override
+	public Integer visit(GoVariableDeclarationStatement variableDeclarationStatement) throws RuntimeException {
+		return 1;
+	}
+}
@@ -11,7 +11,11 @@ public class OptionParsingPass {
 	private OptionParsingPass() {}
 
 	public static PGoOptions perform(IssueContext ctx, Logger logger, String[] args) {
-		PGoOptions opts = new PGoOptions(args);
+		return perform(ctx, logger, args, false);
+	}
+
+	public static PGoOptions perform(IssueContext ctx, Logger logger, String[] args, boolean embedded) {
+		PGoOptions opts = new PGoOptions(args, embedded);
 		try {
 			opts.parse();
 		} catch (PGoOptionException e) {
@@ -10,6 +10,7 @@ import pgo.model.type.constraint.EqualityConstraint;
 import pgo.model.type.constraint.MonomorphicConstraint;
 import pgo.model.type.constraint.PolymorphicConstraint;
 import pgo.scope.UID;
+import pgo.scope.UIDMap;
 import pgo.trans.intermediate.DefinitionRegistry;
 import pgo.trans.passes.codegen.go.TypeConversionVisitor;
 import pgo.util.Origin;
@@ -57,9 +58,31 @@ public class TypeInferencePass {
 
 	public static Map<UID, Type> perform(IssueContext ctx, DefinitionRegistry registry,
 	                                     ModularPlusCalBlock modularPlusCalBlock) {
-		TypeSolver solver = new TypeSolver();
+		return perform(ctx, registry, modularPlusCalBlock, new TypeSolver(), false);
+	}
+
+	/**
+	 * Like {@link #perform(IssueContext, DefinitionRegistry, ModularPlusCalBlock)}, but uses the given solver, so that
+	 * callers may inspect its statistics afterwards. Constraints are split into independent components, see
+	 * {@link TypeSolver#partition()}, which are solved concurrently if parallel is set.
+	 */
+	public static Map<UID, Type> perform(IssueContext ctx, DefinitionRegistry registry,
+	                                     ModularPlusCalBlock modularPlusCalBlock, TypeSolver solver,
+	                                     boolean parallel) {
+		return perform(ctx, registry, modularPlusCalBlock, solver, parallel, null);
+	}
+
+	/**
+	 * Like {@link #perform(IssueContext, DefinitionRegistry, ModularPlusCalBlock, TypeSolver, boolean)}, but reuses
+	 * the solutions in cache for the components whose constraints were solved before, e.g. those of the archetypes,
+	 * procedures and definitions left untouched since an earlier compilation of the same spec, see
+	 * {@link TypeSolver#unifyComponents(IssueContext, boolean, TypeSchemeCache)}.
+	 */
+	public static Map<UID, Type> perform(IssueContext ctx, DefinitionRegistry registry,
+	                                     ModularPlusCalBlock modularPlusCalBlock, TypeSolver solver,
+	                                     boolean parallel, TypeSchemeCache cache) {
 		TypeGenerator generator = new TypeGenerator("type");
-		Map<UID, TypeVariable> mapping = new HashMap<>();
+		Map<UID, TypeVariable> mapping = new UIDMap<>();
 
 		// make sure the user-provided constant values typecheck
 		for (UID id : registry.getConstants()) {
@@ -177,20 +200,23 @@ public class TypeInferencePass {
 			}
 		});
 
-		solver.unify(ctx);
+		TypeSubstitution substitution = solver.unifyComponents(ctx, parallel, cache);
 		if (ctx.hasErrors()) {
 			return Collections.emptyMap();
 		}
-		TypeSubstitution substitution = solver.getSubstitution();
 
-		Map<UID, Type> resultingTypeMapping = new HashMap<>();
+		Map<UID, Type> resultingTypeMapping = new UIDMap<>();
 
 		Set<TypeVariable> unresolvedVariables = new HashSet<>();
 		Map<TypeVariable, Type> additionalMappings = new HashMap<>();
 		TypeVariableCollectionVisitor collector = new TypeVariableCollectionVisitor(unresolvedVariables);
-		TypeVariableSubstitutionVisitor subs =
-				new TypeVariableSubstitutionVisitor(new TypeSubstitution(new UnionFind<>(), additionalMappings));
+		// additionalMappings only grows, so its size serves as the generation of the memoized substitutions
+		TypeVariableSubstitutionVisitor subs = new TypeVariableSubstitutionVisitor(
+				new TypeSubstitution(new UnionFind<>(), additionalMappings), additionalMappings::size);
 		InterfaceType pGoInterfaceType = new InterfaceType(Collections.emptyList());
+		// the solver hash-conses the types it resolves, so many UIDs share a type instance, which only needs to be
+		// walked once
+		Map<Type, Type> finalTypes = new IdentityHashMap<>();
 		for (Map.Entry<UID, TypeVariable> m : mapping.entrySet()) {
 			UID uid = m.getKey();
 			TypeVariable typeVariable = m.getValue();
@@ -201,12 +227,17 @@ public class TypeInferencePass {
 				type = pGoInterfaceType;
 				additionalMappings.put(typeVariable, pGoInterfaceType);
 			}
-			type.accept(collector);
-			for (TypeVariable unresolvedVariable : unresolvedVariables) {
-				additionalMappings.put(unresolvedVariable, pGoInterfaceType);
+			Type finalType = finalTypes.get(type);
+			if (finalType == null) {
+				type.accept(collector);
+				for (TypeVariable unresolvedVariable : unresolvedVariables) {
+					additionalMappings.put(unresolvedVariable, pGoInterfaceType);
+				}
+				unresolvedVariables.clear();
+				finalType = type.accept(subs);
+				finalTypes.put(type, finalType);
 			}
-			unresolvedVariables.clear();
-			resultingTypeMapping.put(uid, type.accept(subs));
+			resultingTypeMapping.put(uid, finalType);
 		}
 
 		TypeConversionVisitor goTypeConversionVisitor = new TypeConversionVisitor();
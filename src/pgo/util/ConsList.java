@@ -8,10 +8,12 @@ public final class ConsList<T> {
 	private static final class Node<T> {
 		private final T value;
 		private final Node<T> next;
+		private final int size;
 
 		public Node(T value, Node<T> next) {
 			this.value = value;
 			this.next = next;
+			this.size = next == null ? 1 : next.size + 1;
 		}
 
 		public T getValue() { return value; }
@@ -28,6 +30,9 @@ public final class ConsList<T> {
 		this.root = root;
 	}
 
+	public boolean isEmpty() { return root == null; }
+	public int size() { return root == null ? 0 : root.size; }
+
 	public T first() { return root.getValue(); }
 	public ConsList<T> rest() { return new ConsList<>(root.getNext()); }
 
@@ -1,6 +1,7 @@
 package pgo.util;
 
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.List;
 
 /**
@@ -11,19 +12,23 @@ import java.util.List;
  *
  */
 public abstract class Derived implements Origin {
+	// allocated on the first origin, since most derived things, e.g. the UIDs of parsed AST nodes, never get one
 	List<Origin> origins;
 	
 	public Derived() {
-		this.origins = new ArrayList<>();
+		this.origins = null;
 	}
 	
 	public Derived addOrigin(Origin origin) {
+		if (origins == null) {
+			origins = new ArrayList<>(1);
+		}
 		origins.add(origin);
 		return this;
 	}
 	
 	public List<Origin> getOrigins(){
-		return origins;
+		return origins == null ? Collections.emptyList() : origins;
 	}
 	
 	public <T, E extends Throwable> T accept(OriginVisitor<T, E> v) throws E {
@@ -0,0 +1,347 @@
+package pgo.util;
+
+import java.util.AbstractMap;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Objects;
+
+/**
+ * An immutable hash map, stored as a hash array mapped trie. Adding or removing an entry returns a new map that shares
+ * everything but the path to that entry with the old one, so copying a map is free and updates take O(log32 n) time.
+ *
+ * Keys must not be null, values may be.
+ */
+public final class PersistentHashMap<K, V> implements Iterable<Map.Entry<K, V>> {
+	private static final int BITS = 5;
+	private static final int MASK = (1 << BITS) - 1;
+	// trie levels consume 5 bits of the hash each, the last one only 2, and are followed by at most one collision node
+	private static final int MAX_DEPTH = (32 + BITS - 1) / BITS + 1;
+	private static final Object NOT_FOUND = new Object();
+
+	/**
+	 * A node holds key-value pairs in consecutive array slots. A pair whose key is null stands for a child node, which
+	 * is held in place of the value.
+	 */
+	private static abstract class Node {
+		final Object[] array;
+
+		Node(Object[] array) {
+			this.array = array;
+		}
+
+		abstract Object lookup(int shift, int hash, Object key);
+
+		abstract Node put(int shift, int hash, Object key, Object value, boolean[] added);
+
+		// returns null if the node becomes empty
+		abstract Node remove(int shift, int hash, Object key);
+
+		boolean isSingleEntry() {
+			return array.length == 2 && array[0] != null;
+		}
+	}
+
+	private static final class BitmapNode extends Node {
+		private final int bitmap;
+
+		BitmapNode(int bitmap, Object[] array) {
+			super(array);
+			this.bitmap = bitmap;
+		}
+
+		private int indexOf(int bit) {
+			return 2 * Integer.bitCount(bitmap & (bit - 1));
+		}
+
+		@Override
+		Object lookup(int shift, int hash, Object key) {
+			int bit = 1 << ((hash >>> shift) & MASK);
+			if ((bitmap & bit) == 0) {
+				return NOT_FOUND;
+			}
+			int i = indexOf(bit);
+			if (array[i] == null) {
+				return ((Node) array[i + 1]).lookup(shift + BITS, hash, key);
+			}
+			return key.equals(array[i]) ? array[i + 1] : NOT_FOUND;
+		}
+
+		@Override
+		Node put(int shift, int hash, Object key, Object value, boolean[] added) {
+			int bit = 1 << ((hash >>> shift) & MASK);
+			int i = indexOf(bit);
+			if ((bitmap & bit) == 0) {
+				Object[] newArray = new Object[array.length + 2];
+				System.arraycopy(array, 0, newArray, 0, i);
+				newArray[i] = key;
+				newArray[i + 1] = value;
+				System.arraycopy(array, i, newArray, i + 2, array.length - i);
+				added[0] = true;
+				return new BitmapNode(bitmap | bit, newArray);
+			}
+			Object existingKey = array[i];
+			Object newSlot;
+			if (existingKey == null) {
+				Node child = (Node) array[i + 1];
+				Node newChild = child.put(shift + BITS, hash, key, value, added);
+				if (newChild == child) {
+					return this;
+				}
+				newSlot = newChild;
+			} else if (key.equals(existingKey)) {
+				if (array[i + 1] == value) {
+					return this;
+				}
+				Object[] newArray = array.clone();
+				newArray[i + 1] = value;
+				return new BitmapNode(bitmap, newArray);
+			} else {
+				added[0] = true;
+				newSlot = pair(
+						shift + BITS, hash(existingKey), existingKey, array[i + 1], hash, key, value);
+			}
+			Object[] newArray = array.clone();
+			newArray[i] = null;
+			newArray[i + 1] = newSlot;
+			return new BitmapNode(bitmap, newArray);
+		}
+
+		@Override
+		Node remove(int shift, int hash, Object key) {
+			int bit = 1 << ((hash >>> shift) & MASK);
+			if ((bitmap & bit) == 0) {
+				return this;
+			}
+			int i = indexOf(bit);
+			if (array[i] == null) {
+				Node child = (Node) array[i + 1];
+				Node newChild = child.remove(shift + BITS, hash, key);
+				if (newChild == child) {
+					return this;
+				}
+				if (newChild == null) {
+					return without(bit, i);
+				}
+				Object[] newArray = array.clone();
+				if (newChild.isSingleEntry()) {
+					// pull the last entry of a subtree up, so that the trie stays as shallow as its keys allow
+					newArray[i] = newChild.array[0];
+					newArray[i + 1] = newChild.array[1];
+				} else {
+					newArray[i + 1] = newChild;
+				}
+				return new BitmapNode(bitmap, newArray);
+			}
+			return key.equals(array[i]) ? without(bit, i) : this;
+		}
+
+		private Node without(int bit, int i) {
+			if (bitmap == bit) {
+				return null;
+			}
+			Object[] newArray = new Object[array.length - 2];
+			System.arraycopy(array, 0, newArray, 0, i);
+			System.arraycopy(array, i + 2, newArray, i, array.length - i - 2);
+			return new BitmapNode(bitmap ^ bit, newArray);
+		}
+	}
+
+	/**
+	 * The entries whose keys have equal hashes, once all bits of the hash have been used up.
+	 */
+	private static final class CollisionNode extends Node {
+		CollisionNode(Object[] array) {
+			super(array);
+		}
+
+		private int indexOf(Object key) {
+			for (int i = 0; i < array.length; i += 2) {
+				if (key.equals(array[i])) {
+					return i;
+				}
+			}
+			return -1;
+		}
+
+		@Override
+		Object lookup(int shift, int hash, Object key) {
+			int i = indexOf(key);
+			return i == -1 ? NOT_FOUND : array[i + 1];
+		}
+
+		@Override
+		Node put(int shift, int hash, Object key, Object value, boolean[] added) {
+			int i = indexOf(key);
+			if (i != -1) {
+				if (array[i + 1] == value) {
+					return this;
+				}
+				Object[] newArray = array.clone();
+				newArray[i + 1] = value;
+				return new CollisionNode(newArray);
+			}
+			Object[] newArray = new Object[array.length + 2];
+			System.arraycopy(array, 0, newArray, 0, array.length);
+			newArray[array.length] = key;
+			newArray[array.length + 1] = value;
+			added[0] = true;
+			return new CollisionNode(newArray);
+		}
+
+		@Override
+		Node remove(int shift, int hash, Object key) {
+			int i = indexOf(key);
+			if (i == -1) {
+				return this;
+			}
+			if (array.length == 2) {
+				return null;
+			}
+			Object[] newArray = new Object[array.length - 2];
+			System.arraycopy(array, 0, newArray, 0, i);
+			System.arraycopy(array, i + 2, newArray, i, array.length - i - 2);
+			return new CollisionNode(newArray);
+		}
+	}
+
+	private static int hash(Object key) {
+		int h = key.hashCode();
+		return h ^ (h >>> 16);
+	}
+
+	private static Node pair(int shift, int hash1, Object key1, Object value1, int hash2, Object key2, Object value2) {
+		if (shift >= 32) {
+			return new CollisionNode(new Object[]{key1, value1, key2, value2});
+		}
+		int index1 = (hash1 >>> shift) & MASK;
+		int index2 = (hash2 >>> shift) & MASK;
+		if (index1 == index2) {
+			return new BitmapNode(1 << index1, new Object[]{
+					null, pair(shift + BITS, hash1, key1, value1, hash2, key2, value2)});
+		}
+		return new BitmapNode((1 << index1) | (1 << index2), index1 < index2 ?
+				new Object[]{key1, value1, key2, value2} :
+				new Object[]{key2, value2, key1, value1});
+	}
+
+	private final Node root;
+	private final int size;
+
+	public PersistentHashMap() {
+		this(null, 0);
+	}
+
+	private PersistentHashMap(Node root, int size) {
+		this.root = root;
+		this.size = size;
+	}
+
+	public int size() {
+		return size;
+	}
+
+	public boolean isEmpty() {
+		return size == 0;
+	}
+
+	private Object lookup(Object key) {
+		return root == null ? NOT_FOUND : root.lookup(0, hash(key), key);
+	}
+
+	public boolean containsKey(Object key) {
+		return lookup(key) != NOT_FOUND;
+	}
+
+	public V get(Object key) {
+		return getOrDefault(key, null);
+	}
+
+	@SuppressWarnings("unchecked")
+	public V getOrDefault(Object key, V defaultValue) {
+		Object result = lookup(key);
+		return result == NOT_FOUND ? defaultValue : (V) result;
+	}
+
+	/**
+	 * @return this map, with key mapped to value
+	 */
+	public PersistentHashMap<K, V> plus(K key, V value) {
+		Objects.requireNonNull(key);
+		boolean[] added = new boolean[1];
+		Node newRoot = root == null ?
+				new BitmapNode(1 << (hash(key) & MASK), new Object[]{key, value}) :
+				root.put(0, hash(key), key, value, added);
+		if (root == null) {
+			added[0] = true;
+		}
+		return newRoot == root ? this : new PersistentHashMap<>(newRoot, added[0] ? size + 1 : size);
+	}
+
+	/**
+	 * @return this map, without any mapping for key
+	 */
+	public PersistentHashMap<K, V> minus(Object key) {
+		if (root == null) {
+			return this;
+		}
+		Node newRoot = root.remove(0, hash(key), key);
+		return newRoot == root ? this : new PersistentHashMap<>(newRoot, size - 1);
+	}
+
+	@Override
+	public Iterator<Map.Entry<K, V>> iterator() {
+		return new Iterator<Map.Entry<K, V>>() {
+			// the arrays of the nodes on the path to the next entry, and the position after it within each of them
+			private final Object[][] arrays = new Object[MAX_DEPTH][];
+			private final int[] positions = new int[MAX_DEPTH];
+			private int depth = -1;
+			private Map.Entry<K, V> next;
+
+			{
+				if (root != null) {
+					depth = 0;
+					arrays[0] = root.array;
+				}
+				advance();
+			}
+
+			@SuppressWarnings("unchecked")
+			private void advance() {
+				while (depth >= 0) {
+					Object[] array = arrays[depth];
+					int i = positions[depth];
+					if (i == array.length) {
+						depth--;
+						continue;
+					}
+					positions[depth] = i + 2;
+					if (array[i] == null) {
+						depth++;
+						arrays[depth] = ((Node) array[i + 1]).array;
+						positions[depth] = 0;
+					} else {
+						next = new AbstractMap.SimpleImmutableEntry<>((K) array[i], (V) array[i + 1]);
+						return;
+					}
+				}
+				next = null;
+			}
+
+			@Override
+			public boolean hasNext() {
+				return next != null;
+			}
+
+			@Override
+			public Map.Entry<K, V> next() {
+				if (next == null) {
+					throw new NoSuchElementException();
+				}
+				Map.Entry<K, V> result = next;
+				advance();
+				return result;
+			}
+		};
+	}
+}
@@ -5,11 +5,7 @@ import pgo.formatters.IndentingWriter;
 
 import java.io.IOException;
 import java.io.PrintWriter;
-import java.io.RandomAccessFile;
 import java.io.StringWriter;
-import java.nio.MappedByteBuffer;
-import java.nio.channels.FileChannel;
-import java.nio.charset.StandardCharsets;
 import java.nio.file.Path;
 import java.util.Objects;
 
@@ -40,6 +36,16 @@ public class SourceLocation implements Comparable<SourceLocation> {
 	}
 
 	public void writePretty(IndentingWriter out) {
+		writePretty(out, SourceTextRegistry.current());
+	}
+
+	/**
+	 * Writes this location followed by the source lines it covers, with the covered text underlined.
+	 *
+	 * @param out the writer to print to
+	 * @param sourceTexts the registry from which to take the file's contents
+	 */
+	public void writePretty(IndentingWriter out, SourceTextRegistry sourceTexts) {
 		try {
 			if(isUnknown()) {
 				out.write("at unknown source location");
@@ -57,36 +63,23 @@ public class SourceLocation implements Comparable<SourceLocation> {
 				out.write(" in file "+file);
 				out.newLine();
 				try {
-					FileChannel fileChannel = new RandomAccessFile(file.toFile(), "r").getChannel();
-					MappedByteBuffer buffer = fileChannel.map(FileChannel.MapMode.READ_ONLY, 0, fileChannel.size());
-					CharSequence charSeq = StandardCharsets.UTF_8.decode(buffer);
-					int lineStart = startOffset;
-					while(lineStart >= 0 && (lineStart >= charSeq.length() || charSeq.charAt(lineStart) != '\n')) {
-						lineStart--;
-					}
-					if(lineStart < charSeq.length() && (lineStart == -1 || charSeq.charAt(lineStart) == '\n')) {
-						lineStart++;
-					}
-					int lineEnd = endOffset;
-					while(lineEnd < charSeq.length() && charSeq.charAt(lineEnd) != '\n') {
-						lineEnd++;
-					}
+					SourceText text = sourceTexts.get(file);
+					int startLineIndex = text.getLineOf(startOffset);
+					int endLineIndex = text.getLineOf(endOffset);
+					int lineStart = text.getLineStart(startLineIndex);
+					int lineEnd = text.getLineEnd(endLineIndex);
 					if(startLine != endLine) {
 						for(int pos = lineStart; pos < startOffset; pos++) {
 							out.append(' ');
 						}
-						for(int pos = startOffset; pos <= endOffset && charSeq.charAt(pos) != '\n'; pos++) {
+						int firstLineEnd = text.getLineEnd(startLineIndex);
+						for(int pos = startOffset; pos <= endOffset && pos < firstLineEnd; pos++) {
 							out.append('v');
 						}
 						out.newLine();
 					}
-					int lastLineBegin = lineStart;
-					for(int pos = lineStart; pos < lineEnd; pos++) {
-						if(charSeq.charAt(pos) == '\n') {
-							lastLineBegin = pos + 1;
-						}
-					}
-					out.append(charSeq, lineStart, lineEnd);
+					int lastLineBegin = text.getLineStart(endLineIndex);
+					out.append(text.getText(), lineStart, lineEnd);
 					out.newLine();
 					for(int pos = lastLineBegin; pos < startOffset; pos++) {
 						out.append(' ');
@@ -100,7 +93,7 @@ public class SourceLocation implements Comparable<SourceLocation> {
 					for(int pos = startOffset; pos < lineEnd && pos < effectiveEndOffset; pos++) {
 						out.append('^');
 					}
-					if(startOffset == charSeq.length()) {
+					if(startOffset == text.length()) {
 						out.append("^ EOF");
 					}
 				} catch (IOException e) { // if we can't read the file, replace the intended message with stacktrace
@@ -0,0 +1,107 @@
+package pgo.util;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.function.Function;
+
+/**
+ * The decoded contents of a source file, along with a table of the offsets at which each line starts.
+ *
+ * Lines are numbered from 0, like in {@link SourceLocation}. A line's terminating '\n' belongs to that line.
+ */
+public final class SourceText {
+	private final Path file;
+	private final String text;
+	private final int[] lineStarts;
+	// the tokens of this text, once lexed; opaque here, so that this package need not depend on the parser's
+	private volatile Object tokens;
+
+	public SourceText(Path file, CharSequence text) {
+		this.file = file;
+		this.text = text.toString();
+		int[] starts = new int[16];
+		int count = 1; // starts[0] == 0
+		for (int i = 0; i < this.text.length(); ++i) {
+			if (this.text.charAt(i) == '\n') {
+				if (count == starts.length) {
+					starts = Arrays.copyOf(starts, count * 2);
+				}
+				starts[count++] = i + 1;
+			}
+		}
+		this.lineStarts = Arrays.copyOf(starts, count);
+	}
+
+	/**
+	 * Reads and decodes a file, assuming UTF-8, though technically TLA+ is ASCII only according to the book.
+	 */
+	public static SourceText read(Path file) throws IOException {
+		return new SourceText(file, new String(Files.readAllBytes(file), StandardCharsets.UTF_8));
+	}
+
+	public Path getFile() {
+		return file;
+	}
+
+	public String getText() {
+		return text;
+	}
+
+	public int length() {
+		return text.length();
+	}
+
+	public char charAt(int offset) {
+		return text.charAt(offset);
+	}
+
+	public int getLineCount() {
+		return lineStarts.length;
+	}
+
+	/**
+	 * @param offset a character offset, which may be equal to the length of the text
+	 * @return the 0-based line containing offset
+	 */
+	public int getLineOf(int offset) {
+		int line = Arrays.binarySearch(lineStarts, offset);
+		// on a miss, binarySearch returns -(insertion point) - 1, and the line is the one before the insertion point
+		return line >= 0 ? line : -line - 2;
+	}
+
+	public int getLineStart(int line) {
+		return lineStarts[line];
+	}
+
+	/**
+	 * @return the offset of the '\n' ending line, or the length of the text if line is the last one
+	 */
+	public int getLineEnd(int line) {
+		return line + 1 < lineStarts.length ? lineStarts[line + 1] - 1 : text.length();
+	}
+
+	/**
+	 * @return the tokens of this text, lexing it the first time they are asked for, so that every parser reading
+	 *         this text shares one token table
+	 */
+	@SuppressWarnings("unchecked")
+	public <T> T getTokens(Function<SourceText, T> lexer) {
+		Object result = tokens;
+		if (result == null) {
+			// concurrent callers may both lex, which is harmless since the results are equivalent
+			result = lexer.apply(this);
+			tokens = result;
+		}
+		return (T) result;
+	}
+
+	/**
+	 * @return the 0-based column of offset within its line
+	 */
+	public int getColumnOf(int offset) {
+		return offset - lineStarts[getLineOf(offset)];
+	}
+}
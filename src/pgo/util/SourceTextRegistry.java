@@ -0,0 +1,95 @@
+package pgo.util;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Holds the decoded text of every source file a compilation touches, so that each file is read and decoded once no
+ * matter how many diagnostics refer to it.
+ *
+ * A compilation binds its registry to the running thread using {@link #bind()}; code that has no registry at hand,
+ * such as {@link SourceLocation#writePretty(pgo.formatters.IndentingWriter)}, finds it using {@link #current()}.
+ */
+public final class SourceTextRegistry {
+	private static final ThreadLocal<SourceTextRegistry> bound = new ThreadLocal<>();
+
+	private final Map<Path, SourceText> texts = new ConcurrentHashMap<>();
+
+	public static final class Binding implements AutoCloseable {
+		private final SourceTextRegistry previous;
+
+		private Binding(SourceTextRegistry previous) {
+			this.previous = previous;
+		}
+
+		@Override
+		public void close() {
+			if (previous == null) {
+				bound.remove();
+			} else {
+				bound.set(previous);
+			}
+		}
+	}
+
+	/**
+	 * Makes this registry the one returned by {@link #current()} on this thread, until the binding is closed.
+	 */
+	public Binding bind() {
+		Binding binding = new Binding(bound.get());
+		bound.set(this);
+		return binding;
+	}
+
+	/**
+	 * @return the registry bound to this thread or, outside of any compilation, a fresh registry
+	 */
+	public static SourceTextRegistry current() {
+		SourceTextRegistry registry = bound.get();
+		return registry != null ? registry : new SourceTextRegistry();
+	}
+
+	private static Path key(Path file) {
+		return file.toAbsolutePath().normalize();
+	}
+
+	/**
+	 * @return the contents of file, reading and decoding it if that has not been done yet
+	 */
+	public SourceText get(Path file) throws IOException {
+		Path key = key(file);
+		SourceText text = texts.get(key);
+		if (text == null) {
+			text = SourceText.read(file);
+			SourceText existing = texts.putIfAbsent(key, text);
+			if (existing != null) {
+				text = existing;
+			}
+		}
+		return text;
+	}
+
+	/**
+	 * @return the text of file, given its contents, which may not be on disk (e.g. when parsing a string in tests); the
+	 *         registered text is reused as long as it has these contents, and replaced otherwise
+	 */
+	public SourceText get(Path file, CharSequence contents) {
+		Path key = key(file);
+		SourceText text = texts.get(key);
+		if (text != null && (text.getText() == contents || text.getText().contentEquals(contents))) {
+			return text;
+		}
+		SourceText fresh = new SourceText(file, contents);
+		texts.put(key, fresh);
+		return fresh;
+	}
+
+	/**
+	 * Forgets the contents of file, which should be done whenever the file is rewritten.
+	 */
+	public void invalidate(Path file) {
+		texts.remove(key(file));
+	}
+}
@@ -0,0 +1,54 @@
+package pgo.util;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * An undo log for backtracking search.
+ *
+ * Data structures record how to undo each of their mutations using {@link #record(Runnable)}. A choice point takes a
+ * {@link #mark()}, and backtracking to it runs the recorded undo actions in reverse order using {@link #undo(int)}.
+ * Nothing is recorded while there are no marks, so the cost of a choice point is proportional to the mutations made
+ * after it rather than to the size of the state.
+ */
+public final class Trail {
+	private final List<Runnable> undoActions = new ArrayList<>();
+	private int marks = 0;
+	private long recorded = 0;
+
+	public boolean isRecording() {
+		return marks > 0;
+	}
+
+	public void record(Runnable undoAction) {
+		if (marks > 0) {
+			undoActions.add(undoAction);
+			recorded++;
+		}
+	}
+
+	/**
+	 * @return the number of undo actions recorded so far, including those that have since been undone
+	 */
+	public long getRecorded() {
+		return recorded;
+	}
+
+	/**
+	 * @return a position to pass to {@link #undo(int)}
+	 */
+	public int mark() {
+		marks++;
+		return undoActions.size();
+	}
+
+	/**
+	 * Undoes every mutation recorded since mark was taken, and releases the mark.
+	 */
+	public void undo(int mark) {
+		for (int i = undoActions.size() - 1; i >= mark; i--) {
+			undoActions.remove(i).run();
+		}
+		marks--;
+	}
+}
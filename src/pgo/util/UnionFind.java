@@ -1,66 +1,171 @@
 package pgo.util;
 
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
 
+/**
+ * A disjoint-set forest with path compression and union by rank.
+ *
+ * Elements are interned into dense indices the first time they are seen, and the forest itself is a pair of int
+ * arrays, so that beyond that first lookup find and union neither hash nor box. The index-based operations are public
+ * for callers that keep hold of indices themselves.
+ *
+ * While a {@link #snapshot()} is outstanding, every change to the forest is logged, so that {@link #rollback(int)} can
+ * undo the changes made since in time proportional to their number. Elements interned after a snapshot stay interned
+ * after rolling back, but as singletons, which is indistinguishable from never having seen them.
+ */
 public class UnionFind<T> {
-	private final Map<T, T> predecessorMap;
-	private final Map<T, Integer> rank;
+	private final Map<T, Integer> indices;
+	private final List<T> elements;
+	private int[] parents;
+	private int[] ranks;
+	// undo log of (index, previous parent, previous rank) triples
+	private int[] log;
+	private int logSize;
+	private int snapshots;
+	private long logged;
 
 	public UnionFind() {
-		this(new HashMap<>(), new HashMap<>());
+		this(new HashMap<>(), new ArrayList<>(), new int[16], new int[16]);
 	}
 
-	private UnionFind(Map<T, T> predecessorMap, Map<T, Integer> rank) {
-		this.predecessorMap = predecessorMap;
-		this.rank = rank;
+	private UnionFind(Map<T, Integer> indices, List<T> elements, int[] parents, int[] ranks) {
+		this.indices = indices;
+		this.elements = elements;
+		this.parents = parents;
+		this.ranks = ranks;
+		this.log = new int[0];
+		this.logSize = 0;
+		this.snapshots = 0;
+		this.logged = 0;
 	}
 
-	private boolean ensurePresence(T element) {
-		if (!predecessorMap.containsKey(element)) {
-			predecessorMap.put(element, element);
-			rank.put(element, 0);
-			return false;
-		}
-		return true;
+	public int size() {
+		return elements.size();
 	}
 
-	public T find(T element) {
-		if (!ensurePresence(element)) {
-			return element;
+	/**
+	 * @return the index of element, interning it as a singleton set if it has not been seen before
+	 */
+	public int indexOf(T element) {
+		Integer index = indices.get(element);
+		if (index != null) {
+			return index;
 		}
-		while (true) {
-			T parent = predecessorMap.getOrDefault(element, element);
-			if (parent.equals(element)) {
-				return element;
+		int newIndex = elements.size();
+		if (newIndex == parents.length) {
+			parents = Arrays.copyOf(parents, newIndex * 2);
+			ranks = Arrays.copyOf(ranks, newIndex * 2);
+		}
+		parents[newIndex] = newIndex;
+		ranks[newIndex] = 0;
+		elements.add(element);
+		indices.put(element, newIndex);
+		return newIndex;
+	}
+
+	public T get(int index) {
+		return elements.get(index);
+	}
+
+	private void record(int index) {
+		if (snapshots > 0) {
+			if (logSize + 3 > log.length) {
+				log = Arrays.copyOf(log, Math.max(48, log.length * 2));
 			}
-			predecessorMap.put(element, predecessorMap.get(parent));
-			element = parent;
+			log[logSize] = index;
+			log[logSize + 1] = parents[index];
+			log[logSize + 2] = ranks[index];
+			logSize += 3;
+			logged++;
 		}
 	}
 
-	public void union(T u, T v) {
-		T uRoot = find(u);
-		T vRoot = find(v);
-		if (uRoot.equals(vRoot)) {
-			return;
+	public int findIndex(int index) {
+		int root = index;
+		while (parents[root] != root) {
+			root = parents[root];
+		}
+		while (parents[index] != root) {
+			int next = parents[index];
+			record(index);
+			parents[index] = root;
+			index = next;
+		}
+		return root;
+	}
+
+	/**
+	 * @return whether u and v were in different sets
+	 */
+	public boolean unionIndices(int u, int v) {
+		int uRoot = findIndex(u);
+		int vRoot = findIndex(v);
+		if (uRoot == vRoot) {
+			return false;
 		}
-		if (rank.get(uRoot) < rank.get(vRoot)) {
-			predecessorMap.put(uRoot, vRoot);
-		} else if (rank.get(uRoot) > rank.get(vRoot)) {
-			predecessorMap.put(vRoot, uRoot);
+		if (ranks[uRoot] < ranks[vRoot]) {
+			record(uRoot);
+			parents[uRoot] = vRoot;
+		} else if (ranks[uRoot] > ranks[vRoot]) {
+			record(vRoot);
+			parents[vRoot] = uRoot;
 		} else {
-			predecessorMap.put(vRoot, uRoot);
-			rank.put(uRoot, rank.get(uRoot) + 1);
+			record(vRoot);
+			parents[vRoot] = uRoot;
+			record(uRoot);
+			ranks[uRoot]++;
 		}
+		return true;
+	}
+
+	public T find(T element) {
+		return elements.get(findIndex(indexOf(element)));
+	}
+
+	public void union(T u, T v) {
+		unionIndices(indexOf(u), indexOf(v));
 	}
 
 	public int getRank(T element) {
-		ensurePresence(element);
-		return rank.get(find(element));
+		return ranks[findIndex(indexOf(element))];
+	}
+
+	/**
+	 * @return the number of changes logged so far, including those that have since been rolled back
+	 */
+	public long getLogged() {
+		return logged;
+	}
+
+	/**
+	 * Starts logging changes, until the matching call to {@link #rollback(int)}.
+	 *
+	 * @return a position to pass to rollback
+	 */
+	public int snapshot() {
+		snapshots++;
+		return logSize;
+	}
+
+	/**
+	 * Undoes every change made since the given snapshot was taken, and releases it.
+	 */
+	public void rollback(int snapshot) {
+		for (int i = logSize - 3; i >= snapshot; i -= 3) {
+			int index = log[i];
+			parents[index] = log[i + 1];
+			ranks[index] = log[i + 2];
+		}
+		logSize = snapshot;
+		snapshots--;
 	}
 
 	public UnionFind<T> copy() {
-		return new UnionFind<>(new HashMap<>(predecessorMap), new HashMap<>(rank));
+		return new UnionFind<>(
+				new HashMap<>(indices), new ArrayList<>(elements), parents.clone(), ranks.clone());
 	}
 }
@@ -0,0 +1,95 @@
+package main
+
+import (
+	"fmt"
+	"os"
+	"pgo/distsys"
+	"record_exchange"
+	"strconv"
+)
+
+var configuration map[string]string
+var id string
+var role string
+var selfStr string
+var connections *distsys.Connections
+var barrier *distsys.SyncBarrier
+
+const (
+	MAILBOX_SIZE = 10
+)
+
+func init() {
+	if len(os.Args) < 3 {
+		fmt.Printf("Usage: %s processName(processArgument) ip:port\n", os.Args[0])
+	}
+
+	id = os.Args[1]
+	ipPort := os.Args[2]
+	configuration = map[string]string{
+		"AReceiver(0)": "127.0.0.1:2222",
+		"ASender(1)":   "127.0.0.1:3333",
+	}
+
+	if _, ok := configuration[id]; !ok {
+		fmt.Fprintf(os.Stderr, "Unknown process: %s\n", id)
+		os.Exit(1)
+	}
+
+	role, selfStr = distsys.ParseProcessId(id)
+	coordinator := configuration["AReceiver(0)"]
+	connections = distsys.NewConnections(ipPort)
+	barrier = distsys.NewSyncBarrier(configuration, connections, ipPort, coordinator)
+}
+
+func makeMailboxRef(name string) *distsys.Mailbox {
+	mbox, err := distsys.MailboxRef(name, 0, connections, configuration, []string{id}, MAILBOX_SIZE, 0)
+	if err != nil {
+		panic(err)
+	}
+
+	return mbox
+}
+
+func waitBarrier() {
+	if err := barrier.WaitPeers(); err != nil {
+		fmt.Printf("Error: %v\n", err)
+		os.Exit(1)
+	}
+}
+
+func main() {
+	mailboxes := []distsys.ArchetypeResource{
+		makeMailboxRef("AReceiver(0)"),
+		makeMailboxRef("ASender(1)"),
+	}
+
+	self, err := strconv.Atoi(selfStr)
+	if err != nil {
+		panic(err)
+	}
+
+	// wait for all process to come online
+	waitBarrier()
+
+	if role == "ASender" {
+		in := distsys.NewLocalChannel("in", 0)
+
+		go record_exchange.ASender(self, distsys.ArchetypeResourceSlice(mailboxes), in)
+
+		for i := 1; i <= 3; i++ {
+			in.Send(i)
+		}
+	} else {
+		out := distsys.NewLocalChannel("out", 0)
+
+		go record_exchange.AReceiver(self, distsys.ArchetypeResourceSlice(mailboxes), out)
+
+		for i := 0; i < 3; i++ {
+			fmt.Printf("Received: %d\n", out.Receive().(int))
+		}
+	}
+
+	// Wait for all peers to disconnect
+	waitBarrier()
+}
@@ -0,0 +1,248 @@
+--------------------------- MODULE record_exchange ---------------------------
+(***************************************************************************)
+(* A sender passes records to a receiver that only reads some of their    *)
+(* fields, so that the two archetypes infer different record types for    *)
+(* the same messages.                                                      *)
+(***************************************************************************)
+
+EXTENDS Naturals, Sequences, TLC
+
+CONSTANT BUFFER_SIZE
+
+CONSTANTS SenderId, ReceiverId
+
+(***************************************************************************
+--mpcal RecordExchange {
+  mapping macro TCPChannel {
+      read {
+          await Len($variable) > 0;
+          with (msg = Head($variable)) {
+              $variable := Tail($variable);
+              yield msg;
+          };
+      }
+
+      write {
+          await Len($variable) < BUFFER_SIZE;
+          yield Append($variable, $value);
+      }
+  }
+
+  \* Sends a record of type [seq : Int, sender : Int, note : String] for
+  \* every value read from `instream`.
+  archetype ASender(ref mailboxes, instream)
+  variables n = 0, msg;
+  {
+      senderLoop:
+        while (TRUE) {
+            getInput:
+              n := n + instream;
+            sendRecord:
+              msg := [seq |-> n, sender |-> self, note |-> "hello"];
+              mailboxes[ReceiverId] := msg;
+        }
+  }
+
+  \* Only reads the `seq` and `sender` fields of the records it receives. Its
+  \* `total` record never goes through an archetype resource.
+  archetype AReceiver(ref mailboxes, ref outstream)
+  variables msg, total = [sum |-> 0, count |-> 0];
+  {
+      receiverLoop:
+        while (TRUE) {
+            rcv:
+              msg := mailboxes[self];
+            output:
+              total := [sum |-> total.sum + msg.seq, count |-> total.count + 1];
+              outstream := 100 * msg.sender + 10 * total.count + total.sum;
+        }
+  }
+
+  variables network = [id \in 0..1 |-> <<>>], in = 0, out = 0;
+
+  fair process (Sender = SenderId) == instance ASender(ref network, in)
+      mapping network[_] via TCPChannel;
+
+  fair process (Receiver = ReceiverId) == instance AReceiver(ref network, ref out)
+      mapping network[_] via TCPChannel;
+}
+
+\* BEGIN PLUSCAL TRANSLATION
+--algorithm RecordExchange {
+    variables network = [id \in (0)..(1) |-> <<>>], in = 0, out = 0;
+    fair process (Sender = SenderId)
+    variables n = 0, msg, instreamRead, mailboxesWrite, mailboxesWrite0;
+    {
+        senderLoop:
+            if (TRUE) {
+                getInput:
+                    instreamRead := in;
+                    n := (n)+(instreamRead);
+
+                sendRecord:
+                    msg := [seq |-> n, sender |-> SenderId, note |-> "hello"];
+                    await (Len(network[ReceiverId]))<(BUFFER_SIZE);
+                    mailboxesWrite := [network EXCEPT ![ReceiverId] = Append(network[ReceiverId], msg)];
+                    network := mailboxesWrite;
+                    goto senderLoop;
+
+            } else {
+                mailboxesWrite0 := network;
+                network := mailboxesWrite0;
+            };
+
+    }
+    fair process (Receiver = ReceiverId)
+    variables msg, total = [sum |-> 0, count |-> 0], mailboxesRead, mailboxesWrite1, outstreamWrite, mailboxesWrite2, outstreamWrite0;
+    {
+        receiverLoop:
+            if (TRUE) {
+                rcv:
+                    await (Len(network[ReceiverId]))>(0);
+                    with (msg0 = Head(network[ReceiverId])) {
+                        mailboxesWrite1 := [network EXCEPT ![ReceiverId] = Tail(network[ReceiverId])];
+                        mailboxesRead := msg0;
+                    };
+                    msg := mailboxesRead;
+                    network := mailboxesWrite1;
+
+                output:
+                    total := [sum |-> ((total).sum)+((msg).seq), count |-> ((total).count)+(1)];
+                    outstreamWrite := (((100)*((msg).sender))+((10)*((total).count)))+((total).sum);
+                    out := outstreamWrite;
+                    goto receiverLoop;
+
+            } else {
+                mailboxesWrite2 := network;
+                outstreamWrite0 := out;
+                network := mailboxesWrite2;
+                out := outstreamWrite0;
+            };
+
+    }
+}
+\* END PLUSCAL TRANSLATION
+
+
+
+***************************************************************************)
+\* BEGIN TRANSLATION
+\* Process variable msg of process Sender at line 74 col 22 changed to msg_
+CONSTANT defaultInitValue
+VARIABLES network, in, out, pc
+
+VARIABLES n, msg_, instreamRead, mailboxesWrite, mailboxesWrite0, msg, total,
+          mailboxesRead, mailboxesWrite1, outstreamWrite, mailboxesWrite2,
+          outstreamWrite0
+
+vars == << network, in, out, pc, n, msg_, instreamRead, mailboxesWrite,
+           mailboxesWrite0, msg, total, mailboxesRead, mailboxesWrite1,
+           outstreamWrite, mailboxesWrite2, outstreamWrite0 >>
+
+ProcSet == {SenderId} \cup {ReceiverId}
+
+Init == (* Global variables *)
+        /\ network = [id \in (0)..(1) |-> <<>>]
+        /\ in = 0
+        /\ out = 0
+        (* Process Sender *)
+        /\ n = 0
+        /\ msg_ = defaultInitValue
+        /\ instreamRead = defaultInitValue
+        /\ mailboxesWrite = defaultInitValue
+        /\ mailboxesWrite0 = defaultInitValue
+        (* Process Receiver *)
+        /\ msg = defaultInitValue
+        /\ total = [sum |-> 0, count |-> 0]
+        /\ mailboxesRead = defaultInitValue
+        /\ mailboxesWrite1 = defaultInitValue
+        /\ outstreamWrite = defaultInitValue
+        /\ mailboxesWrite2 = defaultInitValue
+        /\ outstreamWrite0 = defaultInitValue
+        /\ pc = [self \in ProcSet |-> CASE self = SenderId -> "senderLoop"
+                                        [] self = ReceiverId -> "receiverLoop"]
+
+senderLoop == /\ pc[SenderId] = "senderLoop"
+              /\ IF TRUE
+                    THEN /\ pc' = [pc EXCEPT ![SenderId] = "getInput"]
+                         /\ UNCHANGED << network, mailboxesWrite0 >>
+                    ELSE /\ mailboxesWrite0' = network
+                         /\ network' = mailboxesWrite0'
+                         /\ pc' = [pc EXCEPT ![SenderId] = "Done"]
+              /\ UNCHANGED << in, out, n, msg_, instreamRead, mailboxesWrite,
+                              msg, total, mailboxesRead, mailboxesWrite1,
+                              outstreamWrite, mailboxesWrite2,
+                              outstreamWrite0 >>
+
+getInput == /\ pc[SenderId] = "getInput"
+            /\ instreamRead' = in
+            /\ n' = (n)+(instreamRead')
+            /\ pc' = [pc EXCEPT ![SenderId] = "sendRecord"]
+            /\ UNCHANGED << network, in, out, msg_, mailboxesWrite,
+                            mailboxesWrite0, msg, total, mailboxesRead,
+                            mailboxesWrite1, outstreamWrite, mailboxesWrite2,
+                            outstreamWrite0 >>
+
+sendRecord == /\ pc[SenderId] = "sendRecord"
+              /\ msg_' = [seq |-> n, sender |-> SenderId, note |-> "hello"]
+              /\ (Len(network[ReceiverId]))<(BUFFER_SIZE)
+              /\ mailboxesWrite' = [network EXCEPT ![ReceiverId] = Append(network[ReceiverId], msg_')]
+              /\ network' = mailboxesWrite'
+              /\ pc' = [pc EXCEPT ![SenderId] = "senderLoop"]
+              /\ UNCHANGED << in, out, n, instreamRead, mailboxesWrite0, msg,
+                              total, mailboxesRead, mailboxesWrite1,
+                              outstreamWrite, mailboxesWrite2,
+                              outstreamWrite0 >>
+
+Sender == senderLoop \/ getInput \/ sendRecord
+
+receiverLoop == /\ pc[ReceiverId] = "receiverLoop"
+                /\ IF TRUE
+                      THEN /\ pc' = [pc EXCEPT ![ReceiverId] = "rcv"]
+                           /\ UNCHANGED << network, out, mailboxesWrite2,
+                                           outstreamWrite0 >>
+                      ELSE /\ mailboxesWrite2' = network
+                           /\ outstreamWrite0' = out
+                           /\ network' = mailboxesWrite2'
+                           /\ out' = outstreamWrite0'
+                           /\ pc' = [pc EXCEPT ![ReceiverId] = "Done"]
+                /\ UNCHANGED << in, n, msg_, instreamRead, mailboxesWrite,
+                                mailboxesWrite0, msg, total, mailboxesRead,
+                                mailboxesWrite1, outstreamWrite >>
+
+rcv == /\ pc[ReceiverId] = "rcv"
+       /\ (Len(network[ReceiverId]))>(0)
+       /\ LET msg0 == Head(network[ReceiverId]) IN
+            /\ mailboxesWrite1' = [network EXCEPT ![ReceiverId] = Tail(network[ReceiverId])]
+            /\ mailboxesRead' = msg0
+       /\ msg' = mailboxesRead'
+       /\ network' = mailboxesWrite1'
+       /\ pc' = [pc EXCEPT ![ReceiverId] = "output"]
+       /\ UNCHANGED << in, out, n, msg_, instreamRead, mailboxesWrite,
+                       mailboxesWrite0, total, outstreamWrite, mailboxesWrite2,
+                       outstreamWrite0 >>
+
+output == /\ pc[ReceiverId] = "output"
+          /\ total' = [sum |-> ((total).sum)+((msg).seq), count |-> ((total).count)+(1)]
+          /\ outstreamWrite' = (((100)*((msg).sender))+((10)*((total').count)))+((total').sum)
+          /\ out' = outstreamWrite'
+          /\ pc' = [pc EXCEPT ![ReceiverId] = "receiverLoop"]
+          /\ UNCHANGED << network, in, n, msg_, instreamRead, mailboxesWrite,
+                          mailboxesWrite0, msg, mailboxesRead, mailboxesWrite1,
+                          mailboxesWrite2, outstreamWrite0 >>
+
+Receiver == receiverLoop \/ rcv \/ output
+
+Next == Sender \/ Receiver
+           \/ (* Disjunct to prevent deadlock on termination *)
+              ((\A self \in ProcSet: pc[self] = "Done") /\ UNCHANGED vars)
+
+Spec == /\ Init /\ [][Next]_vars
+        /\ WF_vars(Sender)
+        /\ WF_vars(Receiver)
+
+Termination == <>(\A self \in ProcSet: pc[self] = "Done")
+
+\* END TRANSLATION
+
+==============================================================================
@@ -101,6 +101,21 @@ class ExpressionCodeGenRunTest extends AnyFunSuite {
       "rhs" -> set(num(3), num(2))),
     expectedStr = "[1 2 3]")
 
+  check("set union singleton insert")(
+    expr = binop("\\union", idexp("lhs"), set(num(2))),
+    vars = List("lhs" -> set(num(1), num(3))),
+    expectedStr = "[1 2 3]")
+
+  check("set union singleton already present")(
+    expr = binop("\\union", set(num(3)), idexp("rhs")),
+    vars = List("rhs" -> set(num(1), num(3))),
+    expectedStr = "[1 3]")
+
+  check("set-of-sets union singleton insert")(
+    expr = binop("\\union", idexp("lhs"), set(set(num(2)))),
+    vars = List("lhs" -> set(set(num(3)), set(num(1)), set(num(1), num(2)))),
+    expectedStr = "[[1] [2] [3] [1 2]]")
+
   check("set diff no intersect")(
     expr = binop("\\", idexp("lhs"), idexp("rhs")),
     vars = List(
@@ -115,6 +130,51 @@ class ExpressionCodeGenRunTest extends AnyFunSuite {
       "rhs" -> set(num(2))),
     expectedStr = "[1]")
 
+  check("set diff singleton")(
+    expr = binop("\\", idexp("lhs"), set(num(2))),
+    vars = List("lhs" -> set(num(1), num(2), num(3))),
+    expectedStr = "[1 3]")
+
+  check("set diff singleton absent")(
+    expr = binop("\\", idexp("lhs"), set(num(2))),
+    vars = List("lhs" -> set(num(1), num(3))),
+    expectedStr = "[1 3]")
+
+  check("set diff interleaved")(
+    expr = binop("\\", idexp("lhs"), idexp("rhs")),
+    vars = List(
+      "lhs" -> set(num(1), num(3), num(5), num(7)),
+      "rhs" -> set(num(0), num(3), num(4), num(7), num(9))),
+    expectedStr = "[1 5]")
+
+  check("set intersection")(
+    expr = binop("\\cap", idexp("lhs"), idexp("rhs")),
+    vars = List(
+      "lhs" -> set(num(1), num(2), num(3), num(5)),
+      "rhs" -> set(num(5), num(2), num(4))),
+    expectedStr = "[2 5]")
+
+  check("set-of-sets intersection")(
+    expr = binop("\\intersect", idexp("lhs"), idexp("rhs")),
+    vars = List(
+      "lhs" -> set(set(num(5), num(3)), set(num(2)), set()),
+      "rhs" -> set(set(), set(num(3), num(5)), set(num(1)))),
+    expectedStr = "[[] [3 5]]")
+
+  check("set subseteq yes")(
+    expr = binop("\\subseteq", idexp("lhs"), idexp("rhs")),
+    vars = List(
+      "lhs" -> set(num(2), num(4)),
+      "rhs" -> set(num(1), num(2), num(3), num(4))),
+    expectedStr = "true")
+
+  check("set subseteq no")(
+    expr = binop("\\subseteq", idexp("lhs"), idexp("rhs")),
+    vars = List(
+      "lhs" -> set(num(2), num(5)),
+      "rhs" -> set(num(1), num(2), num(3), num(4))),
+    expectedStr = "false")
+
   check("set member check yes")(
     expr = binop("\\in", idexp("x"), idexp("s")),
     vars = List("x" -> num(3), "s" -> set(num(1), num(2), num(3))),
@@ -125,6 +185,30 @@ class ExpressionCodeGenRunTest extends AnyFunSuite {
     vars = List("x" -> num(30), "s" -> set(num(1), num(3), num(2))),
     expectedStr = "false")
 
+  check("hashed set union cardinality")(
+    expr = opcall("Cardinality", binop("\\union", idexp("s"), set(num(2), num(4)))),
+    vars = List("s" -> set(num(1), num(2), num(3))),
+    expectedStr = "4")
+
+  check("hashed set difference member check")(
+    expr = binop("\\in", num(2), binop("\\", idexp("s"), set(num(2)))),
+    vars = List("s" -> set(num(1), num(2), num(3))),
+    expectedStr = "false")
+
+  check("hashed set equality")(
+    expr = binop("=", binop("\\union", idexp("lhs"), idexp("rhs")), binop("..", num(1), num(4))),
+    vars = List(
+      "lhs" -> set(num(2), num(1)),
+      "rhs" -> set(num(4), num(3))),
+    expectedStr = "true")
+
+  check("hashed string set intersection cardinality")(
+    expr = opcall("Cardinality", binop("\\cap", idexp("lhs"), idexp("rhs"))),
+    vars = List(
+      "lhs" -> set(str("a"), str("b"), str("c")),
+      "rhs" -> set(str("d"), str("c"), str("b"))),
+    expectedStr = "2")
+
   check("set-of-sets pseudo-lexicographical sorting")(
     idexp("value"),
     vars = List("value" -> set(set(), set(num(1), num(2)), set(num(2)))),
@@ -195,6 +279,16 @@ class ExpressionCodeGenRunTest extends AnyFunSuite {
       set()),
     expectedStr = "false")
 
+  check("literal record")(
+    expr = record(field(id("b"), str("hi")), field(id("a"), num(1))),
+    expectedStr = "{1 hi}")
+
+  check("record field access")(
+    expr = binop("+", dot(idexp("r"), "a"), dot(idexp("r"), "b")),
+    vars = List(
+      "r" -> record(field(id("a"), num(1)), field(id("b"), num(2)))),
+    expectedStr = "3")
+
   check("quantified universal 2 bounds true")(
     expr = universal(
       bounds(
@@ -272,6 +366,40 @@ class ExpressionCodeGenRunTest extends AnyFunSuite {
       binop("+", idexp("x"), num(1)))),
     expectedStr = "3")
 
+  check("function call over interval")(
+    expr = fncall(idexp("fn"), num(7)),
+    List("fn" -> function(
+      bounds(qbIds(ids(id("x")), binop("..", num(5), num(9)))),
+      binop("*", idexp("x"), num(10)))),
+    expectedStr = "70")
+
+  check("function call over sparse domain")(
+    expr = fncall(idexp("fn"), num(9)),
+    List("fn" -> function(
+      bounds(qbIds(ids(id("x")), set(num(1), num(4), num(9), num(16)))),
+      binop("*", idexp("x"), num(10)))),
+    expectedStr = "90")
+
+  check("function call string keys")(
+    expr = fncall(idexp("fn"), str("b")),
+    List("fn" -> function(
+      bounds(qbIds(ids(id("x")), set(str("a"), str("b"), str("c")))),
+      idexp("x"))),
+    expectedStr = "b")
+
+  check("literal function string keys")(
+    expr = function(
+      bounds(qbIds(ids(id("x")), set(str("b"), str("a")))),
+      idexp("x")),
+    expectedStr = "map[a:a b:b]")
+
+  check("set of functions with string keys")(
+    expr = set(
+      function(bounds(qbIds(ids(id("x")), set(str("a"), str("b")))), idexp("x")),
+      function(bounds(qbIds(ids(id("x")), set(str("b")))), idexp("x")),
+      function(bounds(qbIds(ids(id("x")), set(str("a")))), idexp("x"))),
+    expectedStr = "[map[a:a] map[b:b] map[a:a b:b]]")
+
   check("function call binary")(
     expr = fncall(idexp("fn"), num(2), num(5)),
     List("fn" -> function(
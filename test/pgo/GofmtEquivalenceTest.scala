@@ -0,0 +1,84 @@
+package pgo
+
+import org.scalactic.source.Position
+import org.scalatest.funsuite.AnyFunSuite
+import pgo.IntegrationTestingUtils.{testCompileFile, testCompileMPCal}
+
+import java.nio.charset.StandardCharsets
+import java.nio.file.{Files, Path, Paths}
+import scala.jdk.CollectionConverters._
+
+/**
+ * Checks that the Go formatters already produce gofmt's output byte for byte, by compiling the code generation
+ * fixtures without running gofmt and comparing the result with what gofmt makes of it.
+ */
+class GofmtEquivalenceTest extends AnyFunSuite {
+  private val noGofmt = List("--gofmt=false").asJava
+
+  private def gofmt(file: Path): String = {
+    val process = new ProcessBuilder("gofmt", file.toString).redirectErrorStream(true).start()
+    val output = new String(process.getInputStream.readAllBytes(), StandardCharsets.UTF_8)
+    assert(process.waitFor() == 0, output)
+    output
+  }
+
+  private def checkFile(file: Path): Unit = {
+    val generated = new String(Files.readAllBytes(file), StandardCharsets.UTF_8)
+    val formatted = gofmt(file)
+    if (generated != formatted) {
+      fail(s"$file differs from gofmt's output:\n" + TestingUtils.stringDiff(formatted, generated).mkString("\n"))
+    }
+  }
+
+  def checkExample(tag: String)(fileName: String, constants: Map[String, String])(implicit pos: Position): Unit =
+    test(tag) {
+      testCompileFile(Paths.get("examples", fileName), constants.asJava, noGofmt, checkFile(_))
+    }
+
+  def checkMPCal(tag: String)(specName: String, pack: String, constants: Map[String, String])
+                (implicit pos: Position): Unit =
+    test(tag) {
+      testCompileMPCal(Paths.get("test", "mpcal", "spec", s"$specName.tla"), pack, constants.asJava, noGofmt,
+        outputPath => checkFile(outputPath.resolve(Paths.get("src", pack, s"$pack.go"))))
+    }
+
+  checkExample("Euclid")(fileName = "Euclid.tla", constants = Map("N" -> "5"))
+
+  checkExample("counter")(fileName = "counter.tla", constants = Map("procs" -> "2", "iters" -> "2"))
+
+  checkExample("Queens")(fileName = "Queens.tla", constants = Map("N" -> "4"))
+
+  private val loadBalancerConstants = Map(
+    "NUM_CLIENTS" -> "1",
+    "LoadBalancerId" -> "0",
+    "GET_PAGE" -> "200",
+    "NUM_SERVERS" -> "2")
+
+  private val replicatedKVConstants = Map(
+    "DISCONNECT_MSG" -> "\"disconnect\"",
+    "GET_MSG" -> "\"get\"",
+    "PUT_MSG" -> "\"put\"",
+    "NULL_MSG" -> "\"clock_update\"",
+    "NUM_CLIENTS" -> "2",
+    "NUM_REPLICAS" -> "3",
+    "GET_RESPONSE" -> "\"get_response\"",
+    "PUT_RESPONSE" -> "\"put_response\"")
+
+  checkMPCal("load_balancer_tuples")(
+    specName = "load_balancer_tuples", pack = "load_balancer", constants = loadBalancerConstants)
+
+  checkMPCal("load_balancer_record_payloads")(
+    specName = "load_balancer_record_payloads", pack = "load_balancer", constants = loadBalancerConstants)
+
+  checkMPCal("load_balancer_file_system")(
+    specName = "load_balancer_file_system", pack = "load_balancer", constants = loadBalancerConstants)
+
+  checkMPCal("replicated_kv")(
+    specName = "replicated_kv", pack = "replicated_kv", constants = replicatedKVConstants)
+
+  checkMPCal("concurrent_replicated_kv")(
+    specName = "concurrent_replicated_kv", pack = "replicated_kv", constants = replicatedKVConstants)
+
+  checkMPCal("record_exchange")(
+    specName = "record_exchange", pack = "record_exchange", constants = Map("ReceiverId" -> "0", "SenderId" -> "1"))
+}
@@ -97,7 +97,12 @@ public class IntegrationTestingUtils {
 	// See testRunGoCode and testRunGoCodeShouldPanic below for runner examples
 	static void testCompileFile(Path filePath, Map<String, String> constants, TestRunner<Path> runner)
 			throws IOException {
-		testCompile(ignored -> filePath, constants, runner);
+		testCompileFile(filePath, constants, Collections.emptyList(), runner);
+	}
+
+	static void testCompileFile(Path filePath, Map<String, String> constants, List<String> extraArgs,
+	                            TestRunner<Path> runner) throws IOException {
+		testCompile(ignored -> filePath, constants, extraArgs, runner);
 	}
 
 	// See testRunGoCode and testRunGoCodeShouldPanic below for runner examples
@@ -149,11 +154,19 @@ public class IntegrationTestingUtils {
 				out.write("====");
 			}
 			return inputFilePath;
-		}, Collections.emptyMap(), runner);
+		}, Collections.emptyMap(), Collections.emptyList(), runner);
 	}
 
-	private static void testCompile(TestSetup setup, Map<String, String> constants, TestRunner<Path> runner)
-			throws IOException {
+	private static String[] compilerArgs(List<String> extraArgs, Path configPath, Path inputFilePath) {
+		List<String> args = new ArrayList<>(extraArgs);
+		args.add("-c");
+		args.add(configPath.toString());
+		args.add(inputFilePath.toString());
+		return args.toArray(new String[0]);
+	}
+
+	private static void testCompile(TestSetup setup, Map<String, String> constants, List<String> extraArgs,
+	                                TestRunner<Path> runner) throws IOException {
 		Path tempDirPath = Files.createTempDirectory("pgotest");
 		File tempDir = tempDirPath.toFile();
 		Path generatedConfigPath = tempDirPath.resolve("config.json");
@@ -184,11 +197,7 @@ public class IntegrationTestingUtils {
 			}
 
 			// invoke the compiler
-			PGoMain.main(new String[] {
-					"-c",
-					generatedConfigPath.toString(),
-					inputFilePath.toString(),
-			});
+			PGoMain.main(compilerArgs(extraArgs, generatedConfigPath, inputFilePath));
 
 			// display the compiled code for inspection
 			Files.lines(compiledOutputPath).forEach(line -> System.out.println("source: " + line));
@@ -202,6 +211,11 @@ public class IntegrationTestingUtils {
 
 	static void testCompileMPCal(Path spec, String pack, Map<String, String> constants, TestRunner<Path> runner)
 			throws IOException {
+		testCompileMPCal(spec, pack, constants, Collections.emptyList(), runner);
+	}
+
+	static void testCompileMPCal(Path spec, String pack, Map<String, String> constants, List<String> extraArgs,
+	                             TestRunner<Path> runner) throws IOException {
 		Path tempDirPath = Files.createTempDirectory("mpcaltest");
 		File tempDir = tempDirPath.toFile();
 		Path generatedConfigPath = tempDirPath.resolve("config.json");
@@ -226,11 +240,7 @@ public class IntegrationTestingUtils {
 			}
 
 			// invoke the compiler
-			PGoMain.main(new String[] {
-					"-c",
-					generatedConfigPath.toString(),
-					spec.toString(),
-			});
+			PGoMain.main(compilerArgs(extraArgs, generatedConfigPath, spec));
 
 			runner.run(tempDirPath);
 		} finally {
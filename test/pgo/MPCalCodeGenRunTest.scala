@@ -130,6 +130,27 @@ class MPCalCodeGenRunTest extends AnyFunSuite {
         List("AServer(2)", "127.0.0.1:4444", "page2.html").asJava,
         strInputStream(""))))
 
+  check("record_exchange")(
+    specName = "record_exchange",
+    pack = "record_exchange",
+    constants = Map(
+      "ReceiverId" -> "0",
+      "SenderId" -> "1"),
+    processes = List(
+      mpcalRunDef(
+        "AReceiver(0)",
+        util.Arrays.asList("AReceiver(0)", "127.0.0.1:2222"),
+        strInputStream {
+          // the receiver only knows of the seq and sender fields of the records the sender sends
+          """Received: 111
+            |Received: 124
+            |Received: 140""".stripMargin
+        }),
+      mpcalRunDef(
+        "ASender(1)",
+        util.Arrays.asList("ASender(1)", "127.0.0.1:3333"),
+        strInputStream(""))))
+
   check("load_balancer_file_system")(
     specName = "load_balancer_file_system",
     pack = "load_balancer",
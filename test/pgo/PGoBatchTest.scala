@@ -0,0 +1,27 @@
+package pgo
+
+import org.scalatest.funsuite.AnyFunSuite
+
+import java.nio.charset.StandardCharsets
+import java.nio.file.Files
+import java.util.Collections
+import scala.jdk.CollectionConverters._
+
+class PGoBatchTest extends AnyFunSuite {
+  test("malformed batch lines fail on their own") {
+    val batch = Files.createTempFile("batch", ".txt")
+    try {
+      Files.write(batch, List(
+        "# comment",
+        "--noSuchOption spec.tla",
+        "",
+        "-m --batchThreads").asJava, StandardCharsets.UTF_8)
+      val requests = PGoBatch.readRequests(batch, Collections.emptyList())
+      assert(requests.asScala.map(_.getOrigin) == List(s"$batch:2", s"$batch:4"))
+      // reaching the assertion at all means that neither request exited the JVM
+      assert(!PGoBatch.perform(requests, 2))
+    } finally {
+      Files.delete(batch)
+    }
+  }
+}
@@ -0,0 +1,22 @@
+package pgo
+
+import org.scalatest.funsuite.AnyFunSuite
+
+class PGoOptionsTest extends AnyFunSuite {
+  test("malformed option is reported instead of exiting") {
+    val opts = new PGoOptions(Array("--noSuchOption", "spec.tla"), true)
+    assertThrows[PGoOptionException](opts.parse())
+  }
+
+  test("missing option value is reported instead of exiting") {
+    val opts = new PGoOptions(Array("-m", "spec.tla", "--batchThreads"), true)
+    assertThrows[PGoOptionException](opts.parse())
+  }
+
+  test("well-formed request parses") {
+    val opts = new PGoOptions(Array("-m", "spec.tla"), true)
+    opts.parse()
+    assert(opts.inputFilePath == "spec.tla")
+    assert(opts.mpcalCompile)
+  }
+}
@@ -0,0 +1,34 @@
+package pgo.model.`type`
+
+import pgo.scope.UID
+import pgo.util.Origin
+
+import java.util.Collections
+import org.scalatest.funsuite.AnyFunSuite
+
+class TypeInternerTest extends AnyFunSuite {
+  test("structurally equal types share an instance") {
+    val interner = new TypeInterner()
+    val a = new TypeGenerator("a").getTypeVariable(Collections.emptyList)
+    val x = interner.intern(new MapType(new SetType(new IntType(Collections.emptyList), Collections.emptyList), a,
+      Collections.singletonList[Origin](new UID())))
+    val y = interner.intern(new MapType(new SetType(new IntType(Collections.emptyList), Collections.emptyList), a,
+      Collections.emptyList))
+    assert(x eq y)
+    assert(x.getOrigins.isEmpty)
+    assert(x.asInstanceOf[MapType].getValueType eq a)
+    assert(interner.size == 3)
+  }
+
+  test("canonical types are equal to the types they stand for") {
+    val interner = new TypeInterner()
+    val tuple = new TupleType(
+      java.util.Arrays.asList(new BoolType(Collections.emptyList), new StringType(Collections.emptyList)),
+      Collections.emptyList)
+    val canonical = interner.intern(tuple)
+    assert(canonical == tuple)
+    assert(tuple == canonical)
+    assert(canonical != interner.intern(new SetType(new BoolType(Collections.emptyList), Collections.emptyList)))
+    assert(interner.intern(canonical) eq canonical)
+  }
+}
@@ -6,7 +6,7 @@ import pgo.scope.UID
 import java.util
 import java.util.Collections
 import org.scalatest.funsuite.AnyFunSuite
-import pgo.model.`type`.constraint.MonomorphicConstraint
+import pgo.model.`type`.constraint.{EqualityConstraint, HasFieldConstraint, MonomorphicConstraint, PolymorphicConstraint}
 
 class TypeSolverTest extends AnyFunSuite{
   trait TSFixture {
@@ -202,4 +202,184 @@ class TypeSolverTest extends AnyFunSuite{
     solver.unify(ctx)
     assert(ctx.hasErrors)
   })
-}
\ No newline at end of file
+
+  test("polymorphicBacktracking")(new TSFixture {
+    val a = typeGenerator.getTypeVariable(Collections.emptyList)
+    val b = typeGenerator.getTypeVariable(Collections.emptyList)
+    val c = typeGenerator.getTypeVariable(Collections.emptyList)
+    val int = new IntType(Collections.emptyList)
+    val string = new StringType(Collections.emptyList)
+    solver.addConstraint(new PolymorphicConstraint(dummyUID, util.Arrays.asList(
+      util.Arrays.asList(new EqualityConstraint(a, int), new EqualityConstraint(b, new SetType(a, Collections.emptyList))),
+      util.Arrays.asList(new EqualityConstraint(a, string), new EqualityConstraint(b, c)))))
+    solver.addConstraint(new PolymorphicConstraint(dummyUID, util.Arrays.asList(
+      util.Arrays.asList(new EqualityConstraint(c, int)),
+      util.Arrays.asList(new EqualityConstraint(c, new SliceType(a, Collections.emptyList))))))
+    solver.addConstraint(new MonomorphicConstraint(dummyUID, b, new SliceType(string, Collections.emptyList)))
+    solver.unify(ctx)
+    assert(!ctx.hasErrors)
+    val substitution = solver.getSubstitution
+    assert(substitution.get(a) == string)
+    assert(substitution.get(b) == new SliceType(string, Collections.emptyList))
+    assert(substitution.get(c) == new SliceType(string, Collections.emptyList))
+    // b's monomorphic constraint is propagated first, leaving a single viable alternative for each choice
+    assert(solver.getBacktracks == 0)
+  })
+
+  test("backjumping")(new TSFixture {
+    val a = typeGenerator.getTypeVariable(Collections.emptyList)
+    val x = typeGenerator.getTypeVariable(Collections.emptyList)
+    val record = typeGenerator.getAbstractRecord(Collections.emptyList)
+    val int = new IntType(Collections.emptyList)
+    val string = new StringType(Collections.emptyList)
+    solver.addConstraint(new PolymorphicConstraint(dummyUID, util.Arrays.asList(
+      util.Arrays.asList(new EqualityConstraint(a, int)),
+      util.Arrays.asList(new EqualityConstraint(a, string)))))
+    // has nothing to do with a, so should be jumped over when the choice for a turns out wrong
+    solver.addConstraint(new PolymorphicConstraint(dummyUID, util.Arrays.asList(
+      util.Arrays.asList(new EqualityConstraint(x, int)),
+      util.Arrays.asList(new EqualityConstraint(x, new BoolType(Collections.emptyList))))))
+    solver.addConstraint(new PolymorphicConstraint(dummyUID, util.Arrays.asList(
+      util.Arrays.asList(new HasFieldConstraint(record, "f", a), new HasFieldConstraint(record, "f", string)),
+      util.Arrays.asList(new HasFieldConstraint(record, "g", a), new HasFieldConstraint(record, "g", string)))))
+    solver.unify(ctx)
+    assert(!ctx.hasErrors)
+    val substitution = solver.getSubstitution
+    assert(substitution.get(a) == string)
+    assert(substitution.get(x) == int)
+    assert(solver.getBacktracks == 2)
+    assert(solver.getBackjumps == 1)
+  })
+
+  test("originsUndoneOnBacktracking")(new TSFixture {
+    val a = typeGenerator.getTypeVariable(Collections.emptyList)
+    val choiceUID = new UID()
+    val record = typeGenerator.getAbstractRecord(Collections.emptyList)
+    val string = new StringType(Collections.emptyList)
+    solver.addConstraint(new PolymorphicConstraint(choiceUID, util.Arrays.asList(
+      util.Arrays.asList(new EqualityConstraint(a, new IntType(Collections.emptyList))),
+      util.Arrays.asList(new EqualityConstraint(a, string)))))
+    solver.addConstraint(new PolymorphicConstraint(dummyUID, util.Arrays.asList(
+      util.Arrays.asList(new HasFieldConstraint(record, "f", a), new HasFieldConstraint(record, "f", string)),
+      util.Arrays.asList(new HasFieldConstraint(record, "g", a), new HasFieldConstraint(record, "g", string)))))
+    solver.unify(ctx)
+    assert(!ctx.hasErrors)
+    assert(solver.getSubstitution.get(a) == string)
+    assert(solver.getBacktracks > 0)
+    // binding a to int, and the origin that came with it, were both undone
+    assert(a.getOrigins.stream.filter(_ == choiceUID).count == 1)
+  })
+
+  test("unsatisfiableRegardlessOfChoices")(new TSFixture {
+    val int = new IntType(Collections.emptyList)
+    val string = new StringType(Collections.emptyList)
+    for (_ <- 0 until 20) {
+      val x = typeGenerator.getTypeVariable(Collections.emptyList)
+      solver.addConstraint(new PolymorphicConstraint(dummyUID, util.Arrays.asList(
+        util.Arrays.asList(new EqualityConstraint(x, int)),
+        util.Arrays.asList(new EqualityConstraint(x, string)))))
+    }
+    val y = typeGenerator.getTypeVariable(Collections.emptyList)
+    val record = typeGenerator.getAbstractRecord(Collections.emptyList)
+    solver.addConstraint(new PolymorphicConstraint(dummyUID, util.Arrays.asList(
+      util.Arrays.asList(
+        new HasFieldConstraint(record, "f", y), new EqualityConstraint(y, int), new HasFieldConstraint(record, "f", string)),
+      util.Arrays.asList(
+        new HasFieldConstraint(record, "g", y), new EqualityConstraint(y, int), new HasFieldConstraint(record, "g", string)))))
+    solver.unify(ctx)
+    assert(ctx.hasErrors)
+    // the failure does not depend on any of the 30 unrelated choices, so none of them are revisited
+    assert(solver.getBacktracks <= 2)
+  })
+
+  test("partitionedComponents")(new TSFixture {
+    val a = typeGenerator.getTypeVariable(Collections.emptyList)
+    val b = typeGenerator.getTypeVariable(Collections.emptyList)
+    val c = typeGenerator.getTypeVariable(Collections.emptyList)
+    val d = typeGenerator.getTypeVariable(Collections.emptyList)
+    val int = new IntType(Collections.emptyList)
+    solver.addConstraint(new MonomorphicConstraint(dummyUID, a, new SetType(b, Collections.emptyList)))
+    solver.addConstraint(new MonomorphicConstraint(dummyUID, c, d))
+    solver.addConstraint(new MonomorphicConstraint(dummyUID, int, int))
+    solver.addConstraint(new MonomorphicConstraint(dummyUID, b, int))
+    val components = solver.partition()
+    assert(components.size == 3)
+  })
+
+  test("unifyComponents")(new TSFixture {
+    val a = typeGenerator.getTypeVariable(Collections.emptyList)
+    val b = typeGenerator.getTypeVariable(Collections.emptyList)
+    val c = typeGenerator.getTypeVariable(Collections.emptyList)
+    val d = typeGenerator.getTypeVariable(Collections.emptyList)
+    val int = new IntType(Collections.emptyList)
+    val string = new StringType(Collections.emptyList)
+    solver.addConstraint(new MonomorphicConstraint(dummyUID, a, new SetType(b, Collections.emptyList)))
+    solver.addConstraint(new MonomorphicConstraint(dummyUID, c, d))
+    solver.addConstraint(new MonomorphicConstraint(dummyUID, d, string))
+    solver.addConstraint(new MonomorphicConstraint(dummyUID, b, int))
+    val substitution = solver.unifyComponents(ctx, true)
+    assert(!ctx.hasErrors)
+    assert(substitution.get(a) == new SetType(int, Collections.emptyList))
+    assert(substitution.get(b) == int)
+    assert(substitution.get(c) == string)
+    assert(substitution.get(d) == string)
+    assert(solver.getConstraintsProcessed >= 4)
+  })
+
+  test("unifyComponentsReportsEachComponent")(new TSFixture {
+    val a = typeGenerator.getTypeVariable(Collections.emptyList)
+    val b = typeGenerator.getTypeVariable(Collections.emptyList)
+    val int = new IntType(Collections.emptyList)
+    val string = new StringType(Collections.emptyList)
+    solver.addConstraint(new MonomorphicConstraint(dummyUID, a, int))
+    solver.addConstraint(new MonomorphicConstraint(dummyUID, a, string))
+    solver.addConstraint(new MonomorphicConstraint(dummyUID, b, int))
+    solver.addConstraint(new MonomorphicConstraint(dummyUID, b, string))
+    solver.unifyComponents(ctx, false)
+    assert(ctx.hasErrors)
+    assert(ctx.getIssues.size == 2)
+  })
+
+  test("longSubstitutionChain")(new TSFixture {
+    val vars = IndexedSeq.fill(500)(typeGenerator.getTypeVariable(Collections.emptyList))
+    val int = new IntType(Collections.emptyList)
+    vars.sliding(2).foreach { pair =>
+      solver.addConstraint(new MonomorphicConstraint(dummyUID, pair(0), new SetType(pair(1), Collections.emptyList)))
+    }
+    solver.addConstraint(new MonomorphicConstraint(dummyUID, vars.last, int))
+    solver.unify(ctx)
+    assert(!ctx.hasErrors)
+    val substitution = solver.getSubstitution
+    val expected = vars.indices.tail.foldLeft(int: Type)((t, _) => new SetType(t, Collections.emptyList))
+    assert(substitution.get(vars.head) == expected)
+    // resolved types are shared rather than rebuilt for each variable
+    assert(substitution.get(vars(1)) eq substitution.get(vars.head).asInstanceOf[SetType].getElementType)
+  })
+
+  test("componentsFromCache") {
+    val cache = new TypeSchemeCache()
+    val typeGenerator = new TypeGenerator("a")
+    val dummyUID = new UID()
+    for (k <- 0 until 2) {
+      val solver = new TypeSolver()
+      val ctx = new TopLevelIssueContext()
+      val a = typeGenerator.getTypeVariable(Collections.emptyList)
+      val b = typeGenerator.getTypeVariable(Collections.emptyList)
+      val c = typeGenerator.getTypeVariable(Collections.emptyList)
+      solver.addConstraint(new PolymorphicConstraint(dummyUID, util.Arrays.asList(
+        util.Arrays.asList(
+          new EqualityConstraint(a, new SliceType(b, Collections.emptyList)),
+          new EqualityConstraint(b, new StringType(Collections.emptyList))),
+        util.Arrays.asList(new EqualityConstraint(a, new MapType(c, b, Collections.emptyList))))))
+      solver.addConstraint(new MonomorphicConstraint(dummyUID, b, new IntType(Collections.emptyList)))
+      val substitution = solver.unifyComponents(ctx, false, cache)
+      assert(!ctx.hasErrors)
+      // the second, structurally identical, set of constraints is instantiated with its own variables
+      assert(solver.getComponentsFromCache == k)
+      assert(substitution.get(a) == new MapType(c, new IntType(Collections.emptyList), Collections.emptyList))
+      assert(!substitution.containsKey(c))
+    }
+    assert(cache.getHits == 1)
+    assert(cache.getMisses == 1)
+  }
+}
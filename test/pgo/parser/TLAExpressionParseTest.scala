@@ -74,6 +74,16 @@ class TLAExpressionParseTest extends AnyFunSuite {
   check("set containing empty tuple") {
     "{ << >> }" -> set(tuple())
   }
+  check("deeply nested sets") {
+    // each level used to be parsed twice, once as the start of a set comprehension
+    ("{ " * 64 + "1" + " }" * 64) -> (0 until 64).foldLeft[TLAExpression](num(1))((inner, _) => set(inner))
+  }
+  check("set refinement with brackets and a closing brace in a comment") {
+    """{ a \in { {1}, (2) } (* } *) : a \in { <<a>>[1] } }""" -> setRefinement(
+      "a",
+      set(set(num(1)), num(2)),
+      binop("\\in", idexp("a"), set(fncall(tuple(idexp("a")), num(1)))))
+  }
   check("tuple 3") {
     "<<24, \"v_init\", \"have gcd\", \"v\">>" -> tuple(
       num(24), str("v_init"), str("have gcd"), str("v"))
@@ -0,0 +1,89 @@
+package pgo.parser
+
+import org.scalactic.source.Position
+import org.scalatest.funsuite.AnyFunSuite
+import pgo.util.{SourceText, SourceTextRegistry}
+
+import java.nio.file.Paths
+
+class TLALexerTest extends AnyFunSuite {
+  import TLATokens._
+
+  private def lex(input: String): TLATokens =
+    TLALexer.lex(new SourceText(Paths.get("Test.tla"), input))
+
+  def check(tag: String)(pair: (String, List[(Byte, String)]))(implicit pos: Position): Unit =
+    test(tag) {
+      val (input, expected) = pair
+      val tokens = lex(input)
+      withClue(s"input:\n$input") {
+        assert((0 until tokens.size).map(i => (tokens.kind(i), tokens.tokenText(i))).toList == expected)
+      }
+    }
+
+  check("operator definition") {
+    "Foo(x) == x \\cup {1}" -> List(
+      Identifier -> "Foo", Other -> "(", Identifier -> "x", Other -> ")", Whitespace -> " ", Operator -> "==",
+      Whitespace -> " ", Identifier -> "x", Whitespace -> " ", Operator -> "\\cup", Whitespace -> " ",
+      Other -> "{", Number -> "1", Other -> "}")
+  }
+
+  check("words") {
+    "IF 1a WF_x 123 _" -> List(
+      Keyword -> "IF", Whitespace -> " ", Identifier -> "1a", Whitespace -> " ", Keyword -> "WF_x",
+      Whitespace -> " ", Number -> "123", Whitespace -> " ", Other -> "_")
+  }
+
+  check("strings") {
+    "\"a\\\"b\" \"bad\\q\"" -> List(
+      String -> "\"a\\\"b\"", Whitespace -> " ", Other -> "\"", Identifier -> "bad", Operator -> "\\",
+      Identifier -> "q", Other -> "\"")
+  }
+
+  check("translation markers") {
+    "\\* BEGIN PLUSCAL TRANSLATION\n\\* END PLUSCAL TRANSLATION\n\\* BEGIN TRANSLATION\n\\* comment" -> List(
+      PlusCalTranslationBegin -> "\\* BEGIN PLUSCAL TRANSLATION", Whitespace -> "\n",
+      PlusCalTranslationEnd -> "\\* END PLUSCAL TRANSLATION", Whitespace -> "\n",
+      TranslationBegin -> "\\* BEGIN TRANSLATION", Whitespace -> "\n",
+      LineComment -> "\\* comment")
+  }
+
+  test("comment ends") {
+    val input = "(* a (* b *) \\* c *)\n*) x (* y"
+    val tokens = lex(input)
+    val opens = (0 until tokens.size).filter(tokens.kind(_) == CommentOpen)
+    assert(opens.map(tokens.commentEnd) == List(input.indexOf(" x"), input.indexOf(" \\*"), -1))
+  }
+
+  test("token positions") {
+    val tokens = lex("a\n  bb")
+    val idx = tokens.indexAt(4)
+    assert(tokens.kind(idx) == Identifier)
+    assert((tokens.line(idx), tokens.column(idx)) == (1, 2))
+    assert(tokens.indexAt(5) == -1)
+  }
+
+  test("string values") {
+    val tokens = lex("\"a\\tb\\\\\"")
+    assert(tokens.stringValue(0) == "a\tb\\")
+  }
+
+  test("parsers of one compilation share the text and its tokens") {
+    val registry = new SourceTextRegistry
+    val binding = registry.bind()
+    try {
+      val path = Paths.get("Shared.tla")
+      val input = "---- MODULE Shared ----\nx == 1\n===="
+      val parsers = new ParsingUtils {
+        override type Elem = Char
+      }
+      val first = parsers.buildReader(path, input)
+      val second = parsers.buildReader(path, new String(input))
+      assert(first.text eq second.text)
+      assert(first.tokens eq second.tokens)
+      assert(parsers.buildReader(path, input + "\n").tokens ne first.tokens)
+    } finally {
+      binding.close()
+    }
+  }
+}
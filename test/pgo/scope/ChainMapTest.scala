@@ -0,0 +1,68 @@
+package pgo.scope
+
+import org.scalatest.funsuite.AnyFunSuite
+
+import java.util
+
+class ChainMapTest extends AnyFunSuite {
+  test("looks up the entries of its parent") {
+    val parent = new util.HashMap[String, Integer]
+    parent.put("a", 1)
+    parent.put("b", 2)
+    val map = new ChainMap(parent)
+    assert(map.get("a") == 1)
+    assert(map.containsKey("b"))
+    assert(map.size == 2)
+    assert(map == parent)
+  }
+
+  test("looks up the entries of a chain of ChainMaps") {
+    val root = new ChainMap(new util.HashMap[String, Integer])
+    root.put("a", 1)
+    val middle = new ChainMap(root)
+    middle.put("b", 2)
+    val leaf = new ChainMap(middle)
+    leaf.put("a", 3)
+    assert(leaf.get("a") == 3)
+    assert(leaf.get("b") == 2)
+    assert(middle.get("a") == 1)
+    assert(!root.containsKey("b"))
+  }
+
+  test("is a snapshot of its parent as of its construction") {
+    val parent = new ChainMap(new util.HashMap[String, Integer])
+    parent.put("a", 1)
+    val map = new ChainMap(parent)
+    parent.put("a", 2)
+    parent.put("b", 3)
+    assert(map.get("a") == 1)
+    assert(!map.containsKey("b"))
+    assert(map.size == 1)
+
+    val plainParent = new util.HashMap[String, Integer]
+    plainParent.put("a", 1)
+    val plainMap = new ChainMap(plainParent)
+    plainParent.put("b", 2)
+    plainParent.remove("a")
+    assert(plainMap.get("a") == 1)
+    assert(!plainMap.containsKey("b"))
+  }
+
+  test("writes leave its parent unchanged") {
+    val parent = new ChainMap(new util.HashMap[String, Integer])
+    parent.put("a", 1)
+    val map = new ChainMap(parent)
+    map.put("a", 2)
+    map.put("b", 3)
+    val it = map.entrySet.iterator
+    while (it.hasNext) {
+      if (it.next().getKey == "b") {
+        it.remove()
+      }
+    }
+    assert(parent.get("a") == 1)
+    assert(parent.size == 1)
+    assert(map.get("a") == 2)
+    assert(map.size == 1)
+  }
+}
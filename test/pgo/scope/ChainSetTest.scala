@@ -0,0 +1,53 @@
+package pgo.scope
+
+import org.scalatest.funsuite.AnyFunSuite
+
+import java.util
+
+class ChainSetTest extends AnyFunSuite {
+  test("contains the elements of its parent") {
+    val parent = new util.HashSet[String](util.Arrays.asList("a", "b"))
+    val set = new ChainSet(parent)
+    assert(set.contains("a"))
+    assert(set.size == 2)
+    assert(set == parent)
+
+    val child = new ChainSet(set)
+    child.add("c")
+    assert(child.contains("b"))
+    assert(child.contains("c"))
+    assert(!set.contains("c"))
+  }
+
+  test("is a snapshot of its parent as of its construction") {
+    val parent = new ChainSet(new util.HashSet[String](util.Arrays.asList("a")))
+    val set = new ChainSet(parent)
+    parent.add("b")
+    parent.remove("a")
+    assert(set.contains("a"))
+    assert(!set.contains("b"))
+
+    val plainParent = new util.HashSet[String](util.Arrays.asList("a"))
+    val plainSet = new ChainSet(plainParent)
+    plainParent.add("b")
+    plainParent.clear()
+    assert(plainSet.contains("a"))
+    assert(!plainSet.contains("b"))
+  }
+
+  test("writes leave its parent unchanged") {
+    val parent = new ChainSet(new util.HashSet[String](util.Arrays.asList("a", "b")))
+    val set = new ChainSet(parent)
+    assert(set.remove("a"))
+    assert(set.add("c"))
+    assert(!set.add("c"))
+    val it = set.iterator
+    while (it.hasNext) {
+      if (it.next() == "b") {
+        it.remove()
+      }
+    }
+    assert(set == new util.HashSet[String](util.Arrays.asList("c")))
+    assert(parent == new util.HashSet[String](util.Arrays.asList("a", "b")))
+  }
+}
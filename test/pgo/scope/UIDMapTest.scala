@@ -0,0 +1,64 @@
+package pgo.scope
+
+import org.scalatest.funsuite.AnyFunSuite
+
+import java.util
+import scala.util.Random
+
+class UIDMapTest extends AnyFunSuite {
+  test("behaves like a HashMap under random puts and removes") {
+    val random = new Random(42)
+    val uids = IndexedSeq.fill(5000)(new UID())
+    val map = new UIDMap[Integer]
+    val expected = new util.HashMap[UID, Integer]
+    for (step <- 0 until 200000) {
+      val uid = uids(random.nextInt(uids.size))
+      random.nextInt(3) match {
+        case 0 => assert(map.put(uid, step) == expected.put(uid, step))
+        case 1 => assert(map.remove(uid) == expected.remove(uid))
+        case _ =>
+          assert(map.get(uid) == expected.get(uid))
+          assert(map.containsKey(uid) == expected.containsKey(uid))
+      }
+      assert(map.size == expected.size)
+    }
+    assert(map == expected)
+  }
+
+  test("null values are distinct from absent keys") {
+    val map = new UIDMap[String]
+    val uid = new UID()
+    map.put(uid, null)
+    assert(map.containsKey(uid))
+    assert(!map.containsKey(new UID()))
+    assert(map.getOrDefault(uid, "default") == null)
+  }
+
+  test("removal through iterators visits every entry once") {
+    val random = new Random(42)
+    val uids = IndexedSeq.fill(5000)(new UID())
+    val map = new UIDMap[Integer]
+    val expected = new util.HashMap[UID, Integer]
+    uids.zipWithIndex.foreach { case (uid, i) => map.put(uid, i); expected.put(uid, i) }
+    val visited = new util.HashSet[UID]
+    val it = map.entrySet.iterator
+    while (it.hasNext) {
+      val entry = it.next()
+      assert(visited.add(entry.getKey))
+      if (random.nextBoolean()) {
+        it.remove()
+        expected.remove(entry.getKey)
+      }
+    }
+    assert(visited.size == uids.size)
+    assert(map == expected)
+    uids.filter(_ => random.nextBoolean()).foreach { uid =>
+      assert(map.keySet.remove(uid) == expected.keySet.remove(uid))
+    }
+    assert(map == expected)
+    map.keySet.removeIf(_ => random.nextBoolean())
+    expected.keySet.retainAll(map.keySet)
+    assert(map.size == expected.size)
+    assert(map == expected)
+  }
+}
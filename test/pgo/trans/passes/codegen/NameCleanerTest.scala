@@ -0,0 +1,28 @@
+package pgo.trans.passes.codegen
+
+import org.scalatest.funsuite.AnyFunSuite
+
+import scala.jdk.CollectionConverters._
+
+class NameCleanerTest extends AnyFunSuite {
+  test("suffixes skip names taken by the seed and by other hints") {
+    val cleaner = new NameCleaner(Set("tmp", "tmp1").asJava)
+    assert(cleaner.cleanName("tmp") == "tmp0")
+    assert(cleaner.cleanName("tmp2") == "tmp2")
+    assert(cleaner.cleanName("tmp") == "tmp3")
+    assert(cleaner.cleanName("tmp") == "tmp4")
+    assert(cleaner.cleanName("_") == "_")
+  }
+
+  test("child scopes continue from their parent without affecting it") {
+    val parent = new NameCleaner()
+    assert(parent.cleanName("x") == "x")
+    val child = parent.child()
+    assert(child.cleanName("x") == "x0")
+    assert(child.cleanName("x") == "x1")
+    assert(parent.cleanName("x") == "x0")
+    assert(child.child().cleanName("x") == "x2")
+    assertThrows[pgo.InternalCompilerError](child.requireCleanName("x1"))
+    assert(parent.requireCleanName("x1") == "x1")
+  }
+}
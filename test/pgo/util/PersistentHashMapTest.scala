@@ -0,0 +1,51 @@
+package pgo.util
+
+import org.scalatest.funsuite.AnyFunSuite
+
+import java.util
+import scala.jdk.CollectionConverters._
+import scala.util.Random
+
+class PersistentHashMapTest extends AnyFunSuite {
+  import PersistentHashMapTest._
+
+  test("behaves like a HashMap under random plus and minus") {
+    val random = new Random(42)
+    var map = new PersistentHashMap[Key, Integer]
+    val expected = new util.HashMap[Key, Integer]
+    for (step <- 0 until 100000) {
+      val key = Key(random.nextInt(2000))
+      random.nextInt(3) match {
+        case 0 =>
+          map = map.plus(key, step)
+          expected.put(key, step)
+        case 1 =>
+          map = map.minus(key)
+          expected.remove(key)
+        case _ =>
+          assert(map.get(key) == expected.get(key))
+          assert(map.containsKey(key) == expected.containsKey(key))
+      }
+      assert(map.size == expected.size)
+    }
+    assert(map.iterator.asScala.map(e => e.getKey -> e.getValue).toMap == expected.asScala.toMap)
+  }
+
+  test("updates leave earlier versions intact") {
+    val empty = new PersistentHashMap[String, Integer]
+    val one = empty.plus("a", 1)
+    val two = one.plus("b", 2).plus("a", 3)
+    assert(empty.isEmpty)
+    assert(one.size == 1 && one.get("a") == 1 && !one.containsKey("b"))
+    assert(two.size == 2 && two.get("a") == 3)
+    assert(two.minus("a").minus("b").isEmpty)
+    assert(two.minus("c") eq two)
+  }
+}
+
+object PersistentHashMapTest {
+  // few distinct hash codes, so that keys share trie paths and collide outright
+  final case class Key(id: Int) {
+    override def hashCode(): Int = id % 97 * 0x01010101
+  }
+}